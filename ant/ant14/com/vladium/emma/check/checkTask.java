@@ -0,0 +1,153 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.emma.check;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.Project;
+
+import com.vladium.util.IProperties;
+import com.vladium.emma.ant.FileTask;
+import com.vladium.emma.ant.SuppressableTask;
+import com.vladium.emma.instr.FilterCfg;
+import com.vladium.emma.instr.FilterCfg.filterElement;
+import com.vladium.emma.report.IReportEnums;
+import com.vladium.emma.report.ReportCfg;
+
+// ----------------------------------------------------------------------------
+/**
+ * @author Vlad Roubtsov, (C) 2003
+ */
+public
+final class checkTask extends FileTask implements IReportEnums
+{
+    // public: ................................................................
+    
+    
+    public checkTask (final SuppressableTask parent)
+    {
+        super (parent);
+        
+        m_haltOnFailure = true;
+    }
+    
+    public void init () throws BuildException
+    {
+        super.init ();
+        
+        m_reportCfg = new ReportCfg (getProject (), this);
+        m_filterCfg = new FilterCfg (this);
+    }
+    
+    
+    public void execute () throws BuildException
+    {
+        if (isEnabled ())
+        {
+            String [] files = getDataPath (true);
+            if ((files == null) || (files.length == 0))
+                throw (BuildException) newBuildException (getTaskName ()
+                    + ": no valid input data files have been specified", location).fillInStackTrace ();
+            
+            // combine report and all generic settings:
+            final IProperties settings;
+            {
+                final IProperties taskSettings = getTaskSettings ();
+                final IProperties reportSettings = m_reportCfg.getReportSettings ();
+                
+                settings = IProperties.Factory.combine (reportSettings, taskSettings);
+            }
+            
+            final CheckProcessor processor = CheckProcessor.create ();
+            
+            processor.setDataPath (files); files = null;
+            processor.setInclExclFilter (m_filterCfg.getFilterSpecs ());
+            processor.setFailFast (m_failFast);
+            processor.setPropertyOverrides (settings);
+            
+            processor.run ();
+            
+            final String [] violations = processor.getViolations ();
+            if (violations.length > 0)
+            {
+                if (m_failureProperty != null) getProject ().setNewProperty (m_failureProperty, "true");
+                
+                final String msg = getTaskName () + ": coverage check failed: " + violations.length + " violation(s)";
+                
+                if (m_haltOnFailure)
+                    throw (BuildException) newBuildException (msg, location).fillInStackTrace ();
+                else
+                    log (msg, Project.MSG_WARN);
+            }
+        }
+    }
+    
+    
+    // filter attribute/element:
+    
+    public void setFilter (final String filter)
+    {
+        m_filterCfg.setFilter (filter);
+    }
+    
+    public filterElement createFilter ()
+    {
+        return m_filterCfg.createFilter ();
+    }
+    
+    
+    // report properties that affect the check:
+    
+    public void setUnits (final UnitsTypeAttribute units)
+    {
+        m_reportCfg.setUnits (units);
+    }
+    
+    public void setDepth (final DepthAttribute depth)
+    {
+        m_reportCfg.setDepth (depth);
+    }
+    
+    public void setMetrics (final String metrics)
+    {
+        m_reportCfg.setMetrics (metrics);
+    }
+    
+    
+    // check options:
+    
+    public void setFailfast (final boolean failFast)
+    {
+        m_failFast = failFast;
+    }
+    
+    public void setHaltonfailure (final boolean haltOnFailure)
+    {
+        m_haltOnFailure = haltOnFailure;
+    }
+    
+    public void setFailureproperty (final String property)
+    {
+        m_failureProperty = property;
+    }
+    
+    // protected: .............................................................
+    
+    // package: ...............................................................
+    
+    // private: ...............................................................
+    
+    
+    private ReportCfg m_reportCfg;
+    private FilterCfg m_filterCfg;
+    
+    private boolean m_failFast, m_haltOnFailure;
+    private String m_failureProperty;
+
+} // end of class
+// ----------------------------------------------------------------------------
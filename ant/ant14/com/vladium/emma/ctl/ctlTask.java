@@ -118,7 +118,7 @@ final class ctlTask extends NestedTask
         }
     }
     
-    // connection string attribute:
+    // connection string attribute [a comma-separated list of targets is run in parallel]:
     
     public final void setConnect (final String connectionString)
     {
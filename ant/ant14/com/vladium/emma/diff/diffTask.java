@@ -0,0 +1,122 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.emma.diff;
+
+import java.io.File;
+
+import org.apache.tools.ant.BuildException;
+import org.apache.tools.ant.types.Path;
+
+import com.vladium.emma.ant.FileTask;
+import com.vladium.emma.ant.SuppressableTask;
+import com.vladium.emma.instr.FilterCfg;
+import com.vladium.emma.instr.FilterCfg.filterElement;
+
+// ----------------------------------------------------------------------------
+/**
+ * @author Vlad Roubtsov, (C) 2003
+ */
+public
+final class diffTask extends FileTask
+{
+    // public: ................................................................
+    
+    
+    public diffTask (final SuppressableTask parent)
+    {
+        super (parent);
+    }
+    
+    public void init () throws BuildException
+    {
+        super.init ();
+        
+        m_filterCfg = new FilterCfg (this);
+    }
+    
+    
+    public void execute () throws BuildException
+    {
+        if (isEnabled ())
+        {
+            String [] files = getDataPath (true);
+            if ((files == null) || (files.length == 0))
+                throw (BuildException) newBuildException (getTaskName ()
+                    + ": no valid input data files have been specified", location).fillInStackTrace ();
+            
+            final String [] baseline = m_baseline != null ? m_baseline.list () : null;
+            if ((baseline == null) || (baseline.length == 0))
+                throw (BuildException) newBuildException (getTaskName ()
+                    + ": no valid baseline data files have been specified", location).fillInStackTrace ();
+            
+            final DiffProcessor processor = DiffProcessor.create ();
+            
+            processor.setBaselinePath (baseline);
+            processor.setDataPath (files); files = null;
+            processor.setInclExclFilter (m_filterCfg.getFilterSpecs ());
+            processor.setOutFile (m_outFile != null ? m_outFile.getAbsolutePath () : null);
+            processor.setPropertyOverrides (getTaskSettings ());
+            
+            processor.run ();
+        }
+    }
+    
+    
+    // baseline attribute/element:
+    
+    public void setBaseline (final Path path)
+    {
+        if (m_baseline == null)
+            m_baseline = path;
+        else
+            m_baseline.append (path);
+    }
+    
+    public Path createBaseline ()
+    {
+        if (m_baseline == null)
+            m_baseline = new Path (project);
+        
+        return m_baseline.createPath ();
+    }
+    
+    
+    // outfile attribute:
+    
+    public void setOutfile (final File file)
+    {
+        m_outFile = file;
+    }
+    
+    
+    // filter attribute/element:
+    
+    public void setFilter (final String filter)
+    {
+        m_filterCfg.setFilter (filter);
+    }
+    
+    public filterElement createFilter ()
+    {
+        return m_filterCfg.createFilter ();
+    }
+    
+    // protected: .............................................................
+    
+    // package: ...............................................................
+    
+    // private: ...............................................................
+    
+    
+    private FilterCfg m_filterCfg;
+    private Path m_baseline;
+    private File m_outFile;
+
+} // end of class
+// ----------------------------------------------------------------------------
@@ -17,7 +17,9 @@ import org.apache.tools.ant.Project;
 
 import com.vladium.emma.ant.NestedTask;
 import com.vladium.emma.ant.SuppressableTask;
+import com.vladium.emma.check.checkTask;
 import com.vladium.emma.ctl.ctlTask;
+import com.vladium.emma.diff.diffTask;
 import com.vladium.emma.instr.instrTask;
 import com.vladium.emma.merge.mergeTask;
 import com.vladium.emma.report.reportTask;
@@ -86,6 +88,16 @@ final class emmaTask extends SuppressableTask
         return addTask (new reportTask (this), getNestedTaskName ("report"));
     }
     
+    public NestedTask createCheck ()
+    {
+        return addTask (new checkTask (this), getNestedTaskName ("check"));
+    }
+    
+    public NestedTask createDiff ()
+    {
+        return addTask (new diffTask (this), getNestedTaskName ("diff"));
+    }
+    
     // protected: .............................................................
 
 
@@ -18,7 +18,9 @@ import com.vladium.emma.instr.FilterCfg.filterElement;
 import com.vladium.emma.report.ReportCfg;
 import com.vladium.emma.report.IReportEnums.DepthAttribute;
 import com.vladium.emma.report.IReportEnums.UnitsTypeAttribute;
+import com.vladium.emma.report.ReportCfg.Element_BUNDLE;
 import com.vladium.emma.report.ReportCfg.Element_HTML;
+import com.vladium.emma.report.ReportCfg.Element_JSONL;
 import com.vladium.emma.report.ReportCfg.Element_TXT;
 import com.vladium.emma.report.ReportCfg.Element_XML;
 
@@ -481,6 +483,16 @@ class emmajavaTask extends Java
         return m_reportCfg.createXml ();
     }
     
+    public final Element_BUNDLE createBundle ()
+    {
+        return m_reportCfg.createBundle ();
+    }
+    
+    public final Element_JSONL createJsonl ()
+    {
+        return m_reportCfg.createJsonl ();
+    }
+    
     
     // report properties [defaults for all report types]:
 
@@ -36,7 +36,7 @@ final class instrTask extends FilterTask
             return VALUES;
         }
         
-        private static final String [] VALUES = new String [] {"copy", "overwrite", "fullcopy"};
+        private static final String [] VALUES = new String [] {"copy", "overwrite", "fullcopy", "dryrun"};
 
     } // end of nested class
     
@@ -57,7 +57,8 @@ final class instrTask extends FilterTask
                 throw (BuildException) newBuildException (getTaskName ()
                     + ": instrumentation path must be specified", location).fillInStackTrace ();
  
-            if ((m_outMode != InstrProcessor.OutMode.OUT_MODE_OVERWRITE) && (m_outDir == null))
+            if ((m_outMode != InstrProcessor.OutMode.OUT_MODE_OVERWRITE) && (m_outMode != InstrProcessor.OutMode.OUT_MODE_DRYRUN)
+                && (m_outDir == null))
                 throw (BuildException) newBuildException (getTaskName ()
                     + ": output directory must be specified for '" + m_outMode + "' output mode", location).fillInStackTrace ();
             
@@ -34,6 +34,8 @@ interface IReportEnums
             "txt",
             "html",
             "xml",
+            "bundle",
+            "jsonl",
         };
 
     } // end of nested class
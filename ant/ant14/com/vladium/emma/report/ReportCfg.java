@@ -214,6 +214,44 @@ class ReportCfg implements IReportProperties
     
     // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
     
+    public static class Element_BUNDLE extends Element
+    {
+        protected final String getType ()
+        {
+            return TYPE;
+        }
+        
+        Element_BUNDLE (final Task task, final IProperties settings)
+        {
+            super (task, settings);
+        }
+        
+        
+        static final String TYPE = "bundle";
+        
+    } // end of nested class
+    
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    
+    public static class Element_JSONL extends Element
+    {
+        protected final String getType ()
+        {
+            return TYPE;
+        }
+        
+        Element_JSONL (final Task task, final IProperties settings)
+        {
+            super (task, settings);
+        }
+        
+        
+        static final String TYPE = "jsonl";
+        
+    } // end of nested class
+    
+    // ~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~
+    
     
     public ReportCfg (final Project project, final Task task)
     {
@@ -320,6 +358,18 @@ class ReportCfg implements IReportProperties
                                                      new Element_XML (m_task, m_settings));
     }
     
+    public Element_BUNDLE createBundle ()
+    {
+        return (Element_BUNDLE) addCfgElement (Element_BUNDLE.TYPE,
+                                                        new Element_BUNDLE (m_task, m_settings));
+    }
+    
+    public Element_JSONL createJsonl ()
+    {
+        return (Element_JSONL) addCfgElement (Element_JSONL.TYPE,
+                                                       new Element_JSONL (m_task, m_settings));
+    }
+    
     
     // report properties [defaults for all report types]:
 
@@ -15,7 +15,11 @@ import org.apache.tools.ant.types.Reference;
 import com.vladium.util.IProperties;
 import com.vladium.emma.ant.FileTask;
 import com.vladium.emma.ant.SuppressableTask;
+import com.vladium.emma.instr.FilterCfg;
+import com.vladium.emma.instr.FilterCfg.filterElement;
+import com.vladium.emma.report.ReportCfg.Element_BUNDLE;
 import com.vladium.emma.report.ReportCfg.Element_HTML;
+import com.vladium.emma.report.ReportCfg.Element_JSONL;
 import com.vladium.emma.report.ReportCfg.Element_TXT;
 import com.vladium.emma.report.ReportCfg.Element_XML;
 
@@ -36,6 +40,7 @@ final class reportTask extends FileTask implements IReportProperties, IReportEnu
         super.init ();
         
         m_reportCfg = new ReportCfg (getProject (), this);
+        m_filterCfg = new FilterCfg (this);
     }
 
     
@@ -47,7 +52,7 @@ final class reportTask extends FileTask implements IReportProperties, IReportEnu
             
             if ((reportTypes == null) || (reportTypes.length == 0)) // no "txt" default for report processor
                 throw (BuildException) newBuildException (getTaskName ()
-                    + ": no report types specified: provide at least one of <txt>, <html>, <xml> nested elements", location).fillInStackTrace ();
+                    + ": no report types specified: provide at least one of <txt>, <html>, <xml>, <bundle>, <jsonl> nested elements", location).fillInStackTrace ();
 
             String [] files = getDataPath (true);
             if ((files == null) || (files.length == 0))
@@ -71,6 +76,7 @@ final class reportTask extends FileTask implements IReportProperties, IReportEnu
             
             processor.setDataPath (files); files = null;
             processor.setSourcePath (srcpath != null ? srcpath.list () : null);
+            processor.setInclExclFilter (m_filterCfg.getFilterSpecs ());
             processor.setReportTypes (reportTypes);
             processor.setPropertyOverrides (settings);        
             
@@ -97,6 +103,19 @@ final class reportTask extends FileTask implements IReportProperties, IReportEnu
     }
     
     
+    // filter attribute/element:
+    
+    public void setFilter (final String filter)
+    {
+        m_filterCfg.setFilter (filter);
+    }
+    
+    public filterElement createFilter ()
+    {
+        return m_filterCfg.createFilter ();
+    }
+    
+    
     // generator elements:
     
     public Element_TXT createTxt ()
@@ -114,6 +133,16 @@ final class reportTask extends FileTask implements IReportProperties, IReportEnu
         return m_reportCfg.createXml ();
     }
     
+    public Element_BUNDLE createBundle ()
+    {
+        return m_reportCfg.createBundle ();
+    }
+    
+    public Element_JSONL createJsonl ()
+    {
+        return m_reportCfg.createJsonl ();
+    }
+    
     
     // report properties [defaults for all report types]:
 
@@ -174,6 +203,7 @@ final class reportTask extends FileTask implements IReportProperties, IReportEnu
 
     
     private ReportCfg m_reportCfg;   
+    private FilterCfg m_filterCfg;
 
 } // end of class
 // ----------------------------------------------------------------------------
\ No newline at end of file
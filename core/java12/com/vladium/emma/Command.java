@@ -409,6 +409,7 @@ abstract class Command
     protected static final int RC_OK          = 0;
     protected static final int RC_USAGE       = 1;
     protected static final int RC_UNEXPECTED  = 2;
+    protected static final int RC_CHECK_FAILED = 3; // coverage below the report metrics ['check' command]
 
     // package: ...............................................................
     
@@ -55,6 +55,19 @@ abstract class EMMAProperties
     public static final String PREFIX_SESSION_DATA              = "session.";
     public static final String PROPERTY_SESSION_DATA_OUT_FILE   = PREFIX_SESSION_DATA + "out.file";
     public static final String PROPERTY_SESSION_DATA_OUT_MERGE  = PREFIX_SESSION_DATA + "out.merge";
+    public static final Boolean DEFAULT_SESSION_DATA_OUT_INDEX  = Boolean.FALSE;
+    public static final String PROPERTY_SESSION_DATA_OUT_INDEX  = PREFIX_SESSION_DATA + "out.index";
+    
+    public static final int DEFAULT_DATA_IN_THREADS             = 0; // one per available processor
+    public static final String PROPERTY_DATA_IN_THREADS         = "data.in.threads";
+    
+    public static final String DEFAULT_DIFF_OUT_FILE            = "coverage_diff.txt";
+    public static final String PROPERTY_DIFF_OUT_FILE           = "diff.out.file";
+    
+    public static final String PROPERTY_SUMMARY_OUT_FILE        = "summary.out.file"; // no summary is written by default
+    
+    public static final int DEFAULT_REPORT_THREADS              = 0; // one per available processor
+    public static final String PROPERTY_REPORT_THREADS          = "report.threads";
     
     public static final String PROPERTY_TEMP_FILE_EXT           = ".et";
     
@@ -74,5 +74,8 @@ interface IAppErrorCodes
     /** [none] */
     String ARGS_IO_FAILURE                      = "ARGS_IO_FAILURE";
 
+    /** [none] */
+    String IN_IO_FAILURE                        = "IN_IO_FAILURE";
+
 } // end of interface
 // ----------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,290 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.emma.check;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import com.vladium.logging.Logger;
+import com.vladium.util.Files;
+import com.vladium.util.IConstants;
+import com.vladium.util.IProperties;
+import com.vladium.util.Property;
+import com.vladium.util.exception.Exceptions;
+import com.vladium.emma.IAppConstants;
+import com.vladium.emma.IAppErrorCodes;
+import com.vladium.emma.EMMAProperties;
+import com.vladium.emma.EMMARuntimeException;
+import com.vladium.emma.Processor;
+import com.vladium.emma.data.DataFactory;
+import com.vladium.emma.data.ICoverageData;
+import com.vladium.emma.data.IMergeable;
+import com.vladium.emma.data.IMetaData;
+import com.vladium.emma.filter.IInclExclFilter;
+
+// ----------------------------------------------------------------------------
+/**
+ * A coverage gate: loads and merges data files like the report processor
+ * does and checks the overall, package and class coverage against the
+ * report metrics [report.metrics, overridable as report.check.metrics]
+ * without rendering any reports. Violations are logged as warnings and
+ * are available via {@link #getViolations()} after {@link #run()}; it is
+ * up to the caller to turn them into a failure.
+ * 
+ * @author Vlad Roubtsov, (C) 2003
+ */
+public
+final class CheckProcessor extends Processor
+                           implements IAppErrorCodes
+{
+    // public: ................................................................
+    
+    /**
+     * Factory method for this processor.
+     *
+     * @return a new Processor instance
+     */
+    public static CheckProcessor create ()
+    {
+        return new CheckProcessor ();
+    }
+    
+    /**
+     *
+     * @param path [null is equivalent to an empty array]
+     */
+    public synchronized final void setDataPath (final String [] path)
+    {
+        if ((path == null) || (path.length == 0))
+            m_dataPath = IConstants.EMPTY_FILE_ARRAY;
+        else
+            m_dataPath = Files.pathToFiles (path, true);
+    }
+    
+    /**
+     * Restricts the check to classes accepted by a coverage inclusion/exclusion
+     * filter [see ReportProcessor.setInclExclFilter()].
+     *
+     * @param specs [null is equivalent to no filtering (everything is included)]
+     */
+    public synchronized final void setInclExclFilter (final String [] specs)
+    {
+        if ((specs == null) || (specs.length == 0))
+            m_coverageFilter = null;
+        else
+            m_coverageFilter = IInclExclFilter.Factory.create (specs);
+    }
+    
+    /**
+     * @param failFast if 'true', the check stops at the first violation
+     * [defaults to 'false': all violations are reported]
+     */
+    public synchronized final void setFailFast (final boolean failFast)
+    {
+        m_failFast = failFast;
+    }
+    
+    /**
+     * @return violation messages found by the last {@link #run()} [empty if
+     * the coverage met all metrics; missing metadata or coverage data is a
+     * violation, too; never null]
+     */
+    public synchronized final String [] getViolations ()
+    {
+        return m_violations;
+    }
+    
+    // protected: .............................................................
+    
+    
+    protected void validateState ()
+    {
+        super.validateState ();
+        
+        if (m_dataPath == null)
+            throw new IllegalStateException ("data path not set");
+        
+        // [m_propertyOverrides can be null]
+    }
+    
+    
+    protected void _run (final IProperties toolProperties)
+    {
+        final Logger log = m_log;
+        
+        final boolean verbose = m_log.atVERBOSE ();
+        if (verbose)
+        {
+            log.verbose (IAppConstants.APP_VERBOSE_BUILD_ID);
+            
+            // [assertion: m_dataPath != null]
+            log.verbose ("input data path:");
+            log.verbose ("{");
+            for (int p = 0; p < m_dataPath.length; ++ p)
+            {
+                final File f = m_dataPath [p];
+                final String nonexistent = f.exists () ? "" : "{nonexistent} ";
+                
+                log.verbose ("  " + nonexistent + f.getAbsolutePath ());
+            }
+            log.verbose ("}");
+            
+            if (m_coverageFilter != null) log.verbose ("[check data is restricted by a coverage filter]");
+        }
+        else
+        {
+            log.info ("processing input files ...");
+        }
+        
+        m_violations = IConstants.EMPTY_STRING_ARRAY;
+        
+        final int loadThreads = Property.toInt (toolProperties.getProperty (EMMAProperties.PROPERTY_DATA_IN_THREADS),
+                                                EMMAProperties.DEFAULT_DATA_IN_THREADS);
+        
+        RuntimeException failure = null;
+        try
+        {
+            long start = log.atINFO () ? System.currentTimeMillis () : 0;
+            
+            IMetaData mdata = null;
+            ICoverageData cdata = null;
+            
+            // merge all data files:
+            try
+            {
+                // load and merge all data files concurrently [note: later datapath entries override earlier ones]:
+                final IMergeable [] pathData = DataFactory.load (m_dataPath, m_coverageFilter, loadThreads);
+                
+                mdata = (IMetaData) pathData [DataFactory.TYPE_METADATA];
+                cdata = (ICoverageData) pathData [DataFactory.TYPE_COVERAGEDATA];
+                
+                if (log.atINFO ())
+                {
+                    final long end = System.currentTimeMillis ();
+                    
+                    log.info (m_dataPath.length + " file(s) read and merged in " + (end - start) + " ms");
+                    start = end;
+                }
+            }
+            catch (IOException ioe)
+            {
+                throw new EMMARuntimeException (IN_IO_FAILURE, ioe);
+            }
+            
+            // a gate must not pass when there is nothing to check: missing
+            // data is reported as a [sole] violation
+            
+            if ((mdata == null) || mdata.isEmpty ())
+            {
+                failWith ("no metadata found in any of the data files");
+                
+                return;
+            }
+            
+            if (cdata == null)
+            {
+                failWith ("no runtime coverage data found in any of the data files");
+                
+                return;
+            }
+            
+            final MetricsChecker checker = new MetricsChecker ();
+            try
+            {
+                checker.setFailFast (m_failFast);
+                checker.process (mdata, cdata, null, toolProperties);
+                
+                final List /* String */ violations = checker.getViolations ();
+                
+                m_violations = new String [violations.size ()];
+                violations.toArray (m_violations);
+            }
+            finally
+            {
+                try { checker.cleanup (); } catch (Throwable ignore) {}
+            }
+            
+            if (log.atINFO ())
+            {
+                final long end = System.currentTimeMillis ();
+                
+                if (m_violations.length == 0)
+                    log.info ("coverage check passed in " + (end - start) + " ms");
+                else
+                    log.info ("coverage check failed in " + (end - start) + " ms: " + m_violations.length + " violation(s)"
+                        + (m_failFast ? " [stopped at the first one]" : ""));
+            }
+        }
+        catch (SecurityException se)
+        {
+            failure = new EMMARuntimeException (SECURITY_RESTRICTION, new String [] {IAppConstants.APP_NAME}, se);
+        }
+        catch (RuntimeException re)
+        {
+            failure = re;
+        }
+        
+        if (failure != null)
+        {
+            if (Exceptions.unexpectedFailure (failure, EXPECTED_FAILURES))
+            {
+                throw new EMMARuntimeException (UNEXPECTED_FAILURE,
+                                                new Object [] {failure.toString (), IAppConstants.APP_BUG_REPORT_LINK},
+                                                failure);
+            }
+            else
+                throw failure;
+        }
+    }
+    
+    // package: ...............................................................
+    
+    // private: ...............................................................
+    
+    
+    private CheckProcessor ()
+    {
+        m_dataPath = IConstants.EMPTY_FILE_ARRAY;
+        m_violations = IConstants.EMPTY_STRING_ARRAY;
+    }
+    
+    
+    private void failWith (final String violation)
+    {
+        m_log.warning (violation);
+        
+        m_violations = new String [] {violation};
+    }
+    
+    
+    // caller-settable state [scoped to this runner instance]:
+    
+    private File [] m_dataPath;     // required to be non-null for run()
+    private IInclExclFilter m_coverageFilter; // can be null for run()
+    private boolean m_failFast;
+    
+    // run() results:
+    
+    private String [] m_violations; // never null
+    
+    private static final Class [] EXPECTED_FAILURES; // set in <clinit>
+    
+    static
+    {
+        EXPECTED_FAILURES = new Class []
+        {
+            EMMARuntimeException.class,
+            IllegalArgumentException.class,
+            IllegalStateException.class,
+        };
+    }
+
+} // end of class
+// ----------------------------------------------------------------------------
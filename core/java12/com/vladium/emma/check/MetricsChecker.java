@@ -0,0 +1,190 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.emma.check;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.vladium.util.Descriptors;
+import com.vladium.util.IProperties;
+import com.vladium.emma.EMMARuntimeException;
+import com.vladium.emma.data.ICoverageData;
+import com.vladium.emma.data.IMetaData;
+import com.vladium.emma.report.AbstractReportGenerator;
+import com.vladium.emma.report.AllItem;
+import com.vladium.emma.report.ClassItem;
+import com.vladium.emma.report.IItem;
+import com.vladium.emma.report.IItemAttribute;
+import com.vladium.emma.report.IReportProperties;
+import com.vladium.emma.report.PackageItem;
+import com.vladium.emma.report.SourcePathCache;
+import com.vladium.emma.report.SrcFileItem;
+
+// ----------------------------------------------------------------------------
+/**
+ * A "report generator" that renders nothing: it walks the report data model
+ * and checks every item down to the class level [or the report depth, if
+ * that is shallower] against the report metrics. Only the aggregates needed
+ * by the metric columns are computed [via {@link IItemAttribute#passes}].
+ * Children are visited in the report sort order, so with the default sort
+ * the least covered items are listed first.<P>
+ * 
+ * Report settings are those of a report of type "check", i.e.
+ * report.check.metrics etc override the common report defaults.
+ * 
+ * @author Vlad Roubtsov, (C) 2003
+ */
+final class MetricsChecker extends AbstractReportGenerator
+{
+    // public: ................................................................
+    
+    // IReportGenerator:
+    
+    public String getType ()
+    {
+        return TYPE;
+    }
+    
+    public void process (final IMetaData mdata, final ICoverageData cdata,
+                         final SourcePathCache cache, final IProperties properties)
+        throws EMMARuntimeException
+    {
+        initialize (mdata, cdata, cache, properties);
+        
+        m_violations = new ArrayList ();
+        m_stopped = false;
+        
+        m_view.getRoot ().accept (this, null);
+    }
+    
+    // IItemVisitor:
+    
+    public Object visit (final AllItem item, final Object ctx)
+    {
+        check (item, item.getName ());
+        checkChildren (item, AllItem.getTypeMetadata ().getTypeID ());
+        
+        return ctx;
+    }
+    
+    public Object visit (final PackageItem item, final Object ctx)
+    {
+        check (item, "package [" + item.getName () + "]");
+        checkChildren (item, PackageItem.getTypeMetadata ().getTypeID ());
+        
+        return ctx;
+    }
+    
+    public Object visit (final SrcFileItem item, final Object ctx)
+    {
+        // source files are not checked, only the classes in them:
+        checkChildren (item, SrcFileItem.getTypeMetadata ().getTypeID ());
+        
+        return ctx;
+    }
+    
+    public Object visit (final ClassItem item, final Object ctx)
+    {
+        check (item, "class [" + Descriptors.vmNameToJavaName (item.getClassDescriptor ().getClassVMName ()) + "]");
+        
+        return ctx;
+    }
+    
+    // protected: .............................................................
+    
+    // package: ...............................................................
+    
+    
+    static final String TYPE = "check";
+    
+    /*
+     * @param failFast if 'true', the check stops at the first violation
+     */
+    void setFailFast (final boolean failFast)
+    {
+        m_failFast = failFast;
+    }
+    
+    /*
+     * @return violation messages found by the last process() [in visit order]
+     */
+    List /* String */ getViolations ()
+    {
+        return m_violations;
+    }
+    
+    // private: ...............................................................
+    
+    
+    private void checkChildren (final IItem item, final int typeID)
+    {
+        final int depth = Math.min (m_settings.getDepth (), ClassItem.getTypeMetadata ().getTypeID ());
+        
+        if ((depth > typeID) && (item.getChildCount () > 0))
+        {
+            for (Iterator children = item.getChildren (m_typeSortComparators [typeID]); ! m_stopped && children.hasNext (); )
+            {
+                ((IItem) children.next ()).accept (this, null);
+            }
+        }
+    }
+    
+    private void check (final IItem item, final String label)
+    {
+        final int [] columns = m_settings.getColumnOrder ();
+        final int unitsType = m_settings.getUnitsType ();
+        
+        StringBuffer buf = null;
+        for (int c = 0; (c < columns.length) && ! m_stopped; ++ c)
+        {
+            final int attrID = columns [c];
+            if (m_metrics [attrID] <= 0) continue;
+            
+            final IItemAttribute attr = item.getAttribute (attrID, unitsType);
+            if ((attr == null) || attr.passes (item, m_metrics [attrID])) continue;
+            
+            if (buf == null) buf = new StringBuffer ();
+            buf.setLength (0);
+            
+            buf.append (label);
+            buf.append (": ");
+            buf.append (COLUMN_NAMES [attrID]);
+            buf.append (" coverage ");
+            attr.format (item, buf);
+            buf.append (" is below ");
+            buf.append (m_metrics [attrID] * 100 / IItem.PRECISION);
+            buf.append ('%');
+            
+            final String violation = buf.toString ();
+            
+            m_violations.add (violation);
+            m_log.warning (violation);
+            
+            m_stopped = m_failFast;
+        }
+    }
+    
+    
+    private boolean m_failFast;
+    
+    private List /* String */ m_violations;
+    private boolean m_stopped;
+    
+    private static final String [] COLUMN_NAMES = // indexed by attribute ID
+    {
+        IReportProperties.ITEM_NAME_COLUMN,
+        IReportProperties.CLASS_COVERAGE_COLUMN,
+        IReportProperties.METHOD_COVERAGE_COLUMN,
+        IReportProperties.BLOCK_COVERAGE_COLUMN,
+        IReportProperties.LINE_COVERAGE_COLUMN,
+    };
+
+} // end of class
+// ----------------------------------------------------------------------------
@@ -11,6 +11,9 @@ package com.vladium.emma.ctl;
 import java.io.File;
 import java.io.IOException;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
 
 import com.vladium.logging.Logger;
 import com.vladium.util.IProperties;
@@ -45,6 +48,17 @@ final class CtlProcessor extends Processor
 {
     // public: ................................................................
     
+    // properties and defaults for multi-target command sequences:
+    
+    public static final String PROPERTY_CTL_THREADS             = "ctl.threads";
+    public static final String PROPERTY_CTL_TIMEOUT             = "ctl.timeout";
+    public static final int DEFAULT_CTL_THREADS                 = 16;
+    public static final int DEFAULT_CTL_TIMEOUT                 = 0; // in milliseconds [0 means no timeout]
+    
+    // note: a target that dumps coverage into a shared file replies only after
+    // getting the file lock, which can take up to rt.filelock.maxtime in each
+    // target JVM. A non-zero ctl.timeout should be set well above that value.
+    
     // TODO: exception error codes
     
     /**
@@ -58,10 +72,15 @@ final class CtlProcessor extends Processor
     }
 
     /**
-     * Overrides the RT connection string to be used. The string is in the form
-     * "[host][:][port]" where all components are optional. If the colon separator
-     * is not present, the string will be tried as a port number first. White space
-     * around tokens is ignored.
+     * Overrides the RT connection string to be used. The string is a comma-separated
+     * list of targets, each in the form "[host][:][port]" where all components are
+     * optional. If the colon separator is not present, a target will be tried as
+     * a port number first. White space around tokens is ignored.<P>
+     * 
+     * If there is more than one target, the command sequence is executed against
+     * all of them concurrently [at most {@link #PROPERTY_CTL_THREADS} at a time,
+     * each within {@link #PROPERTY_CTL_TIMEOUT}] and the coverage data downloaded
+     * by each 'coverage.get' command is merged into a single output as it arrives.
      * 
      * @param connection [null/empty means to use the default connection settings]
      */
@@ -113,10 +132,7 @@ final class CtlProcessor extends Processor
     {
         final Logger log = m_log;
 
-        final boolean info = m_log.atINFO ();
         final boolean verbose = m_log.atVERBOSE ();
-        final boolean trace1 = m_log.atTRACE1 ();
-        final String method = "_run";
         
         if (verbose)
         {
@@ -140,58 +156,194 @@ final class CtlProcessor extends Processor
         if (m_commandSequence.length == 0) return;
         
         // get control connection settings:
-        final String host;
-        final int port;
+        final Target [] targets = parseTargets (m_connectionString, toolProperties);
+        
+        final int timeout = Property.toInt (toolProperties.getProperty (PROPERTY_CTL_TIMEOUT), DEFAULT_CTL_TIMEOUT);
+        if (timeout < 0)
+            throw new IllegalArgumentException ("[" + PROPERTY_CTL_TIMEOUT + "] must be non-negative: " + timeout);
+        
+        // fill in default arguments [command objects are shared by all targets]:
+        for (int c = 0; c < m_commandSequence.length; ++ c)
         {
-            String _host = null, _port = null;
+            m_commandSequence [c].populateDefaultArgs (toolProperties);
+        }
+                
+        RuntimeException failure = null;
+        try
+        {
+            if (targets.length == 1)
+            {
+                // ctl.timeout only applies to lists of targets: a single target
+                // is waited on without a timeout [a coverage dump can take
+                // as long as rt.filelock.maxtime before it responds]
             
-            if (m_connectionString != null)
+                runCommandSequence (targets [0], "", 0, null);
+            }
+            else
             {
-                final String [] tokens = parseConnectionString (m_connectionString);
+                final int threads = Property.toInt (toolProperties.getProperty (PROPERTY_CTL_THREADS), DEFAULT_CTL_THREADS);
                 
-                _host = tokens [0];
-                _port = tokens [1];
+                runCommandSequence (targets, Math.max (1, threads), timeout);
             }
-
-            // load property defaults as needed: 
-                
-            if (_host == null)
-                _host = toolProperties.getProperty (RT.PROPERTY_RT_CONTROL_HOST,
-                                                    RT.DEFAULT_RT_CONTROL_HOST);
-               
-            if (_port == null)
-                _port = toolProperties.getProperty (RT.PROPERTY_RT_CONTROL_PORT,
-                                                    Integer.toString (RT.DEFAULT_RT_CONTROL_PORT));
             
-            if ($assert.ENABLED)
+            log.info ("control command sequence complete");
+        }
+        catch (SecurityException se)
+        {
+            failure = new EMMARuntimeException (SECURITY_RESTRICTION, new String [] {IAppConstants.APP_NAME}, se);
+        }
+        catch (RuntimeException re)
+        {
+            failure = re;
+        }
+        finally
+        {
+            reset ();
+        }
+        
+        if (failure != null)
+        {
+            if (Exceptions.unexpectedFailure (failure, EXPECTED_FAILURES))
             {
-                $assert.ASSERT (_host != null, "_host = null");
-                $assert.ASSERT (_port != null, "_port = null");
+                throw new EMMARuntimeException (UNEXPECTED_FAILURE,
+                                                new Object [] {failure.toString (), IAppConstants.APP_BUG_REPORT_LINK},
+                                                failure);
             }
-                                                    
+            else
+                throw failure;
+        }
+    }
+
+
+    // package: ...............................................................
+    
+    // private: ...............................................................
+    
+    
+    private CtlProcessor ()
+    {
+        m_commandSequence = ControlRequest.EMPTY_CONTROL_REQUEST_ARRAY;
+    }
+    
+    
+    private void reset ()
+    {
+        // nothing to reset yet (no run()-scoped state in this processor)
+    }
+    
+    
+    /*
+     * A control connection endpoint and its state in a multi-target run.
+     */
+    private static final class Target
+    {
+        public String toString ()
+        {
+            return m_host + ":" + m_port;
+        }
+        
+        Target (final String host, final int port)
+        {
+            m_host = host;
+            m_port = port;
+        }
+        
+        
+        final String m_host;
+        final int m_port;
+        
+        // multi-target run state [guarded by the run lock]:
+        
+        long m_deadline;        // set when the target is started
+        boolean m_done;         // set by the worker on completion or by the run on timeout
+        boolean m_reaped;       // set by the run once it has accounted for a done target
+        Throwable m_failure;    // set along with 'm_done' [null on success]
+    
+    } // end of nested class
+    
+    
+    /*
+     * Executes the command sequence against a single target of a multi-target
+     * run on a dedicated thread.
+     */
+    private final class TargetWorker implements Runnable
+    {
+        public void run ()
+        {
+            Throwable failure = null;
+            
+            Logger.push (m_runLog);
             try
             {
-                port = Integer.parseInt (_port);
-                
-                if (port < 0 || port > 0xFFFF)
-                    throw new IllegalArgumentException ("control port must be in [1, 65535] range: " + port);
+                runCommandSequence (m_target, "[" + m_target + "] ", m_timeout, m_merged);
             }
-            catch (NumberFormatException nfe)
+            catch (Throwable t)
             {
-                throw new IllegalArgumentException ("malformed control port number: " + _port);
+                failure = t;
+            }
+            finally
+            {
+                Logger.pop (m_runLog);
             }
             
-            host = _host;
-        }
+            synchronized (m_merged)
+            {
+                if (! m_target.m_done) // a timed out target has already been accounted for
+                {
+                    m_target.m_done = true;
+                    m_target.m_failure = failure;
+                }
                 
-        RuntimeException failure = null;
-        try
+                m_merged.notifyAll ();
+            }
+        }
+        
+        TargetWorker (final Target target, final int timeout, final ICoverageData [] merged)
+        {
+            m_target = target;
+            m_timeout = timeout;
+            m_merged = merged;
+            m_runLog = m_log;
+        }
+        
+        
+        private final Target m_target;
+        private final int m_timeout;
+        private final ICoverageData [] m_merged; // also the run lock
+        private final Logger m_runLog;
+    
+    } // end of nested class
+    
+    
+    /*
+     * Executes the command sequence against 'target' on the current thread.
+     * 
+     * @param targetPrefix log message prefix identifying the target
+     * @param timeout socket read timeout [in ms, 0 means none]
+     * @param merged [null for single target runs] 'coverage.get' results
+     * are merged into this array [one slot per command] instead of being
+     * persisted
+     */
+    private void runCommandSequence (final Target target, final String targetPrefix, final int timeout,
+                                     final ICoverageData [] merged)
+    {
+        final Logger log = Logger.getLogger ();
+        
+        final boolean info = log.atINFO ();
+        final boolean verbose = log.atVERBOSE ();
+        final boolean trace1 = log.atTRACE1 ();
+        final String method = "runCommandSequence";
+        
+        final String host = target.m_host;
+        final int port = target.m_port;
+        
+        // connect and execute all commands:
         {
             if (verbose) log.info ("connecting to [" + host + ":" + port + "] ...");
             final RTControllerClientProxy proxy;
             try
             {
-                proxy = RTControllerClientProxy.create (host, port);
+                proxy = RTControllerClientProxy.create (host, port, timeout);
             }
             catch (UnknownHostException nhe)
             {
@@ -201,13 +353,11 @@ final class CtlProcessor extends Processor
             for (int c = 0; c < m_commandSequence.length; ++ c)
             {
                 final ControlRequest command = m_commandSequence [c];
-                final String prefix = command.getName () + ": ";
-                
-                command.populateDefaultArgs (toolProperties); // fill in default arguments
+                final String prefix = targetPrefix + command.getName () + ": ";
                 
                 if (verbose)
                 {
-                    log.verbose ("executing [" + command.getName () + "] with arguments:");
+                    log.verbose (targetPrefix + "executing [" + command.getName () + "] with arguments:");
                     log.verbose ("{");
                     final String [] args = command.getArgs ();
                     for (int a = 0; a < args.length; ++ a)
@@ -218,7 +368,7 @@ final class CtlProcessor extends Processor
                 }
                 else
                 {
-                    log.info ("executing [" + command + "] ...");
+                    log.info (targetPrefix + "executing [" + command + "] ...");
                 }
                 
                 // do the RPC part of command handling:
@@ -255,48 +405,37 @@ final class CtlProcessor extends Processor
                 
                 // do the client-local part of command handling:
                 
-                final String [] args = command.getArgs ();
                 switch (response.getID ())
                 {
                     case ControlRequest.ID_GET_COVERAGE:
                     {
-                        // consistenly with our overall client tool behavior, we
-                        // don't do output file locking here:
-                         
                         final ICoverageData cdata = (ICoverageData) data;
-
+                        
                         if ((cdata == null) || cdata.isEmpty ())
                         {
-                            log.info (prefix + "no output created (no coverage data has been collected by the server VM yet)");
+                            log.info (prefix + "no coverage data has been collected by the server VM yet");
                         }
-                        else
+                        else if (merged != null)
                         {
-                            final File cdataOutFile = new File (args [0]);
-                            final boolean cdataOutMerge = Property.toBoolean (args [1]);
+                            // merge into the run aggregate as soon as the data arrives:
                             
-                            // persist cdata:
-                            try
+                            synchronized (merged)
                             {
-                                if (verbose) log.verbose (prefix + "coverage data contains " + cdata.size () + " entries");
-                                
-                                final long sstart = info ? System.currentTimeMillis () : 0;
-                                DataFactory.persist (cdata, cdataOutFile, cdataOutMerge);
+                                if (target.m_done) // timed out: discard late data
+                                    throw new EMMARuntimeException (prefix + "coverage data arrived after the target had timed out");
                                 
-                                if (log.atINFO ())
-                                {
-                                    final long send = System.currentTimeMillis ();
-                                    
-                                    log.info (prefix + "local copy of coverage data " + (cdataOutMerge ? "merged into" : "written to") + " [" + cdataOutFile.getAbsolutePath () + "] {in " + (send - sstart) + " ms}");
-                                }
-                            }
-                            catch (IOException ioe)
-                            {
-                                throw new EMMARuntimeException (OUT_IO_FAILURE, new Object [] {cdataOutFile.getAbsolutePath ()}, ioe);
+                                merged [c] = (merged [c] == null) ? cdata : (ICoverageData) merged [c].merge (cdata);
                             }
+                            
+                            if (verbose) log.verbose (prefix + "merged " + cdata.size () + " coverage data entries");
+                        }
+                        else
+                        {
+                            persistCoverageData (prefix, cdata, command.getArgs ());
                         }
                     }
                     break;
-                     
+                    
                     case ControlRequest.ID_DUMP_COVERAGE:
                     {
                         log.info (prefix + data);
@@ -309,7 +448,7 @@ final class CtlProcessor extends Processor
                         log.info (prefix + data);
                     }
                     break;
-                     
+                
                 } // end of switch
                 
                 // done:
@@ -321,50 +460,229 @@ final class CtlProcessor extends Processor
                     log.info (prefix + "command completed in " + (end - start) + " ms");
                 }
             }
-            
-            log.info ("control command sequence complete");
         }
-        catch (SecurityException se)
+    }
+    
+    /*
+     * Executes the command sequence against all 'targets', at most 'threads'
+     * at a time, and persists the merged results of all 'coverage.get' commands.
+     * Targets that fail or do not complete within 'timeout' are logged and
+     * skipped; the run fails [after persisting all data received] if there
+     * were any.
+     */
+    private void runCommandSequence (final Target [] targets, final int threads, final int timeout)
+    {
+        final Logger log = m_log;
+        
+        log.info ("executing the control command sequence against " + targets.length + " targets [" + threads + " at a time] ...");
+        
+        final long start = System.currentTimeMillis ();
+        
+        final ICoverageData [] merged = new ICoverageData [m_commandSequence.length]; // also the run lock
+        int failed = 0;
+        
+        synchronized (merged)
         {
-            failure = new EMMARuntimeException (SECURITY_RESTRICTION, new String [] {IAppConstants.APP_NAME}, se);
+            int next = 0, running = 0, done = 0;
+            
+            while (true)
+            {
+                // start as many targets as allowed:
+                
+                for ( ; (running < threads) && (next < targets.length); ++ next, ++ running)
+                {
+                    final Target target = targets [next];
+                    target.m_deadline = (timeout > 0) ? System.currentTimeMillis () + timeout : Long.MAX_VALUE;
+                    
+                    final Thread worker = new Thread (new TargetWorker (target, timeout, merged), IAppConstants.APP_NAME + " ctl [" + target + "]");
+                    worker.setDaemon (true); // timed out workers are abandoned
+                    worker.start ();
+                }
+                
+                // account for completed and timed out targets:
+                
+                final long now = System.currentTimeMillis ();
+                long wait = Long.MAX_VALUE;
+                boolean reaped = false;
+                
+                for (int t = 0; t < next; ++ t)
+                {
+                    final Target target = targets [t];
+                    if (target.m_reaped) continue;
+                    
+                    if (! target.m_done)
+                    {
+                        if (now < target.m_deadline)
+                        {
+                            wait = Math.min (wait, target.m_deadline - now);
+                            continue;
+                        }
+                        
+                        target.m_done = true;
+                        target.m_failure = new EMMARuntimeException ("no response within " + timeout + " ms");
+                    }
+                    
+                    target.m_reaped = true;
+                    reaped = true;
+                    -- running;
+                    ++ done;
+                    
+                    if (target.m_failure != null)
+                    {
+                        ++ failed;
+                        log.warning ("[" + target + "] control command sequence failed: " + target.m_failure.getMessage ());
+                    }
+                }
+                
+                if (done == targets.length) break;
+                if (reaped && (next < targets.length)) continue; // start more targets first
+                
+                try
+                {
+                    merged.wait (wait == Long.MAX_VALUE ? 0 : wait);
+                }
+                catch (InterruptedException ie)
+                {
+                    throw new EMMARuntimeException ("interrupted while waiting for control targets", ie);
+                }
+            }
         }
-        catch (RuntimeException re)
+        
+        if (log.atINFO ())
         {
-            failure = re;
+            final long end = System.currentTimeMillis ();
+            
+            log.info ((targets.length - failed) + " of " + targets.length + " targets completed in " + (end - start) + " ms");
         }
-        finally
+        
+        // persist merged coverage data [all workers are done with 'merged' at this point]:
+        
+        for (int c = 0; c < m_commandSequence.length; ++ c)
         {
-            reset ();
+            final ControlRequest command = m_commandSequence [c];
+            if (! ControlRequest.COMMAND_GET_COVERAGE.equals (command.getName ())) continue;
+            
+            final String prefix = command.getName () + ": ";
+            final ICoverageData cdata = merged [c];
+            
+            if ((cdata == null) || cdata.isEmpty ())
+                log.info (prefix + "no output created (no coverage data has been collected by the server VMs yet)");
+            else
+                persistCoverageData (prefix, cdata, command.getArgs ());
         }
         
-        if (failure != null)
+        if (failed > 0)
+            throw new EMMARuntimeException ("control command sequence failed for " + failed + " of " + targets.length + " targets");
+    }
+    
+    /*
+     * @param args 'coverage.get' arguments [with defaults filled in]
+     */
+    private void persistCoverageData (final String prefix, final ICoverageData cdata, final String [] args)
+    {
+        final Logger log = Logger.getLogger ();
+        
+        // consistenly with our overall client tool behavior, we
+        // don't do output file locking here:
+        
+        final File cdataOutFile = new File (args [0]);
+        final boolean cdataOutMerge = Property.toBoolean (args [1]);
+        
+        try
         {
-            if (Exceptions.unexpectedFailure (failure, EXPECTED_FAILURES))
+            if (log.atVERBOSE ()) log.verbose (prefix + "coverage data contains " + cdata.size () + " entries");
+            
+            final long sstart = log.atINFO () ? System.currentTimeMillis () : 0;
+            DataFactory.persist (cdata, cdataOutFile, cdataOutMerge);
+            
+            if (log.atINFO ())
             {
-                throw new EMMARuntimeException (UNEXPECTED_FAILURE,
-                                                new Object [] {failure.toString (), IAppConstants.APP_BUG_REPORT_LINK},
-                                                failure);
+                final long send = System.currentTimeMillis ();
+                
+                log.info (prefix + "local copy of coverage data " + (cdataOutMerge ? "merged into" : "written to") + " [" + cdataOutFile.getAbsolutePath () + "] {in " + (send - sstart) + " ms}");
             }
-            else
-                throw failure;
+        }
+        catch (IOException ioe)
+        {
+            throw new EMMARuntimeException (OUT_IO_FAILURE, new Object [] {cdataOutFile.getAbsolutePath ()}, ioe);
         }
     }
-
-
-    // package: ...............................................................
     
-    // private: ...............................................................
-    
-    
-    private CtlProcessor ()
+    /*
+     * @param connections comma-separated connection strings [null means the
+     * default connection settings]
+     * 
+     * @return targets to connect to [never empty]
+     */
+    private static Target [] parseTargets (final String connections, final IProperties toolProperties)
     {
-        m_commandSequence = ControlRequest.EMPTY_CONTROL_REQUEST_ARRAY;
+        final List /* Target */ targets = new ArrayList ();
+        
+        if (connections != null)
+        {
+            final StringTokenizer tokenizer = new StringTokenizer (connections, ",");
+            while (tokenizer.hasMoreTokens ())
+            {
+                final String connection = tokenizer.nextToken ().trim ();
+                if (connection.length () == 0) continue;
+                
+                targets.add (parseTarget (connection, toolProperties));
+            }
+        }
+        
+        if (targets.isEmpty ()) targets.add (parseTarget (null, toolProperties));
+        
+        final Target [] result = new Target [targets.size ()];
+        targets.toArray (result);
+        
+        return result;
     }
     
-    
-    private void reset ()
+    /*
+     * @param connection [null means the default connection settings]
+     */
+    private static Target parseTarget (final String connection, final IProperties toolProperties)
     {
-        // nothing to reset yet (no run()-scoped state in this processor)
+        String _host = null, _port = null;
+        
+        if (connection != null)
+        {
+            final String [] tokens = parseConnectionString (connection);
+            
+            _host = tokens [0];
+            _port = tokens [1];
+        }
+        
+        // load property defaults as needed:
+        
+        if (_host == null)
+            _host = toolProperties.getProperty (RT.PROPERTY_RT_CONTROL_HOST,
+                                                RT.DEFAULT_RT_CONTROL_HOST);
+        
+        if (_port == null)
+            _port = toolProperties.getProperty (RT.PROPERTY_RT_CONTROL_PORT,
+                                                Integer.toString (RT.DEFAULT_RT_CONTROL_PORT));
+        
+        if ($assert.ENABLED)
+        {
+            $assert.ASSERT (_host != null, "_host = null");
+            $assert.ASSERT (_port != null, "_port = null");
+        }
+        
+        final int port;
+        try
+        {
+            port = Integer.parseInt (_port);
+            
+            if (port < 0 || port > 0xFFFF)
+                throw new IllegalArgumentException ("control port must be in [1, 65535] range: " + port);
+        }
+        catch (NumberFormatException nfe)
+        {
+            throw new IllegalArgumentException ("malformed control port number: " + _port);
+        }
+        
+        return new Target (_host, port);
     }
     
     /**
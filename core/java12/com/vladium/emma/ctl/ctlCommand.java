@@ -116,7 +116,17 @@ final class ctlCommand extends Command
                             }
                             else if ("a".equals (on))
                             {
-                                m_connectionString = opt.getFirstValue ();
+                                // a list of targets [possibly over several option occurrences]:
+                                final String [] values = opt.getValues ();
+                                
+                                final StringBuffer connections = new StringBuffer ();
+                                for (int v = 0; v < values.length; ++ v)
+                                {
+                                    if (v > 0) connections.append (',');
+                                    connections.append (values [v]);
+                                }
+                                
+                                m_connectionString = connections.toString ();
                             }
                         }
                     }
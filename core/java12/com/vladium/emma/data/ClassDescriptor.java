@@ -186,6 +186,30 @@ final class ClassDescriptor implements IConstants, Serializable
         return new ClassDescriptor (packageVMName, name, stamp, srcFileName, methods);
     }
     
+    /*
+     * Advances 'in' past a descriptor written by writeExternal() without
+     * decoding it.
+     * 
+     * IMPORTANT: keep consistent with readExternal()
+     */
+    static void skipExternal (final DataInput in)
+        throws IOException
+    {
+        DataFactory.skipUTF (in); // packageVMName
+        DataFactory.skipUTF (in); // name
+        
+        DataFactory.skipFully (in, 8); // stamp
+        
+        final byte srcFileNameFlag = in.readByte ();
+        if (srcFileNameFlag != 0) DataFactory.skipUTF (in);
+        
+        final int length = in.readInt ();
+        for (int i = 0; i < length; ++ i)
+        {
+            MethodDescriptor.skipExternal (in);
+        }
+    }
+    
     static void writeExternal (final ClassDescriptor cls, final DataOutput out)
         throws IOException
     {
@@ -0,0 +1,329 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.emma.data;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// ----------------------------------------------------------------------------
+/**
+ * Static helpers for the packed method coverage representation used by
+ * offline tools [merge, report, etc]. Instrumented classes record block
+ * coverage in boolean [] arrays, at one byte per block; once coverage data
+ * has been read back from a file or a socket it is held packed in long []
+ * words instead, at one bit per block.<P>
+ * 
+ * A packed array stores the number of blocks in its word 0 and the coverage
+ * flag of block b in bit (b & 63) of word 1 + (b >>> 6). Unused bits in the
+ * last word are always zero. As with boolean [] arrays, a null packed array
+ * stands for a method without block data.
+ * 
+ * @author Vlad Roubtsov, (C) 2003
+ */
+public
+abstract class CoverageBits
+{
+    // public: ................................................................
+    
+    
+    /**
+     * @param coverage [can be null]
+     * @return packed equivalent of 'coverage' [null if 'coverage' is null]
+     */
+    public static long [] pack (final boolean [] coverage)
+    {
+        if (coverage == null) return null;
+        
+        final int length = coverage.length;
+        final long [] result = allocate (length);
+        
+        for (int b = 0; b < length; ++ b)
+        {
+            if (coverage [b]) result [1 + (b >>> 6)] |= (1L << b);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * @param coverage [can be null; may contain null elements]
+     * @return packed equivalent of 'coverage' [null if 'coverage' is null]
+     */
+    public static long [][] pack (final boolean [][] coverage)
+    {
+        if (coverage == null) return null;
+        
+        final long [][] result = new long [coverage.length][];
+        for (int m = 0; m < coverage.length; ++ m)
+        {
+            result [m] = pack (coverage [m]);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * @param bits [can be null]
+     * @return unpacked equivalent of 'bits' [null if 'bits' is null]
+     */
+    public static boolean [] unpack (final long [] bits)
+    {
+        if (bits == null) return null;
+        
+        final int length = (int) bits [0];
+        final boolean [] result = new boolean [length];
+        
+        for (int b = 0; b < length; ++ b)
+        {
+            result [b] = (bits [1 + (b >>> 6)] & (1L << b)) != 0;
+        }
+        
+        return result;
+    }
+    
+    /**
+     * @return number of blocks represented by 'bits' [may not be null]
+     */
+    public static int length (final long [] bits)
+    {
+        return (int) bits [0];
+    }
+    
+    /**
+     * @return 'true' iff block 'b' is marked as covered in 'bits' [may not be null]
+     */
+    public static boolean get (final long [] bits, final int b)
+    {
+        return (bits [1 + (b >>> 6)] & (1L << b)) != 0;
+    }
+    
+    /**
+     * @return number of blocks marked as covered in 'bits' [may not be null]
+     */
+    public static int count (final long [] bits)
+    {
+        int result = 0;
+        for (int w = 1, wLimit = bits.length; w < wLimit; ++ w)
+        {
+            final long word = bits [w];
+            if (word != 0) result += bitCount (word);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * @return number of blocks marked as covered in 'bits' but not in 'rhs'
+     * [both may not be null; 'rhs' must have the same block count as 'bits']
+     */
+    public static int countAndNot (final long [] bits, final long [] rhs)
+    {
+        int result = 0;
+        for (int w = 1, wLimit = bits.length; w < wLimit; ++ w)
+        {
+            final long word = bits [w] & ~ rhs [w];
+            if (word != 0) result += bitCount (word);
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Sums 'weights' [typically, block instruction counts] over all blocks
+     * marked as covered in 'bits'. Zero words are skipped and only the set
+     * bits of the others are visited.
+     *
+     * @param bits [may not be null]
+     * @param weights [must be at least as long as the block count in 'bits']
+     */
+    public static int sum (final long [] bits, final int [] weights)
+    {
+        int result = 0;
+        for (int w = 1, wLimit = bits.length; w < wLimit; ++ w)
+        {
+            long word = bits [w];
+            final int base = (w - 1) << 6;
+            
+            while (word != 0)
+            {
+                final long lowest = word & - word;
+                result += weights [base + bitIndex (lowest)];
+                
+                word ^= lowest;
+            }
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Computes the union of 'bits' and 'rhs' without modifying either of them
+     * [packed vectors may be shared, see {@link CoverageData}]. No allocation
+     * happens when 'rhs' marks no blocks that are not already marked in 'bits',
+     * which is the common case when merging many runs of the same tests.
+     *
+     * @param bits [may not be null]
+     * @param rhs [may not be null; must have the same block count as 'bits']
+     * 
+     * @return 'bits' itself if the union equals 'bits', a new array otherwise
+     */
+    public static long [] or (final long [] bits, final long [] rhs)
+    {
+        for (int w = 1, wLimit = bits.length; w < wLimit; ++ w)
+        {
+            if ((rhs [w] & ~ bits [w]) != 0)
+            {
+                final long [] result = (long []) bits.clone ();
+                for ( ; w < wLimit; ++ w)
+                {
+                    result [w] |= rhs [w];
+                }
+                
+                return result;
+            }
+        }
+        
+        return bits;
+    }
+    
+    /**
+     * @param bits [may not be null]
+     * @return a new vector with the same block count as 'bits' and no blocks marked
+     */
+    public static long [] clear (final long [] bits)
+    {
+        return allocate ((int) bits [0]);
+    }
+    
+    /**
+     * @return 'true' iff 'bits' and 'rhs' have the same block count and
+     * coverage [both can be null]
+     */
+    public static boolean equals (final long [] bits, final long [] rhs)
+    {
+        if (bits == rhs) return true;
+        if ((bits == null) || (rhs == null)) return false;
+        
+        final int wLimit = bits.length;
+        if (rhs.length != wLimit) return false;
+        
+        for (int w = 0; w < wLimit; ++ w)
+        {
+            if (bits [w] != rhs [w]) return false;
+        }
+        
+        return true;
+    }
+    
+    /**
+     * @return hash code consistent with {@link #equals(long[], long[])}
+     */
+    public static int hashCode (final long [] bits)
+    {
+        if (bits == null) return 0;
+        
+        int result = 1;
+        for (int w = 0, wLimit = bits.length; w < wLimit; ++ w)
+        {
+            final long word = bits [w];
+            result = 31 * result + (int) (word ^ (word >>> 32));
+        }
+        
+        return result;
+    }
+    
+    /**
+     * Reads a boolean array written by {@link DataFactory#writeBooleanArray}
+     * directly into packed form, without materializing the boolean [] array.
+     */
+    public static long [] read (final DataInput in)
+        throws IOException
+    {
+        final int length = in.readInt ();
+        if (length == DataFactory.NULL_ARRAY_LENGTH)
+            return null;
+        else
+        {
+            final long [] result = allocate (length);
+            
+            // read array in reverse order:
+            for (int b = length; -- b >= 0; )
+            {
+                if (in.readBoolean ()) result [1 + (b >>> 6)] |= (1L << b);
+            }
+            
+            return result;
+        }
+    }
+    
+    /**
+     * Writes 'bits' in the same format as {@link DataFactory#writeBooleanArray}
+     * would use for its unpacked equivalent.
+     *
+     * @param bits [can be null]
+     */
+    public static void write (final long [] bits, final DataOutput out)
+        throws IOException
+    {
+        if (bits == null)
+            out.writeInt (DataFactory.NULL_ARRAY_LENGTH);
+        else
+        {
+            final int length = (int) bits [0];
+            out.writeInt (length);
+            
+            // write array in reverse order:
+            for (int b = length; -- b >= 0; )
+            {
+                out.writeBoolean ((bits [1 + (b >>> 6)] & (1L << b)) != 0);
+            }
+        }
+    }
+    
+    // protected: .............................................................
+    
+    // package: ...............................................................
+    
+    
+    /*
+     * Long.bitCount() is not available in pre-5.0 JREs, hence the SWAR version
+     */
+    static int bitCount (long word)
+    {
+        word = word - ((word >>> 1) & 0x5555555555555555L);
+        word = (word & 0x3333333333333333L) + ((word >>> 2) & 0x3333333333333333L);
+        word = (word + (word >>> 4)) & 0x0F0F0F0F0F0F0F0FL;
+        
+        return (int) ((word * 0x0101010101010101L) >>> 56);
+    }
+    
+    // private: ...............................................................
+    
+    
+    private CoverageBits () {} // prevent subclassing
+    
+    private static long [] allocate (final int length)
+    {
+        final long [] result = new long [1 + ((length + 63) >>> 6)];
+        result [0] = length;
+        
+        return result;
+    }
+    
+    /*
+     * @param lowest a word with exactly one bit set
+     */
+    private static int bitIndex (final long lowest)
+    {
+        return bitCount (lowest - 1);
+    }
+
+} // end of class
+// ----------------------------------------------------------------------------
@@ -15,11 +15,17 @@ import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 
 import com.vladium.emma.IAppConstants;
+import com.vladium.emma.filter.IInclExclFilter;
+import com.vladium.util.Descriptors;
 import com.vladium.util.IConstants;
 import com.vladium.util.asserts.$assert;
 
@@ -38,6 +44,13 @@ final class CoverageData implements ICoverageData, Cloneable, Serializable
         return m_coverageMap;
     }
     
+    /*
+     * Only the first snapshot copies the entire map under lock(): it also starts
+     * an append-only log of all subsequent map updates, and later snapshots hold
+     * lock() just long enough to read the current log length and replay the log
+     * into a new map outside of it. This keeps RT.r() from stalling behind
+     * 'ctl coverage.get' polls and dumps when there are many registered classes.
+     */
     public ICoverageData shallowCopy ()
     {
         final CoverageData _clone;
@@ -50,14 +63,66 @@ final class CoverageData implements ICoverageData, Cloneable, Serializable
             throw new Error (cnse.toString ());
         }
         
-        final HashMap _coverageMap;
+        HashMap _coverageMap = null;
+        
+        final String [] logNames;
+        final DataHolder [] logData;
+        final int logSize;
+        final HashMap generations;
         
         synchronized (lock ())
         {
-            _coverageMap = (HashMap) m_coverageMap.clone ();
+            if (m_generations != null)
+            {
+                foldCollectedGenerations ();
+                generations = (HashMap) m_generations.clone (); // [Generations values are immutable]
+            }
+            else
+                generations = null;
+            
+            if (m_logNames == null)
+            {
+                _coverageMap = (HashMap) m_coverageMap.clone ();
+                resetLog ();
+            }
+            
+            // [log slots below 'logSize' are never overwritten]
+            logNames = m_logNames;
+            logData = m_logData;
+            logSize = m_logSize;
+        }
+        
+        if (_coverageMap == null)
+        {
+            _coverageMap = new HashMap (logSize);
+            
+            for (int i = 0; i < logSize; ++ i)
+            {
+                _coverageMap.put (logNames [i], logData [i]); // later entries win, same as in the live map
+            }
+        }
+        
+        // bake the coverage of all class generations into the copy:
+        
+        if (generations != null)
+        {
+            for (Iterator entries = generations.entrySet ().iterator (); entries.hasNext (); )
+            {
+                final Map.Entry entry = (Map.Entry) entries.next ();
+                final String classVMName = (String) entry.getKey ();
+                
+                final DataHolder data = (DataHolder) _coverageMap.get (classVMName);
+                if (data != null) _coverageMap.put (classVMName, ((Generations) entry.getValue ()).view (data));
+            }
         }
         
         _clone.m_coverageMap = _coverageMap;
+        _clone.m_logNames = null;
+        _clone.m_logData = null;
+        _clone.m_logSize = 0;
+        _clone.m_generations = null;
+        _clone.m_collected = null;
+        if (m_overrides != null) _clone.m_overrides = (HashSet) m_overrides.clone ();
         
         return _clone;
     }
@@ -71,30 +136,99 @@ final class CoverageData implements ICoverageData, Cloneable, Serializable
     {
         if (cls == null) throw new IllegalArgumentException ("null input: cls");
         
-        return (DataHolder) m_coverageMap.get (cls.getClassVMName ());
+        DataHolder data = (DataHolder) m_coverageMap.get (cls.getClassVMName ());
+        
+        if ((data != null) && (m_generations != null))
+        {
+            synchronized (lock ())
+            {
+                final Generations generations = (Generations) m_generations.get (cls.getClassVMName ());
+                if (generations != null) data = generations.view (data);
+            }
+        }
+        
+        // flat coverage never leaves this class: translate it on the way out
+        if ((data != null) && (data.m_flat != null))
+            return new DataHolder (data.unflatten (), data.m_stamp);
+        
+        return data;
     }
     
     public void addClass (final boolean [][] coverage, final String classVMName, final long stamp)
     {
-        m_coverageMap.put (classVMName, new DataHolder (coverage, stamp));
+        addClass (new DataHolder (coverage, stamp), classVMName, null);
+    }
+    
+    public void addClass (final boolean [][] coverage, final String classVMName, final long stamp, final Object owner)
+    {
+        if (owner == null) throw new IllegalArgumentException ("null input: owner");
+        
+        addClass (new DataHolder (coverage, stamp), classVMName, owner);
+    }
+    
+    public void addClass (final boolean [] coverage, final String layout, final String classVMName, final long stamp)
+    {
+        addClass (coverage, layout, classVMName, stamp, null);
+    }
+    
+    public void addClass (final boolean [] coverage, final String layout, final String classVMName, final long stamp, final Object owner)
+    {
+        final int [] _layout = new int [layout.charAt (0) << 1];
+        
+        for (int p = 1, pLimit = layout.length (), offset = 0; p < pLimit; p += 2)
+        {
+            final int m = layout.charAt (p);
+            final int length = layout.charAt (p + 1);
+            
+            _layout [m << 1] = offset;
+            _layout [(m << 1) + 1] = length;
+            
+            offset += length;
+        }
+        
+        addClass (new DataHolder (coverage, _layout, stamp), classVMName, owner);
     }
     
     public void reset ()
     {
-        for (Iterator entries = m_coverageMap.values ().iterator (); entries.hasNext (); )
+        for (Iterator entries = m_coverageMap.entrySet ().iterator (); entries.hasNext (); )
         {
-            final DataHolder data = (DataHolder) entries.next ();
+            final Map.Entry entry = (Map.Entry) entries.next ();
+            final DataHolder data = (DataHolder) entry.getValue ();
             
-            final boolean [][] coverage = data.m_coverage;
-            for (int m = 0, mLimit = coverage.length; m < mLimit; ++ m)
+            final long [][] bits = data.m_bits;
+            if (bits != null) // packed vectors can be shared: replace rather than clear them 
             {
-                final boolean [] mcoverage = coverage [m];
-                if (mcoverage == null) continue;
+                final long [][] _bits = new long [bits.length][];
+                for (int m = 0, mLimit = bits.length; m < mLimit; ++ m)
+                {
+                    if (bits [m] != null) _bits [m] = intern (CoverageBits.clear (bits [m]));
+                }
+                
+                put ((String) entry.getKey (), new DataHolder (_bits, data.m_stamp)); // [not a structural change]
+                continue;
+            }
+            
+            clear (data); // live arrays: clear in place
+        }
+        
+        if (m_generations != null)
+        {
+            // older live generations are cleared in place and retired coverage is
+            // dropped [unless it is all there is for a class]:
+            
+            for (Iterator entries = m_generations.entrySet ().iterator (); entries.hasNext (); )
+            {
+                final Map.Entry entry = (Map.Entry) entries.next ();
+                final Generation [] live = ((Generations) entry.getValue ()).m_live;
                 
-                for (int b = 0, bLimit = mcoverage.length; b < bLimit; ++ b)
+                for (int g = 0; g < live.length - 1; ++ g)
                 {
-                    mcoverage [b] = false;
+                    clear (live [g].m_data);
                 }
+                
+                final DataHolder retired = (live.length == 0) ? (DataHolder) m_coverageMap.get (entry.getKey ()) : null;
+                entry.setValue (new Generations (retired, live));
             }
         }
     }
@@ -110,7 +244,10 @@ final class CoverageData implements ICoverageData, Cloneable, Serializable
      * This method is not MT-safe wrt addClass() etc.
      * 
      * note: rhs entries override current entries if they have different stamps;
-     * otherwise, the data is merged 
+     * otherwise, the data is merged. A class entry that has overridden a
+     * differently stamped entry in an earlier merge also overrides any current
+     * entry: this makes a.merge(b.merge(c)) equivalent to a.merge(b).merge(c),
+     * which allows data files to be merged in a tree rather than a chain 
      */    
     public IMergeable merge (final IMergeable rhs)
     {
@@ -132,11 +269,54 @@ final class CoverageData implements ICoverageData, Cloneable, Serializable
                 final DataHolder data = (DataHolder) m_coverageMap.get (classVMName);
                 
                 if (data == null)
-                    m_coverageMap.put (classVMName, rhsdata);
+                {
+                    put (classVMName, rhsdata);
+                    if (rhscdata.overrides (classVMName)) addOverride (classVMName);
+                }
                 else
                 {
-                    if (rhsdata.m_stamp != data.m_stamp)
-                        m_coverageMap.put (classVMName, rhsdata);
+                    if ((rhsdata.m_stamp != data.m_stamp) || rhscdata.overrides (classVMName))
+                    {
+                        put (classVMName, rhsdata);
+                        addOverride (classVMName);
+                    }
+                    else if ((data.m_coverage == null) || (rhsdata.m_coverage == null)) // merge two profiles, at least one of them packed or flat
+                    {
+                        DataHolder packed = data;
+                        if (data.m_bits == null)
+                        {
+                            packed = new DataHolder (data.getBits (), data.m_stamp);
+                            put (classVMName, packed);
+                        }
+                        
+                        final long [][] rhsbits = rhsdata.getBits ();
+                        final long [][] bits = packed.m_bits;
+                        
+                        // packed vectors are never modified in place [they can be shared
+                        // via intern()]: copy the holder on the first method that changes
+                        
+                        long [][] _bits = null;
+                        
+                        if ($assert.ENABLED) $assert.ASSERT (bits.length == rhsbits.length, "bits.length [" + bits.length + "] != rhsbits.length [" + rhsbits.length + "]");
+                        for (int m = 0, mLimit = bits.length; m < mLimit; ++ m)
+                        {
+                            final long [] mbits = bits [m];
+                            
+                            if (mbits != null) // [else nothing to merge]
+                            {
+                                if ($assert.ENABLED) $assert.ASSERT (rhsbits [m] != null, "mbits != null but rhsmbits == null");
+                                
+                                final long [] _mbits = CoverageBits.or (mbits, rhsbits [m]);
+                                if (_mbits != mbits)
+                                {
+                                    if (_bits == null) _bits = (long [][]) bits.clone ();
+                                    _bits [m] = intern (_mbits);
+                                }
+                            }
+                        }
+                        
+                        if (_bits != null) put (classVMName, new DataHolder (_bits, packed.m_stamp));
+                    }
                     else // merge two runtime profiles
                     {
                         final boolean [][] rhscoverage = rhsdata.m_coverage;
@@ -190,23 +370,49 @@ final class CoverageData implements ICoverageData, Cloneable, Serializable
     
     static CoverageData readExternal (final DataInput in)
         throws IOException
+    {
+        return readExternal (in, null);
+    }
+    
+    /*
+     * Same as readExternal(DataInput) but class records not accepted by 'filter'
+     * are skipped without being decoded.
+     * 
+     * @param filter [null means no filtering]
+     */
+    static CoverageData readExternal (final DataInput in, final IInclExclFilter filter)
+        throws IOException
     {
         final int size = in.readInt ();
-        final HashMap coverageMap = new HashMap (size);
+        final HashMap coverageMap = new HashMap (filter == null ? size : 11);
         
         for (int i = 0; i < size; ++ i)
         {
             final String classVMName = in.readUTF ();
+            
+            if ((filter != null) && ! filter.included (Descriptors.vmNameToJavaName (classVMName)))
+            {
+                DataFactory.skipFully (in, 8); // stamp
+                
+                final int length = in.readInt ();
+                for (int c = 0; c < length; ++ c) 
+                {
+                    DataFactory.skipBooleanArray (in);
+                }
+                
+                continue;
+            }
+            
             final long stamp = in.readLong ();
             
             final int length = in.readInt ();
-            final boolean [][] coverage = new boolean [length][];
+            final long [][] bits = new long [length][];
             for (int c = 0; c < length; ++ c) 
             {
-                coverage [c] = DataFactory.readBooleanArray (in);
+                bits [c] = CoverageBits.read (in); // offline data is always kept packed
             }
             
-            coverageMap.put (classVMName, new DataHolder (coverage, stamp));
+            coverageMap.put (classVMName, new DataHolder (bits, stamp));
         }
         
         return new CoverageData (coverageMap);
@@ -215,6 +421,12 @@ final class CoverageData implements ICoverageData, Cloneable, Serializable
     static void writeExternal (final CoverageData cdata, final DataOutput out)
         throws IOException
     {
+        if (cdata.m_generations != null) // write the coverage of all class generations
+        {
+            writeExternal ((CoverageData) cdata.shallowCopy (), out);
+            return;
+        }
+        
         final Map coverageMap = cdata.m_coverageMap;
         
         final int size = coverageMap.size ();
@@ -228,29 +440,76 @@ final class CoverageData implements ICoverageData, Cloneable, Serializable
             final String classVMName = (String) entry.getKey ();
             final DataHolder data = (DataHolder) entry.getValue ();
             
-            final boolean [][] coverage = data.m_coverage;
-            
             out.writeUTF (classVMName);
             out.writeLong (data.m_stamp);
             
-            final int length = coverage.length;
-            out.writeInt (length);
-            for (int c = 0; c < length; ++ c)
+            final long [][] bits = data.m_bits;
+            if (bits != null)
             {
-                DataFactory.writeBooleanArray (coverage [c], out);
+                final int length = bits.length;
+                out.writeInt (length);
+                for (int c = 0; c < length; ++ c)
+                {
+                    CoverageBits.write (bits [c], out);
+                }
+            }
+            else
+            {
+                final boolean [][] coverage = data.m_flat != null ? data.unflatten () : data.m_coverage;
+                
+                final int length = coverage.length;
+                out.writeInt (length);
+                for (int c = 0; c < length; ++ c)
+                {
+                    DataFactory.writeBooleanArray (coverage [c], out);
+                }
             }
         }
     }
 
-    // private: ...............................................................
-    
-    
-    private CoverageData (final HashMap coverageMap)
+    CoverageData (final HashMap coverageMap)
     {
         if ($assert.ENABLED) $assert.ASSERT (coverageMap != null, "coverageMap is null");
         m_coverageMap = coverageMap;
     }
     
+    /*
+     * Replaces every packed method coverage vector in this data with its
+     * canonical instance in 'interner' and keeps using 'interner' for the
+     * vectors created by subsequent merge() and reset() calls. This is meant
+     * for offline data only: runtime [boolean [][]] holders are left alone.
+     */
+    void intern (final VectorInterner interner)
+    {
+        if ($assert.ENABLED) $assert.ASSERT (interner != null, "interner is null");
+        m_interner = interner;
+        
+        for (Iterator entries = m_coverageMap.values ().iterator (); entries.hasNext (); )
+        {
+            final DataHolder data = (DataHolder) entries.next ();
+            
+            final long [][] bits = data.m_bits;
+            if (bits == null) continue;
+            
+            for (int m = 0, mLimit = bits.length; m < mLimit; ++ m)
+            {
+                if (bits [m] != null) bits [m] = interner.intern (bits [m]);
+            }
+        }
+    }
+    
+    /*
+     * Stops interning the vectors created by subsequent merge() and reset()
+     * calls, so that this data no longer keeps the interner table [and every
+     * vector ever interned in it] reachable.
+     */
+    void releaseInterner ()
+    {
+        m_interner = null;
+    }
+    
+    // private: ...............................................................
+    
     // extreme Serializable customization: the effect of it is to reduce defaultRead/WriteObject()
     // to reading/writing class metadata only; custom serial data is then denoted
     // by TC_BLOCK_DATA start marker and the above fast versions of read/writeExternal() are
@@ -277,7 +536,306 @@ final class CoverageData implements ICoverageData, Cloneable, Serializable
     }
     
     
+    /*
+     * A class registration that is tracked until its owner is garbage collected.
+     */
+    private static final class Generation extends WeakReference
+    {
+        Generation (final Object owner, final String classVMName, final DataHolder data, final ReferenceQueue queue)
+        {
+            super (owner, queue);
+            
+            m_classVMName = classVMName;
+            m_data = data;
+        }
+        
+        
+        final String m_classVMName;
+        final DataHolder m_data; // runtime form
+    
+    } // end of nested class
+    
+    
+    /*
+     * All coverage of a class [by name] registered with owners and with the
+     * same stamp: the coverage folded from the generations that have already
+     * been collected plus the generations that are still live. Immutable.
+     */
+    private static final class Generations
+    {
+        Generations (final DataHolder retired, final Generation [] live)
+        {
+            m_retired = retired;
+            m_live = live;
+        }
+        
+        /*
+         * @param data current m_coverageMap entry for the class
+         * 
+         * @return coverage of all generations [packed; 'data' itself if there
+         * is nothing to add to it]
+         */
+        DataHolder view (final DataHolder data)
+        {
+            final Generation [] live = m_live;
+            
+            if ((m_retired == null) ? (live.length <= 1) : (live.length == 0))
+                return data;
+            
+            long [][] bits = (m_retired != null) ? m_retired.m_bits : null;
+            for (int g = 0; g < live.length; ++ g)
+            {
+                bits = or (bits, live [g].m_data.getBits ());
+            }
+            
+            return new DataHolder (bits, data.m_stamp);
+        }
+        
+        
+        final DataHolder m_retired; // packed [null if no generations have been collected]
+        final Generation [] m_live; // oldest first [the last one is the m_coverageMap entry if present]
+    
+    } // end of nested class
+    
+    
+    /*
+     * @param owner [null for a plain registration that replaces any previous
+     * coverage of the class]
+     */
+    private void addClass (final DataHolder data, final String classVMName, final Object owner)
+    {
+        if (owner == null)
+        {
+            if (m_generations != null) m_generations.remove (classVMName);
+        }
+        else
+        {
+            if (m_generations == null)
+            {
+                m_generations = new HashMap ();
+                m_collected = new ReferenceQueue ();
+            }
+            else
+            {
+                foldCollectedGenerations ();
+            }
+            
+            final Generation generation = new Generation (owner, classVMName, data, m_collected);
+            
+            final DataHolder current = (DataHolder) m_coverageMap.get (classVMName);
+            final Generations generations = (Generations) m_generations.get (classVMName);
+            
+            final Generations _generations;
+            if ((current == null) || (current.m_stamp != data.m_stamp))
+            {
+                // a new class version overrides all older coverage [as in merge()]:
+                _generations = new Generations (null, new Generation [] {generation});
+            }
+            else if (generations == null)
+            {
+                // the current entry was not registered with an owner: retire a copy of it
+                _generations = new Generations (new DataHolder (current.getBits (), current.m_stamp), new Generation [] {generation});
+            }
+            else
+            {
+                final Generation [] live = generations.m_live;
+                final Generation [] _live = new Generation [live.length + 1];
+                System.arraycopy (live, 0, _live, 0, live.length);
+                _live [live.length] = generation;
+                
+                _generations = new Generations (generations.m_retired, _live);
+            }
+            
+            m_generations.put (classVMName, _generations);
+        }
+        
+        put (classVMName, data);
+    }
+    
+    /*
+     * Folds the coverage of all generations whose owners have been collected
+     * into the retired coverage of their classes and releases their arrays.
+     */
+    private void foldCollectedGenerations ()
+    {
+        for (Reference ref; (ref = m_collected.poll ()) != null; )
+        {
+            final Generation generation = (Generation) ref;
+            final String classVMName = generation.m_classVMName;
+            
+            final Generations generations = (Generations) m_generations.get (classVMName);
+            if (generations == null) continue; // superseded by a plain registration
+            
+            final Generation [] live = generations.m_live;
+            
+            int index = -1;
+            for (int g = 0; g < live.length; ++ g)
+            {
+                if (live [g] == generation)
+                {
+                    index = g;
+                    break;
+                }
+            }
+            if (index < 0) continue; // superseded by a new class version
+            
+            final Generation [] _live = new Generation [live.length - 1];
+            System.arraycopy (live, 0, _live, 0, index);
+            System.arraycopy (live, index + 1, _live, index, _live.length - index);
+            
+            final DataHolder data = generation.m_data;
+            final long [][] retiredBits = or (generations.m_retired != null ? generations.m_retired.m_bits : null, data.getBits ());
+            final DataHolder retired = new DataHolder (retiredBits, data.m_stamp);
+            
+            m_generations.put (classVMName, new Generations (retired, _live));
+            
+            if (m_coverageMap.get (classVMName) == data)
+                put (classVMName, _live.length > 0 ? _live [_live.length - 1].m_data : retired);
+        }
+    }
+    
+    /*
+     * Clears runtime [boolean] coverage in place.
+     */
+    private static void clear (final DataHolder data)
+    {
+        final boolean [] flat = data.m_flat;
+        if (flat != null)
+        {
+            for (int b = 0, bLimit = flat.length; b < bLimit; ++ b)
+            {
+                flat [b] = false;
+            }
+            
+            return;
+        }
+        
+        final boolean [][] coverage = data.m_coverage;
+        for (int m = 0, mLimit = coverage.length; m < mLimit; ++ m)
+        {
+            final boolean [] mcoverage = coverage [m];
+            if (mcoverage == null) continue;
+            
+            for (int b = 0, bLimit = mcoverage.length; b < bLimit; ++ b)
+            {
+                mcoverage [b] = false;
+            }
+        }
+    }
+    
+    /*
+     * @param bits [null means no coverage; never modified]
+     * @param rhs [may not be null; must have the same shape as 'bits']
+     * 
+     * @return union of 'bits' and 'rhs' ['rhs' itself if 'bits' is null]
+     */
+    private static long [][] or (final long [][] bits, final long [][] rhs)
+    {
+        if (bits == null) return rhs;
+        
+        final long [][] result = new long [bits.length][];
+        for (int m = 0, mLimit = bits.length; m < mLimit; ++ m)
+        {
+            if (bits [m] != null) result [m] = CoverageBits.or (bits [m], rhs [m]);
+        }
+        
+        return result;
+    }
+    
+    /*
+     * All m_coverageMap updates must go through this method.
+     */
+    private void put (final String classVMName, final DataHolder data)
+    {
+        m_coverageMap.put (classVMName, data);
+        
+        if (m_logNames != null)
+        {
+            if (m_logSize == m_logNames.length)
+            {
+                if (m_logSize > (m_coverageMap.size () << 1))
+                {
+                    // too many superseded entries: start over [this is amortized
+                    // over at least as many put()s as there are map entries]
+                    
+                    resetLog ();
+                    return;
+                }
+                
+                final String [] logNames = new String [m_logSize << 1];
+                final DataHolder [] logData = new DataHolder [logNames.length];
+                
+                System.arraycopy (m_logNames, 0, logNames, 0, m_logSize);
+                System.arraycopy (m_logData, 0, logData, 0, m_logSize);
+                
+                // [snapshots in progress keep reading the old arrays]
+                m_logNames = logNames;
+                m_logData = logData;
+            }
+            
+            m_logNames [m_logSize] = classVMName;
+            m_logData [m_logSize] = data;
+            ++ m_logSize;
+        }
+    }
+    
+    /*
+     * (Re)starts the update log with the current map content [in new arrays].
+     */
+    private void resetLog ()
+    {
+        final int size = m_coverageMap.size ();
+        
+        final String [] logNames = new String [(size << 1) + INITIAL_LOG_CAPACITY];
+        final DataHolder [] logData = new DataHolder [logNames.length];
+        
+        int i = 0;
+        for (Iterator entries = m_coverageMap.entrySet ().iterator (); entries.hasNext (); ++ i)
+        {
+            final Map.Entry entry = (Map.Entry) entries.next ();
+            
+            logNames [i] = (String) entry.getKey ();
+            logData [i] = (DataHolder) entry.getValue ();
+        }
+        
+        m_logNames = logNames;
+        m_logData = logData;
+        m_logSize = size;
+    }
+    
+    private long [] intern (final long [] bits)
+    {
+        final VectorInterner interner = m_interner;
+        
+        return interner != null ? interner.intern (bits) : bits;
+    }
+    
+    private boolean overrides (final String classVMName)
+    {
+        return (m_overrides != null) && m_overrides.contains (classVMName);
+    }
+    
+    private void addOverride (final String classVMName)
+    {
+        if (m_overrides == null) m_overrides = new HashSet ();
+        m_overrides.add (classVMName);
+    }
+    
+    
     private /*final*/ HashMap /* String(classVMName) -> DataHolder */ m_coverageMap; // never null
+    private transient VectorInterner m_interner; // null unless intern() has been called [and not released since]
+    private transient HashSet /* String(classVMName) */ m_overrides; // classes whose entries replaced differently stamped ones in merge(); null if none
+
+    // m_coverageMap update log [guarded by lock(); null until the first shallowCopy()]:
+    private transient String [] m_logNames;
+    private transient DataHolder [] m_logData;
+    private transient int m_logSize;
+    
+    private static final int INITIAL_LOG_CAPACITY = 64;
+
+    // class generations registered with owners [guarded by lock(); null until the first one]:
+    private transient HashMap /* String(classVMName) -> Generations */ m_generations;
+    private transient ReferenceQueue m_collected; // collected Generation owners
 
 } // end of class
 // ----------------------------------------------------------------------------
\ No newline at end of file
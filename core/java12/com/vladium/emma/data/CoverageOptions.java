@@ -42,6 +42,16 @@ final class CoverageOptions implements Serializable
         return m_doSUIDCompensation;
     }
     
+    public boolean compactProbes ()
+    {
+        return m_compactProbes;
+    }
+    
+    public boolean flatProbes ()
+    {
+        return m_flatProbes;
+    }
+    
     // protected: .............................................................
 
     // package: ...............................................................
@@ -54,12 +64,16 @@ final class CoverageOptions implements Serializable
     CoverageOptions (final boolean excludeEmptyClasses,
                      final boolean excludeSyntheticMethods,
                      final boolean excludeBridgeMethods,
-                     final boolean doSUIDCompensation)
+                     final boolean doSUIDCompensation,
+                     final boolean compactProbes,
+                     final boolean flatProbes)
     {
         m_excludeEmptyClasses = excludeEmptyClasses;
         m_excludeSyntheticMethods = excludeSyntheticMethods;
         m_excludeBridgeMethods = excludeBridgeMethods;
         m_doSUIDCompensation = doSUIDCompensation;
+        m_compactProbes = compactProbes;
+        m_flatProbes = flatProbes;
     }
     
     
@@ -69,7 +83,9 @@ final class CoverageOptions implements Serializable
         return new CoverageOptions (in.readBoolean (),
                                     in.readBoolean (),
                                     in.readBoolean (),
-                                    in.readBoolean ());
+                                    in.readBoolean (),
+                                    false, // probe encoding does not affect metadata and is not persisted
+                                    false);
     }
     
     static void writeExternal (final CoverageOptions options, final DataOutput out)
@@ -87,6 +103,8 @@ final class CoverageOptions implements Serializable
     private final boolean m_excludeSyntheticMethods;
     private final boolean m_excludeBridgeMethods;
     private final boolean m_doSUIDCompensation;
+    private final boolean m_compactProbes;
+    private final boolean m_flatProbes;
 
 } // end of class
 // ----------------------------------------------------------------------------
\ No newline at end of file
@@ -41,7 +41,15 @@ abstract class CoverageOptionsFactory
             Property.toBoolean (properties.getProperty (InstrProcessor.PROPERTY_DO_SUID_COMPENSATION,
                                                         InstrProcessor.DEFAULT_DO_SUID_COMPENSATION));
         
-        return new CoverageOptions (excludeEmptyClasses, excludeSyntheticMethods, excludeBridgeMethods, doSUIDCompensaton);
+        final boolean compactProbes =
+            Property.toBoolean (properties.getProperty (InstrProcessor.PROPERTY_COMPACT_PROBES,
+                                                        InstrProcessor.DEFAULT_COMPACT_PROBES));
+        
+        final boolean flatProbes =
+            Property.toBoolean (properties.getProperty (InstrProcessor.PROPERTY_FLAT_PROBES,
+                                                        InstrProcessor.DEFAULT_FLAT_PROBES));
+        
+        return new CoverageOptions (excludeEmptyClasses, excludeSyntheticMethods, excludeBridgeMethods, doSUIDCompensaton, compactProbes, flatProbes);
     }
     
     public static CoverageOptions create (final IProperties properties)
@@ -62,7 +70,15 @@ abstract class CoverageOptionsFactory
             Property.toBoolean (properties.getProperty (InstrProcessor.PROPERTY_DO_SUID_COMPENSATION,
                                                         InstrProcessor.DEFAULT_DO_SUID_COMPENSATION));
         
-        return new CoverageOptions (excludeEmptyClasses, excludeSyntheticMethods, excludeBridgeMethods, doSUIDCompensaton);
+        final boolean compactProbes =
+            Property.toBoolean (properties.getProperty (InstrProcessor.PROPERTY_COMPACT_PROBES,
+                                                        InstrProcessor.DEFAULT_COMPACT_PROBES));
+        
+        final boolean flatProbes =
+            Property.toBoolean (properties.getProperty (InstrProcessor.PROPERTY_FLAT_PROBES,
+                                                        InstrProcessor.DEFAULT_FLAT_PROBES));
+        
+        return new CoverageOptions (excludeEmptyClasses, excludeSyntheticMethods, excludeBridgeMethods, doSUIDCompensaton, compactProbes, flatProbes);
     }
     
     // protected: .............................................................
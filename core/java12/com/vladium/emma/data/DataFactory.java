@@ -22,8 +22,10 @@ import java.io.IOException;
 import java.io.RandomAccessFile;
 
 import com.vladium.logging.Logger;
+import com.vladium.util.IJREVersion;
 import com.vladium.util.asserts.$assert;
 import com.vladium.emma.IAppConstants;
+import com.vladium.emma.filter.IInclExclFilter;
 
 // ----------------------------------------------------------------------------
 /**
@@ -47,13 +49,90 @@ abstract class DataFactory
     public static final byte TYPE_METADATA          = 0x0; // must start with 0
     public static final byte TYPE_COVERAGEDATA      = 0x1; // must be consistent with mergeload()
     
+    public static final String INDEX_FILE_EXT       = ".idx";
+    
     
     public static IMergeable [] load (final File file)
         throws IOException
     {
         if (file == null) throw new IllegalArgumentException ("null input: file");
         
-        return mergeload (file);
+        return mergeload (file, null);
+    }
+    
+    /**
+     * Loads only the data for classes accepted by 'filter'. If 'file' has an
+     * up-to-date index (see {@link #index(File)}), only the records for the
+     * selected classes are read; otherwise, all entries are scanned but the
+     * records for unselected classes are skipped without being decoded.
+     * 
+     * @param filter applied to Java class names [null means no filtering]
+     */
+    public static IMergeable [] load (final File file, final IInclExclFilter filter)
+        throws IOException
+    {
+        if (file == null) throw new IllegalArgumentException ("null input: file");
+        
+        if (filter == null) return mergeload (file, null);
+        
+        final DataIndex index = DataIndex.read (file);
+        if (index != null)
+            return index.load (file, filter);
+        else
+        {
+            final Logger log = Logger.getLogger ();
+            if (log.atTRACE1 ()) log.trace1 ("load", "no up-to-date index found for [" + file + "]: scanning all entries");
+            
+            return mergeload (file, filter);
+        }
+    }
+    
+    /**
+     * Loads all data files in 'files' and merges their contents in path order,
+     * as if by calling {@link #load(File, IInclExclFilter)} for every file in
+     * turn and merging the results [later path entries override earlier ones].
+     * Up to 'parallelism' threads are used to decode the files and merge the
+     * partial results.
+     * 
+     * @param files [may not be null]
+     * @param filter applied to Java class names [null means no filtering]
+     * @param parallelism max number of loader threads [values <= 0 mean one
+     * thread per available processor on JRE 1.4+ and a single thread otherwise]
+     * 
+     * @return merged {metadata, coverage data} [either slot can be null]
+     */
+    public static IMergeable [] load (final File [] files, final IInclExclFilter filter, int parallelism)
+        throws IOException
+    {
+        if (files == null) throw new IllegalArgumentException ("null input: files");
+        
+        if (parallelism <= 0) parallelism = IJREVersion.JRE_1_4_PLUS ? Runtime.getRuntime ().availableProcessors () : 1;
+        
+        return DataLoader.load (files, filter, parallelism);
+    }
+    
+    /**
+     * Creates [or overwrites] a sidecar index file for 'file' that maps each
+     * class VM name to its record offsets within the data file entries. The
+     * index becomes stale [and is ignored] as soon as more data is appended
+     * to 'file'.
+     */
+    public static void index (final File file)
+        throws IOException
+    {
+        if (file == null) throw new IllegalArgumentException ("null input: file");
+        
+        DataIndex.build (file);
+    }
+    
+    /**
+     * @return the sidecar index file name that corresponds to data file 'file' 
+     */
+    public static File getIndexFile (final File file)
+    {
+        if (file == null) throw new IllegalArgumentException ("null input: file");
+        
+        return new File (file.getPath () + INDEX_FILE_EXT);
     }
     
     public static void persist (final IMetaData data, final File file, final boolean merge)
@@ -194,41 +273,48 @@ abstract class DataFactory
 
     // package: ...............................................................
     
-    // private: ...............................................................
-
-
-    private static final class UCFileInputStream extends FileInputStream
+    
+    // skip counterparts of the array/string readers above [used to pass over
+    // data records that have been filtered out without decoding them]:
+    
+    static void skipIntArray (final DataInput in)
+        throws IOException
     {
-        public void close ()
-        {
-        }
-        
-        UCFileInputStream (final FileDescriptor fd)
-        {
-            super (fd);
-            
-            if ($assert.ENABLED) $assert.ASSERT (fd.valid (), "UCFileInputStream.<init>: FD invalid");
-        }
-        
-    } // end of nested class
-
-    private static final class UCFileOutputStream extends FileOutputStream
+        final int length = in.readInt ();
+        if (length != NULL_ARRAY_LENGTH) skipFully (in, 4 * length);
+    }
+    
+    static void skipBooleanArray (final DataInput in)
+        throws IOException
     {
-        public void close ()
-        {
-        }
-        
-        UCFileOutputStream (final FileDescriptor fd)
+        final int length = in.readInt ();
+        if (length != NULL_ARRAY_LENGTH) skipFully (in, length);
+    }
+    
+    static void skipUTF (final DataInput in)
+        throws IOException
+    {
+        skipFully (in, in.readUnsignedShort ());
+    }
+    
+    static void skipFully (final DataInput in, int count)
+        throws IOException
+    {
+        while (count > 0)
         {
-            super (fd);
-            
-            if ($assert.ENABLED) $assert.ASSERT (fd.valid (), "UCFileOutputStream.<init>: FD invalid");
+            final int skipped = in.skipBytes (count);
+            if (skipped <= 0)
+            {
+                in.readByte (); // throws EOFException at the end of input
+                -- count;
+            }
+            else
+                count -= skipped;
         }
-        
-    } // end of nested class
-
+    }
+    
     
-    private static final class RandomAccessFileInputStream extends BufferedInputStream
+    static final class RandomAccessFileInputStream extends BufferedInputStream
     {
         public final int read () throws IOException
         {
@@ -255,6 +341,14 @@ abstract class DataFactory
             return rc;
         }
         
+        public final long skip (final long n) throws IOException
+        {
+            final long rc = super.skip (n);
+            if (rc > 0) m_count += rc;
+            
+            return rc;
+        }
+        
         public void close ()
         {
         }        
@@ -275,6 +369,89 @@ abstract class DataFactory
 
     } // end of nested class
     
+    
+    /*
+     * Validates the file header of 'file' [opened as 'raf' and positioned at
+     * offset 0]. On return, 'raf' is positioned after the data format version
+     * field. 
+     */
+    static void readFileHeader (final RandomAccessFile raf, final File file)
+        throws IOException
+    {
+        final int magic = raf.readInt ();
+        if (magic != MAGIC)
+            throw new IOException ("cannot read [" + file.getAbsolutePath () + "]: not created by " + IAppConstants.APP_NAME);
+        
+        // check data format version info:
+        final long dataVersion = raf.readLong ();
+        
+        if (dataVersion != IAppConstants.DATA_FORMAT_VERSION)
+        {
+            // read app version info for the error message:
+            
+            int major = 0, minor = 0, build = 0;
+            boolean gotAppVersion = false;
+            try
+            {
+                major = raf.readInt ();
+                minor = raf.readInt ();
+                build = raf.readInt ();
+                
+                gotAppVersion = true;
+            }
+            catch (Throwable ignore) {}
+            
+            if (gotAppVersion)
+            {
+                throw new IOException ("cannot read [" + file.getAbsolutePath () + "]: created by another " + IAppConstants.APP_NAME + " version [" + makeAppVersion (major, minor, build) + "]");
+            }
+            else
+            {
+                throw new IOException ("cannot read [" + file.getAbsolutePath () + "]: created by another " + IAppConstants.APP_NAME + " version"); 
+            }
+        }
+    }
+    
+    
+    static final int MAGIC = 0x454D4D41; // "EMMA"
+    static final int FILE_HEADER_LENGTH = 4 + 8 + 3 * 4; // IMPORTANT: update on writeFileHeader() changes
+    static final int ENTRY_HEADER_LENGTH = 8 + 1; // IMPORTANT: update on writeEntryHeader() changes
+    static final int IO_BUF_SIZE = 32 * 1024;
+    
+    // private: ...............................................................
+
+
+    private static final class UCFileInputStream extends FileInputStream
+    {
+        public void close ()
+        {
+        }
+        
+        UCFileInputStream (final FileDescriptor fd)
+        {
+            super (fd);
+            
+            if ($assert.ENABLED) $assert.ASSERT (fd.valid (), "UCFileInputStream.<init>: FD invalid");
+        }
+        
+    } // end of nested class
+
+    private static final class UCFileOutputStream extends FileOutputStream
+    {
+        public void close ()
+        {
+        }
+        
+        UCFileOutputStream (final FileDescriptor fd)
+        {
+            super (fd);
+            
+            if ($assert.ENABLED) $assert.ASSERT (fd.valid (), "UCFileOutputStream.<init>: FD invalid");
+        }
+        
+    } // end of nested class
+
+    
     private static final class RandomAccessFileOutputStream extends BufferedOutputStream
     {
         public final void write (final byte [] b, final int off, final int len) throws IOException
@@ -321,7 +498,7 @@ abstract class DataFactory
     /*
      * input checked by the caller
      */
-    private static IMergeable [] mergeload (final File file)
+    private static IMergeable [] mergeload (final File file, final IInclExclFilter filter)
         throws IOException
     {
         final Logger log = Logger.getLogger ();
@@ -359,38 +536,7 @@ abstract class DataFactory
                     if (length > FILE_HEADER_LENGTH) // return {null, null} in case of equality
                     {
                         // check header info before reading further:
-                        final int magic = raf.readInt ();
-                        if (magic != MAGIC)
-                            throw new IOException ("cannot read [" + file.getAbsolutePath () + "]: not created by " + IAppConstants.APP_NAME);
-                        
-                        // check data format version info:
-                        final long dataVersion = raf.readLong ();
-                        
-                        if (dataVersion != IAppConstants.DATA_FORMAT_VERSION)
-                        {
-                            // read app version info for the error message:
-                            
-                            int major = 0, minor = 0, build = 0;
-                            boolean gotAppVersion = false;
-                            try
-                            {
-                                major = raf.readInt ();
-                                minor = raf.readInt ();
-                                build = raf.readInt ();
-                                
-                                gotAppVersion = true;
-                            }
-                            catch (Throwable ignore) {}
-                            
-                            if (gotAppVersion)
-                            {
-                                throw new IOException ("cannot read [" + file.getAbsolutePath () + "]: created by another " + IAppConstants.APP_NAME + " version [" + makeAppVersion (major, minor, build) + "]");
-                            }
-                            else
-                            {
-                                throw new IOException ("cannot read [" + file.getAbsolutePath () + "]: created by another " + IAppConstants.APP_NAME + " version"); 
-                            }
-                        }
+                        readFileHeader (raf, file);
 
                         // [assertion: file header is valid and data format version is consistent]
                                 
@@ -423,7 +569,7 @@ abstract class DataFactory
                                 if (trace2) log.trace2 (method, "[" + file + "]: found valid entry of size " + entryLength + " and type " + type);
                                 {
                                     if (trace2) entrystart = System.currentTimeMillis ();
-                                    final IMergeable data = readEntry (raf, type, entryLength);
+                                    final IMergeable data = readEntry (raf, type, entryLength, filter);
                                     if (trace2) log.trace2 (method, "entry read in " + (System.currentTimeMillis () - entrystart) + " ms");                                    
                                     
                                     final IMergeable current = result [type];
@@ -709,7 +855,8 @@ abstract class DataFactory
         if (log.atTRACE2 ()) log.trace2 ("writeEntry", "entry [" + data.getClass ().getName () + "] length: " + rafout.getCount ());
     }
     
-    private static IMergeable readEntry (final RandomAccessFile raf, final byte type, final long entryLength)
+    private static IMergeable readEntry (final RandomAccessFile raf, final byte type, final long entryLength,
+                                         final IInclExclFilter filter)
         throws IOException
     {
         final Object data;
@@ -731,10 +878,10 @@ abstract class DataFactory
             DataInputStream din = new DataInputStream (rafin);
             switch (type)
             {
-                case TYPE_METADATA: data = MetaData.readExternal (din);
+                case TYPE_METADATA: data = MetaData.readExternal (din, filter);
                     break;
                     
-                default /* TYPE_COVERAGEDATA */: data = CoverageData.readExternal (din);
+                default /* TYPE_COVERAGEDATA */: data = CoverageData.readExternal (din, filter);
                     break;
                     
             } // end of switch
@@ -764,14 +911,10 @@ abstract class DataFactory
     }
     
 
-    private static final int NULL_ARRAY_LENGTH = -1;
+    static final int NULL_ARRAY_LENGTH = -1;
     
-    private static final int MAGIC = 0x454D4D41; // "EMMA"
     private static final long UNKNOWN = 0L;
-    private static final int FILE_HEADER_LENGTH = 4 + 8 + 3 * 4; // IMPORTANT: update on writeFileHeader() changes
-    private static final int ENTRY_HEADER_LENGTH = 8 + 1; // IMPORTANT: update on writeEntryHeader() changes
     private static final boolean DO_FSYNC = true;
-    private static final int IO_BUF_SIZE = 32 * 1024;
     
 } // end of class
 // ----------------------------------------------------------------------------
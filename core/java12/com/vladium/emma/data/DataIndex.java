@@ -0,0 +1,526 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.emma.data;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UTFDataFormatException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import com.vladium.logging.Logger;
+import com.vladium.util.Descriptors;
+import com.vladium.util.Files;
+import com.vladium.util.asserts.$assert;
+import com.vladium.emma.IAppConstants;
+import com.vladium.emma.EMMAProperties;
+import com.vladium.emma.filter.IInclExclFilter;
+
+// ----------------------------------------------------------------------------
+/**
+ * A sidecar index for a metadata/coverage data file. For every valid entry
+ * in the data file, the index records the entry type and the file offsets of
+ * all per-class records in that entry. This lets {@link DataFactory#load(File, IInclExclFilter)}
+ * seek to and decode only the classes it has been asked for.<P>
+ * 
+ * An index is stamped with the length and modification time of its data file
+ * and is ignored once those no longer match [e.g., after another runtime
+ * coverage dump has been appended to the data file].
+ * 
+ * @author Vlad Roubtsov, (C) 2003
+ */
+final class DataIndex
+{
+    // public: ................................................................
+    
+    // protected: .............................................................
+    
+    // package: ...............................................................
+    
+    
+    /*
+     * Scans all valid entries in 'dataFile' and writes a new index file for it.
+     */
+    static void build (final File dataFile)
+        throws IOException
+    {
+        final Logger log = Logger.getLogger ();
+        final boolean trace1 = log.atTRACE1 ();
+        final String method = "build";
+        
+        long start = 0;
+        if (trace1) start = System.currentTimeMillis ();
+        
+        if (! dataFile.exists ())
+            throw new IOException ("input file does not exist: [" + dataFile.getAbsolutePath () +  "]");
+        
+        final List /* Entry */ entries = new ArrayList ();
+        final long dataLength, dataTimeStamp;
+        
+        RandomAccessFile raf = null;
+        try
+        {
+            raf = new RandomAccessFile (dataFile, "r");
+            
+            dataLength = raf.length ();
+            dataTimeStamp = dataFile.lastModified ();
+            
+            if (dataLength < DataFactory.FILE_HEADER_LENGTH)
+                throw new IOException ("file [" + dataFile.getAbsolutePath () + "] is corrupt or was not created by " + IAppConstants.APP_NAME);
+            
+            if (dataLength > DataFactory.FILE_HEADER_LENGTH)
+            {
+                DataFactory.readFileHeader (raf, dataFile);
+                
+                // [the entry scan loop below must be kept consistent with DataFactory.mergeload()]
+                
+                long position = DataFactory.FILE_HEADER_LENGTH;
+                raf.seek (position);
+                
+                while (position < dataLength)
+                {
+                    final long entryLength = raf.readLong ();
+                    
+                    if ((entryLength <= 0) || (position + entryLength + DataFactory.ENTRY_HEADER_LENGTH > dataLength))
+                        break;
+                    
+                    final byte type = raf.readByte ();
+                    if ((type != DataFactory.TYPE_METADATA) && (type != DataFactory.TYPE_COVERAGEDATA))
+                        break;
+                    
+                    final long dataStart = position + DataFactory.ENTRY_HEADER_LENGTH;
+                    
+                    entries.add (scanEntry (raf, type, dataStart));
+                    
+                    position += entryLength + DataFactory.ENTRY_HEADER_LENGTH;
+                    raf.seek (position);
+                }
+            }
+        }
+        finally
+        {
+            if (raf != null) try { raf.close (); } catch (Throwable ignore) {}
+            raf = null;
+        }
+        
+        final File indexFile = DataFactory.getIndexFile (dataFile).getAbsoluteFile ();
+        
+        // write to a temp file and rename it into place, so that a reader [or
+        // a crash] never sees a partially written index:
+        
+        final File tempFile = Files.createTempFile (indexFile.getParentFile (), indexFile.getName (), EMMAProperties.PROPERTY_TEMP_FILE_EXT);
+        
+        DataOutputStream out = null;
+        try
+        {
+            out = new DataOutputStream (new BufferedOutputStream (new FileOutputStream (tempFile), DataFactory.IO_BUF_SIZE));
+            
+            out.writeInt (MAGIC);
+            out.writeLong (IAppConstants.DATA_FORMAT_VERSION);
+            out.writeLong (dataLength);
+            out.writeLong (dataTimeStamp);
+            
+            final int entryCount = entries.size ();
+            out.writeInt (entryCount);
+            
+            for (int e = 0; e < entryCount; ++ e)
+            {
+                final Entry entry = (Entry) entries.get (e);
+                
+                out.writeByte (entry.m_type);
+                out.writeLong (entry.m_dataStart);
+                
+                final String [] classVMNames = entry.m_classVMNames;
+                final long [] offsets = entry.m_offsets;
+                
+                out.writeInt (classVMNames.length);
+                for (int c = 0; c < classVMNames.length; ++ c)
+                {
+                    out.writeUTF (classVMNames [c]);
+                    out.writeLong (offsets [c]);
+                }
+            }
+            
+            out.flush ();
+            out.close ();
+            out = null;
+            
+            if (! Files.renameFile (tempFile, indexFile, true))
+                throw new IOException ("could not rename temporary file [" + tempFile.getAbsolutePath () + "] to [" + indexFile + "]");
+        }
+        finally
+        {
+            if (out != null) try { out.close (); } catch (Throwable ignore) {}
+            out = null;
+            
+            if (tempFile.exists ()) tempFile.delete ();
+        }
+        
+        if (trace1) log.trace1 (method, "[" + indexFile + "]: " + entries.size () + " entries indexed in " + (System.currentTimeMillis () - start) + " ms");
+    }
+    
+    /*
+     * Returns the index for 'dataFile' or null if it does not exist, was
+     * created by another version, is stale, or is truncated or corrupt [in
+     * which case the caller falls back to scanning the data file].
+     */
+    static DataIndex read (final File dataFile)
+        throws IOException
+    {
+        final File indexFile = DataFactory.getIndexFile (dataFile);
+        if (! indexFile.isFile () || ! dataFile.isFile ()) return null;
+        
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream (new BufferedInputStream (new FileInputStream (indexFile), DataFactory.IO_BUF_SIZE));
+            
+            if (in.readInt () != MAGIC) return null;
+            if (in.readLong () != IAppConstants.DATA_FORMAT_VERSION) return null;
+            
+            final long dataLength = in.readLong ();
+            final long dataTimeStamp = in.readLong ();
+            
+            if ((dataLength != dataFile.length ()) || (dataTimeStamp != dataFile.lastModified ()))
+                return null; // stale
+            
+            final int entryCount = in.readInt ();
+            if (entryCount < 0) return corrupt (indexFile);
+            
+            final Entry [] entries = new Entry [entryCount];
+            
+            for (int e = 0; e < entryCount; ++ e)
+            {
+                final byte type = in.readByte ();
+                if ((type != DataFactory.TYPE_METADATA) && (type != DataFactory.TYPE_COVERAGEDATA))
+                    return corrupt (indexFile);
+                
+                final long dataStart = in.readLong ();
+                if ((dataStart < DataFactory.FILE_HEADER_LENGTH) || (dataStart > dataLength))
+                    return corrupt (indexFile);
+                
+                final int classCount = in.readInt ();
+                if (classCount < 0) return corrupt (indexFile);
+                
+                final String [] classVMNames = new String [classCount];
+                final long [] offsets = new long [classCount];
+                
+                for (int c = 0; c < classCount; ++ c)
+                {
+                    classVMNames [c] = in.readUTF ();
+                    offsets [c] = in.readLong ();
+                    
+                    if ((offsets [c] < dataStart) || (offsets [c] > dataLength))
+                        return corrupt (indexFile);
+                }
+                
+                entries [e] = new Entry (type, dataStart, classVMNames, offsets);
+            }
+            
+            if (in.read () >= 0) return corrupt (indexFile); // trailing garbage
+            
+            return new DataIndex (entries);
+        }
+        catch (EOFException eofe)
+        {
+            return corrupt (indexFile); // truncated
+        }
+        catch (UTFDataFormatException utfe)
+        {
+            return corrupt (indexFile);
+        }
+        finally
+        {
+            if (in != null) try { in.close (); } catch (Throwable ignore) {}
+            in = null;
+        }
+    }
+    
+    /*
+     * Decodes the records for all classes accepted by 'filter' and merges them
+     * using the same entry order semantics as DataFactory.load(): later entries
+     * override earlier ones.
+     */
+    IMergeable [] load (final File dataFile, final IInclExclFilter filter)
+        throws IOException
+    {
+        final Logger log = Logger.getLogger ();
+        final boolean trace1 = log.atTRACE1 ();
+        final String method = "load";
+        
+        long start = 0;
+        if (trace1) start = System.currentTimeMillis ();
+        
+        final IMergeable [] result = new IMergeable [2];
+        int selected = 0;
+        
+        RandomAccessFile raf = null;
+        try
+        {
+            raf = new RandomAccessFile (dataFile, "r");
+            
+            for (int e = 0; e < m_entries.length; ++ e)
+            {
+                final Entry entry = m_entries [e];
+                
+                final int [] selection = entry.select (filter);
+                selected += selection.length;
+                
+                final IMergeable data;
+                if (entry.m_type == DataFactory.TYPE_METADATA)
+                    data = loadMetaData (raf, entry, selection);
+                else
+                    data = loadCoverageData (raf, entry, selection);
+                
+                final IMergeable current = result [entry.m_type];
+                
+                if (current == null)
+                    result [entry.m_type] = data;
+                else
+                    result [entry.m_type] = current.merge (data); // note: later entries overrides earlier entries
+            }
+        }
+        finally
+        {
+            if (raf != null) try { raf.close (); } catch (Throwable ignore) {}
+            raf = null;
+        }
+        
+        if (trace1) log.trace1 (method, "[" + dataFile + "]: " + selected + " class record(s) read in " + (System.currentTimeMillis () - start) + " ms");
+        
+        return result;
+    }
+    
+    // private: ...............................................................
+    
+    
+    private static final class Entry
+    {
+        Entry (final byte type, final long dataStart, final String [] classVMNames, final long [] offsets)
+        {
+            if ($assert.ENABLED) $assert.ASSERT (classVMNames.length == offsets.length, "length mismatch");
+            
+            m_type = type;
+            m_dataStart = dataStart;
+            m_classVMNames = classVMNames;
+            m_offsets = offsets;
+        }
+        
+        /*
+         * Returns ascending indices of all records accepted by 'filter'.
+         */
+        int [] select (final IInclExclFilter filter)
+        {
+            final String [] classVMNames = m_classVMNames;
+            
+            final int [] selection = new int [classVMNames.length];
+            int count = 0;
+            
+            for (int c = 0; c < classVMNames.length; ++ c)
+            {
+                if (filter.included (Descriptors.vmNameToJavaName (classVMNames [c])))
+                    selection [count ++] = c;
+            }
+            
+            if (count == selection.length)
+                return selection;
+            else
+            {
+                final int [] _selection = new int [count];
+                System.arraycopy (selection, 0, _selection, 0, count);
+                
+                return _selection;
+            }
+        }
+        
+        final byte m_type;
+        final long m_dataStart; // file offset of the entry data [past the entry header]
+        final String [] m_classVMNames;
+        final long [] m_offsets; // m_offsets [c] is the file offset of the record for m_classVMNames [c]
+    
+    } // end of nested class
+    
+    
+    /*
+     * A DataInputStream positioned at arbitrary ascending file offsets: short
+     * forward gaps are skipped within the current buffer, anything else causes
+     * a seek.
+     */
+    private static final class RecordReader
+    {
+        RecordReader (final RandomAccessFile raf)
+        {
+            m_raf = raf;
+        }
+        
+        DataInputStream seek (final long offset)
+            throws IOException
+        {
+            final long position = m_in != null ? m_base + m_rafin.getCount () : -1;
+            
+            if ((m_in == null) || (offset < position) || (offset - position > RANDOM_IO_BUF_SIZE))
+            {
+                m_raf.seek (offset);
+                
+                m_rafin = new DataFactory.RandomAccessFileInputStream (m_raf, RANDOM_IO_BUF_SIZE); // note: no new file descriptors created here
+                m_in = new DataInputStream (m_rafin);
+                m_base = offset;
+            }
+            else if (offset > position)
+            {
+                DataFactory.skipFully (m_in, (int) (offset - position));
+            }
+            
+            return m_in;
+        }
+        
+        private final RandomAccessFile m_raf;
+        private DataFactory.RandomAccessFileInputStream m_rafin;
+        private DataInputStream m_in;
+        private long m_base;
+    
+    } // end of nested class
+    
+    
+    private DataIndex (final Entry [] entries)
+    {
+        m_entries = entries;
+    }
+    
+    
+    /*
+     * Decodes 'raf' entry data [positioned at 'dataStart'] only as far as
+     * necessary to record class names and their record offsets.
+     *
+     * IMPORTANT: keep consistent with {Meta|Coverage}Data.readExternal()
+     */
+    private static Entry scanEntry (final RandomAccessFile raf, final byte type, final long dataStart)
+        throws IOException
+    {
+        final DataFactory.RandomAccessFileInputStream rafin = new DataFactory.RandomAccessFileInputStream (raf, DataFactory.IO_BUF_SIZE); // note: no new file descriptors created here
+        final DataInputStream in = new DataInputStream (rafin);
+        
+        if (type == DataFactory.TYPE_METADATA)
+        {
+            CoverageOptions.readExternal (in);
+            in.readBoolean (); // hasSrcFileInfo
+            in.readBoolean (); // hasLineNumberInfo
+        }
+        
+        final int size = in.readInt ();
+        final String [] classVMNames = new String [size];
+        final long [] offsets = new long [size];
+        
+        for (int i = 0; i < size; ++ i)
+        {
+            offsets [i] = dataStart + rafin.getCount ();
+            classVMNames [i] = in.readUTF ();
+            
+            if (type == DataFactory.TYPE_METADATA)
+            {
+                ClassDescriptor.readExternal (in);
+            }
+            else
+            {
+                in.readLong (); // stamp
+                
+                final int length = in.readInt ();
+                for (int c = 0; c < length; ++ c)
+                {
+                    DataFactory.readBooleanArray (in);
+                }
+            }
+        }
+        
+        return new Entry (type, dataStart, classVMNames, offsets);
+    }
+    
+    private static MetaData loadMetaData (final RandomAccessFile raf, final Entry entry, final int [] selection)
+        throws IOException
+    {
+        final RecordReader reader = new RecordReader (raf);
+        
+        // the entry preamble is needed for the coverage options:
+        final CoverageOptions options = CoverageOptions.readExternal (reader.seek (entry.m_dataStart));
+        
+        final HashMap classMap = new HashMap (selection.length);
+        boolean hasSrcFileInfo = true;
+        boolean hasLineNumberInfo = true;
+        
+        for (int s = 0; s < selection.length; ++ s)
+        {
+            final DataInputStream in = reader.seek (entry.m_offsets [selection [s]]);
+            
+            final String classVMName = in.readUTF ();
+            final ClassDescriptor cls = ClassDescriptor.readExternal (in);
+            
+            if (! cls.hasSrcFileInfo ()) hasSrcFileInfo = false;
+            if (! cls.hasCompleteLineNumberInfo ()) hasLineNumberInfo = false;
+            
+            classMap.put (classVMName, cls);
+        }
+        
+        return new MetaData (options, classMap, hasSrcFileInfo, hasLineNumberInfo);
+    }
+    
+    private static CoverageData loadCoverageData (final RandomAccessFile raf, final Entry entry, final int [] selection)
+        throws IOException
+    {
+        final RecordReader reader = new RecordReader (raf);
+        
+        final HashMap coverageMap = new HashMap (selection.length);
+        
+        for (int s = 0; s < selection.length; ++ s)
+        {
+            final DataInputStream in = reader.seek (entry.m_offsets [selection [s]]);
+            
+            final String classVMName = in.readUTF ();
+            final long stamp = in.readLong ();
+            
+            final int length = in.readInt ();
+            final long [][] bits = new long [length][];
+            for (int c = 0; c < length; ++ c)
+            {
+                bits [c] = CoverageBits.read (in);
+            }
+            
+            coverageMap.put (classVMName, new ICoverageData.DataHolder (bits, stamp));
+        }
+        
+        return new CoverageData (coverageMap);
+    }
+    
+    /*
+     * Logs and ignores a truncated or corrupt index file [always returns null].
+     */
+    private static DataIndex corrupt (final File indexFile)
+    {
+        final Logger log = Logger.getLogger ();
+        if (log.atTRACE1 ()) log.trace1 ("read", "ignoring truncated or corrupt index file [" + indexFile + "]");
+        
+        return null;
+    }
+    
+    
+    private final Entry [] m_entries;
+    
+    private static final int MAGIC = 0x454D4958; // "EMIX"
+    private static final int RANDOM_IO_BUF_SIZE = 4 * 1024;
+
+} // end of class
+// ----------------------------------------------------------------------------
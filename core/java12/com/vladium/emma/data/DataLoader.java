@@ -0,0 +1,232 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.emma.data;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.vladium.logging.Logger;
+import com.vladium.util.asserts.$assert;
+import com.vladium.emma.IAppConstants;
+import com.vladium.emma.filter.IInclExclFilter;
+
+// ----------------------------------------------------------------------------
+/**
+ * Loads and merges a path of data files using several threads. The path is
+ * split recursively into contiguous ranges: one half of a range is forked off
+ * to a new thread while the other half is processed by the current one, and
+ * the two partial results are merged as (left range) <- (right range) once
+ * both are done. Leaf ranges are loaded and merged sequentially.<P>
+ * 
+ * Because merges always happen in path order and {@link IMergeable#merge}
+ * is associative for both metadata and coverage data, the result is the same
+ * as that of loading and merging the files one at a time: later path entries
+ * override earlier ones.
+ * 
+ * @author Vlad Roubtsov, (C) 2003
+ */
+final class DataLoader
+{
+    // public: ................................................................
+    
+    // protected: .............................................................
+    
+    // package: ...............................................................
+    
+    /*
+     * input checked by the caller
+     *
+     * @param parallelism max number of threads to use [values < 2 mean the
+     * calling thread only]
+     */
+    static IMergeable [] load (final File [] files, final IInclExclFilter filter, final int parallelism)
+        throws IOException
+    {
+        final int threads = Math.max (1, Math.min (parallelism, files.length));
+        
+        final VectorInterner interner = new VectorInterner ();
+        
+        final Task root = new Task (files, 0, files.length, filter, interner, threads);
+        root.run ();
+        
+        final IMergeable [] result = root.getResult ();
+        
+        final Logger log = Logger.getLogger ();
+        if (log.atTRACE1 ()) log.trace1 ("load", "coverage vectors interned: " + interner.size () + " distinct, " + interner.hits () + " duplicates shared");
+        
+        // the interner is only needed while loading: don't let the loaded data
+        // pin its table [and all vectors ever interned] for the rest of its life
+        final IMergeable cdata = result [DataFactory.TYPE_COVERAGEDATA];
+        if (cdata != null) ((CoverageData) cdata).releaseInterner ();
+        
+        return result;
+    }
+    
+    // private: ...............................................................
+    
+    
+    private static final class Task implements Runnable
+    {
+        public void run ()
+        {
+            try
+            {
+                m_result = (m_parallelism < 2) ? loadRange () : forkRange ();
+            }
+            catch (Throwable t)
+            {
+                m_failure = t;
+            }
+        }
+        
+        Task (final File [] files, final int start, final int end, final IInclExclFilter filter,
+              final VectorInterner interner, final int parallelism)
+        {
+            if ($assert.ENABLED) $assert.ASSERT (end - start >= parallelism || parallelism == 1, "too few files for parallelism " + parallelism);
+            
+            m_files = files;
+            m_start = start;
+            m_end = end;
+            m_filter = filter;
+            m_interner = interner;
+            m_parallelism = parallelism;
+        }
+        
+        /*
+         * rethrows the failure [if any] of this task in the calling thread
+         */
+        IMergeable [] getResult ()
+            throws IOException
+        {
+            final Throwable failure = m_failure;
+            
+            if (failure != null)
+            {
+                if (failure instanceof IOException)
+                    throw (IOException) failure;
+                else if (failure instanceof RuntimeException)
+                    throw (RuntimeException) failure;
+                else if (failure instanceof Error)
+                    throw (Error) failure;
+                else
+                    throw new IOException (failure.toString ());
+            }
+            
+            return m_result;
+        }
+        
+        
+        private IMergeable [] loadRange ()
+            throws IOException
+        {
+            final Logger log = Logger.getLogger ();
+            final boolean verbose = log.atVERBOSE ();
+            
+            final IMergeable [] result = new IMergeable [2];
+            
+            for (int f = m_start; f < m_end; ++ f)
+            {
+                final File dataFile = m_files [f];
+                if (verbose) log.verbose ("processing input file [" + dataFile.getAbsolutePath () + "] ...");
+                
+                final IMergeable [] fileData = DataFactory.load (dataFile, m_filter);
+                
+                if (verbose)
+                {
+                    final IMergeable mdata = fileData [DataFactory.TYPE_METADATA];
+                    if (mdata != null) log.verbose ("  loaded " + ((IMetaData) mdata).size () + " metadata entries from [" + dataFile.getName () + "]");
+                    
+                    final IMergeable cdata = fileData [DataFactory.TYPE_COVERAGEDATA];
+                    if (cdata != null) log.verbose ("  loaded " + ((ICoverageData) cdata).size () + " coverage data entries from [" + dataFile.getName () + "]");
+                }
+                
+                // share identical coverage vectors with all files loaded so far:
+                final IMergeable cdata = fileData [DataFactory.TYPE_COVERAGEDATA];
+                if (cdata != null) ((CoverageData) cdata).intern (m_interner);
+                
+                merge (result, fileData);
+            }
+            
+            return result;
+        }
+        
+        private IMergeable [] forkRange ()
+            throws IOException
+        {
+            // split the range in proportion to the thread budget of each half:
+            
+            final int leftParallelism = m_parallelism >> 1;
+            final int split = m_start + (int) (((long) (m_end - m_start)) * leftParallelism / m_parallelism);
+            
+            final Task left = new Task (m_files, m_start, split, m_filter, m_interner, leftParallelism);
+            final Task right = new Task (m_files, split, m_end, m_filter, m_interner, m_parallelism - leftParallelism);
+            
+            final Thread fork = new Thread (left, IAppConstants.APP_NAME + " data loader [" + m_start + ", " + split + ")");
+            fork.setDaemon (true);
+            fork.start ();
+            
+            right.run ();
+            
+            boolean interrupted = false;
+            while (true)
+            {
+                try
+                {
+                    fork.join ();
+                    break;
+                }
+                catch (InterruptedException ie)
+                {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread ().interrupt (); // restore the interrupt status
+            
+            final IMergeable [] result = left.getResult ();
+            merge (result, right.getResult ()); // note: later datapath entries override earlier ones
+            
+            return result;
+        }
+        
+        
+        private final File [] m_files;
+        private final int m_start, m_end; // [m_start, m_end) range of m_files
+        private final IInclExclFilter m_filter; // can be null
+        private final VectorInterner m_interner; // shared by all tasks
+        private final int m_parallelism;
+        
+        private IMergeable [] m_result; // set by run(), read after join()
+        private Throwable m_failure;    // set by run(), read after join()
+    
+    } // end of nested class
+    
+    
+    private DataLoader () {} // prevent subclassing
+    
+    /*
+     * merges 'rhs' data into 'result', slot by slot
+     */
+    private static void merge (final IMergeable [] result, final IMergeable [] rhs)
+    {
+        for (int type = 0; type < result.length; ++ type)
+        {
+            final IMergeable data = rhs [type];
+            if (data == null) continue;
+            
+            final IMergeable current = result [type];
+            
+            if (current == null)
+                result [type] = data;
+            else
+                result [type] = current.merge (data);
+        }
+    }
+
+} // end of class
+// ----------------------------------------------------------------------------
@@ -17,17 +17,94 @@ interface ICoverageData extends IMergeable
 {
     // public: ................................................................
     
+    /**
+     * Coverage data for a single class. Data collected by instrumented classes
+     * is kept in the boolean [][] form those classes update directly, while data
+     * read back from a file or a socket by offline tools is kept packed at one
+     * bit per block [see {@link CoverageBits}].<P>
+     * 
+     * Data collected by classes instrumented with a single flat coverage array
+     * is kept in that flat form [m_flat and m_layout] internally but is always
+     * handed out by {@link ICoverageData#getCoverage} in the boolean [][] form.
+     * Exactly one of m_coverage, m_bits and m_flat is non-null.
+     */
     final class DataHolder
     {
         public DataHolder (final boolean [][] coverage, final long stamp)
         {
             m_coverage = coverage;
+            m_bits = null;
+            m_flat = null;
+            m_layout = null;
             m_stamp = stamp;
         }
         
-        public final boolean [][] m_coverage;
+        public DataHolder (final long [][] bits, final long stamp)
+        {
+            m_coverage = null;
+            m_bits = bits;
+            m_flat = null;
+            m_layout = null;
+            m_stamp = stamp;
+        }
+        
+        /**
+         * @return coverage in the packed form [packed on every call if this
+         * holder is in the runtime form]
+         */
+        public long [][] getBits ()
+        {
+            if (m_bits != null)
+                return m_bits;
+            else if (m_flat != null)
+                return CoverageBits.pack (unflatten ());
+            else
+                return CoverageBits.pack (m_coverage);
+        }
+        
+        public final boolean [][] m_coverage; // runtime form [null for packed and flat holders]
+        public final long [][] m_bits; // packed form [null for runtime holders]
         public final long m_stamp;
         
+        /*
+         * Flat runtime form: 'layout' holds an [offset, length] pair for each
+         * method vector within 'flat' [length 0 for methods without coverage].
+         */
+        DataHolder (final boolean [] flat, final int [] layout, final long stamp)
+        {
+            m_coverage = null;
+            m_bits = null;
+            m_flat = flat;
+            m_layout = layout;
+            m_stamp = stamp;
+        }
+        
+        /*
+         * @return a snapshot of flat coverage in the boolean [][] form
+         */
+        boolean [][] unflatten ()
+        {
+            final boolean [] flat = m_flat;
+            final int [] layout = m_layout;
+            
+            final boolean [][] result = new boolean [layout.length >> 1][];
+            for (int m = 0; m < result.length; ++ m)
+            {
+                final int length = layout [(m << 1) + 1];
+                if (length == 0) continue; // method not instrumented
+                
+                final boolean [] mcoverage = new boolean [length];
+                System.arraycopy (flat, layout [m << 1], mcoverage, 0, length);
+                
+                result [m] = mcoverage;
+            }
+            
+            return result;
+        }
+        
+        final boolean [] m_flat; // flat runtime form [null for other holders]
+        final int [] m_layout; // [null for other holders]
+        
     } // end of nested class
     
     Object lock ();
@@ -45,6 +122,35 @@ interface ICoverageData extends IMergeable
     //void setImmutable (); // TODO: this only disables addClass(), not coverage array updates; rename
     void addClass (boolean [][] coverage, String classVMName, long stamp);
     
+    /**
+     * Same as {@link #addClass(boolean[][], String, long)} for a class that keeps
+     * the coverage of all of its methods in a single flat array. The first char
+     * of 'layout' is the number of method slots in the class coverage and each
+     * following pair of chars is a method slot and the number of blocks in that
+     * method, in the order in which method vectors follow each other in 'coverage'.
+     */
+    void addClass (boolean [] coverage, String layout, String classVMName, long stamp);
+    
+    /**
+     * Same as {@link #addClass(boolean[][], String, long)} but for one of possibly
+     * several generations of the same class [e.g., loaded by successive loaders
+     * of a redeployed application]. The coverage of a differently stamped entry
+     * is replaced as usual; otherwise, the class is reported with the union of
+     * the coverage of all of its generations. The data is only weakly tied to
+     * 'owner' [typically the registering Class]: once the owner is collected,
+     * its coverage is folded into a packed per-class union and its arrays are
+     * released.
+     *
+     * @param owner [may not be null]
+     */
+    void addClass (boolean [][] coverage, String classVMName, long stamp, Object owner);
+    
+    /**
+     * Same as {@link #addClass(boolean[][], String, long, Object)} for a class
+     * with a single flat coverage array.
+     */
+    void addClass (boolean [] coverage, String layout, String classVMName, long stamp, Object owner);
+    
     void reset ();
 
 } // end of interface
@@ -21,6 +21,7 @@ interface IMetadataConstants
     int METHOD_ABSTRACT_OR_NATIVE   = 0x02;
     int METHOD_EXCLUDED             = 0x04;
     int METHOD_ADDED                = 0x08;
+    int METHOD_HOT                  = 0x10; // set together with METHOD_EXCLUDED for profile-excluded methods
     
     int METHOD_NO_BLOCK_DATA = (METHOD_ABSTRACT_OR_NATIVE | METHOD_EXCLUDED | METHOD_ADDED);
     int METHOD_NO_LINE_DATA = (METHOD_NO_LINE_NUMBER_TABLE | METHOD_NO_BLOCK_DATA);
@@ -21,7 +21,9 @@ import java.util.Iterator;
 import java.util.Map;
 
 import com.vladium.emma.IAppConstants;
+import com.vladium.emma.filter.IInclExclFilter;
 import com.vladium.logging.Logger;
+import com.vladium.util.Descriptors;
 import com.vladium.util.IConstants;
 import com.vladium.util.asserts.$assert;
 
@@ -221,21 +223,54 @@ final class MetaData implements IMetaData, Cloneable, Serializable
     
     static MetaData readExternal (final DataInput in)
         throws IOException
+    {
+        return readExternal (in, null);
+    }
+    
+    /*
+     * Same as readExternal(DataInput) but class records not accepted by 'filter'
+     * are skipped without being decoded. The debug info flags are recomputed
+     * from the retained classes in this case.
+     * 
+     * @param filter [null means no filtering]
+     */
+    static MetaData readExternal (final DataInput in, final IInclExclFilter filter)
+        throws IOException
     {
         final CoverageOptions options = CoverageOptions.readExternal (in);
         
-        final boolean hasSrcFileInfo = in.readBoolean ();
-        final boolean hasLineNumberInfo = in.readBoolean ();
+        boolean hasSrcFileInfo = in.readBoolean ();
+        boolean hasLineNumberInfo = in.readBoolean ();
         
         final int size = in.readInt ();
-        final HashMap classMap = new HashMap (size);
+        final HashMap classMap = new HashMap (filter == null ? size : 11);
+        
+        if (filter != null)
+        {
+            hasSrcFileInfo = true;
+            hasLineNumberInfo = true;
+        }
         
         for (int i = 0; i < size; ++ i)
         {
             final String classVMName = in.readUTF ();
-            final ClassDescriptor cls = ClassDescriptor.readExternal (in);
             
-            classMap.put (classVMName, cls);
+            if ((filter != null) && ! filter.included (Descriptors.vmNameToJavaName (classVMName)))
+            {
+                ClassDescriptor.skipExternal (in);
+            }
+            else
+            {
+                final ClassDescriptor cls = ClassDescriptor.readExternal (in);
+                
+                if (filter != null)
+                {
+                    if (! cls.hasSrcFileInfo ()) hasSrcFileInfo = false;
+                    if (! cls.hasCompleteLineNumberInfo ()) hasLineNumberInfo = false;
+                }
+                
+                classMap.put (classVMName, cls);
+            }
         }
         
         // [m_packagesWarned is not part of persisted state]
@@ -271,11 +306,8 @@ final class MetaData implements IMetaData, Cloneable, Serializable
         // [m_packagesWarned is not part of persisted state]
     }
     
-    // private: ...............................................................
-    
-    
-    private MetaData (final CoverageOptions options, final HashMap classMap,
-                      final boolean hasSrcFileInfo, final boolean hasLineNumberInfo)
+    MetaData (final CoverageOptions options, final HashMap classMap,
+              final boolean hasSrcFileInfo, final boolean hasLineNumberInfo)
     {
         if ($assert.ENABLED) $assert.ASSERT (options != null, "options is null");
         m_options = options;
@@ -286,6 +318,8 @@ final class MetaData implements IMetaData, Cloneable, Serializable
         m_classMap = classMap;
     }
     
+    // private: ...............................................................
+    
     // extreme Serializable customization: the effect of it is to reduce defaultRead/WriteObject()
     // to reading/writing class metadata only; custom serial data is then denoted
     // by TC_BLOCK_DATA start marker and the above fast versions of read/writeExternal() are
@@ -276,6 +276,38 @@ final class MethodDescriptor implements IConstants, IMetadataConstants, Serializ
         return new MethodDescriptor (name, descriptor, status, blockSizes, blockMap, firstLine);
     }
     
+    /*
+     * Advances 'in' past a descriptor written by writeExternal() without
+     * decoding it.
+     * 
+     * IMPORTANT: keep consistent with readExternal()
+     */
+    static void skipExternal (final DataInput in)
+        throws IOException
+    {
+        DataFactory.skipUTF (in); // name
+        DataFactory.skipUTF (in); // descriptor
+        
+        final int status = in.readInt ();
+        
+        if ((status & METHOD_NO_BLOCK_DATA) == 0)
+        {
+            DataFactory.skipIntArray (in); // blockSizes
+            
+            if ((status & METHOD_NO_LINE_DATA) == 0)
+            {
+                final int length = in.readInt ();
+                
+                for (int i = 0; i < length; ++ i) 
+                {
+                    DataFactory.skipIntArray (in); // blockMap [i]
+                }
+                
+                DataFactory.skipFully (in, 4); // firstLine
+            }
+        }
+    }
+    
     static void writeExternal (final MethodDescriptor method, final DataOutput out)
         throws IOException
     {
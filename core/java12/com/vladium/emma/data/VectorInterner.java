@@ -0,0 +1,113 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.emma.data;
+
+import java.util.HashMap;
+
+// ----------------------------------------------------------------------------
+/**
+ * A hash-consing table for packed method coverage vectors [see {@link CoverageBits}].
+ * When many coverage sessions are merged most classes end up with identical
+ * per-method vectors in most sessions; interning them lets all sessions share
+ * a single instance of each distinct vector. Interned vectors must be treated
+ * as immutable: {@link CoverageData} copies them on write.<P>
+ * 
+ * MT-safety: all methods are synchronized, so an instance can be shared by
+ * concurrent data loaders.
+ * 
+ * @author Vlad Roubtsov, (C) 2003
+ */
+final class VectorInterner
+{
+    // public: ................................................................
+    
+    // protected: .............................................................
+    
+    // package: ...............................................................
+    
+    
+    VectorInterner ()
+    {
+        m_table = new HashMap ();
+    }
+    
+    /*
+     * @param bits [may not be null]
+     * @return the canonical instance equal to 'bits' ['bits' itself if this is
+     * the first time such a vector is seen]
+     */
+    synchronized long [] intern (final long [] bits)
+    {
+        final Key key = new Key (bits);
+        
+        final Key canonical = (Key) m_table.get (key);
+        if (canonical != null)
+        {
+            ++ m_hits;
+            return canonical.m_bits;
+        }
+        
+        m_table.put (key, key);
+        return bits;
+    }
+    
+    /*
+     * @return number of distinct vectors seen so far
+     */
+    synchronized int size ()
+    {
+        return m_table.size ();
+    }
+    
+    /*
+     * @return number of intern() calls that returned a previously seen vector
+     */
+    synchronized int hits ()
+    {
+        return m_hits;
+    }
+    
+    // private: ...............................................................
+    
+    
+    private static final class Key
+    {
+        public boolean equals (final Object rhs)
+        {
+            if (rhs == this) return true;
+            if (! (rhs instanceof Key)) return false;
+            
+            final Key _rhs = (Key) rhs;
+            
+            return (m_hashCode == _rhs.m_hashCode) && CoverageBits.equals (m_bits, _rhs.m_bits);
+        }
+        
+        public int hashCode ()
+        {
+            return m_hashCode;
+        }
+        
+        Key (final long [] bits)
+        {
+            m_bits = bits;
+            m_hashCode = CoverageBits.hashCode (bits);
+        }
+        
+        
+        final long [] m_bits;
+        private final int m_hashCode;
+    
+    } // end of nested class
+    
+    
+    private final HashMap /* Key -> Key */ m_table;
+    private int m_hits;
+
+} // end of class
+// ----------------------------------------------------------------------------
@@ -0,0 +1,467 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.emma.diff;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import com.vladium.util.Descriptors;
+import com.vladium.util.IntIntMap;
+import com.vladium.util.IntObjectMap;
+import com.vladium.emma.data.ClassDescriptor;
+import com.vladium.emma.data.CoverageBits;
+import com.vladium.emma.data.ICoverageData;
+import com.vladium.emma.data.IMetaData;
+import com.vladium.emma.data.IMetadataConstants;
+import com.vladium.emma.data.MethodDescriptor;
+
+// ----------------------------------------------------------------------------
+/**
+ * Compares the coverage of two data sets [a baseline and a current one] class
+ * by class, without building report data models. Classes are matched by name:
+ * 
+ * <UL>
+ *  <LI> classes with the same stamp in both sets are compared method by method
+ *  on the packed coverage vectors. Block deltas [newly covered and no longer
+ *  covered blocks] are computed with word-wide and-not operations and bit
+ *  counts; line deltas [lines that gained or lost all coverage] are only
+ *  computed for methods whose vectors differ;
+ *  <LI> classes whose stamps differ cannot be compared block by block and
+ *  are listed as "modified" with their covered/total block and line counts
+ *  in both sets, if those differ;
+ *  <LI> classes present in one set only are listed as "added" or "removed".
+ * </UL>
+ * 
+ * Only classes [and methods] whose coverage changed are written out, sorted
+ * by class name.
+ * 
+ * @author Vlad Roubtsov, (C) 2003
+ */
+final class CoverageDiff
+{
+    // public: ................................................................
+    
+    // protected: .............................................................
+    
+    // package: ...............................................................
+    
+    
+    CoverageDiff (final IMetaData baseMdata, final ICoverageData baseCdata,
+                  final IMetaData mdata, final ICoverageData cdata)
+    {
+        if (baseMdata == null) throw new IllegalArgumentException ("null input: baseMdata");
+        if (mdata == null) throw new IllegalArgumentException ("null input: mdata");
+        
+        // [either coverage data set can be null: no classes were covered]
+        
+        m_baseMdata = baseMdata;
+        m_baseCdata = baseCdata;
+        m_mdata = mdata;
+        m_cdata = cdata;
+    }
+    
+    /*
+     * Writes all coverage changes followed by a summary line.
+     *
+     * @return number of classes with coverage changes
+     */
+    int write (final BufferedWriter out)
+        throws IOException
+    {
+        final Map /* classVMName:String -> ClassDescriptor */ baseClasses = new HashMap (m_baseMdata.size ());
+        for (Iterator classes = m_baseMdata.iterator (); classes.hasNext (); )
+        {
+            final ClassDescriptor cls = (ClassDescriptor) classes.next ();
+            baseClasses.put (cls.getClassVMName (), cls);
+        }
+        
+        final Map /* classVMName:String -> ClassDescriptor */ curClasses = new HashMap (m_mdata.size ());
+        for (Iterator classes = m_mdata.iterator (); classes.hasNext (); )
+        {
+            final ClassDescriptor cls = (ClassDescriptor) classes.next ();
+            curClasses.put (cls.getClassVMName (), cls);
+        }
+        
+        final List /* String */ _names = new ArrayList (curClasses.keySet ());
+        for (Iterator names = baseClasses.keySet ().iterator (); names.hasNext (); )
+        {
+            final String name = (String) names.next ();
+            if (! curClasses.containsKey (name)) _names.add (name);
+        }
+        
+        final String [] names = new String [_names.size ()];
+        _names.toArray (names);
+        Arrays.sort (names);
+        
+        for (int n = 0; n < names.length; ++ n)
+        {
+            final ClassDescriptor baseCls = (ClassDescriptor) baseClasses.get (names [n]);
+            final ClassDescriptor cls = (ClassDescriptor) curClasses.get (names [n]);
+            
+            if (baseCls == null)
+                writeClass (out, cls, null, getCoverage (m_cdata, cls), "added");
+            else if (cls == null)
+                writeClass (out, baseCls, getCoverage (m_baseCdata, baseCls), null, "removed");
+            else if (baseCls.getStamp () != cls.getStamp ())
+                writeModifiedClass (out, baseCls, cls);
+            else
+                writeClassDelta (out, cls, getCoverage (m_baseCdata, baseCls), getCoverage (m_cdata, cls));
+        }
+        
+        final int changed = m_changed + m_modified + m_added + m_removed;
+        
+        if (changed > 0) out.newLine ();
+        
+        out.write (changed + " of " + names.length + " class(es) with coverage changes");
+        out.write (" [" + m_modified + " modified, " + m_added + " added, " + m_removed + " removed]");
+        out.write (": unmodified classes: blocks +" + m_blocksGained + " -" + m_blocksLost);
+        out.write (", lines +" + m_linesGained + " -" + m_linesLost);
+        out.newLine ();
+        
+        return changed;
+    }
+    
+    // private: ...............................................................
+    
+    
+    /*
+     * Writes block and line deltas of a class that has the same stamp in both
+     * data sets [and of its changed methods], if its coverage has changed.
+     */
+    private void writeClassDelta (final BufferedWriter out, final ClassDescriptor cls,
+                                  final long [][] baseCoverage, final long [][] coverage)
+        throws IOException
+    {
+        if (baseCoverage == coverage) return; // both null
+        
+        final MethodDescriptor [] methods = cls.getMethods ();
+        final boolean lineInfo = cls.hasCompleteLineNumberInfo ();
+        
+        // find changed methods first:
+        
+        int [] deltas = null; // { blocksGained, blocksLost, linesGained, linesLost } per method
+        for (int m = 0; m < methods.length; ++ m)
+        {
+            if ((methods [m].getStatus () & IMetadataConstants.METHOD_NO_BLOCK_DATA) != 0) continue;
+            
+            final long [] mbase = baseCoverage == null ? null : baseCoverage [m];
+            final long [] mcur = coverage == null ? null : coverage [m];
+            
+            if (CoverageBits.equals (mbase, mcur)) continue;
+            
+            final int gained = mcur == null ? 0 : (mbase == null ? CoverageBits.count (mcur) : CoverageBits.countAndNot (mcur, mbase));
+            final int lost = mbase == null ? 0 : (mcur == null ? CoverageBits.count (mbase) : CoverageBits.countAndNot (mbase, mcur));
+            
+            if ((gained == 0) && (lost == 0)) continue;
+            
+            if (deltas == null) deltas = new int [methods.length << 2];
+            
+            final int d = m << 2;
+            deltas [d] = gained;
+            deltas [d + 1] = lost;
+            
+            if (lineInfo)
+            {
+                final IntObjectMap /* line -> int[](blocks) */ lineMap = methods [m].getLineMap ();
+                final int [] lines = lineMap.keys ();
+                
+                for (int l = 0; l < lines.length; ++ l)
+                {
+                    final int [] blocks = (int []) lineMap.get (lines [l]);
+                    
+                    final boolean lbase = isCovered (mbase, blocks);
+                    final boolean lcur = isCovered (mcur, blocks);
+                    
+                    if (lcur && ! lbase)
+                        ++ deltas [d + 2];
+                    else if (lbase && ! lcur)
+                        ++ deltas [d + 3];
+                }
+            }
+        }
+        
+        if (deltas == null) return; // no method coverage changed
+        
+        // class line deltas are computed over the merged lines of all methods:
+        
+        int linesGained = 0, linesLost = 0;
+        if (lineInfo)
+        {
+            final IntIntMap lines = new IntIntMap ();
+            mergeLines (lines, methods, baseCoverage, LINE_BASE_COVERED);
+            mergeLines (lines, methods, coverage, LINE_COVERED);
+            
+            final int [] keys = lines.keys ();
+            final int [] flags = new int [1];
+            for (int l = 0; l < keys.length; ++ l)
+            {
+                lines.get (keys [l], flags);
+                
+                final int covered = flags [0] & (LINE_BASE_COVERED | LINE_COVERED);
+                if (covered == LINE_COVERED)
+                    ++ linesGained;
+                else if (covered == LINE_BASE_COVERED)
+                    ++ linesLost;
+            }
+        }
+        
+        int blocksGained = 0, blocksLost = 0;
+        for (int d = 0; d < deltas.length; d += 4)
+        {
+            blocksGained += deltas [d];
+            blocksLost += deltas [d + 1];
+        }
+        
+        ++ m_changed;
+        m_blocksGained += blocksGained;
+        m_blocksLost += blocksLost;
+        m_linesGained += linesGained;
+        m_linesLost += linesLost;
+        
+        final StringBuffer buf = new StringBuffer ();
+        
+        buf.append ("class ");
+        buf.append (Descriptors.vmNameToJavaName (cls.getClassVMName ()));
+        buf.append (": ");
+        appendDelta (buf, blocksGained, blocksLost, linesGained, linesLost, lineInfo);
+        
+        out.write (buf.toString ());
+        out.newLine ();
+        
+        for (int m = 0; m < methods.length; ++ m)
+        {
+            final int d = m << 2;
+            if ((deltas [d] == 0) && (deltas [d + 1] == 0)) continue;
+            
+            final MethodDescriptor method = methods [m];
+            
+            buf.setLength (0);
+            buf.append ("  method ");
+            buf.append (Descriptors.methodVMNameToJavaName (cls.getName (), method.getName (), method.getDescriptor (), true, true, true));
+            buf.append (": ");
+            appendDelta (buf, deltas [d], deltas [d + 1], deltas [d + 2], deltas [d + 3], lineInfo);
+            
+            out.write (buf.toString ());
+            out.newLine ();
+        }
+    }
+    
+    /*
+     * Writes covered/total counts of a class whose stamp differs between the
+     * two data sets, if its coverage has changed.
+     */
+    private void writeModifiedClass (final BufferedWriter out, final ClassDescriptor baseCls, final ClassDescriptor cls)
+        throws IOException
+    {
+        final int [] baseCounts = getCounts (baseCls, getCoverage (m_baseCdata, baseCls));
+        final int [] counts = getCounts (cls, getCoverage (m_cdata, cls));
+        
+        if (Arrays.equals (baseCounts, counts)) return;
+        
+        ++ m_modified;
+        
+        final boolean lineInfo = baseCls.hasCompleteLineNumberInfo () && cls.hasCompleteLineNumberInfo ();
+        
+        final StringBuffer buf = new StringBuffer ();
+        
+        buf.append ("class ");
+        buf.append (Descriptors.vmNameToJavaName (cls.getClassVMName ()));
+        buf.append (" {modified}: blocks ");
+        appendRatio (buf, baseCounts [0], baseCounts [1]);
+        buf.append (" -> ");
+        appendRatio (buf, counts [0], counts [1]);
+        if (lineInfo)
+        {
+            buf.append (", lines ");
+            appendRatio (buf, baseCounts [2], baseCounts [3]);
+            buf.append (" -> ");
+            appendRatio (buf, counts [2], counts [3]);
+        }
+        
+        out.write (buf.toString ());
+        out.newLine ();
+    }
+    
+    /*
+     * Writes covered/total counts of a class present in one data set only.
+     */
+    private void writeClass (final BufferedWriter out, final ClassDescriptor cls,
+                             final long [][] baseCoverage, final long [][] coverage, final String status)
+        throws IOException
+    {
+        final boolean added = baseCoverage == null;
+        final int [] counts = getCounts (cls, added ? coverage : baseCoverage);
+        
+        if (added)
+            ++ m_added;
+        else
+            ++ m_removed;
+        
+        final StringBuffer buf = new StringBuffer ();
+        
+        buf.append ("class ");
+        buf.append (Descriptors.vmNameToJavaName (cls.getClassVMName ()));
+        buf.append (" {");
+        buf.append (status);
+        buf.append ("}: blocks ");
+        appendRatio (buf, counts [0], counts [1]);
+        if (cls.hasCompleteLineNumberInfo ())
+        {
+            buf.append (", lines ");
+            appendRatio (buf, counts [2], counts [3]);
+        }
+        
+        out.write (buf.toString ());
+        out.newLine ();
+    }
+    
+    
+    /*
+     * @return coverage of 'cls' in 'cdata' [null if none or if recorded for a
+     * different version of the class]
+     */
+    private static long [][] getCoverage (final ICoverageData cdata, final ClassDescriptor cls)
+    {
+        if (cdata == null) return null;
+        
+        final ICoverageData.DataHolder data = cdata.getCoverage (cls);
+        if ((data == null) || (data.m_stamp != cls.getStamp ())) return null;
+        
+        return data.getBits ();
+    }
+    
+    /*
+     * @return { covered blocks, total blocks, covered lines, total lines }
+     * [a line is covered if any of its blocks is]
+     */
+    private static int [] getCounts (final ClassDescriptor cls, final long [][] coverage)
+    {
+        final int [] result = new int [4];
+        
+        final MethodDescriptor [] methods = cls.getMethods ();
+        for (int m = 0; m < methods.length; ++ m)
+        {
+            if ((methods [m].getStatus () & IMetadataConstants.METHOD_NO_BLOCK_DATA) != 0) continue;
+            
+            final long [] mcoverage = coverage == null ? null : coverage [m];
+            
+            result [0] += mcoverage == null ? 0 : CoverageBits.count (mcoverage);
+            result [1] += methods [m].getBlockCount ();
+        }
+        
+        if (cls.hasCompleteLineNumberInfo ())
+        {
+            final IntIntMap lines = new IntIntMap ();
+            mergeLines (lines, methods, coverage, LINE_COVERED);
+            
+            final int [] keys = lines.keys ();
+            final int [] flags = new int [1];
+            for (int l = 0; l < keys.length; ++ l)
+            {
+                lines.get (keys [l], flags);
+                if ((flags [0] & LINE_COVERED) != 0) ++ result [2];
+            }
+            
+            result [3] = keys.length;
+        }
+        
+        return result;
+    }
+    
+    /*
+     * Ors LINE_PRESENT [and 'coveredFlag' for covered lines] into the 'lines'
+     * entries of all lines of all 'methods'.
+     */
+    private static void mergeLines (final IntIntMap lines, final MethodDescriptor [] methods,
+                                    final long [][] coverage, final int coveredFlag)
+    {
+        final int [] flags = new int [1];
+        
+        for (int m = 0; m < methods.length; ++ m)
+        {
+            if ((methods [m].getStatus () & IMetadataConstants.METHOD_NO_BLOCK_DATA) != 0) continue;
+            
+            final long [] mcoverage = coverage == null ? null : coverage [m];
+            
+            final IntObjectMap /* line -> int[](blocks) */ lineMap = methods [m].getLineMap ();
+            if (lineMap == null) continue;
+            
+            final int [] mlines = lineMap.keys ();
+            for (int l = 0; l < mlines.length; ++ l)
+            {
+                final int line = mlines [l];
+                
+                int lflags = lines.get (line, flags) ? flags [0] : 0;
+                
+                lflags |= LINE_PRESENT;
+                if (isCovered (mcoverage, (int []) lineMap.get (line))) lflags |= coveredFlag;
+                
+                lines.put (line, lflags);
+            }
+        }
+    }
+    
+    /*
+     * @return 'true' if any of 'blocks' is covered in 'bits' [can be null]
+     */
+    private static boolean isCovered (final long [] bits, final int [] blocks)
+    {
+        if (bits == null) return false;
+        
+        for (int b = 0; b < blocks.length; ++ b)
+        {
+            if (CoverageBits.get (bits, blocks [b])) return true;
+        }
+        
+        return false;
+    }
+    
+    private static void appendDelta (final StringBuffer buf, final int blocksGained, final int blocksLost,
+                                     final int linesGained, final int linesLost, final boolean lineInfo)
+    {
+        buf.append ("blocks +");
+        buf.append (blocksGained);
+        buf.append (" -");
+        buf.append (blocksLost);
+        
+        if (lineInfo)
+        {
+            buf.append (", lines +");
+            buf.append (linesGained);
+            buf.append (" -");
+            buf.append (linesLost);
+        }
+    }
+    
+    private static void appendRatio (final StringBuffer buf, final int covered, final int total)
+    {
+        buf.append (covered);
+        buf.append ('/');
+        buf.append (total);
+    }
+    
+    
+    private final IMetaData m_baseMdata, m_mdata; // never null
+    private final ICoverageData m_baseCdata, m_cdata; // can be null
+    
+    private int m_changed, m_modified, m_added, m_removed; // class counts
+    private int m_blocksGained, m_blocksLost, m_linesGained, m_linesLost; // over same-stamp classes
+    
+    private static final int LINE_PRESENT       = 0x01;
+    private static final int LINE_BASE_COVERED  = 0x02;
+    private static final int LINE_COVERED       = 0x04;
+
+} // end of class
+// ----------------------------------------------------------------------------
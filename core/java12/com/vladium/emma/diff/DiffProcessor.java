@@ -0,0 +1,324 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.emma.diff;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.Date;
+
+import com.vladium.logging.Logger;
+import com.vladium.util.Files;
+import com.vladium.util.IConstants;
+import com.vladium.util.IProperties;
+import com.vladium.util.Property;
+import com.vladium.util.exception.Exceptions;
+import com.vladium.emma.IAppConstants;
+import com.vladium.emma.IAppErrorCodes;
+import com.vladium.emma.EMMAProperties;
+import com.vladium.emma.EMMARuntimeException;
+import com.vladium.emma.Processor;
+import com.vladium.emma.data.DataFactory;
+import com.vladium.emma.data.ICoverageData;
+import com.vladium.emma.data.IMergeable;
+import com.vladium.emma.data.IMetaData;
+import com.vladium.emma.filter.IInclExclFilter;
+
+// ----------------------------------------------------------------------------
+/**
+ * Loads and merges two sets of data files [a baseline and a current one, e.g.
+ * the coverage of a main branch build and that of a pull request build] and
+ * writes out the classes and methods whose coverage differs between the two
+ * [see {@link CoverageDiff}]. No report data models are built, which makes
+ * this much cheaper than diffing two full reports.
+ * 
+ * @author Vlad Roubtsov, (C) 2003
+ */
+public
+final class DiffProcessor extends Processor
+                          implements IAppErrorCodes
+{
+    // public: ................................................................
+    
+    /**
+     * Factory method for this processor.
+     *
+     * @return a new Processor instance
+     */
+    public static DiffProcessor create ()
+    {
+        return new DiffProcessor ();
+    }
+    
+    /**
+     *
+     * @param path baseline data files [null is equivalent to an empty array]
+     */
+    public synchronized final void setBaselinePath (final String [] path)
+    {
+        if ((path == null) || (path.length == 0))
+            m_baselinePath = IConstants.EMPTY_FILE_ARRAY;
+        else
+            m_baselinePath = Files.pathToFiles (path, true);
+    }
+    
+    /**
+     *
+     * @param path current data files [null is equivalent to an empty array]
+     */
+    public synchronized final void setDataPath (final String [] path)
+    {
+        if ((path == null) || (path.length == 0))
+            m_dataPath = IConstants.EMPTY_FILE_ARRAY;
+        else
+            m_dataPath = Files.pathToFiles (path, true);
+    }
+    
+    /**
+     * Restricts the comparison to classes accepted by a coverage inclusion/exclusion
+     * filter [see ReportProcessor.setInclExclFilter()].
+     *
+     * @param specs [null is equivalent to no filtering (everything is included)]
+     */
+    public synchronized final void setInclExclFilter (final String [] specs)
+    {
+        if ((specs == null) || (specs.length == 0))
+            m_coverageFilter = null;
+        else
+            m_coverageFilter = IInclExclFilter.Factory.create (specs);
+    }
+    
+    /**
+     * @param fileName [null unsets the previous override setting]
+     */
+    public synchronized final void setOutFile (final String fileName)
+    {
+        if (fileName == null)
+            m_outFile = null;
+        else
+        {
+            final File _file = new File (fileName);
+            
+            if (_file.exists () && ! _file.isFile ())
+                throw new IllegalArgumentException ("not a file: [" + _file.getAbsolutePath () + "]");
+            
+            m_outFile = _file;
+        }
+    }
+    
+    /**
+     * @return number of classes with coverage changes found by the last
+     * {@link #run()}
+     */
+    public synchronized final int getChangeCount ()
+    {
+        return m_changeCount;
+    }
+    
+    // protected: .............................................................
+    
+    
+    protected void validateState ()
+    {
+        super.validateState ();
+        
+        if (m_baselinePath == null)
+            throw new IllegalStateException ("baseline data path not set");
+        
+        if (m_dataPath == null)
+            throw new IllegalStateException ("data path not set");
+        
+        // [m_outFile can be null]
+        
+        // [m_propertyOverrides can be null]
+    }
+    
+    
+    protected void _run (final IProperties toolProperties)
+    {
+        final Logger log = m_log;
+        
+        final boolean verbose = m_log.atVERBOSE ();
+        if (verbose)
+        {
+            log.verbose (IAppConstants.APP_VERBOSE_BUILD_ID);
+            
+            logPath (log, "baseline data path:", m_baselinePath);
+            logPath (log, "input data path:", m_dataPath);
+            
+            if (m_coverageFilter != null) log.verbose ("[diff data is restricted by a coverage filter]");
+        }
+        else
+        {
+            log.info ("processing input files ...");
+        }
+        
+        m_changeCount = 0;
+        
+        File outFile = m_outFile;
+        if (outFile == null)
+            outFile = new File (toolProperties.getProperty (EMMAProperties.PROPERTY_DIFF_OUT_FILE,
+                                                            EMMAProperties.DEFAULT_DIFF_OUT_FILE));
+        
+        final int loadThreads = Property.toInt (toolProperties.getProperty (EMMAProperties.PROPERTY_DATA_IN_THREADS),
+                                                EMMAProperties.DEFAULT_DATA_IN_THREADS);
+        
+        RuntimeException failure = null;
+        try
+        {
+            long start = log.atINFO () ? System.currentTimeMillis () : 0;
+            
+            IMergeable [] baseData = null, data = null;
+            
+            // load and merge both sets of data files:
+            try
+            {
+                baseData = DataFactory.load (m_baselinePath, m_coverageFilter, loadThreads);
+                data = DataFactory.load (m_dataPath, m_coverageFilter, loadThreads);
+                
+                if (log.atINFO ())
+                {
+                    final long end = System.currentTimeMillis ();
+                    
+                    log.info ((m_baselinePath.length + m_dataPath.length) + " file(s) read and merged in " + (end - start) + " ms");
+                    start = end;
+                }
+            }
+            catch (IOException ioe)
+            {
+                throw new EMMARuntimeException (IN_IO_FAILURE, ioe);
+            }
+            
+            final IMetaData baseMdata = (IMetaData) baseData [DataFactory.TYPE_METADATA];
+            final IMetaData mdata = (IMetaData) data [DataFactory.TYPE_METADATA];
+            
+            // an empty side would make every class look added or removed:
+            
+            if ((baseMdata == null) || baseMdata.isEmpty ())
+                throw new EMMARuntimeException ("no metadata found in any of the baseline data files");
+            
+            if ((mdata == null) || mdata.isEmpty ())
+                throw new EMMARuntimeException ("no metadata found in any of the data files");
+            
+            final CoverageDiff diff = new CoverageDiff (baseMdata, (ICoverageData) baseData [DataFactory.TYPE_COVERAGEDATA],
+                                                        mdata, (ICoverageData) data [DataFactory.TYPE_COVERAGEDATA]);
+            
+            log.info ("writing coverage diff to [" + outFile.getAbsolutePath () + "] ...");
+            
+            BufferedWriter out = null;
+            try
+            {
+                final File parent = outFile.getAbsoluteFile ().getParentFile ();
+                if (parent != null) parent.mkdirs ();
+                
+                out = new BufferedWriter (new OutputStreamWriter (new FileOutputStream (outFile), OUT_ENCODING), IO_BUF_SIZE);
+                
+                out.write ("[" + IAppConstants.APP_NAME + " v" + IAppConstants.APP_VERSION_WITH_BUILD_ID_AND_TAG
+                    + " coverage diff, generated " + new Date (EMMAProperties.getTimeStamp ()) + "]");
+                out.newLine ();
+                out.newLine ();
+                
+                m_changeCount = diff.write (out);
+                
+                out.flush ();
+            }
+            catch (IOException ioe)
+            {
+                throw new EMMARuntimeException (OUT_IO_FAILURE, new Object [] {outFile.getAbsolutePath ()}, ioe);
+            }
+            finally
+            {
+                if (out != null) try { out.close (); } catch (IOException ignore) {}
+            }
+            
+            if (log.atINFO ())
+            {
+                final long end = System.currentTimeMillis ();
+                
+                log.info (m_changeCount + " class(es) with coverage changes found in " + (end - start) + " ms");
+            }
+        }
+        catch (SecurityException se)
+        {
+            failure = new EMMARuntimeException (SECURITY_RESTRICTION, new String [] {IAppConstants.APP_NAME}, se);
+        }
+        catch (RuntimeException re)
+        {
+            failure = re;
+        }
+        
+        if (failure != null)
+        {
+            if (Exceptions.unexpectedFailure (failure, EXPECTED_FAILURES))
+            {
+                throw new EMMARuntimeException (UNEXPECTED_FAILURE,
+                                                new Object [] {failure.toString (), IAppConstants.APP_BUG_REPORT_LINK},
+                                                failure);
+            }
+            else
+                throw failure;
+        }
+    }
+    
+    // package: ...............................................................
+    
+    // private: ...............................................................
+    
+    
+    private DiffProcessor ()
+    {
+        m_baselinePath = IConstants.EMPTY_FILE_ARRAY;
+        m_dataPath = IConstants.EMPTY_FILE_ARRAY;
+    }
+    
+    private static void logPath (final Logger log, final String label, final File [] path)
+    {
+        log.verbose (label);
+        log.verbose ("{");
+        for (int p = 0; p < path.length; ++ p)
+        {
+            final File f = path [p];
+            final String nonexistent = f.exists () ? "" : "{nonexistent} ";
+            
+            log.verbose ("  " + nonexistent + f.getAbsolutePath ());
+        }
+        log.verbose ("}");
+    }
+    
+    
+    // caller-settable state [scoped to this runner instance]:
+    
+    private File [] m_baselinePath; // required to be non-null for run()
+    private File [] m_dataPath;     // required to be non-null for run()
+    private IInclExclFilter m_coverageFilter; // can be null for run()
+    private File m_outFile;         // can be null for run()
+    
+    // run() results:
+    
+    private int m_changeCount;
+    
+    private static final String OUT_ENCODING = "UTF-8";
+    private static final int IO_BUF_SIZE = 32 * 1024;
+    
+    private static final Class [] EXPECTED_FAILURES; // set in <clinit>
+    
+    static
+    {
+        EXPECTED_FAILURES = new Class []
+        {
+            EMMARuntimeException.class,
+            IllegalArgumentException.class,
+            IllegalStateException.class,
+        };
+    }
+
+} // end of class
+// ----------------------------------------------------------------------------
@@ -0,0 +1,153 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.emma.instr;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+import com.vladium.util.Descriptors;
+
+// ----------------------------------------------------------------------------
+/**
+ * A method execution profile used to leave small hot methods uninstrumented.
+ * Coverage probes push tiny, very frequently executed methods [getters,
+ * comparators, hashCode(), etc] over JIT inlining size thresholds, which can
+ * cost far more than the coverage information for such methods is worth.<P>
+ * 
+ * The profile is a text file with one method per line:
+ * <PRE>
+ *  # comment
+ *  com.acme.Point.getX()I      2810334
+ *  com.acme.Point.hashCode     1200000
+ * </PRE>
+ * i.e., a fully qualified Java class name, '.', a method name with an optional
+ * JVM method descriptor [no descriptor matches all overloads], and an
+ * execution count. A method is considered hot if its bytecode is no larger
+ * than the size threshold and its count is at least the count threshold.
+ * 
+ * @author Vlad Roubtsov, (C) 2003
+ */
+public
+final class HotMethodProfile
+{
+    // public: ................................................................
+    
+    
+    /**
+     * @param file profile file [may not be null]
+     * @param maxSize largest bytecode size [in bytes] of methods that can be
+     * considered hot
+     * @param minCount smallest execution count of methods that are considered hot
+     *
+     * @throws IOException on I/O errors or malformed profile lines
+     */
+    public static HotMethodProfile load (final File file, final int maxSize, final long minCount)
+        throws IOException
+    {
+        if (file == null) throw new IllegalArgumentException ("null input: file");
+        
+        final Set hotMethods = new HashSet ();
+        
+        final BufferedReader in = new BufferedReader (new FileReader (file));
+        try
+        {
+            int lineNumber = 0;
+            for (String line; (line = in.readLine ()) != null; )
+            {
+                ++ lineNumber;
+                
+                line = line.trim ();
+                if ((line.length () == 0) || line.startsWith ("#")) continue;
+                
+                final StringTokenizer tokenizer = new StringTokenizer (line);
+                if (tokenizer.countTokens () != 2)
+                    throw new IOException ("malformed profile line " + lineNumber + " in [" + file.getAbsolutePath () + "]: " + line);
+                
+                final String method = tokenizer.nextToken ();
+                final long count;
+                try
+                {
+                    count = Long.parseLong (tokenizer.nextToken ());
+                }
+                catch (NumberFormatException nfe)
+                {
+                    throw new IOException ("invalid count in profile line " + lineNumber + " in [" + file.getAbsolutePath () + "]: " + line);
+                }
+                
+                if (count < minCount) continue; // not hot: no need to remember it
+                
+                // the class name ends at the last '.' before the descriptor [if any]:
+                final int descriptorStart = method.indexOf ('(');
+                final int nameStart = method.lastIndexOf ('.', descriptorStart < 0 ? method.length () : descriptorStart);
+                if (nameStart <= 0)
+                    throw new IOException ("malformed method name in profile line " + lineNumber + " in [" + file.getAbsolutePath () + "]: " + line);
+                
+                final String classVMName = Descriptors.javaNameToVMName (method.substring (0, nameStart));
+                
+                hotMethods.add (classVMName + '.' + method.substring (nameStart + 1));
+            }
+        }
+        finally
+        {
+            try { in.close (); } catch (IOException ignore) {}
+        }
+        
+        return new HotMethodProfile (hotMethods, maxSize);
+    }
+    
+    /**
+     * @param classVMName class name in JVM format
+     * @param methodName method name
+     * @param descriptor method descriptor in JVM format
+     * @param codeSize method bytecode size [in bytes]
+     *
+     * @return 'true' if the method should be left uninstrumented
+     */
+    public boolean isHot (final String classVMName, final String methodName, final String descriptor,
+                          final int codeSize)
+    {
+        if (codeSize > m_maxSize) return false;
+        
+        final String method = classVMName + '.' + methodName;
+        
+        return m_hotMethods.contains (method) || m_hotMethods.contains (method + descriptor);
+    }
+    
+    /**
+     * @return number of hot method entries in this profile
+     */
+    public int size ()
+    {
+        return m_hotMethods.size ();
+    }
+    
+    // protected: .............................................................
+    
+    // package: ...............................................................
+    
+    // private: ...............................................................
+    
+    
+    private HotMethodProfile (final Set hotMethods, final int maxSize)
+    {
+        m_hotMethods = hotMethods;
+        m_maxSize = maxSize;
+    }
+    
+    
+    private final Set /* String */ m_hotMethods; // "classVMName.method[descriptor]" entries
+    private final int m_maxSize;
+
+} // end of class
+// ----------------------------------------------------------------------------
@@ -0,0 +1,291 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.emma.instr;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import com.vladium.jcd.cls.ClassDef;
+import com.vladium.jcd.cls.IAttributeCollection;
+import com.vladium.jcd.cls.IMethodCollection;
+import com.vladium.jcd.cls.Method_info;
+import com.vladium.jcd.cls.attribute.Attribute_info;
+import com.vladium.jcd.cls.attribute.CodeAttribute_info;
+import com.vladium.util.Descriptors;
+import com.vladium.emma.IAppConstants;
+import com.vladium.emma.data.ClassDescriptor;
+import com.vladium.emma.data.IMetadataConstants;
+import com.vladium.emma.data.MethodDescriptor;
+
+// ----------------------------------------------------------------------------
+/**
+ * Instrumentation cost report created by the 'dryrun' instr output mode. The
+ * report is a tab-separated text file with one 'class' record per instrumented
+ * class followed by one 'method' record per method with bytecode:
+ * <PRE>
+ *  #record  class  method  descriptor  probes  size  instr_size  growth  flags
+ * </PRE>
+ * For class records the sizes are class file sizes and 'probes' is the total
+ * for the class; for method records the sizes are bytecode sizes. 'flags' is
+ * a comma-separated [possibly empty] list of:
+ * <UL>
+ *  <LI> max_inline_size: instrumentation pushed the method over HotSpot's
+ *       default MaxInlineSize [35 bytes]
+ *  <LI> freq_inline_size: same for the default FreqInlineSize [325 bytes]
+ *  <LI> huge_method_limit: same for HugeMethodLimit [8000 bytes, larger
+ *       methods are not JIT-compiled by default]
+ *  <LI> near_code_limit: the instrumented method is within 10% of the 64K
+ *       method code size limit
+ *  <LI> excluded: the method was left uninstrumented [synthetic, bridge, or
+ *       hot method]
+ *  <LI> added: the method was added by instrumentation
+ * </UL>
+ * 
+ * @author Vlad Roubtsov, (C) 2003
+ */
+final class InstrCostReport
+{
+    // public: ................................................................
+    
+    // protected: .............................................................
+    
+    // package: ...............................................................
+    
+    
+    static final int MAX_INLINE_SIZE    = 35;
+    static final int FREQ_INLINE_SIZE   = 325;
+    static final int HUGE_METHOD_LIMIT  = 8000;
+    static final int MAX_CODE_SIZE      = 65535;
+    static final int NEAR_CODE_LIMIT    = MAX_CODE_SIZE - MAX_CODE_SIZE / 10;
+    
+    
+    /*
+     * @param file report file [may not be null; overwritten if it exists]
+     */
+    InstrCostReport (final File file)
+        throws IOException
+    {
+        if (file == null) throw new IllegalArgumentException ("null input: file");
+        
+        m_file = file;
+        m_out = new BufferedWriter (new OutputStreamWriter (new FileOutputStream (file), "UTF-8"), IO_BUF_SIZE);
+        
+        m_out.write ("# " + IAppConstants.APP_NAME + " instrumentation cost report [v" + IAppConstants.APP_VERSION_WITH_BUILD_ID_AND_TAG + "]");
+        m_out.write (EOL);
+        m_out.write ("#record\tclass\tmethod\tdescriptor\tprobes\tsize\tinstr_size\tgrowth\tflags");
+        m_out.write (EOL);
+    }
+    
+    /*
+     * Must be called before 'cls' is instrumented.
+     *
+     * @param classSize original class file size [in bytes]
+     */
+    void beginClass (final ClassDef cls, final int classSize)
+    {
+        final IMethodCollection methods = cls.getMethods ();
+        
+        final int [] codeSizes = new int [methods.size ()];
+        for (int m = 0; m < codeSizes.length; ++ m)
+        {
+            codeSizes [m] = getCodeSize (methods.get (m));
+        }
+        
+        m_codeSizes = codeSizes;
+        m_classSize = classSize;
+    }
+    
+    /*
+     * Adds records for 'cls' [as instrumented] to the report.
+     *
+     * @param descriptor metadata for 'cls' [may not be null]
+     * @param instrClassSize instrumented class file size [in bytes]
+     */
+    void endClass (final ClassDef cls, final ClassDescriptor descriptor, final int instrClassSize)
+        throws IOException
+    {
+        final int [] codeSizes = m_codeSizes;
+        if (codeSizes == null) throw new IllegalStateException ("endClass() without beginClass()");
+        m_codeSizes = null;
+        
+        final String className = Descriptors.vmNameToJavaName (cls.getName ());
+        final MethodDescriptor [] methodDescriptors = descriptor.getMethods ();
+        final IMethodCollection methods = cls.getMethods ();
+        
+        final StringBuffer records = new StringBuffer ();
+        int classProbes = 0;
+        
+        for (int m = 0, mLimit = methods.size (); m < mLimit; ++ m)
+        {
+            final Method_info method = methods.get (m);
+            
+            final int instrSize = getCodeSize (method);
+            if (instrSize < 0) continue; // abstract or native
+            
+            final boolean added = (m >= codeSizes.length);
+            final int size = added ? 0 : codeSizes [m];
+            
+            int probes = 0;
+            boolean excluded = false;
+            
+            if ((! added) && (m < methodDescriptors.length))
+            {
+                final int status = methodDescriptors [m].getStatus ();
+                
+                if ((status & IMetadataConstants.METHOD_NO_BLOCK_DATA) == 0)
+                    probes = methodDescriptors [m].getBlockCount ();
+                else
+                    excluded = ((status & IMetadataConstants.METHOD_EXCLUDED) != 0);
+            }
+            classProbes += probes;
+            
+            // [methods added by instrumentation cannot cross any limits]
+            final boolean maxInline = ! added && crosses (size, instrSize, MAX_INLINE_SIZE);
+            final boolean freqInline = ! added && crosses (size, instrSize, FREQ_INLINE_SIZE);
+            final boolean huge = ! added && crosses (size, instrSize, HUGE_METHOD_LIMIT);
+            
+            final StringBuffer flags = new StringBuffer ();
+            {
+                if (maxInline) appendFlag (flags, "max_inline_size");
+                if (freqInline) appendFlag (flags, "freq_inline_size");
+                if (huge) appendFlag (flags, "huge_method_limit");
+                if (instrSize >= NEAR_CODE_LIMIT) appendFlag (flags, "near_code_limit");
+                if (excluded) appendFlag (flags, "excluded");
+                if (added) appendFlag (flags, "added");
+            }
+            
+            if (maxInline || freqInline)
+                ++ m_inliningLimitMethodCount;
+            if (instrSize >= NEAR_CODE_LIMIT)
+                ++ m_codeLimitMethodCount;
+            ++ m_methodCount;
+            
+            appendRecord (records, "method", className, method.getName (cls), method.getDescriptor (cls),
+                          probes, size, instrSize, flags.toString ());
+        }
+        
+        final StringBuffer classRecord = new StringBuffer ();
+        appendRecord (classRecord, "class", className, "", "", classProbes, m_classSize, instrClassSize, "");
+        
+        m_out.write (classRecord.toString ());
+        m_out.write (records.toString ());
+        
+        ++ m_classCount;
+        m_probeCount += classProbes;
+    }
+    
+    void close ()
+        throws IOException
+    {
+        m_out.close ();
+    }
+    
+    File getFile ()
+    {
+        return m_file;
+    }
+    
+    int getClassCount ()
+    {
+        return m_classCount;
+    }
+    
+    int getMethodCount ()
+    {
+        return m_methodCount;
+    }
+    
+    long getProbeCount ()
+    {
+        return m_probeCount;
+    }
+    
+    /*
+     * @return number of methods pushed over an inlining size limit by instrumentation
+     */
+    int getInliningLimitMethodCount ()
+    {
+        return m_inliningLimitMethodCount;
+    }
+    
+    /*
+     * @return number of instrumented methods near the code size limit
+     */
+    int getCodeLimitMethodCount ()
+    {
+        return m_codeLimitMethodCount;
+    }
+    
+    // private: ...............................................................
+    
+    
+    /*
+     * @return bytecode size of 'method' [-1 if the method has no code]
+     */
+    private static int getCodeSize (final Method_info method)
+    {
+        final IAttributeCollection attributes = method.getAttributes ();
+        for (int a = 0, aLimit = attributes.size (); a < aLimit; ++ a)
+        {
+            final Attribute_info attribute = attributes.get (a);
+            
+            if (attribute instanceof CodeAttribute_info)
+                return ((CodeAttribute_info) attribute).getCodeSize ();
+        }
+        
+        return -1;
+    }
+    
+    private static boolean crosses (final int size, final int instrSize, final int limit)
+    {
+        return (size <= limit) && (instrSize > limit);
+    }
+    
+    private static void appendFlag (final StringBuffer flags, final String flag)
+    {
+        if (flags.length () > 0) flags.append (',');
+        flags.append (flag);
+    }
+    
+    private static void appendRecord (final StringBuffer out, final String record, final String className,
+                                      final String methodName, final String descriptor,
+                                      final int probes, final int size, final int instrSize, final String flags)
+    {
+        out.append (record).append ('\t');
+        out.append (className).append ('\t');
+        out.append (methodName).append ('\t');
+        out.append (descriptor).append ('\t');
+        out.append (probes).append ('\t');
+        out.append (size).append ('\t');
+        out.append (instrSize).append ('\t');
+        out.append (instrSize - size).append ('\t');
+        out.append (flags);
+        out.append (EOL);
+    }
+    
+    
+    private final File m_file;
+    private final Writer m_out;
+    
+    private int [] m_codeSizes; // original method code sizes for the current class [-1 for no code]
+    private int m_classSize;
+    
+    private int m_classCount, m_methodCount;
+    private long m_probeCount;
+    private int m_inliningLimitMethodCount, m_codeLimitMethodCount;
+    
+    private static final String EOL = "\n"; // fixed for machine consumption
+    private static final int IO_BUF_SIZE = 32 * 1024;
+
+} // end of class
+// ----------------------------------------------------------------------------
@@ -34,11 +34,27 @@ abstract class InstrProcessor extends Processor
     public static final String PROPERTY_EXCLUDE_SYNTHETIC_METHODS   = "instr.exclude_synthetic_methods";
     public static final String PROPERTY_EXCLUDE_BRIDGE_METHODS      = "instr.exclude_bridge_methods";
     public static final String PROPERTY_DO_SUID_COMPENSATION        = "instr.do_suid_compensation";
+    public static final String PROPERTY_COMPACT_PROBES              = "instr.compact_probes";
+    public static final String PROPERTY_FLAT_PROBES                 = "instr.flat_probes";
     
     public static final String DEFAULT_EXCLUDE_EMPTY_CLASSES        = "true";
     public static final String DEFAULT_EXCLUDE_SYNTHETIC_METHODS    = "true";
     public static final String DEFAULT_EXCLUDE_BRIDGE_METHODS       = "true";
     public static final String DEFAULT_DO_SUID_COMPENSATION         = "true";
+    public static final String DEFAULT_COMPACT_PROBES               = "false";
+    public static final String DEFAULT_FLAT_PROBES                  = "false";
+    
+    // [see HotMethodProfile; no profile means no hot method exclusion]
+    public static final String PROPERTY_HOT_METHODS_PROFILE         = "instr.hot_methods.profile";
+    public static final String PROPERTY_HOT_METHODS_MAX_SIZE        = "instr.hot_methods.max_size";
+    public static final String PROPERTY_HOT_METHODS_MIN_COUNT       = "instr.hot_methods.min_count";
+    
+    public static final int DEFAULT_HOT_METHODS_MAX_SIZE            = 35; // HotSpot's default MaxInlineSize
+    public static final int DEFAULT_HOT_METHODS_MIN_COUNT           = 10000;
+    
+    // [see InstrCostReport; only used in 'dryrun' output mode]
+    public static final String PROPERTY_COST_OUT_FILE               = "instr.cost.out.file";
+    public static final String DEFAULT_COST_OUT_FILE                = "instr-cost.txt";
     
     /**
      * Factory method for this processor.
@@ -161,7 +177,7 @@ abstract class InstrProcessor extends Processor
         if (m_outMode == null)
             throw new IllegalStateException ("output mode not set");
         
-        if (m_outMode != OutMode.OUT_MODE_OVERWRITE)
+        if ((m_outMode != OutMode.OUT_MODE_OVERWRITE) && (m_outMode != OutMode.OUT_MODE_DRYRUN))
         { 
             if (m_outDir == null)
                 throw new IllegalStateException ("output directory not set");
@@ -262,7 +278,7 @@ abstract class InstrProcessor extends Processor
     protected boolean m_canonical;
     protected IInclExclFilter m_coverageFilter; // can be null for run()
     protected OutMode m_outMode; // required to be set for run()
-    protected File m_outDir; // required to be non-null for run(), unless output mode is 'overwrite'
+    protected File m_outDir; // required to be non-null for run(), unless output mode is 'overwrite' or 'dryrun'
     protected File m_mdataOutFile; // user override; can be null for run()
     protected Boolean m_mdataOutMerge; // user override; can be null for run()
     
@@ -283,6 +299,7 @@ abstract class InstrProcessor extends Processor
         public static final OutMode OUT_MODE_COPY = new OutMode ("copy");
         public static final OutMode OUT_MODE_FULLCOPY = new OutMode ("fullcopy");
         public static final OutMode OUT_MODE_OVERWRITE = new OutMode ("overwrite");
+        public static final OutMode OUT_MODE_DRYRUN = new OutMode ("dryrun"); // instrument in memory and report the cost only
         
         public String getName ()
         {
@@ -302,6 +319,8 @@ abstract class InstrProcessor extends Processor
                 return OUT_MODE_FULLCOPY;
             else if (OUT_MODE_OVERWRITE.m_name.equals (name))
                 return OUT_MODE_OVERWRITE;
+            else if (OUT_MODE_DRYRUN.m_name.equals (name))
+                return OUT_MODE_DRYRUN;
             
             return null;
         }
@@ -156,6 +156,7 @@ final class InstrProcessorST extends InstrProcessor
         final String lcName = name.toLowerCase ();
 
         final boolean notcopymode = (m_outMode == OutMode.OUT_MODE_FULLCOPY) || (m_outMode == OutMode.OUT_MODE_OVERWRITE);
+        final boolean dryrunmode = (m_outMode == OutMode.OUT_MODE_DRYRUN);
         
         boolean copyEntry = false;
 
@@ -216,11 +217,18 @@ final class InstrProcessorST extends InstrProcessor
                         }
                     }
                     
+                    // in dry run mode, report each class name only once:
+                    
+                    if (dryrunmode && m_mdata.hasDescriptor (Descriptors.javaNameToVMName (className)))
+                        return;
+                    
                     readZipEntry (in, entry);
                     
                     final ClassDef clsDef = ClassDefParser.parseClass (m_readbuf, m_readpos);
                     
-                    m_visitor.process (clsDef, m_outMode == OutMode.OUT_MODE_OVERWRITE, true, true, m_instrResult);
+                    if (dryrunmode) m_costReport.beginClass (clsDef, m_readpos);
+                    
+                    m_visitor.process (clsDef, (m_outMode == OutMode.OUT_MODE_OVERWRITE) || dryrunmode, true, true, m_instrResult);
                     if (m_instrResult.m_instrumented)
                     {
                         if ($assert.ENABLED) $assert.ASSERT (m_instrResult.m_descriptor != null, "no descriptor created for an instrumented class");
@@ -236,7 +244,13 @@ final class InstrProcessorST extends InstrProcessor
                         m_baos.reset ();
                         ClassWriter.writeClassTable (clsDef, m_baos);
                         
-                        if (notcopymode)
+                        if (dryrunmode)
+                        {
+                            // [nothing is written: only measure the instrumented class]
+                            
+                            m_costReport.endClass (clsDef, m_instrResult.m_descriptor, m_baos.size ());
+                        }
+                        else if (notcopymode)
                         {
                             // [destination is a zip entry]
                             
@@ -408,6 +422,7 @@ final class InstrProcessorST extends InstrProcessor
         final String lcName = name.toLowerCase ();
 
         final boolean fullcopymode = (m_outMode == OutMode.OUT_MODE_FULLCOPY);
+        final boolean dryrunmode = (m_outMode == OutMode.OUT_MODE_DRYRUN);
         final boolean mkdir = (m_outMode == OutMode.OUT_MODE_COPY);
         
 
@@ -433,7 +448,7 @@ final class InstrProcessorST extends InstrProcessor
                 try
                 {
                     final File inFile = Files.newFile (pathDir, file.getPath ());
-                    final File fullOutFile = getFullOutFile (pathDir, file, IN_CLASSES);
+                    final File fullOutFile = dryrunmode ? null : getFullOutFile (pathDir, file, IN_CLASSES);
                     
                     if (DO_DEPENDS_CHECKING)
                     {
@@ -463,12 +478,19 @@ final class InstrProcessorST extends InstrProcessor
                         }
                     }
                     
+                    // in dry run mode, report each class name only once:
+                    
+                    if (dryrunmode && m_mdata.hasDescriptor (Descriptors.javaNameToVMName (className)))
+                        return;
+                    
                     readFile (inFile);
                     
                     ClassDef clsDef = ClassDefParser.parseClass (m_readbuf, m_readpos);
 
-                    // in non-overwrite modes, bail if src file already instrumented:
-                    m_visitor.process (clsDef, m_outMode == OutMode.OUT_MODE_OVERWRITE, true, true, m_instrResult);
+                    if (dryrunmode) m_costReport.beginClass (clsDef, m_readpos);
+                    
+                    // in copy modes, bail if src file already instrumented:
+                    m_visitor.process (clsDef, (m_outMode == OutMode.OUT_MODE_OVERWRITE) || dryrunmode, true, true, m_instrResult);
                     if (m_instrResult.m_instrumented)
                     {
                         if ($assert.ENABLED) $assert.ASSERT (m_instrResult.m_descriptor != null, "no descriptor created for an instrumented class");
@@ -487,11 +509,22 @@ final class InstrProcessorST extends InstrProcessor
                         
                         m_baos.reset ();
                         ClassWriter.writeClassTable (clsDef, m_baos);
-                        clsDef = null;
                                                 
-                        final byte [] outdata = m_baos.copyByteArray ();
+                        if (dryrunmode)
+                        {
+                            // [nothing is written: only measure the instrumented class]
                         
-                        addJob (new FileWriteJob (fullOutFile, outdata, mkdir));
+                            m_costReport.endClass (clsDef, m_instrResult.m_descriptor, m_baos.size ());
+                            clsDef = null;
+                        }
+                        else
+                        {
+                            clsDef = null;
+                            
+                            final byte [] outdata = m_baos.copyByteArray ();
+                            
+                            addJob (new FileWriteJob (fullOutFile, outdata, mkdir));
+                        }
                     }   
                     else if (fullcopymode)
                     {
@@ -615,6 +648,12 @@ final class InstrProcessorST extends InstrProcessor
         m_origArchiveFile = null;
         m_tempArchiveFile = null;
         
+        if (m_costReport != null)
+        {
+            try { m_costReport.close (); } catch (Exception ignore) {}
+            m_costReport = null;
+        }
+        
         super.reset ();
     }
     
@@ -658,7 +697,7 @@ final class InstrProcessorST extends InstrProcessor
             
             // create out dir(s):
             {
-                if (m_outMode != OutMode.OUT_MODE_OVERWRITE) createDir (m_outDir, true);
+                if ((m_outMode != OutMode.OUT_MODE_OVERWRITE) && (m_outMode != OutMode.OUT_MODE_DRYRUN)) createDir (m_outDir, true);
                 
                 if ((m_outMode == OutMode.OUT_MODE_FULLCOPY))
                 {
@@ -707,8 +746,53 @@ final class InstrProcessorST extends InstrProcessor
             final CoverageOptions options = CoverageOptionsFactory.create (toolProperties);            
             m_visitor = new InstrVisitor (options); // TODO: reuse this?
             
+            // load the hot method profile, if any:
+            {
+                final String profile = toolProperties.getProperty (PROPERTY_HOT_METHODS_PROFILE);
+                if ((profile != null) && (profile.trim ().length () > 0))
+                {
+                    final File profileFile = new File (profile.trim ());
+                    
+                    final int maxSize = Property.toInt (toolProperties.getProperty (PROPERTY_HOT_METHODS_MAX_SIZE), DEFAULT_HOT_METHODS_MAX_SIZE);
+                    final int minCount = Property.toInt (toolProperties.getProperty (PROPERTY_HOT_METHODS_MIN_COUNT), DEFAULT_HOT_METHODS_MIN_COUNT);
+                    
+                    final HotMethodProfile hotMethods;
+                    try
+                    {
+                        hotMethods = HotMethodProfile.load (profileFile, maxSize, minCount);
+                    }
+                    catch (IOException ioe)
+                    {
+                        throw new EMMARuntimeException (ARGS_IO_FAILURE, ioe);
+                    }
+                    
+                    m_visitor.setHotMethodProfile (hotMethods);
+                    
+                    if (verbose)
+                    {
+                        log.verbose ("hot method profile [" + profileFile.getAbsolutePath () + "]: " + hotMethods.size () + " method(s) with count >= " + minCount + ", max size " + maxSize + " bytes");
+                    }
+                }
+            }
+            
             m_mdata = DataFactory.newMetaData (options);
             
+            // in dry run mode, the cost report replaces all other output:
+            if (m_outMode == OutMode.OUT_MODE_DRYRUN)
+            {
+                final File costOutFile = new File (toolProperties.getProperty (PROPERTY_COST_OUT_FILE, DEFAULT_COST_OUT_FILE));
+                try
+                {
+                    m_costReport = new InstrCostReport (costOutFile);
+                }
+                catch (IOException ioe)
+                {
+                    throw new EMMARuntimeException (OUT_IO_FAILURE, new Object [] {costOutFile.getAbsolutePath ()}, ioe);
+                }
+                
+                if (verbose) log.verbose ("instrumentation cost output file: " + costOutFile.getAbsolutePath ());
+            }
+            
             // actual work is driven by the path enumerator:
             try
             {
@@ -726,6 +810,33 @@ final class InstrProcessorST extends InstrProcessor
                 
                 log.info ("instrumentation path processed in " + (end - start) + " ms");
                 log.info ("[" + m_classInstrs + " class(es) instrumented, " + m_classCopies + " resource(s) copied]");
+                
+                final int hotMethodCount = m_visitor.getHotMethodCount ();
+                if (hotMethodCount > 0) log.info ("[" + hotMethodCount + " hot method(s) left uninstrumented]");
+            }
+            
+            if (m_costReport != null)
+            {
+                final InstrCostReport costReport = m_costReport;
+                try
+                {
+                    costReport.close ();
+                    m_costReport = null;
+                }
+                catch (IOException ioe)
+                {
+                    throw new EMMARuntimeException (OUT_IO_FAILURE, new Object [] {costReport.getFile ().getAbsolutePath ()}, ioe);
+                }
+                
+                if (log.atINFO ())
+                {
+                    log.info ("[" + costReport.getProbeCount () + " probe(s) in " + costReport.getMethodCount () + " method(s), "
+                        + costReport.getInliningLimitMethodCount () + " method(s) pushed over JIT inlining size limits, "
+                        + costReport.getCodeLimitMethodCount () + " method(s) near the method code size limit]");
+                    log.info ("instrumentation cost written to [" + costReport.getFile ().getAbsolutePath () + "] {dry run: no other output created}");
+                }
+                
+                return; // no metadata in dry run mode
             }
             
             // persist metadata:
@@ -1030,6 +1141,7 @@ final class InstrProcessorST extends InstrProcessor
     private File m_origArchiveFile, m_tempArchiveFile;
     private JarOutputStream m_archiveOut;
     private long m_timeStamp;
+    private InstrCostReport m_costReport; // only used in dry run mode
     
     
     private static final int BUF_SIZE = 32 * 1024;
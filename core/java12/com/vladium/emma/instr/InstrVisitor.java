@@ -62,10 +62,35 @@ final class InstrVisitor extends AbstractClassDefVisitor
         m_excludeSyntheticMethods = options.excludeSyntheticMethods ();
         m_excludeBridgeMethods = options.excludeBridgeMethods ();
         m_doSUIDCompensation = options.doSUIDCompensation ();
+        m_compactProbes = options.compactProbes ();
+        m_flatProbes = options.flatProbes ();
+        
+        m_coverageDescriptor = m_flatProbes ? "[Z" : "[[Z";
         
         m_log = Logger.getLogger ();
     }
     
+    /**
+     * Sets the profile used to leave small hot methods uninstrumented. Such
+     * methods get {@link IMetadataConstants#METHOD_EXCLUDED} and
+     * {@link IMetadataConstants#METHOD_HOT} status in the metadata.
+     * 
+     * @param profile [null disables hot method exclusion]
+     */
+    public void setHotMethodProfile (final HotMethodProfile profile)
+    {
+        m_hotMethodProfile = profile;
+    }
+    
+    /**
+     * @return number of methods left uninstrumented because of the hot
+     * method profile so far [over the lifetime of this visitor]
+     */
+    public int getHotMethodCount ()
+    {
+        return m_hotMethodCount;
+    }
+    
     /**
      * Analyzes 'cls' and/or instruments it for coverage:
      * <ul>
@@ -93,6 +118,24 @@ final class InstrVisitor extends AbstractClassDefVisitor
                          final boolean ignoreAlreadyInstrumented,
                          final boolean instrument, final boolean metadata,
                          final InstrResult out)
+    {
+        process (cls, ignoreAlreadyInstrumented, instrument, true, metadata, out);
+    }
+    
+    /**
+     * Same as {@link #process(ClassDef, boolean, boolean, boolean, InstrResult)}
+     * with an additional 'probes' control. If 'probes' is false, an instrumented
+     * class gets exactly the same structure [added fields, methods, and
+     * &lt;clinit&gt; registration code] as it would otherwise, but no coverage
+     * probes are inserted into its other methods. This is used to retire the
+     * probes of fully covered classes via JVM class retransformation, which
+     * cannot change the set of fields and methods of a loaded class.
+     */
+    public void process (final ClassDef cls,
+                         final boolean ignoreAlreadyInstrumented,
+                         final boolean instrument, final boolean probes,
+                         final boolean metadata,
+                         final InstrResult out)
     {
         out.m_instrumented = false;
         out.m_descriptor = null;
@@ -110,6 +153,7 @@ final class InstrVisitor extends AbstractClassDefVisitor
             // TODO: handle classes that cannot be instrumented due to bytecode/JVM limitations
             
             m_instrument = instrument;
+            m_probes = probes;
             m_metadata = metadata;
             m_ignoreAlreadyInstrumented = ignoreAlreadyInstrumented;
             
@@ -211,7 +255,7 @@ final class InstrVisitor extends AbstractClassDefVisitor
             // needs attention at metadata/report generation level
             
             final int coverageFieldOffset;
-            final String fieldDescriptor = "[[Z";
+            final String fieldDescriptor = m_coverageDescriptor;
             
             // note that post-4019 builds can modify this field outside of <clinit> (although
             // it can only happen as part of initializing a set of classes); however, it is legal
@@ -247,7 +291,9 @@ final class InstrVisitor extends AbstractClassDefVisitor
             final int class_index = cls.addClassref (classJVMName);
             
             // NOTE: keep this descriptor in sync with the actual signature
-            final String methodDescriptor = "([[ZLjava/lang/String;J)V";
+            final String methodDescriptor = m_flatProbes
+                ? "([ZLjava/lang/String;Ljava/lang/String;J)V"
+                : "([[ZLjava/lang/String;J)V";
             final int nametype_index = cls.addNameType ("r", methodDescriptor);
             
             m_registerMethodrefIndex = constants.add (new CONSTANT_Methodref_info (class_index, nametype_index));
@@ -259,12 +305,26 @@ final class InstrVisitor extends AbstractClassDefVisitor
         // add a Methodref for pre-<clinit> method:
         {
             // NOTE: keep this descriptor in sync with the actual signature
-            final String methodDescriptor = "()[[Z";
+            final String methodDescriptor = "()" + m_coverageDescriptor;
             final int nametype_index = cls.addNameType (PRECLINIT_METHOD_NAME, methodDescriptor);
             
             m_preclinitMethodrefIndex = constants.add (new CONSTANT_Methodref_info (cls.getThisClassIndex (), nametype_index));
         }
         
+        // in compact probe mode, method headers load COVERAGE_FIELD via a
+        // [trivially inlinable] accessor method instead of doing the null
+        // check and the pre-<clinit> call inline:
+        
+        // add a Methodref for the coverage field accessor method:
+        if (m_compactProbes)
+        {
+            // NOTE: keep this descriptor in sync with the actual signature
+            final String methodDescriptor = "()" + m_coverageDescriptor;
+            final int nametype_index = cls.addNameType (ACCESSOR_METHOD_NAME, methodDescriptor);
+            
+            m_accessorMethodrefIndex = constants.add (new CONSTANT_Methodref_info (cls.getThisClassIndex (), nametype_index));
+        }
+        
         // add a CONSTANT_String that corresponds to the class name [in JVM format]:
         {
             m_classNameConstantIndex = constants.add (new CONSTANT_String_info (cls.getThisClass ().m_name_index));
@@ -406,7 +466,7 @@ final class InstrVisitor extends AbstractClassDefVisitor
                         
             // TODO: research whether synthetic methods add nontrivially to line coverage or not
             
-            boolean excluded = false;
+            boolean excluded = false, hot = false;
             
             if (! isClinit)
             {
@@ -420,13 +480,22 @@ final class InstrVisitor extends AbstractClassDefVisitor
                     excluded = true;
                     if (trace2) m_log.trace2 ("visit", "skipped bridge method");
                 } 
+                else if ((m_hotMethodProfile != null) && isHotMethod (method))
+                {
+                    excluded = true;
+                    hot = true;
+                    ++ m_hotMethodCount;
+                    if (trace2) m_log.trace2 ("visit", "skipped hot method");
+                }
             }
             
             if (excluded)
             {
                 if (constructMetadata)
                 {
-                    m_classMethodDescriptors [m] = new MethodDescriptor (m_methodName, method.getDescriptor (cls), IMetadataConstants.METHOD_EXCLUDED, m_methodBlockSizes, null, 0);
+                    final int status = hot ? IMetadataConstants.METHOD_EXCLUDED | IMetadataConstants.METHOD_HOT : IMetadataConstants.METHOD_EXCLUDED;
+                    
+                    m_classMethodDescriptors [m] = new MethodDescriptor (m_methodName, method.getDescriptor (cls), status, m_methodBlockSizes, null, 0);
                 }
             }
             else
@@ -560,7 +629,7 @@ final class InstrVisitor extends AbstractClassDefVisitor
         {
             final int attribute_name_index = cls.addCONSTANT_Utf8 (Attribute_info.ATTRIBUTE_CODE, true);
             final int name_index = cls.addCONSTANT_Utf8 (PRECLINIT_METHOD_NAME, false);
-            final int descriptor_index = cls.addCONSTANT_Utf8 ("()[[Z", false);
+            final int descriptor_index = cls.addCONSTANT_Utf8 ("()" + m_coverageDescriptor, false);
             
             final IAttributeCollection attributes;
             
@@ -579,17 +648,31 @@ final class InstrVisitor extends AbstractClassDefVisitor
                 
                 // new and set COVERAGE_FIELD:
                 
-                // push first dimension:
-                CodeGen.push_int_value (buf, cls, instrMethodCount);
+                if (m_flatProbes)
+                {
+                    // push array length:
+                    CodeGen.push_int_value (buf, cls, m_classProbeCount);
+                    
+                    // [stack +1]
+                    
+                    // newarray boolean []:
+                    buf.write2 (_newarray,
+                                4); // "T_BOOLEAN"
+                }
+                else
+                {
+                    // push first dimension:
+                    CodeGen.push_int_value (buf, cls, instrMethodCount);
                 
-                // [stack +1]
+                    // [stack +1]
                 
-                // new boolean [][]:
-                final int type_index = cls.addClassref ("[[Z");
-                buf.write4 (_multianewarray,
-                            type_index >>> 8,    // indexbyte1
-                            type_index,          // indexbyte2
-                            1); // only one dimension created here
+                    // new boolean [][]:
+                    final int type_index = cls.addClassref ("[[Z");
+                    buf.write4 (_multianewarray,
+                                type_index >>> 8,    // indexbyte1
+                                type_index,          // indexbyte2
+                                1); // only one dimension created here
+                }
                 
                 // [stack +1]
                 
@@ -605,7 +688,8 @@ final class InstrVisitor extends AbstractClassDefVisitor
                 
                 // [stack +1]
                 
-                for (int m = 0; m < instrMethodCount; ++ m)
+                final int subarrayCount = m_flatProbes ? 0 : instrMethodCount; // no subarrays in flat probe mode
+                for (int m = 0; m < subarrayCount; ++ m)
                 {
                     final int blockCount = blockCounts [m]; 
                     if (blockCount > 0)
@@ -644,15 +728,26 @@ final class InstrVisitor extends AbstractClassDefVisitor
                     
                     // [stack +2]
                     
+                    if (m_flatProbes)
+                    {
+                        // the layout string is the method slot count followed by
+                        // [method slot, block count] pairs in array order:
+                        
+                        m_classProbeLayout.insert (0, (char) instrMethodCount);
+                        CodeGen.push_constant_index (buf, cls.addStringConstant (m_classProbeLayout.toString ()));
+                        
+                        // [stack +3]
+                    }
+                    
                     CodeGen.push_constant_index (buf, m_classNameConstantIndex);
                     
-                    // [stack +3]
+                    // [stack +3, +4 in flat probe mode]
 
                     buf.write3 (_ldc2_w,
                                 m_stampIndex >>> 8,    // indexbyte1
                                 m_stampIndex);         // indexbyte2
                     
-                    // [stack +5]
+                    // [stack +5, +6 in flat probe mode]
                     
                     buf.write3 (_invokestatic,
                                 m_registerMethodrefIndex >>> 8,    // indexbyte1
@@ -668,7 +763,7 @@ final class InstrVisitor extends AbstractClassDefVisitor
             }
 
             final CodeAttribute_info code = new CodeAttribute_info (attribute_name_index,
-                5, 0, // adjust constants if the bytecode emitted above changes
+                m_flatProbes ? 6 : 5, 0, // adjust constants if the bytecode emitted above changes
                 EMPTY_BYTE_ARRAY,
                 AttributeElementFactory.newExceptionHandlerTable (0),
                 ElementFactory.newAttributeCollection (0));
@@ -688,6 +783,76 @@ final class InstrVisitor extends AbstractClassDefVisitor
             if (trace2) m_log.trace2 ("visit", "added synthetic pre-<clinit> method");
         }
 
+        // add coverage field accessor method [it is added even if no method
+        // header uses it to keep the class structure independent of 'm_probes']:
+        
+        if (m_compactProbes)
+        {
+            final int attribute_name_index = cls.addCONSTANT_Utf8 (Attribute_info.ATTRIBUTE_CODE, true);
+            final int name_index = cls.addCONSTANT_Utf8 (ACCESSOR_METHOD_NAME, false);
+            final int descriptor_index = cls.addCONSTANT_Utf8 ("()" + m_coverageDescriptor, false);
+            
+            final IAttributeCollection attributes;
+            
+            if (MARK_ADDED_ELEMENTS_SYNTHETIC)
+                attributes = ElementFactory.newAttributeCollection (2);
+            else
+                attributes = ElementFactory.newAttributeCollection (1);
+            
+            final ByteArrayOStream buf = new ByteArrayOStream (16);
+            {
+                // push ref to the static field and dup it:
+                buf.write4 (_getstatic,
+                            m_coverageFieldrefIndex >>> 8, // indexbyte1
+                            m_coverageFieldrefIndex,       // indexbyte2
+                            _dup);
+                
+                // [stack +2]
+                
+                // SF FR 971186: same as in methodHeader
+                
+                buf.write3 (_ifnonnull, // skip over pre-<clinit> method call
+                            0,
+                            3 + /* size of the block below */ 4);
+                
+                // [stack +1]
+                
+                // block: call pre-<clinit> method
+                {
+                    buf.write4 (_pop,
+                                _invokestatic,
+                                m_preclinitMethodrefIndex >>> 8,    // indexbyte1
+                                m_preclinitMethodrefIndex);         // indexbyte2
+                    
+                    // [stack +1]
+                }
+                
+                buf.write (_areturn);
+                
+                // [stack +0]
+            }
+            
+            final CodeAttribute_info code = new CodeAttribute_info (attribute_name_index,
+                2, 0, // adjust constants if the bytecode emitted above changes
+                EMPTY_BYTE_ARRAY,
+                AttributeElementFactory.newExceptionHandlerTable (0),
+                ElementFactory.newAttributeCollection (0));
+            
+            code.setCode (buf.getByteArray (), buf.size ());
+            
+            attributes.add (code);
+            
+            if (MARK_ADDED_ELEMENTS_SYNTHETIC)
+            {
+                attributes.add (new SyntheticAttribute_info (m_syntheticStringIndex));
+            }
+            
+            final Method_info accessor = new Method_info (IAccessFlags.ACC_STATIC | IAccessFlags.ACC_PRIVATE, name_index, descriptor_index, attributes);
+            cls.addMethod (accessor);
+            
+            if (trace2) m_log.trace2 ("visit", "added synthetic coverage field accessor method");
+        }
+        
         
         if (constructMetadata)
         {
@@ -1080,12 +1245,26 @@ final class InstrVisitor extends AbstractClassDefVisitor
         // update block count map [used later by <clinit> visit]:
         m_classBlockCounts [m_methodID] = blockCount;
         
+        // in flat probe mode, methods get consecutive slices of the class
+        // coverage array in the order in which they are visited:
+        if (m_flatProbes)
+        {
+            m_methodProbeOffset = m_classProbeCount;
+            m_classProbeCount += blockCount;
+            
+            m_classProbeLayout.append ((char) m_methodID).append ((char) blockCount);
+        }
+        
         // actual basic block instrumentation:
         {
             if (trace2) m_log.trace2 ("visit", "instrumenting... ");
             
+            // in compact probe mode, a single block method does not need a
+            // header: its only probe loads its coverage subarray directly
+            final boolean singleBlockProbe = m_compactProbes && m_probes && (blockCount == 1) && (m_methodID != m_clinitID);
+            
             // determine the local var index for the var that will alias COVERAGE_FIELD:
-            final int localVarIndex = attribute.m_max_locals ++;
+            final int localVarIndex = singleBlockProbe ? -1 : attribute.m_max_locals ++;
             
             if (m_methodID == m_clinitID) // note: m_clinitID can be -1 if <clinit> has not been visited yet
             {
@@ -1095,22 +1274,33 @@ final class InstrVisitor extends AbstractClassDefVisitor
                 
                 blocks.m_header = new clinitHeader (this, localVarIndex);
             }
+            else if (! m_probes)
+                blocks.m_header = EMPTY_HEADER; // retired: leave the original method body as is
+            else if (singleBlockProbe)
+                blocks.m_header = EMPTY_HEADER;
+            else if (m_compactProbes)
+                blocks.m_header = new compactMethodHeader (this, localVarIndex);
             else
                 blocks.m_header = new methodHeader (this, localVarIndex);
             
             int headerMaxStack = blocks.m_header.maxstack ();
             int methodMaxStack = 0;
             
-            for (int l = 0; l < blockCount; ++ l)
+            if ((blocks.m_header != EMPTY_HEADER) || singleBlockProbe)
             {
-                final Block block = _blocks [l];
+                for (int l = 0; l < blockCount; ++ l)
+                {
+                    final Block block = _blocks [l];
                 
-                final CodeSegment insertion = new BlockSegment (this, localVarIndex, l);
-                block.m_insertion = insertion;
+                    final CodeSegment insertion = singleBlockProbe
+                        ? (CodeSegment) new singleBlockSegment (this)
+                        : new BlockSegment (this, localVarIndex, m_flatProbes ? m_methodProbeOffset + l : l);
+                    block.m_insertion = insertion;
                 
-                final int insertionMaxStack = insertion.maxstack (); 
-                if (insertionMaxStack > methodMaxStack)
-                    methodMaxStack = insertionMaxStack;
+                    final int insertionMaxStack = insertion.maxstack (); 
+                    if (insertionMaxStack > methodMaxStack)
+                        methodMaxStack = insertionMaxStack;
+                }
             }
             
             // update maxstack as needed [it can only grow]:
@@ -1876,15 +2066,19 @@ final class InstrVisitor extends AbstractClassDefVisitor
 
             // TODO: if this method has been added by us, do not instrument its blocks
             
-            // push int literal equal to 'methodID' [for the parent method]:
-            CodeGen.push_int_value (buf, cls, visitor.m_methodID);
+            // [in flat probe mode the coverage array is the method's array]
+            if (! visitor.m_flatProbes)
+            {
+                // push int literal equal to 'methodID' [for the parent method]:
+                CodeGen.push_int_value (buf, cls, visitor.m_methodID);
             
-            // [stack +2]
+                // [stack +2]
             
-            // push subarray reference:
-            buf.write (_aaload);
+                // push subarray reference:
+                buf.write (_aaload);
             
-            // [stack +1]
+                // [stack +1]
+            }
             
             // store it in alias var:
             CodeGen.store_local_object_var (buf, localVarIndex);
@@ -1959,15 +2153,19 @@ final class InstrVisitor extends AbstractClassDefVisitor
                 // [stack +1]
             }
 
-            // push int literal equal to 'methodID':
-            CodeGen.push_int_value (buf, cls, visitor.m_methodID);
+            // [in flat probe mode the coverage array is the method's array]
+            if (! visitor.m_flatProbes)
+            {
+                // push int literal equal to 'methodID':
+                CodeGen.push_int_value (buf, cls, visitor.m_methodID);
             
-            // [stack +2]
+                // [stack +2]
             
-            // push subarray reference:
-            buf.write (_aaload);
+                // push subarray reference:
+                buf.write (_aaload);
             
-            // [stack +1]
+                // [stack +1]
+            }
             
             // store it in alias var:
             CodeGen.store_local_object_var (buf, localVarIndex);
@@ -1999,6 +2197,91 @@ final class InstrVisitor extends AbstractClassDefVisitor
     } // end of nested class
     
     
+    /*
+     * Same as methodHeader but with the null check and the pre-<clinit> call
+     * moved into the per-class accessor method [used in compact probe mode].
+     */
+    static final class compactMethodHeader extends CodeSegment
+    {
+        compactMethodHeader (final InstrVisitor visitor, final int localVarIndex)
+        {
+            super (visitor);
+            final ByteArrayOStream buf = new ByteArrayOStream (HEADER_INIT_CAPACITY);
+            m_buf = buf;
+            
+            final ClassDef cls = visitor.m_cls;
+            final int accessorMethodrefIndex = visitor.m_accessorMethodrefIndex;
+            
+            if ($assert.ENABLED) $assert.ASSERT (accessorMethodrefIndex > 0, "invalid accessorMethodrefIndex");
+            
+            // push ref to the [initialized] static field:
+            buf.write3 (_invokestatic,
+                        accessorMethodrefIndex >>> 8,    // indexbyte1
+                        accessorMethodrefIndex);         // indexbyte2
+            
+            // [stack +1]
+            
+            // [in flat probe mode the coverage array is the method's array]
+            if (! visitor.m_flatProbes)
+            {
+                // push int literal equal to 'methodID':
+                CodeGen.push_int_value (buf, cls, visitor.m_methodID);
+            
+                // [stack +2]
+            
+                // push subarray reference:
+                buf.write (_aaload);
+            
+                // [stack +1]
+            }
+            
+            // store it in alias var:
+            CodeGen.store_local_object_var (buf, localVarIndex);
+            
+            // [stack +0]
+        }
+        
+        int length () { return m_buf.size (); }
+        int maxstack () { return 2; } // note: needs to be updated each time emitted code changes
+        
+        void emit (final EmitCtx ctx)
+        {
+            // TODO: better error handling here?
+            try
+            {
+                m_buf.writeTo (ctx.m_out);
+            }
+            catch (IOException ioe)
+            {
+                if ($assert.ENABLED) $assert.ASSERT (false, ioe.toString ());
+            }
+        }
+        
+        
+        private final ByteArrayOStream m_buf;
+        
+        private static final int HEADER_INIT_CAPACITY = 8;
+    
+    } // end of nested class
+    
+    
+    static final class emptyHeader extends CodeSegment
+    {
+        emptyHeader ()
+        {
+            super (null);
+        }
+        
+        int length () { return 0; }
+        int maxstack () { return 0; }
+        
+        void emit (final EmitCtx ctx)
+        {
+        }
+    
+    } // end of nested class
+    
+    
     static final class BlockSegment extends CodeSegment
     {
         public BlockSegment (final InstrVisitor visitor, final int localVarIndex, final int blockID)
@@ -2047,6 +2330,87 @@ final class InstrVisitor extends AbstractClassDefVisitor
         }
         
         
+        private final ByteArrayOStream m_buf;
+        
+        private static final int BLOCK_INIT_CAPACITY = 16;
+    
+    } // end of nested class
+    
+    
+    /*
+     * The only probe of a single block method in compact probe mode: marks
+     * block 0 directly in the method's coverage subarray without going
+     * through an alias var.
+     */
+    static final class singleBlockSegment extends CodeSegment
+    {
+        singleBlockSegment (final InstrVisitor visitor)
+        {
+            super (visitor);
+            final ByteArrayOStream buf = new ByteArrayOStream (BLOCK_INIT_CAPACITY);
+            m_buf = buf;
+            
+            final ClassDef cls = visitor.m_cls;
+            final int accessorMethodrefIndex = visitor.m_accessorMethodrefIndex;
+            
+            if ($assert.ENABLED) $assert.ASSERT (accessorMethodrefIndex > 0, "invalid accessorMethodrefIndex");
+            
+            // push ref to the [initialized] static field:
+            buf.write3 (_invokestatic,
+                        accessorMethodrefIndex >>> 8,    // indexbyte1
+                        accessorMethodrefIndex);         // indexbyte2
+            
+            // [stack +1]
+            
+            // push int literal equal to 'methodID' [the method's only probe slot in flat probe mode]:
+            CodeGen.push_int_value (buf, cls, visitor.m_flatProbes ? visitor.m_methodProbeOffset : visitor.m_methodID);
+            
+            // [stack +2]
+            
+            if (visitor.m_flatProbes)
+            {
+                // push boolean 'true':
+                buf.write (_iconst_1);
+            }
+            else
+            {
+                // push subarray reference, block ID 0, and boolean 'true':
+                buf.write3 (_aaload,
+            
+                // [stack +1]
+                        
+                            _iconst_0,
+            
+                // [stack +2]
+                        
+                            _iconst_1);
+            }
+            
+            // [stack +3]
+            
+            // store it in the array:
+            buf.write (_bastore);
+            
+            // [stack +0]
+        }
+        
+        int length () { return m_buf.size (); }
+        int maxstack () { return 3; } // note: needs to be updated each time emitted code changes
+        
+        void emit (final EmitCtx ctx)
+        {
+            // TODO: better error handling here?
+            try
+            {
+                m_buf.writeTo (ctx.m_out);
+            }
+            catch (IOException ioe)
+            {
+                if ($assert.ENABLED) $assert.ASSERT (false, ioe.toString ());
+            }
+        }
+        
+        
         private final ByteArrayOStream m_buf;
         
         private static final int BLOCK_INIT_CAPACITY = 16;
@@ -2137,11 +2501,37 @@ final class InstrVisitor extends AbstractClassDefVisitor
         return high;
     }
     
+    /*
+     * @return 'true' if 'method' is a concrete method that is small and hot
+     * according to the current hot method profile
+     */
+    private boolean isHotMethod (final Method_info method)
+    {
+        if ((method.getAccessFlags () & (IAccessFlags.ACC_ABSTRACT | IAccessFlags.ACC_NATIVE)) != 0)
+            return false;
+        
+        final IAttributeCollection attributes = method.getAttributes ();
+        for (int a = 0, aLimit = attributes.size (); a < aLimit; ++ a)
+        {
+            final Attribute_info attribute = attributes.get (a);
+            
+            if (attribute instanceof CodeAttribute_info)
+            {
+                final int codeSize = ((CodeAttribute_info) attribute).getCodeSize ();
+                
+                return m_hotMethodProfile.isHot (m_cls.getName (), m_methodName, method.getDescriptor (m_cls), codeSize);
+            }
+        }
+        
+        return false;
+    }
+    
     private void reset ()
     {
         // TODO: check that all state is reset
         
         m_instrument = false;
+        m_probes = false;
         m_metadata = false;
         m_ignoreAlreadyInstrumented = false;
         
@@ -2156,16 +2546,20 @@ final class InstrVisitor extends AbstractClassDefVisitor
         m_coverageFieldrefIndex = -1;
         m_registerMethodrefIndex = -1;
         m_preclinitMethodrefIndex = -1;
+        m_accessorMethodrefIndex = -1;
         m_classNameConstantIndex = -1;
         m_clinitID = -1;
         m_clinitStatus = 0;
         m_classInstrMethodCount = -1;
         m_classBlockCounts = null;
+        m_classProbeCount = 0;
+        m_classProbeLayout = m_flatProbes ? new StringBuffer () : null;
         m_classSignature = 0;
         
         m_methodID = -1;
         m_methodName = null;
         m_methodFirstLine = 0;
+        m_methodProbeOffset = 0;
         m_methodBlockOffsets = null;
         m_methodJumpAdjOffsets = null;
         m_methodJumpAdjValues = null;
@@ -2176,17 +2570,23 @@ final class InstrVisitor extends AbstractClassDefVisitor
     private final boolean m_excludeSyntheticMethods;
     private final boolean m_excludeBridgeMethods;
     private final boolean m_doSUIDCompensation;
+    private final boolean m_compactProbes;
+    /*private*/ final boolean m_flatProbes;
+    private final String m_coverageDescriptor; // COVERAGE_FIELD type ["[Z" in flat probe mode, "[[Z" otherwise]
     
     private final Logger m_log; // instr visitor logging context is latched at construction time
     
     // non-resettable state:
     
     private boolean m_warningIssued;
+    private HotMethodProfile m_hotMethodProfile; // can be null
+    private int m_hotMethodCount;
     
     
     // resettable state:
     
     private boolean m_instrument;
+    private boolean m_probes; // if false, only <clinit> is instrumented
     private boolean m_metadata;
     private boolean m_ignoreAlreadyInstrumented;
     
@@ -2202,18 +2602,22 @@ final class InstrVisitor extends AbstractClassDefVisitor
     /*private*/ int m_coverageFieldrefIndex;    // index of the Fieldref for COVERAGE_FIELD
     private int m_registerMethodrefIndex;   // index of Methodref for RT.r()
     /*private*/ int m_preclinitMethodrefIndex;  // index of Methodref for pre-<clinit> method
+    /*private*/ int m_accessorMethodrefIndex;   // index of Methodref for COVERAGE_FIELD accessor method [compact probe mode only]
     /*private*/ int m_classNameConstantIndex;   // index of CONSTANT_String that is the class name [in JVM format]
     private int m_stampIndex;               // index of CONSTANT_Long that is the class instr stamp
     private int m_clinitID;                 // offset of <clinit> method [-1 if not determined yet]
     private int m_clinitStatus;
     /*private*/ int m_classInstrMethodCount;    // the number of slots in 'm_classBlockCounts' corresponding to methods to be instrumented for coverage
     /*private*/ int [] m_classBlockCounts;      // basic block counts for all methods [only valid just before <clinit> is processed]
+    private int m_classProbeCount;          // number of probe slots assigned so far [flat probe mode only]
+    private StringBuffer m_classProbeLayout; // [method slot, block count] pairs in probe slot order [flat probe mode only]
     private long m_classSignature;
     
     // current method scope: 
     /*private*/ int m_methodID;                 // offset of current method being instrumented
     private String m_methodName;
     private int m_methodFirstLine;
+    /*private*/ int m_methodProbeOffset;        // first probe slot of current method [flat probe mode only]
     private int [] m_methodBlockOffsets;    // [unadjusted] basic block boundaries [length = m_classBlockCounts[m_methodID]+1; the last slot is method bytecode length]
     private int [] m_methodBlockSizes;
     private int [] m_methodJumpAdjOffsets;    // TODO: length ?
@@ -2223,8 +2627,10 @@ final class InstrVisitor extends AbstractClassDefVisitor
     private static final long NBEAST = 16661; // prime
 
     private static final String COVERAGE_FIELD_NAME = "$VR" + "c";
+    private static final CodeSegment EMPTY_HEADER = new emptyHeader ();
     private static final String SUID_FIELD_NAME = "serialVersionUID";
     private static final String PRECLINIT_METHOD_NAME = "$VR" + "i";
+    private static final String ACCESSOR_METHOD_NAME = "$VR" + "g";
 
     private static final String JAVA_IO_SERIALIZABLE_NAME = "java/io/Serializable";
     private static final String JAVA_IO_EXTERNALIZABLE_NAME = "java/io/Externalizable";
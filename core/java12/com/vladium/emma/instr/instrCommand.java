@@ -146,7 +146,8 @@ final class instrCommand extends Command
                 {
                     if ($assert.ENABLED) $assert.ASSERT (m_outMode != null, "m_outMode not set");
                     
-                    if ((m_outMode != InstrProcessor.OutMode.OUT_MODE_OVERWRITE) && (m_outDirName == null))
+                    if ((m_outMode != InstrProcessor.OutMode.OUT_MODE_OVERWRITE) && (m_outMode != InstrProcessor.OutMode.OUT_MODE_DRYRUN)
+                        && (m_outDirName == null))
                     {
                         usageexit ("output directory must be specified for '" + m_outMode + "' output mode", parser,
                             IOptsParser.SHORT_USAGE);
@@ -15,6 +15,7 @@ import com.vladium.logging.Logger;
 import com.vladium.util.Files;
 import com.vladium.util.IConstants;
 import com.vladium.util.IProperties;
+import com.vladium.util.Property;
 import com.vladium.util.asserts.$assert;
 import com.vladium.util.exception.Exceptions;
 import com.vladium.emma.IAppConstants;
@@ -27,6 +28,8 @@ import com.vladium.emma.data.ICoverageData;
 import com.vladium.emma.data.IMergeable;
 import com.vladium.emma.data.IMetaData;
 import com.vladium.emma.data.SessionData;
+import com.vladium.emma.report.CoverageSummary;
+import com.vladium.emma.report.IReportDataModel;
 
 // ----------------------------------------------------------------------------
 /**
@@ -130,6 +133,11 @@ final class MergeProcessor extends Processor
                 sdataOutFile = new File (toolProperties.getProperty (EMMAProperties.PROPERTY_SESSION_DATA_OUT_FILE,
                                                                      EMMAProperties.DEFAULT_SESSION_DATA_OUT_FILE));
         }
+        final boolean sdataOutIndex = Property.toBoolean (toolProperties.getProperty (EMMAProperties.PROPERTY_SESSION_DATA_OUT_INDEX,
+                                                                                      EMMAProperties.DEFAULT_SESSION_DATA_OUT_INDEX.toString ()));
+        final int loadThreads = Property.toInt (toolProperties.getProperty (EMMAProperties.PROPERTY_DATA_IN_THREADS),
+                                                EMMAProperties.DEFAULT_DATA_IN_THREADS);
+        final String summaryOutFile = toolProperties.getProperty (EMMAProperties.PROPERTY_SUMMARY_OUT_FILE);
                 
         RuntimeException failure = null;
         try
@@ -142,37 +150,13 @@ final class MergeProcessor extends Processor
             {
                 final long start = log.atINFO () ? System.currentTimeMillis () : 0;
                 
-                for (int f = 0; f < m_dataPath.length; ++ f)
-                {
-                    final File dataFile = m_dataPath [f];
-                    if (verbose) log.verbose ("processing input file [" + dataFile.getAbsolutePath () + "] ...");
+                // load and merge all data files concurrently [note: later datapath entries override earlier ones]:
+                final IMergeable [] pathData = DataFactory.load (m_dataPath, null, loadThreads);
                     
-                    final IMergeable [] fileData = DataFactory.load (dataFile);
+                mdata = (IMetaData) pathData [DataFactory.TYPE_METADATA];
+                cdata = (ICoverageData) pathData [DataFactory.TYPE_COVERAGEDATA];
                     
-                    final IMetaData _mdata = (IMetaData) fileData [DataFactory.TYPE_METADATA];
-                    if (_mdata != null)
-                    {
-                        if (verbose) log.verbose ("  loaded " + _mdata.size () + " metadata entries");
-                        
-                        if (mdata == null)
-                            mdata = _mdata;
-                        else
-                            mdata = (IMetaData) mdata.merge (_mdata); // note: later datapath entries override earlier ones
-                    }
-                    
-                    final ICoverageData _cdata = (ICoverageData) fileData [DataFactory.TYPE_COVERAGEDATA];
-                    if (_cdata != null)
-                    {
-                        if (verbose) log.verbose ("  loaded " + _cdata.size () + " coverage data entries");
-                        
-                        if (cdata == null)
-                            cdata = _cdata;
-                        else
-                            cdata = (ICoverageData) cdata.merge (_cdata); // note: later datapath entries override earlier ones
-                    }
-                    
-                    ++ m_dataFileCount;
-                }
+                m_dataFileCount = m_dataPath.length;
                 
                 if (log.atINFO ())
                 {
@@ -302,8 +286,54 @@ final class MergeProcessor extends Processor
                         
                         log.info ("merged/compacted data written to [" + canonicalDataOutFile + "] {in " + (end - start) + " ms}");
                     }
+                    
+                    if (sdataOutIndex)
+                    {
+                        try
+                        {
+                            DataFactory.index (canonicalDataOutFile);
+                        }
+                        catch (IOException ioe)
+                        {
+                            // TODO: error code
+                            throw new EMMARuntimeException (ioe);
+                        }
+                        
+                        if (verbose) log.verbose ("class index written to [" + DataFactory.getIndexFile (canonicalDataOutFile) + "]");
+                    }
                 }
             }            
+            
+            // write the coverage summary [if requested]:
+            if ((summaryOutFile != null) && (summaryOutFile.length () > 0))
+            {
+                if ((mdata == null) || mdata.isEmpty () || (cdata == null))
+                {
+                    log.warning ("no coverage summary written: the merged data does not contain both metadata and coverage data");
+                }
+                else
+                {
+                    final int reportThreads = Property.toInt (toolProperties.getProperty (EMMAProperties.PROPERTY_REPORT_THREADS),
+                                                              EMMAProperties.DEFAULT_REPORT_THREADS);
+                    
+                    final File _summaryOutFile = new File (summaryOutFile);
+                    final long start = log.atINFO () ? System.currentTimeMillis () : 0;
+                    
+                    try
+                    {
+                        CoverageSummary.write (mdata, IReportDataModel.Factory.create (mdata, cdata, reportThreads), _summaryOutFile);
+                    }
+                    catch (IOException ioe)
+                    {
+                        throw new EMMARuntimeException (OUT_IO_FAILURE, new Object [] {_summaryOutFile.getAbsolutePath ()}, ioe);
+                    }
+                    
+                    if (log.atINFO ())
+                    {
+                        log.info ("coverage summary written to [" + _summaryOutFile.getAbsolutePath () + "] {in " + (System.currentTimeMillis () - start) + " ms}");
+                    }
+                }
+            }
         }
         catch (SecurityException se)
         {
@@ -47,6 +47,10 @@ abstract class AbstractReportGenerator extends AbstractItemVisitor
             return new com.vladium.emma.report.txt.ReportGenerator ();
         else if ("xml".equals (type))
             return new com.vladium.emma.report.xml.ReportGenerator ();
+        else if ("bundle".equals (type))
+            return new com.vladium.emma.report.bundle.ReportGenerator ();
+        else if ("jsonl".equals (type))
+            return new com.vladium.emma.report.jsonl.ReportGenerator ();
         else // TODO: error code
             throw new EMMARuntimeException ("no report generator class found for type [" + type + "]");
     }
@@ -206,12 +210,17 @@ abstract class AbstractReportGenerator extends AbstractItemVisitor
             metrics.get (t, m_metrics, t);
         }
         
-        final IReportDataModel model = IReportDataModel.Factory.create (mdata, cdata);
+        final IReportDataModel model = m_model != null ? m_model : IReportDataModel.Factory.create (mdata, cdata);
         m_view = model.getView (m_settings.getViewType ());
         
         m_srcView = (m_settings.getViewType () == IReportDataView.HIER_SRC_VIEW);
     }
     
+    public void setDataModel (final IReportDataModel model)
+    {
+        m_model = model;
+    }
+    
     public void cleanup ()
     {
         reset ();
@@ -224,6 +233,7 @@ abstract class AbstractReportGenerator extends AbstractItemVisitor
     {
         m_settings = null;
         m_cache = null;
+        m_model = null;
         m_view = null;
         m_srcView = false;
         
@@ -234,6 +244,18 @@ abstract class AbstractReportGenerator extends AbstractItemVisitor
         m_log = null;
     }
     
+    /**
+     * @return 'true' for method items that were left uninstrumented [see
+     * {@link MethodItem#isInstrumented()}]: generators list these with the
+     * {@link #NOT_INSTRUMENTED} marker instead of coverage figures
+     */
+    protected static boolean notInstrumented (final IItem item)
+    {
+        return (item instanceof MethodItem) && ! ((MethodItem) item).isInstrumented ();
+    }
+    
+    
+    protected static final String NOT_INSTRUMENTED = "not instrumented";
 
     protected ReportProperties.ParsedProperties m_settings;
     protected SourcePathCache m_cache;
@@ -254,5 +276,7 @@ abstract class AbstractReportGenerator extends AbstractItemVisitor
     
     private static final int MAX_DEBUG_INFO_WARNING_COUNT = 3; // per package
     
+    private IReportDataModel m_model; // shared model set by the caller [can be null]
+
 } // end of class
 // ----------------------------------------------------------------------------
\ No newline at end of file
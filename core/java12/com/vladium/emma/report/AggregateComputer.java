@@ -0,0 +1,288 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.emma.report;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import com.vladium.logging.Logger;
+import com.vladium.emma.IAppConstants;
+
+// ----------------------------------------------------------------------------
+/**
+ * Fills in the aggregates of a report data view ahead of report generation,
+ * using several threads. Items otherwise fault their aggregates lazily and
+ * recursively on the generator thread [see {@link IItem#getAggregate}].<P>
+ * 
+ * The children of all packages [source files or classes, depending on the
+ * view] are independent units of work: their subtrees do not share any
+ * item state. The unit list is split recursively into contiguous ranges of
+ * roughly equal method counts, one half of a range being forked off to a new
+ * thread while the other half is processed by the current one [the same
+ * scheme as the data file loader uses]. Package and root aggregates are mere
+ * sums and are filled in by the calling thread after all units are done.
+ * 
+ * @author Vlad Roubtsov, (C) 2003
+ */
+final class AggregateComputer
+{
+    // public: ................................................................
+    
+    // protected: .............................................................
+    
+    // package: ...............................................................
+    
+    /*
+     * @param root view root
+     * @param lineInfo 'true' if all classes have line number data [line
+     * aggregates are not computed otherwise]
+     * @param srcView 'true' for source file views
+     * @param parallelism max number of threads to use [values < 2 mean the
+     * calling thread only]
+     */
+    static void compute (final IItem root, final boolean lineInfo, final boolean srcView, final int parallelism)
+    {
+        final long start = System.currentTimeMillis ();
+        
+        final List /* IItem */ _units = new ArrayList ();
+        for (Iterator packages = root.getChildren (); packages.hasNext (); )
+        {
+            for (Iterator units = ((IItem) packages.next ()).getChildren (); units.hasNext (); )
+            {
+                _units.add (units.next ());
+            }
+        }
+        
+        final IItem [] units = new IItem [_units.size ()];
+        _units.toArray (units);
+        
+        // cumulative unit weights for balanced splits:
+        
+        final long [] weights = new long [units.length + 1];
+        for (int u = 0; u < units.length; ++ u)
+        {
+            weights [u + 1] = weights [u] + getWeight (units [u]);
+        }
+        
+        final int [] types = getAggregateTypes (lineInfo, srcView);
+        final int threads = Math.max (1, Math.min (parallelism, units.length));
+        
+        final Task task = new Task (units, weights, 0, units.length, types, threads);
+        task.run ();
+        task.checkFailure ();
+        
+        // packages and the root are sums of the unit aggregates:
+        
+        for (Iterator packages = root.getChildren (); packages.hasNext (); )
+        {
+            fault ((IItem) packages.next (), types, false);
+        }
+        fault (root, types, false);
+        
+        final Logger log = Logger.getLogger ();
+        if (log.atTRACE1 ()) log.trace1 ("compute", "aggregates of " + units.length + " units computed in " + (System.currentTimeMillis () - start) + " ms using " + threads + " thread(s)");
+    }
+    
+    // private: ...............................................................
+    
+    
+    private static final class Task implements Runnable
+    {
+        public void run ()
+        {
+            try
+            {
+                if (m_parallelism < 2)
+                    computeRange ();
+                else
+                    forkRange ();
+            }
+            catch (Throwable t)
+            {
+                m_failure = t;
+            }
+        }
+        
+        Task (final IItem [] units, final long [] weights, final int start, final int end,
+              final int [] types, final int parallelism)
+        {
+            m_units = units;
+            m_weights = weights;
+            m_start = start;
+            m_end = end;
+            m_types = types;
+            m_parallelism = parallelism;
+        }
+        
+        /*
+         * rethrows the failure [if any] of this task in the calling thread
+         */
+        void checkFailure ()
+        {
+            final Throwable failure = m_failure;
+            
+            if (failure != null)
+            {
+                if (failure instanceof RuntimeException)
+                    throw (RuntimeException) failure;
+                else if (failure instanceof Error)
+                    throw (Error) failure;
+                else
+                    throw new RuntimeException (failure.toString ());
+            }
+        }
+        
+        
+        private void computeRange ()
+        {
+            for (int u = m_start; u < m_end; ++ u)
+            {
+                fault (m_units [u], m_types, true);
+            }
+        }
+        
+        private void forkRange ()
+        {
+            // split the range in proportion to the thread budget of each half,
+            // by weight [but leave at least one unit on either side]:
+            
+            final int leftParallelism = m_parallelism >> 1;
+            final long splitWeight = m_weights [m_start] + (m_weights [m_end] - m_weights [m_start]) * leftParallelism / m_parallelism;
+            
+            int split = m_start + 1;
+            while ((split < m_end - 1) && (m_weights [split] < splitWeight)) ++ split;
+            
+            final Task left = new Task (m_units, m_weights, m_start, split, m_types, Math.min (leftParallelism, split - m_start));
+            final Task right = new Task (m_units, m_weights, split, m_end, m_types, Math.min (m_parallelism - leftParallelism, m_end - split));
+            
+            final Thread fork = new Thread (left, IAppConstants.APP_NAME + " report aggregates [" + m_start + ", " + split + ")");
+            fork.setDaemon (true);
+            fork.start ();
+            
+            right.run ();
+            
+            boolean interrupted = false;
+            while (true)
+            {
+                try
+                {
+                    fork.join ();
+                    break;
+                }
+                catch (InterruptedException ie)
+                {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread ().interrupt (); // restore the interrupt status
+            
+            left.checkFailure ();
+            right.checkFailure ();
+        }
+        
+        
+        private final IItem [] m_units;
+        private final long [] m_weights; // m_weights [u] is the total weight of m_units [0, u)
+        private final int m_start, m_end; // [m_start, m_end) range of m_units
+        private final int [] m_types;
+        private final int m_parallelism;
+        
+        private Throwable m_failure; // set by run(), read after join()
+    
+    } // end of nested class
+    
+    
+    private AggregateComputer () {} // prevent subclassing
+    
+    /*
+     * Faults 'types' aggregates of 'item' [and, if 'deep', of all items
+     * below it, children first].
+     */
+    private static void fault (final IItem item, final int [] types, final boolean deep)
+    {
+        if (item instanceof MethodItem)
+        {
+            // method aggregates are computed all at once [and not all types apply]:
+            
+            item.getAggregate (IItem.TOTAL_BLOCK_COUNT);
+            return;
+        }
+        
+        if (deep)
+        {
+            for (Iterator children = item.getChildren (); children.hasNext (); )
+            {
+                fault ((IItem) children.next (), types, true);
+            }
+        }
+        
+        // the source file count only applies at source file level and above:
+        
+        final int typeCount = (item instanceof ClassItem) && (types [types.length - 1] == IItem.TOTAL_SRCFILE_COUNT)
+            ? types.length - 1
+            : types.length;
+        
+        for (int t = 0; t < typeCount; ++ t)
+        {
+            item.getAggregate (types [t]);
+        }
+    }
+    
+    /*
+     * @return method count [+1 for the item itself]
+     */
+    private static long getWeight (final IItem unit)
+    {
+        if (unit instanceof ClassItem)
+            return unit.getChildCount () + 1;
+        else
+        {
+            long weight = 1;
+            for (Iterator classes = unit.getChildren (); classes.hasNext (); )
+            {
+                weight += ((IItem) classes.next ()).getChildCount () + 1;
+            }
+            
+            return weight;
+        }
+    }
+    
+    /*
+     * @return the aggregate types used by report generators [TOTAL_SRCFILE_COUNT,
+     * if present, is last]
+     */
+    private static int [] getAggregateTypes (final boolean lineInfo, final boolean srcView)
+    {
+        final int [] types = new int [8 + (lineInfo ? 3 : 0) + (srcView ? 1 : 0)];
+        int t = 0;
+        
+        types [t ++] = IItem.COVERAGE_CLASS_COUNT;
+        types [t ++] = IItem.TOTAL_CLASS_COUNT;
+        types [t ++] = IItem.COVERAGE_METHOD_COUNT;
+        types [t ++] = IItem.TOTAL_METHOD_COUNT;
+        types [t ++] = IItem.COVERAGE_BLOCK_COUNT;
+        types [t ++] = IItem.TOTAL_BLOCK_COUNT;
+        types [t ++] = IItem.COVERAGE_BLOCK_INSTR;
+        types [t ++] = IItem.TOTAL_BLOCK_INSTR;
+        
+        if (lineInfo)
+        {
+            types [t ++] = IItem.COVERAGE_LINE_COUNT;
+            types [t ++] = IItem.TOTAL_LINE_COUNT;
+            types [t ++] = IItem.COVERAGE_LINE_INSTR;
+        }
+        
+        if (srcView) types [t ++] = IItem.TOTAL_SRCFILE_COUNT;
+        
+        return types;
+    }
+
+} // end of class
+// ----------------------------------------------------------------------------
@@ -13,6 +13,7 @@ import java.util.Iterator;
 import com.vladium.util.IntObjectMap;
 import com.vladium.util.asserts.$assert;
 import com.vladium.emma.data.ClassDescriptor;
+import com.vladium.emma.data.CoverageBits;
 import com.vladium.emma.data.MethodDescriptor;
 
 // ----------------------------------------------------------------------------
@@ -24,7 +25,7 @@ final class ClassItem extends Item
 {
     // public: ................................................................
     
-    public ClassItem (final IItem parent, final ClassDescriptor cls, final boolean [][] coverage)
+    public ClassItem (final IItem parent, final ClassDescriptor cls, final long [][] coverage)
     {
         super (parent);
         
@@ -71,7 +72,11 @@ final class ClassItem extends Item
         return m_cls;
     }
     
-    public boolean [][] getCoverage ()
+    /**
+     * @return packed coverage for this class [see {@link CoverageBits}; null
+     * if the class has not been loaded]
+     */
+    public long [][] getCoverage ()
     {
         return m_coverage;
     }
@@ -112,7 +117,7 @@ final class ClassItem extends Item
                     // info is available; instead, lines from all methods belonging
                     // to the same clsfile parent are set-merged 
                     
-                    final boolean [][] ccoverage = m_coverage; // this can be null
+                    final long [][] ccoverage = m_coverage; // this can be null
                     
                     final IntObjectMap /* line -> int[2] */ cldata = new IntObjectMap ();
                     final MethodDescriptor [] methoddescs = m_cls.getMethods ();
@@ -120,9 +125,11 @@ final class ClassItem extends Item
                     for (Iterator methods = getChildren (); methods.hasNext (); )
                     {
                         final MethodItem method = (MethodItem) methods.next ();
+                        if (! method.isInstrumented ()) continue; // no block data
+                        
                         final int methodID = method.getID ();
                         
-                        final boolean [] mcoverage = ccoverage == null ? null : ccoverage [methodID];
+                        final long [] mcoverage = ccoverage == null ? null : ccoverage [methodID];
                         
                         final MethodDescriptor methoddesc = methoddescs [methodID];                        
                         final int [] mbsizes = methoddesc.getBlockSizes ();
@@ -151,7 +158,7 @@ final class ClassItem extends Item
                             {
                                 final int block = lblocks [bID];
                                 
-                                final boolean bcovered = mcoverage != null && mcoverage [block];
+                                final boolean bcovered = mcoverage != null && CoverageBits.get (mcoverage, block);
                                 final int instr = mbsizes [block];
                                 
                                 data [1] += instr;
@@ -223,7 +230,7 @@ final class ClassItem extends Item
 
 
     final ClassDescriptor m_cls;
-    final boolean [][] m_coverage;
+    final long [][] m_coverage; // packed
     
     // private: ...............................................................
     
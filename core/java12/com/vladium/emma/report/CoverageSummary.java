@@ -0,0 +1,467 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.emma.report;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.vladium.logging.Logger;
+import com.vladium.util.Files;
+import com.vladium.emma.IAppConstants;
+import com.vladium.emma.EMMAProperties;
+import com.vladium.emma.data.IMetaData;
+
+// ----------------------------------------------------------------------------
+/**
+ * A compact, precomputed summary of a coverage data set: the {@link IItem}
+ * aggregates of the whole data set, of every package and of every class
+ * [in the class view of a report data model]. A summary file is a few
+ * bytes per class and can be read without loading any metadata or coverage
+ * data, which makes it suitable for dashboards and trend jobs that only need
+ * total and per-package coverage of many builds.<P>
+ * 
+ * Summary files are written by the 'report' and 'merge' commands when the
+ * {@link EMMAProperties#PROPERTY_SUMMARY_OUT_FILE} property is set, and
+ * are read with {@link #read(File)}.
+ * 
+ * @author Vlad Roubtsov, (C) 2003
+ */
+public
+final class CoverageSummary
+{
+    // public: ................................................................
+    
+    
+    /**
+     * A summarized item [the data set root, a package, or a class]. Aggregate
+     * types are the same as for {@link IItem#getAggregate}.
+     */
+    public static final class Item
+    {
+        public String getName ()
+        {
+            return m_name;
+        }
+        
+        /**
+         * @return aggregate value or -1 if 'type' is not available in this
+         * summary [line aggregates are omitted when the data set does not have
+         * complete line number info]
+         */
+        public int getAggregate (final int type)
+        {
+            if ((type < 0) || (type >= m_aggregates.length))
+                return -1;
+            else
+                return m_aggregates [type];
+        }
+        
+        /**
+         * Computes a coverage ratio the same way report generators do.
+         *
+         * @param attributeID one of IItemAttribute.ATTRIBUTE_xxx_COVERAGE_ID
+         * @param unitsID IItemAttribute.UNITS_COUNT or IItemAttribute.UNITS_INSTR
+         * [only affects block and line coverage]
+         * @return coverage ratio in [0.0, 1.0] [1.0 for empty items] or -1.0
+         * if it is not available in this summary
+         */
+        public double getCoverage (final int attributeID, final int unitsID)
+        {
+            final int n, d, scale;
+            
+            switch (attributeID)
+            {
+                case IItemAttribute.ATTRIBUTE_CLASS_COVERAGE_ID:
+                {
+                    n = getAggregate (IItem.COVERAGE_CLASS_COUNT);
+                    d = getAggregate (IItem.TOTAL_CLASS_COUNT);
+                    scale = 1;
+                }
+                break;
+                
+                case IItemAttribute.ATTRIBUTE_METHOD_COVERAGE_ID:
+                {
+                    n = getAggregate (IItem.COVERAGE_METHOD_COUNT);
+                    d = getAggregate (IItem.TOTAL_METHOD_COUNT);
+                    scale = 1;
+                }
+                break;
+                
+                case IItemAttribute.ATTRIBUTE_BLOCK_COVERAGE_ID:
+                {
+                    if (unitsID == IItemAttribute.UNITS_INSTR)
+                    {
+                        n = getAggregate (IItem.COVERAGE_BLOCK_INSTR);
+                        d = getAggregate (IItem.TOTAL_BLOCK_INSTR);
+                    }
+                    else
+                    {
+                        n = getAggregate (IItem.COVERAGE_BLOCK_COUNT);
+                        d = getAggregate (IItem.TOTAL_BLOCK_COUNT);
+                    }
+                    scale = 1;
+                }
+                break;
+                
+                case IItemAttribute.ATTRIBUTE_LINE_COVERAGE_ID:
+                {
+                    n = getAggregate (unitsID == IItemAttribute.UNITS_INSTR ? IItem.COVERAGE_LINE_INSTR : IItem.COVERAGE_LINE_COUNT);
+                    d = getAggregate (IItem.TOTAL_LINE_COUNT);
+                    scale = IItem.PRECISION;
+                }
+                break;
+                
+                default: throw new IllegalArgumentException ("invalid attribute ID: " + attributeID);
+            
+            } // end of switch
+            
+            if ((n < 0) || (d < 0))
+                return -1.0;
+            else if (d == 0)
+                return 1.0;
+            else
+                return ((double) n) / scale / d;
+        }
+        
+        public int getChildCount ()
+        {
+            return m_children.length;
+        }
+        
+        /**
+         * @return children in name order [packages of the root, classes of
+         * a package; none for a class]
+         */
+        public Iterator /* Item */ getChildren ()
+        {
+            return Arrays.asList (m_children).iterator ();
+        }
+        
+        
+        Item (final String name, final int [] aggregates, final Item [] children)
+        {
+            m_name = name;
+            m_aggregates = aggregates;
+            m_children = children;
+        }
+        
+        
+        private final String m_name;
+        private final int [] m_aggregates; // indexed by aggregate type, -1 for types not present
+        private Item [] m_children; // set once by read()
+    
+    } // end of nested class
+    
+    
+    /**
+     * Writes the class view aggregates of 'model' into 'file'. The data is
+     * written to a temp file first and renamed, so that concurrent readers
+     * never see a partially written summary.
+     *
+     * @param mdata metadata 'model' was created for
+     */
+    public static void write (final IMetaData mdata, final IReportDataModel model, final File file)
+        throws IOException
+    {
+        final Logger log = Logger.getLogger ();
+        final boolean trace1 = log.atTRACE1 ();
+        
+        long start = 0;
+        if (trace1) start = System.currentTimeMillis ();
+        
+        final int [] types = mdata.hasLineNumberData () ? AGGREGATE_TYPES : NO_LINE_AGGREGATE_TYPES;
+        final IItem root = model.getView (IReportDataView.HIER_CLS_VIEW).getRoot ();
+        
+        final File canonicalFile = Files.canonicalizeFile (file);
+        
+        File dir = canonicalFile.getParentFile ();
+        if (dir == null) dir = new File ("");
+        else dir.mkdirs ();
+        
+        final File tempFile = Files.createTempFile (dir, Files.getFileName (canonicalFile) + IAppConstants.APP_NAME_LC, EMMAProperties.PROPERTY_TEMP_FILE_EXT);
+        
+        DataOutputStream out = null;
+        try
+        {
+            out = new DataOutputStream (new BufferedOutputStream (new FileOutputStream (tempFile), IO_BUF_SIZE));
+            
+            out.writeInt (MAGIC);
+            out.writeLong (IAppConstants.DATA_FORMAT_VERSION);
+            out.writeLong (EMMAProperties.getTimeStamp ());
+            
+            out.writeInt (types.length);
+            for (int t = 0; t < types.length; ++ t)
+            {
+                out.writeInt (types [t]);
+            }
+            
+            int classCount = 0;
+            
+            writeAggregates (out, root, types);
+            
+            // all packages come before all classes so that readers that only
+            // need package aggregates can stop early:
+            
+            out.writeInt (root.getChildCount ());
+            for (Iterator packages = root.getChildren (NAME_ORDER); packages.hasNext (); )
+            {
+                final PackageItem pkg = (PackageItem) packages.next ();
+                
+                out.writeUTF (pkg.getName ());
+                out.writeUTF (pkg.getVMName ().length () == 0 ? "" : pkg.getName () + '.'); // class name prefix
+                writeAggregates (out, pkg, types);
+                out.writeInt (pkg.getChildCount ());
+            }
+            
+            for (Iterator packages = root.getChildren (NAME_ORDER); packages.hasNext (); )
+            {
+                final IItem pkg = (IItem) packages.next ();
+                
+                for (Iterator classes = pkg.getChildren (NAME_ORDER); classes.hasNext (); )
+                {
+                    final IItem cls = (IItem) classes.next ();
+                    
+                    out.writeUTF (cls.getName ());
+                    writeAggregates (out, cls, types);
+                    
+                    ++ classCount;
+                }
+            }
+            
+            out.flush ();
+            out.close ();
+            out = null;
+            
+            if (! Files.renameFile (tempFile, canonicalFile, true))
+                throw new IOException ("could not rename temporary file [" + tempFile.getAbsolutePath () + "] to [" + canonicalFile + "]");
+            
+            if (trace1) log.trace1 ("write", "[" + canonicalFile + "]: " + classCount + " class(es) summarized in " + (System.currentTimeMillis () - start) + " ms");
+        }
+        finally
+        {
+            if (out != null) try { out.close (); } catch (Throwable ignore) {}
+            out = null;
+            
+            if (tempFile.exists ()) tempFile.delete ();
+        }
+    }
+    
+    /**
+     * Equivalent to read(file, true).
+     */
+    public static CoverageSummary read (final File file)
+        throws IOException
+    {
+        return read (file, true);
+    }
+    
+    /**
+     * Reads a summary file written by {@link #write}.
+     *
+     * @param readClasses if 'false', class records are not read at all [package
+     * items have no children and {@link #getClassItem} always returns null]
+     *
+     * @throws IOException if 'file' could not be read or is not a summary file
+     * written by this version of the tool
+     */
+    public static CoverageSummary read (final File file, final boolean readClasses)
+        throws IOException
+    {
+        if (file == null) throw new IllegalArgumentException ("null input: file");
+        
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream (new BufferedInputStream (new FileInputStream (file), IO_BUF_SIZE));
+            
+            if ((in.readInt () != MAGIC) || (in.readLong () != IAppConstants.DATA_FORMAT_VERSION))
+                throw new IOException ("file [" + file.getAbsolutePath () + "] is not a coverage summary created by this version of " + IAppConstants.APP_NAME);
+            
+            final long timeStamp = in.readLong ();
+            
+            final int typeCount = in.readInt ();
+            final int [] types = new int [typeCount];
+            for (int t = 0; t < typeCount; ++ t)
+            {
+                types [t] = in.readInt ();
+            }
+            
+            final Map /* String -> Item */ packages = new HashMap ();
+            final Map /* String -> Item */ classes = new HashMap ();
+            
+            final int [] rootAggregates = readAggregates (in, types);
+            
+            final Item [] packageItems = new Item [in.readInt ()];
+            final String [] classNamePrefixes = new String [packageItems.length];
+            final int [] classCounts = new int [packageItems.length];
+            
+            for (int p = 0; p < packageItems.length; ++ p)
+            {
+                final String packageName = in.readUTF ();
+                classNamePrefixes [p] = in.readUTF ();
+                
+                packageItems [p] = new Item (packageName, readAggregates (in, types), NO_ITEMS);
+                packages.put (packageName, packageItems [p]);
+                
+                classCounts [p] = in.readInt ();
+            }
+            
+            if (readClasses)
+            {
+                for (int p = 0; p < packageItems.length; ++ p)
+                {
+                    final String classNamePrefix = classNamePrefixes [p];
+                    
+                    final Item [] classItems = new Item [classCounts [p]];
+                    for (int c = 0; c < classItems.length; ++ c)
+                    {
+                        final String className = in.readUTF ();
+                        
+                        classItems [c] = new Item (className, readAggregates (in, types), NO_ITEMS);
+                        classes.put (classNamePrefix.concat (className), classItems [c]);
+                    }
+                    
+                    packageItems [p].m_children = classItems;
+                }
+            }
+            
+            return new CoverageSummary (timeStamp, new Item ("all classes", rootAggregates, packageItems), packages, classes);
+        }
+        finally
+        {
+            if (in != null) try { in.close (); } catch (Throwable ignore) {}
+            in = null;
+        }
+    }
+    
+    /**
+     * @return the time stamp of the run that wrote this summary
+     */
+    public long getTimeStamp ()
+    {
+        return m_timeStamp;
+    }
+    
+    /**
+     * @return aggregates of the entire data set [its children are packages]
+     */
+    public Item getRoot ()
+    {
+        return m_root;
+    }
+    
+    /**
+     * @param packageName Java package name, e.g. "com.acme.util" ["default package"
+     * for the default package, as in reports]
+     * @return package item or null if not found
+     */
+    public Item getPackage (final String packageName)
+    {
+        return (Item) m_packages.get (packageName);
+    }
+    
+    /**
+     * @param className fully qualified Java class name, e.g. "com.acme.util.Strings"
+     * @return class item or null if not found
+     */
+    public Item getClassItem (final String className)
+    {
+        return (Item) m_classes.get (className);
+    }
+    
+    // protected: .............................................................
+    
+    // package: ...............................................................
+    
+    // private: ...............................................................
+    
+    
+    private CoverageSummary (final long timeStamp, final Item root, final Map packages, final Map classes)
+    {
+        m_timeStamp = timeStamp;
+        m_root = root;
+        m_packages = packages;
+        m_classes = classes;
+    }
+    
+    
+    private static void writeAggregates (final DataOutputStream out, final IItem item, final int [] types)
+        throws IOException
+    {
+        for (int t = 0; t < types.length; ++ t)
+        {
+            out.writeInt (item.getAggregate (types [t]));
+        }
+    }
+    
+    private static int [] readAggregates (final DataInputStream in, final int [] types)
+        throws IOException
+    {
+        final int [] aggregates = new int [IItem.NUM_OF_AGGREGATES];
+        Arrays.fill (aggregates, -1);
+        
+        for (int t = 0; t < types.length; ++ t)
+        {
+            final int value = in.readInt ();
+            
+            final int type = types [t];
+            if ((type >= 0) && (type < aggregates.length)) aggregates [type] = value; // ignore unknown types
+        }
+        
+        return aggregates;
+    }
+    
+    
+    private final long m_timeStamp;
+    private final Item m_root;
+    private final Map /* String -> Item */ m_packages, m_classes;
+    
+    private static final int MAGIC = 0x454D5355; // "EMSU"
+    private static final int IO_BUF_SIZE = 32 * 1024;
+    
+    private static final Item [] NO_ITEMS = new Item [0];
+    
+    private static final int [] AGGREGATE_TYPES, NO_LINE_AGGREGATE_TYPES; // set in <clinit>
+    private static final ItemComparator NAME_ORDER; // set in <clinit>
+    
+    static
+    {
+        NO_LINE_AGGREGATE_TYPES = new int []
+        {
+            IItem.COVERAGE_CLASS_COUNT,
+            IItem.TOTAL_CLASS_COUNT,
+            IItem.COVERAGE_METHOD_COUNT,
+            IItem.TOTAL_METHOD_COUNT,
+            IItem.COVERAGE_BLOCK_COUNT,
+            IItem.TOTAL_BLOCK_COUNT,
+            IItem.COVERAGE_BLOCK_INSTR,
+            IItem.TOTAL_BLOCK_INSTR,
+        };
+        
+        AGGREGATE_TYPES = new int [NO_LINE_AGGREGATE_TYPES.length + 3];
+        System.arraycopy (NO_LINE_AGGREGATE_TYPES, 0, AGGREGATE_TYPES, 0, NO_LINE_AGGREGATE_TYPES.length);
+        AGGREGATE_TYPES [NO_LINE_AGGREGATE_TYPES.length] = IItem.COVERAGE_LINE_COUNT;
+        AGGREGATE_TYPES [NO_LINE_AGGREGATE_TYPES.length + 1] = IItem.TOTAL_LINE_COUNT;
+        AGGREGATE_TYPES [NO_LINE_AGGREGATE_TYPES.length + 2] = IItem.COVERAGE_LINE_INSTR;
+        
+        NAME_ORDER = ItemComparator.Factory.create (new int [] {IItemAttribute.ATTRIBUTE_NAME_ID, +1}, IItemAttribute.UNITS_COUNT);
+    }
+
+} // end of class
+// ----------------------------------------------------------------------------
@@ -32,6 +32,15 @@ interface IItem
      * @return
      */
     Iterator /* IItem */ getChildren (ItemComparator /* IItem */ order);
+    /**
+     * Returns the first 'limit' children in 'order' [the same items as the
+     * first 'limit' returned by getChildren(order)] without sorting all
+     * children, e.g. for "top N worst covered" listings.
+     * 
+     * @param order [null is equivalent to no sort]
+     * @param limit max number of children to return [may not be negative]
+     */
+    Iterator /* IItem */ getChildren (ItemComparator /* IItem */ order, int limit);
     
     String getName ();   
     IItemMetadata getMetadata ();
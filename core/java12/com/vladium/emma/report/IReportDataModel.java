@@ -8,6 +8,7 @@
  */
 package com.vladium.emma.report;
 
+import com.vladium.util.IJREVersion;
 import com.vladium.emma.data.ICoverageData;
 import com.vladium.emma.data.IMetaData;
 
@@ -30,7 +31,23 @@ interface IReportDataModel
          */
         public static IReportDataModel create (final IMetaData mdata, final ICoverageData cdata)
         {
-            return new ReportDataModel (mdata, cdata);
+            return new ReportDataModel (mdata, cdata, 1);
+        }
+        
+        /**
+         * Same as {@link #create(IMetaData, ICoverageData)} except that
+         * getView() also computes all item aggregates of a new view upfront,
+         * using up to 'parallelism' threads. This pays off when the same view
+         * is shared by several report generators.
+         * 
+         * @param parallelism max number of threads to use [0 or less means one
+         * thread per available processor on JRE 1.4+ and a single thread otherwise]
+         */
+        public static IReportDataModel create (final IMetaData mdata, final ICoverageData cdata, int parallelism)
+        {
+            if (parallelism <= 0) parallelism = IJREVersion.JRE_1_4_PLUS ? Runtime.getRuntime ().availableProcessors () : 1;
+            
+            return new ReportDataModel (mdata, cdata, parallelism);
         }
         
     } // end of nested class
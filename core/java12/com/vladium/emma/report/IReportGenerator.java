@@ -29,6 +29,16 @@ interface IReportGenerator
     void process (IMetaData mdata, ICoverageData cdata, SourcePathCache cache, IProperties parameters)
         throws EMMARuntimeException;
     
+    /**
+     * Sets a data model to be used by the next process() instead of a private
+     * one created from its 'mdata' and 'cdata' [the model must be built on the
+     * same data]. This lets several generators share views and computed
+     * aggregates.
+     * 
+     * @param model [null reverts to a private model]
+     */
+    void setDataModel (IReportDataModel model);
+    
     void cleanup ();
         
 } // end of interface
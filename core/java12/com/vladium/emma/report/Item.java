@@ -43,18 +43,30 @@ abstract class Item implements IItem
     
     public final Iterator getChildren (final ItemComparator /* IItem */ order)
     {
-        // TODO: soft caching keyed off 'order'
-        
-        if (order == null)
+        if ((order == null) || (m_children.size () < 2))
             return getChildren ();
+        else
+            return Arrays.asList (getSortedChildren (order)).iterator ();
+    }
+    
+    public final Iterator getChildren (final ItemComparator /* IItem */ order, final int limit)
+    {
+        if (limit < 0) throw new IllegalArgumentException ("negative input: limit");
+        
+        final int size = m_children.size ();
+        
+        if (limit >= size)
+            return getChildren (order);
+        else if (order == null)
+            return m_children.subList (0, limit).iterator ();
         else
         {        
-            final IItem [] items = new IItem [m_children.size ()];
-            m_children.toArray (items);
+            final IItem [] sorted = getCachedChildren (order);
             
-            Arrays.sort (items, order);
-            
-            return Arrays.asList (items).iterator ();
+            if (sorted != null)
+                return Arrays.asList (sorted).subList (0, limit).iterator ();
+            else
+                return Arrays.asList (selectChildren (order, limit)).iterator ();
         }
     }
     
@@ -135,6 +147,12 @@ abstract class Item implements IItem
         if (item == null) throw new IllegalArgumentException ("null input: item");
         
         m_children.add (item);
+        
+        if (m_sortOrders != null)
+        {
+            m_sortOrders = null;
+            m_sortedChildren = null;
+        }
     }
     
     
@@ -156,7 +174,139 @@ abstract class Item implements IItem
     // private: ...............................................................
     
     
+    /*
+     * Returns the children sorted in 'order' [Arrays.sort() is stable, so
+     * equal children stay in insertion order]. The sorted arrays for the last
+     * few orders are cached: report generators list the same children in the
+     * same order several times [e.g. in a parent's breakdown table and on
+     * the child's own page], and orders are per generator comparator
+     * instances, so the cache is keyed by identity.
+     */
+    private IItem [] getSortedChildren (final ItemComparator order)
+    {
+        IItem [] items = getCachedChildren (order);
+        if (items == null)
+        {
+            items = new IItem [m_children.size ()];
+            m_children.toArray (items);
+            
+            Arrays.sort (items, order);
+            
+            if (m_sortOrders == null)
+            {
+                m_sortOrders = new ItemComparator [SORT_CACHE_SIZE];
+                m_sortedChildren = new IItem [SORT_CACHE_SIZE][];
+            }
+            
+            // replace the oldest entry:
+            
+            System.arraycopy (m_sortOrders, 0, m_sortOrders, 1, SORT_CACHE_SIZE - 1);
+            System.arraycopy (m_sortedChildren, 0, m_sortedChildren, 1, SORT_CACHE_SIZE - 1);
+            
+            m_sortOrders [0] = order;
+            m_sortedChildren [0] = items;
+        }
+        
+        return items;
+    }
+    
+    /*
+     * @return cached result of getSortedChildren(order) [null if none]
+     */
+    private IItem [] getCachedChildren (final ItemComparator order)
+    {
+        final ItemComparator [] orders = m_sortOrders;
+        if (orders != null)
+        {
+            for (int o = 0; o < orders.length; ++ o)
+            {
+                if (orders [o] == order) return m_sortedChildren [o];
+            }
+        }
+        
+        return null;
+    }
+    
+    /*
+     * Partial selection of the first 'limit' children in 'order' in
+     * O(n log limit) time: a max-heap holds the indices of the best 'limit'
+     * children seen so far and is then heap-sorted in place. Ties are broken
+     * by child index so that the result is the same as a prefix of
+     * getSortedChildren(order).
+     * 
+     * @param limit [0 <= limit < child count]
+     */
+    private IItem [] selectChildren (final ItemComparator order, final int limit)
+    {
+        final IItem [] children = new IItem [m_children.size ()];
+        m_children.toArray (children);
+        
+        final int [] heap = new int [limit];
+        for (int i = 0; i < limit; ++ i)
+        {
+            // sift up:
+            int c = i;
+            while (c > 0)
+            {
+                final int p = (c - 1) >> 1;
+                if (compare (order, children, i, heap [p]) <= 0) break;
+                
+                heap [c] = heap [p];
+                c = p;
+            }
+            heap [c] = i;
+        }
+        
+        for (int i = limit; i < children.length; ++ i)
+        {
+            if ((limit > 0) && (compare (order, children, i, heap [0]) < 0))
+                siftDown (order, children, heap, i, limit);
+        }
+        
+        // heap sort [the max goes to the end]:
+        for (int last = limit - 1; last > 0; -- last)
+        {
+            final int max = heap [0];
+            siftDown (order, children, heap, heap [last], last);
+            heap [last] = max;
+        }
+        
+        final IItem [] result = new IItem [limit];
+        for (int i = 0; i < limit; ++ i) result [i] = children [heap [i]];
+        
+        return result;
+    }
+    
+    /*
+     * Replaces the root of heap [0, size) with child index 'i' and restores
+     * the max-heap property.
+     */
+    private static void siftDown (final ItemComparator order, final IItem [] children, final int [] heap, final int i, final int size)
+    {
+        int p = 0;
+        for (int c; (c = (p << 1) + 1) < size; p = c)
+        {
+            if ((c + 1 < size) && (compare (order, children, heap [c + 1], heap [c]) > 0)) ++ c;
+            if (compare (order, children, heap [c], i) <= 0) break;
+            
+            heap [p] = heap [c];
+        }
+        heap [p] = i;
+    }
+    
+    private static int compare (final ItemComparator order, final IItem [] children, final int i1, final int i2)
+    {
+        final int diff = order.compare (children [i1], children [i2]);
+        
+        return diff != 0 ? diff : i1 - i2;
+    }
+    
+    
     private final List m_children;
+    private ItemComparator [] m_sortOrders; // null until the first sort
+    private IItem [][] m_sortedChildren; // m_sortedChildren [o] is sorted in m_sortOrders [o]
+    
+    private static final int SORT_CACHE_SIZE = 2;
 
 } // end of class
 // ----------------------------------------------------------------------------
\ No newline at end of file
@@ -9,6 +9,8 @@
 package com.vladium.emma.report;
 
 import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
 
 // ----------------------------------------------------------------------------
 /**
@@ -34,8 +36,35 @@ interface ItemComparator extends Comparator
                 return NULL_COMPARATOR;
                 
             // TODO: validate against duplicates
-            // TODO: memoize
             
+            // comparators are memoized so that generators with the same sort
+            // order share comparator instances [and hence sorted child caches
+            // of a shared data model]:
+            
+            final StringBuffer key = new StringBuffer ();
+            key.append (unitsID);
+            for (int a = 0; a < attributeIDsWithDir.length; ++ a)
+            {
+                key.append (',');
+                key.append (attributeIDsWithDir [a]);
+            }
+            
+            synchronized (s_comparators)
+            {
+                ItemComparator result = (ItemComparator) s_comparators.get (key.toString ());
+                if (result == null)
+                {
+                    result = createComparator (attributeIDsWithDir, unitsID);
+                    s_comparators.put (key.toString (), result);
+                }
+                
+                return result;
+            }
+        }
+        
+        
+        private static ItemComparator createComparator (final int [] attributeIDsWithDir, final int unitsID)
+        {
             // TODO: move the code below into the attr factory
             final Comparator [] comparators = new Comparator [attributeIDsWithDir.length >> 1];
             for (int a = 0; a < attributeIDsWithDir.length; a += 2)
@@ -104,6 +133,9 @@ interface ItemComparator extends Comparator
             
         } // end of nested class
         
+        
+        private static final Map /* String -> ItemComparator */ s_comparators = new HashMap ();
+    
     } // end of nested interface 
     
 } // end of interface
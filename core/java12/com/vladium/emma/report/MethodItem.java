@@ -11,6 +11,7 @@ package com.vladium.emma.report;
 import com.vladium.util.Descriptors;
 import com.vladium.util.IntObjectMap;
 import com.vladium.util.asserts.$assert;
+import com.vladium.emma.data.CoverageBits;
 import com.vladium.emma.data.IMetadataConstants;
 import com.vladium.emma.data.MethodDescriptor;
 
@@ -53,6 +54,18 @@ final class MethodItem extends Item
         return m_firstLine;
     }
     
+    /**
+     * @return 'false' for methods that were deliberately left uninstrumented
+     * by a hot method profile [such methods are listed in reports but have
+     * no coverage data and contribute nothing to any aggregates]
+     */
+    public boolean isInstrumented ()
+    {
+        final MethodDescriptor method = ((ClassItem) m_parent).m_cls.getMethods () [m_ID];
+        
+        return (method.getStatus () & IMetadataConstants.METHOD_HOT) == 0;
+    }
+    
     public int getAggregate (final int type)
     {
         final int [] aggregates = m_aggregates;
@@ -68,14 +81,15 @@ final class MethodItem extends Item
                     
             if ((status & IMetadataConstants.METHOD_NO_BLOCK_DATA) != 0)
             {
-                if ($assert.ENABLED) $assert.ASSERT (false, "excluded method in report data model");
+                // only methods left uninstrumented by a hot method profile are in the model:
+                if ($assert.ENABLED) $assert.ASSERT ((status & IMetadataConstants.METHOD_HOT) != 0, "excluded method in report data model");
                 
                 for (int i = 0; i < aggregates.length; ++ i) aggregates [i] = 0;
             }
             else
             {
                 final boolean lineInfo = ((status & IMetadataConstants.METHOD_NO_LINE_NUMBER_TABLE) == 0);                
-                final boolean [] coverage = parent.m_coverage != null ? parent.m_coverage [m_ID] : null;  
+                final long [] coverage = parent.m_coverage != null ? parent.m_coverage [m_ID] : null;  
                               
                 final int totalBlockCount = method.getBlockCount ();
 
@@ -88,20 +102,16 @@ final class MethodItem extends Item
                 
                 if (coverage != null)
                 {
-                    int coverageBlockCount = 0, coverageLineCount = 0;
-                    int coverageBlockInstr = 0, coverageLineInstr = 0;
+                    int coverageLineCount = 0, coverageLineInstr = 0;
 
                     for (int b = 0; b < totalBlockCount; ++ b)
                     {
-                        final int instr = blockSizes [b];
-                         
-                        totalBlockInstr += instr;
-                        if (coverage [b])
-                        {
-                            ++ coverageBlockCount;
-                            coverageBlockInstr += instr;
-                        }
+                        totalBlockInstr += blockSizes [b];
                     }
+                         
+                    // count and weigh covered blocks a word at a time:
+                    final int coverageBlockCount = CoverageBits.count (coverage);
+                    final int coverageBlockInstr = coverageBlockCount > 0 ? CoverageBits.sum (coverage, blockSizes) : 0;
                     
                     if (lineInfo)
                     {
@@ -125,7 +135,7 @@ final class MethodItem extends Item
                                 final int instr = blockSizes [b];
                                 
                                 thisLineTotalInstr += instr;
-                                if (coverage [b])
+                                if (CoverageBits.get (coverage, b))
                                 {
                                     ++ thisLineCoverageCount;
                                     thisLineCoverageInstr += instr;
@@ -96,7 +96,7 @@ final class ReportDataModel implements IReportDataModel
                                                         new Object [] { Descriptors.vmNameToJavaName (cls.getClassVMName ()) }); 
                 }
                 
-                final boolean [][] coverage = data != null ? data.m_coverage : null;
+                final long [][] coverage = data != null ? data.getBits () : null;
                 
                 if ($assert.ENABLED) $assert.ASSERT (! srcView || srcfileItem != null, "null srcfileItem");
                 
@@ -108,7 +108,11 @@ final class ReportDataModel implements IReportDataModel
                 {
                     final MethodDescriptor method = methods [m];
                         
-                    if ((method.getStatus () & IMetadataConstants.METHOD_NO_BLOCK_DATA) != 0) continue;
+                    final int status = method.getStatus ();
+                    
+                    // hot methods are listed as "not instrumented" rather than left out:
+                    if (((status & IMetadataConstants.METHOD_NO_BLOCK_DATA) != 0)
+                        && ((status & IMetadataConstants.METHOD_HOT) == 0)) continue;
                     
                     // TODO: wouldn't it be more consistent to simply pass the entire descriptor into MethodItems? (eval mem savings)
                     final MethodItem methodItem = new MethodItem (classItem, m, method.getName (), method.getDescriptor (), method.getFirstLine ());                    
@@ -123,6 +127,11 @@ final class ReportDataModel implements IReportDataModel
                     packageItem.addChild (classItem);
             }
             
+            if (m_parallelism > 1)
+            {
+                AggregateComputer.compute (root, m_mdata.hasLineNumberData (), srcView, m_parallelism);
+            }
+            
             view = new ReportDataView (root);
             
             m_views [viewType] = view;
@@ -135,7 +144,11 @@ final class ReportDataModel implements IReportDataModel
     // package: ...............................................................
 
     
-    ReportDataModel (final IMetaData mdata, final ICoverageData cdata)
+    /*
+     * @param parallelism if > 1, getView() precomputes all aggregates of a
+     * new view using up to this many threads [otherwise they are computed lazily]
+     */
+    ReportDataModel (final IMetaData mdata, final ICoverageData cdata, final int parallelism)
     {
         if (mdata == null) throw new IllegalArgumentException ("null input: mdata");
         if (cdata == null) throw new IllegalArgumentException ("null input: cdata");
@@ -147,6 +160,7 @@ final class ReportDataModel implements IReportDataModel
         
         m_mdata = mdata;
         m_cdata = cdata;
+        m_parallelism = parallelism;
     }
     
     // private: ...............................................................
@@ -172,6 +186,7 @@ final class ReportDataModel implements IReportDataModel
     
     private final IMetaData m_mdata;
     private final ICoverageData m_cdata;
+    private final int m_parallelism;
     
     private final IReportDataView [] m_views;
 
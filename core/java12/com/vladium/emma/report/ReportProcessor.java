@@ -15,17 +15,20 @@ import com.vladium.logging.Logger;
 import com.vladium.util.Files;
 import com.vladium.util.IConstants;
 import com.vladium.util.IProperties;
+import com.vladium.util.Property;
 import com.vladium.util.Strings;
 import com.vladium.util.asserts.$assert;
 import com.vladium.util.exception.Exceptions;
 import com.vladium.emma.IAppConstants;
 import com.vladium.emma.IAppErrorCodes;
+import com.vladium.emma.EMMAProperties;
 import com.vladium.emma.EMMARuntimeException;
 import com.vladium.emma.Processor;
 import com.vladium.emma.data.DataFactory;
 import com.vladium.emma.data.ICoverageData;
 import com.vladium.emma.data.IMergeable;
 import com.vladium.emma.data.IMetaData;
+import com.vladium.emma.filter.IInclExclFilter;
 
 // ----------------------------------------------------------------------------
 /**
@@ -59,6 +62,22 @@ final class ReportProcessor extends Processor
             m_dataPath = Files.pathToFiles (path, true);
     }
     
+    /**
+     * Restricts all generated reports to classes accepted by a coverage
+     * inclusion/exclusion filter. The filter is applied while data files are
+     * being read: records for excluded classes are skipped without being
+     * decoded.
+     * 
+     * @param specs [null is equivalent to no filtering (everything is included)] 
+     */
+    public synchronized final void setInclExclFilter (final String [] specs)
+    {
+        if ((specs == null) || (specs.length == 0))
+            m_coverageFilter = null;
+        else
+            m_coverageFilter = IInclExclFilter.Factory.create (specs);
+    }
+    
     /**
      * @param path [null is equivalent to no source path]
      */
@@ -133,6 +152,7 @@ final class ReportProcessor extends Processor
             }
             log.verbose ("}");
             
+            if (m_coverageFilter != null) log.verbose ("[report data is restricted by a coverage filter]");
             
             if ((m_sourcePath == null) || (m_sourcePath.length == 0))
             {
@@ -157,6 +177,12 @@ final class ReportProcessor extends Processor
             log.info ("processing input files ...");
         }
         
+        final int loadThreads = Property.toInt (toolProperties.getProperty (EMMAProperties.PROPERTY_DATA_IN_THREADS),
+                                                EMMAProperties.DEFAULT_DATA_IN_THREADS);
+        final int reportThreads = Property.toInt (toolProperties.getProperty (EMMAProperties.PROPERTY_REPORT_THREADS),
+                                                  EMMAProperties.DEFAULT_REPORT_THREADS);
+        final String summaryOutFile = toolProperties.getProperty (EMMAProperties.PROPERTY_SUMMARY_OUT_FILE);
+        
         RuntimeException failure = null;
         try
         {
@@ -168,37 +194,13 @@ final class ReportProcessor extends Processor
             // merge all data files:
             try
             {
-                for (int f = 0; f < m_dataPath.length; ++ f)
-                {
-                    final File dataFile = m_dataPath [f];
-                    if (verbose) log.verbose ("processing input file [" + dataFile.getAbsolutePath () + "] ...");
-                    
-                    final IMergeable [] fileData = DataFactory.load (dataFile);
+                // load and merge all data files concurrently [note: later datapath entries override earlier ones]:
+                final IMergeable [] pathData = DataFactory.load (m_dataPath, m_coverageFilter, loadThreads);
                     
-                    final IMetaData _mdata = (IMetaData) fileData [DataFactory.TYPE_METADATA];
-                    if (_mdata != null)
-                    {
-                        if (verbose) log.verbose ("  loaded " + _mdata.size () + " metadata entries");
-                        
-                        if (mdata == null)
-                            mdata = _mdata;
-                        else
-                            mdata = (IMetaData) mdata.merge (_mdata); // note: later datapath entries override earlier ones
-                    }
-                    
-                    final ICoverageData _cdata = (ICoverageData) fileData [DataFactory.TYPE_COVERAGEDATA];
-                    if (_cdata != null)
-                    {
-                        if (verbose) log.verbose ("  loaded " + _cdata.size () + " coverage data entries");
-                        
-                        if (cdata == null)
-                            cdata = _cdata;
-                        else
-                            cdata = (ICoverageData) cdata.merge (_cdata); // note: later datapath entries override earlier ones
-                    }
+                mdata = (IMetaData) pathData [DataFactory.TYPE_METADATA];
+                cdata = (ICoverageData) pathData [DataFactory.TYPE_COVERAGEDATA];
                     
-                    ++ m_dataFileCount;
-                }
+                m_dataFileCount = m_dataPath.length;
                 
                 if (log.atINFO ())
                 {
@@ -241,32 +243,49 @@ final class ReportProcessor extends Processor
                 }
                                 
                 SourcePathCache srcpathCache = null;
-                if (m_sourcePath != null) srcpathCache = new SourcePathCache (m_sourcePath, true); // ignore non-existent source dirs 
+                if (m_sourcePath != null) srcpathCache = new SourcePathCache (m_sourcePath, true, reportThreads); // ignore non-existent source dirs 
                 
-                for (int g = 0; g < m_reportGenerators.length; ++ g)
+                // all generators share a single data model [and hence the views and
+                // aggregates computed for it]:
+                final IReportDataModel model = IReportDataModel.Factory.create (mdata, cdata, reportThreads);
+                
+                try
                 {
-                    final IReportGenerator generator = m_reportGenerators [g];
-                    
-                    try
+                    for (int g = 0; g < m_reportGenerators.length; ++ g)
                     {
-                        // no shallow copies of 'mdata' or 'cdata' are needed here
-                        // because this command never runs in a concurrent situation
-                        
-                        generator.process (mdata, cdata, srcpathCache, toolProperties);
-                    }
-                    catch (Throwable t)
-                    {
-                        // TODO: handle and continue
-                        t.printStackTrace (System.out);
+                        final IReportGenerator generator = m_reportGenerators [g];
+                    
+                        try
+                        {
+                            // no shallow copies of 'mdata' or 'cdata' are needed here
+                            // because this command never runs in a concurrent situation
                         
-                        // TODO: continue here
-                        break;
+                            generator.setDataModel (model);
+                            generator.process (mdata, cdata, srcpathCache, toolProperties);
+                        }
+                        catch (Throwable t)
+                        {
+                            // TODO: handle and continue
+                            t.printStackTrace (System.out);
+                            
+                            // TODO: continue here
+                            break;
+                        }
+                        finally
+                        {
+                            try { generator.cleanup (); } catch (Throwable ignore) {}
+                        }
                     }
-                    finally
+                    
+                    if ((summaryOutFile != null) && (summaryOutFile.length () > 0))
                     {
-                        try { generator.cleanup (); } catch (Throwable ignore) {}
+                        writeSummary (mdata, model, new File (summaryOutFile));
                     }
                 }
+                finally
+                {
+                    if (srcpathCache != null) srcpathCache.close ();
+                }
             }
             catch (IOException ioe)
             {
@@ -315,11 +334,32 @@ final class ReportProcessor extends Processor
         m_dataFileCount = 0;
     }
     
+    private void writeSummary (final IMetaData mdata, final IReportDataModel model, final File summaryOutFile)
+    {
+        final Logger log = m_log;
+        final long start = log.atINFO () ? System.currentTimeMillis () : 0;
+        
+        try
+        {
+            CoverageSummary.write (mdata, model, summaryOutFile);
+        }
+        catch (IOException ioe)
+        {
+            throw new EMMARuntimeException (OUT_IO_FAILURE, new Object [] {summaryOutFile.getAbsolutePath ()}, ioe);
+        }
+        
+        if (log.atINFO ())
+        {
+            log.info ("coverage summary written to [" + summaryOutFile.getAbsolutePath () + "] {in " + (System.currentTimeMillis () - start) + " ms}");
+        }
+    }
+    
     
     // caller-settable state [scoped to this runner instance]:
     
     private File [] m_dataPath;     // required to be non-null for run()
     private File [] m_sourcePath;   // can be null/empty for run()
+    private IInclExclFilter m_coverageFilter; // can be null for run()
     private IReportGenerator [] m_reportGenerators; // required to be non-null for run()
 
     // internal run()-scoped state:
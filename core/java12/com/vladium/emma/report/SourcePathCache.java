@@ -9,19 +9,42 @@
 package com.vladium.emma.report;
 
 import java.io.File;
-import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
+import com.vladium.logging.Logger;
+import com.vladium.util.IJREVersion;
 import com.vladium.util.asserts.$assert;
+import com.vladium.emma.IAppConstants;
 
 // ----------------------------------------------------------------------------
 /**
+ * Locates .java source files in a source path made up of directories and
+ * source archives [.zip or .jar files, e.g. src.zip or -sources.jar
+ * artifacts]. Archive sources are read in place, without unpacking them.<P>
+ * 
+ * On the first lookup all source path entries are indexed at once, using
+ * several threads [one source path entry per thread at most]. The index is
+ * read-only after that; lookups only hold the cache monitor long enough to
+ * get it. Like a classpath, an earlier source path entry shadows the same
+ * source file in later ones.<P>
+ * 
+ * Source archives stay open until {@link #close()} is called.
+ * 
  * @author Vlad Roubtsov, (C) 2003
  */
 public
@@ -29,200 +52,440 @@ final class SourcePathCache
 {
     // public: ................................................................
     
-    // TODO: use soft cache for m_packageCache?
     
     /**
-     * @param sourcepath [can be empty]
+     * A source file found in a source directory or a source archive.
      */
-    public SourcePathCache (final String [] sourcepath, final boolean removeNonExistent)
+    public static final class SourceFile
     {
-        if (sourcepath == null) throw new IllegalArgumentException ("null input: sourcepath");
+        /**
+         * @return absolute pathname for files in source directories [null for
+         * archive entries]
+         */
+        public File getFile ()
+        {
+            return m_archive == null ? m_file : null;
+        }
         
-        final List _sourcepath = new ArrayList (sourcepath.length);
-        for (int i = 0; i < sourcepath.length; ++ i)
+        /**
+         * @return a display path [absolute pathname, or archive pathname and
+         * entry name separated by '!/' for archive entries]
+         */
+        public String getPath ()
         {
-            final File dir = new File (sourcepath [i]);
+            return m_archive == null ? m_file.getPath () : m_file.getPath () + "!/" + m_entry.getName ();
+        }
+        
+        public long lastModified ()
+        {
+            return m_archive == null ? m_file.lastModified () : m_entry.getTime ();
+        }
+        
+        /**
+         * @return size in bytes [-1 if unknown]
+         */
+        public long length ()
+        {
+            return m_archive == null ? m_file.length () : m_entry.getSize ();
+        }
+        
+        /**
+         * Opens the source contents for reading in the platform default
+         * encoding. The caller is responsible for closing the reader.
+         */
+        public Reader openReader ()
+            throws IOException
+        {
+            final InputStream in = m_archive == null ? new FileInputStream (m_file) : m_archive.getInputStream (m_entry);
             
-            if (! removeNonExistent || (dir.isDirectory () && dir.exists ()))
-                _sourcepath.add (dir);
+            return new InputStreamReader (in);
+        }
+        
+        public String toString ()
+        {
+            return getPath ();
+        }
+        
+        
+        SourceFile (final File file)
+        {
+            m_file = file;
+            m_archive = null;
+            m_entry = null;
+        }
+        
+        SourceFile (final File archiveFile, final ZipFile archive, final ZipEntry entry)
+        {
+            m_file = archiveFile;
+            m_archive = archive;
+            m_entry = entry;
         }
         
-        m_sourcepath = new File [_sourcepath.size ()];
-        _sourcepath.toArray (m_sourcepath);
         
-        m_packageCache = new HashMap ();
+        private final File m_file; // the source file or the archive file
+        private final ZipFile m_archive; // null for source directory files
+        private final ZipEntry m_entry; // null for source directory files
+    
+    } // end of nested class
+    
+    
+    /**
+     * @param sourcepath [can be empty]
+     */
+    public SourcePathCache (final String [] sourcepath, final boolean removeNonExistent)
+    {
+        this (toFiles (sourcepath), removeNonExistent, 0);
     }
     
     /**
      * @param sourcepath [can be empty]
      */
     public SourcePathCache (final File [] sourcepath, final boolean removeNonExistent)
+    {
+        this (sourcepath, removeNonExistent, 0);
+    }
+    
+    /**
+     * @param sourcepath [can be empty]
+     * @param parallelism max number of threads used to index the source path [0
+     * or less means one thread per available processor on JRE 1.4+ and a single
+     * thread otherwise]
+     */
+    public SourcePathCache (final File [] sourcepath, final boolean removeNonExistent, final int parallelism)
     {
         if (sourcepath == null) throw new IllegalArgumentException ("null input: sourcepath");
         
         final List _sourcepath = new ArrayList (sourcepath.length);
         for (int i = 0; i < sourcepath.length; ++ i)
         {
-            final File dir = sourcepath [i];
+            final File entry = sourcepath [i];
             
-            if (! removeNonExistent || (dir.isDirectory () && dir.exists ()))
-                _sourcepath.add (dir);
+            if (! removeNonExistent || entry.isDirectory () || isArchive (entry))
+                _sourcepath.add (entry);
         }
         
         m_sourcepath = new File [_sourcepath.size ()];
         _sourcepath.toArray (m_sourcepath);
         
-        m_packageCache = new HashMap ();
+        if (parallelism > 0)
+            m_parallelism = parallelism;
+        else
+            m_parallelism = IJREVersion.JRE_1_4_PLUS ? Runtime.getRuntime ().availableProcessors () : 1;
+        
+        m_archives = new ArrayList ();
+    }
+    
+    /**
+     * @return absolute pathname [null if 'name' was not found in cache or
+     * was only found in a source archive: use {@link #findSource} to get at
+     * those]
+     */
+    public File find (final String packageVMName, final String name)
+    {
+        final SourceFile source = findSource (packageVMName, name);
+        
+        return source != null ? source.getFile () : null;
     }
     
     /**
-     * @return absolute pathname [null if 'name' was not found in cache]
+     * @return source file [null if 'name' was not found in cache]
      */
-    public synchronized File find (final String packageVMName, final String name)
+    public SourceFile findSource (final String packageVMName, final String name)
     {
         if (packageVMName == null) throw new IllegalArgumentException ("null input: packageVMName");
         if (name == null) throw new IllegalArgumentException ("null input: name");
         
         if (m_sourcepath.length == 0) return null;
         
-        CacheEntry entry = (CacheEntry) m_packageCache.get (packageVMName);
+        // TODO: this is case-sensitive at this point
+        final String key = packageVMName.length () == 0 ? name : packageVMName + '/' + name;
         
-        if (entry == null)
-        {
-            entry = new CacheEntry (m_sourcepath.length);
-            m_packageCache.put (packageVMName, entry);
-        }
-        
-        final Set [] listings = entry.m_listings;
-        for (int p = 0; p < listings.length; ++ p)
+        return (SourceFile) getIndex ().get (key);
+    }
+    
+    /**
+     * Closes all source archives opened by this cache. SourceFile handles
+     * for archive entries are unusable after this.
+     */
+    public synchronized void close ()
+    {
+        for (Iterator archives = m_archives.iterator (); archives.hasNext (); )
         {
-            Set listing = listings [p];
-            if (listing == null)
-            {
-                listing = faultListing (m_sourcepath [p], packageVMName);
-                listings [p] = listing;
-            }
-            
-            // TODO: this is case-sensitive at this point
-            if (listing.contains (name))
-            {
-                final File relativeFile = new File (packageVMName.replace ('/', File.separatorChar), name);
-                
-                return new File (m_sourcepath [p], relativeFile.getPath ()).getAbsoluteFile ();
-            }
+            try { ((ZipFile) archives.next ()).close (); } catch (IOException ignore) {}
         }
+        m_archives.clear ();
         
-        return null;
+        m_index = Collections.EMPTY_MAP;
     }
     
     // protected: .............................................................
-
+    
     // package: ...............................................................
     
     // private: ...............................................................
     
     
-    private static final class CacheEntry
+    private static final class Task implements Runnable
     {
-        CacheEntry (final int size)
+        public void run ()
         {
-            m_listings = new Set [size];
+            try
+            {
+                if (m_parallelism < 2)
+                    indexRange ();
+                else
+                    forkRange ();
+            }
+            catch (Throwable t)
+            {
+                m_failure = t;
+            }
         }
         
-        
-        final Set /* String */ [] m_listings;
-        
-    } // end of nested class
-    
-    
-    // NOTE: because java.io.* implements file filtering in bytecode
-    // there is no real perf advantage in using a filter here (I might
-    // as well do list() and filter the result myself 
-    
-    private static final class FileExtensionFilter implements FileFilter
-    {
-        public boolean accept (final File file)
+        Task (final File [] sourcepath, final int start, final int end,
+              final Map [] indices, final Object [] archives, final int parallelism)
         {
-            if ($assert.ENABLED) $assert.ASSERT (file != null, "file = null");
-            
-            if (file.isDirectory ()) return false; // filter out directories
-
-            final String name = file.getName ();
-            final int lastDot = name.lastIndexOf ('.');
-            if (lastDot <= 0) return false;
+            if ($assert.ENABLED) $assert.ASSERT (end - start >= parallelism || parallelism == 1, "too few entries for parallelism " + parallelism);
             
-            // [assertion: lastDot > 0]
+            m_sourcepath = sourcepath;
+            m_start = start;
+            m_end = end;
+            m_indices = indices;
+            m_archives = archives;
+            m_parallelism = parallelism;
+        }
+        
+        /*
+         * rethrows the failure [if any] of this task in the calling thread
+         */
+        void checkFailure ()
+        {
+            final Throwable failure = m_failure;
             
-            // note: match is case sensitive
-            return m_extension.equals (name.substring (lastDot));
+            if (failure != null)
+            {
+                if (failure instanceof RuntimeException)
+                    throw (RuntimeException) failure;
+                else if (failure instanceof Error)
+                    throw (Error) failure;
+                else
+                    throw new RuntimeException (failure.toString ());
+            }
         }
         
-        public String toString ()
+        
+        private void indexRange ()
         {
-            return super.toString () + ", extension = [" + m_extension + "]";
+            for (int p = m_start; p < m_end; ++ p)
+            {
+                final File entry = m_sourcepath [p];
+                final Map index = new HashMap ();
+                
+                if (entry.isDirectory ())
+                {
+                    indexDirectory (entry, "", index, new HashSet ());
+                }
+                else if (entry.isFile ())
+                {
+                    // slot 'p' receives the open archive or the reason it could not be opened:
+                    try
+                    {
+                        final ZipFile archive = new ZipFile (entry);
+                        m_archives [p] = archive;
+                        
+                        indexArchive (entry, archive, index);
+                    }
+                    catch (IOException ioe)
+                    {
+                        m_archives [p] = ioe;
+                    }
+                }
+                
+                m_indices [p] = index;
+            }
         }
         
-        FileExtensionFilter (final String extension)
+        private void forkRange ()
         {
-            if (extension == null)
-                throw new IllegalArgumentException ("null input: extension");
+            // split the range in proportion to the thread budget of each half:
             
-            // ensure starting '.':
-            final String canonical = canonicalizeExtension (extension); 
+            final int leftParallelism = m_parallelism >> 1;
+            final int split = m_start + (int) (((long) (m_end - m_start)) * leftParallelism / m_parallelism);
             
-            if (extension.length () <= 1)
-                throw new IllegalArgumentException ("empty input: extension");
+            final Task left = new Task (m_sourcepath, m_start, split, m_indices, m_archives, leftParallelism);
+            final Task right = new Task (m_sourcepath, split, m_end, m_indices, m_archives, m_parallelism - leftParallelism);
             
-            m_extension = canonical;
-        }
-        
-        private static String canonicalizeExtension (final String extension)
-        {
-            if (extension.charAt (0) != '.')
-                return ".".concat (extension);
-            else
-                return extension;
+            final Thread fork = new Thread (left, IAppConstants.APP_NAME + " source path indexer [" + m_start + ", " + split + ")");
+            fork.setDaemon (true);
+            fork.start ();
+            
+            right.run ();
+            
+            boolean interrupted = false;
+            while (true)
+            {
+                try
+                {
+                    fork.join ();
+                    break;
+                }
+                catch (InterruptedException ie)
+                {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread ().interrupt (); // restore the interrupt status
+            
+            left.checkFailure ();
+            right.checkFailure ();
         }
         
         
-        private final String m_extension;
+        private final File [] m_sourcepath;
+        private final int m_start, m_end; // [m_start, m_end) range of m_sourcepath
+        private final Map [] m_indices; // shared by all tasks [each task sets its own range of slots]
+        private final Object [] m_archives; // shared by all tasks [each task sets its own range of slots]
+        private final int m_parallelism;
         
+        private Throwable m_failure; // set by run(), read after join()
+    
     } // end of nested class
     
     
-    private Set /* String */ faultListing (final File dir, final String packageVMName)
+    private static File [] toFiles (final String [] sourcepath)
     {
-        if ($assert.ENABLED) $assert.ASSERT (dir != null, "dir = null");
-        if ($assert.ENABLED) $assert.ASSERT (packageVMName != null, "packageVMName = null");
+        if (sourcepath == null) throw new IllegalArgumentException ("null input: sourcepath");
+        
+        final File [] result = new File [sourcepath.length];
+        for (int i = 0; i < sourcepath.length; ++ i)
+        {
+            result [i] = new File (sourcepath [i]);
+        }
         
-        final File packageFile = new File (dir, packageVMName.replace ('/', File.separatorChar));
+        return result;
+    }
+    
+    private static boolean isArchive (final File file)
+    {
+        if (! file.isFile ()) return false;
         
-        final File [] listing = packageFile.listFiles (FILE_EXTENSION_FILTER);
+        final String name = file.getName ().toLowerCase ();
+        return name.endsWith (".zip") || name.endsWith (".jar");
+    }
+    
+    /*
+     * Adds all .java files in 'dir' and its subdirectories to 'index', keyed
+     * by their '/'-separated paths relative to the source directory.
+     *
+     * @param prefix relative path of 'dir' [empty or ending with '/']
+     * @param visited canonical paths of the directories indexed so far [guards
+     * against directory symlink cycles]
+     */
+    private static void indexDirectory (final File dir, final String prefix, final Map index, final Set visited)
+    {
+        // NOTE: because java.io.* implements file filtering in bytecode
+        // there is no real perf advantage in using a filter here
         
-        if ((listing == null) || (listing.length == 0))
-            return Collections.EMPTY_SET;
-        else
+        // File.isDirectory() follows symlinks: don't descend into a directory
+        // that has already been indexed [or whose real path is unknown]:
+        try
         {
-            final Set result = new HashSet (listing.length);
-            for (int f = 0; f < listing.length; ++ f)
+            if (! visited.add (dir.getCanonicalPath ())) return;
+        }
+        catch (IOException ioe)
+        {
+            return;
+        }
+        
+        final File [] listing = dir.listFiles ();
+        if (listing == null) return;
+        
+        for (int f = 0; f < listing.length; ++ f)
+        {
+            final File file = listing [f];
+            final String name = file.getName ();
+            
+            // note: match is case sensitive
+            if (name.endsWith (SOURCE_EXTENSION) && (name.length () > SOURCE_EXTENSION.length ()) && file.isFile ())
+                index.put (prefix.concat (name), new SourceFile (file.getAbsoluteFile ()));
+            else if (file.isDirectory ())
+                indexDirectory (file, prefix + name + '/', index, visited);
+        }
+    }
+    
+    /*
+     * Adds all .java entries in 'archive' to 'index', keyed by entry name.
+     */
+    private static void indexArchive (final File archiveFile, final ZipFile archive, final Map index)
+    {
+        final File absoluteFile = archiveFile.getAbsoluteFile ();
+        
+        for (Enumeration entries = archive.entries (); entries.hasMoreElements (); )
+        {
+            final ZipEntry entry = (ZipEntry) entries.nextElement ();
+            final String name = entry.getName ();
+            
+            // note: match is case sensitive
+            if (! entry.isDirectory () && name.endsWith (SOURCE_EXTENSION) && ! index.containsKey (name))
+                index.put (name, new SourceFile (absoluteFile, archive, entry));
+        }
+    }
+    
+    /*
+     * Indexes the entire source path on the first call.
+     */
+    private synchronized Map /* String -> SourceFile */ getIndex ()
+    {
+        Map index = m_index;
+        if (index == null)
+        {
+            final Logger log = Logger.getLogger ();
+            final long start = log.atTRACE1 () ? System.currentTimeMillis () : 0;
+            
+            final Map [] indices = new Map [m_sourcepath.length];
+            final Object [] archives = new Object [m_sourcepath.length];
+            
+            final Task task = new Task (m_sourcepath, 0, m_sourcepath.length, indices, archives,
+                                        Math.max (1, Math.min (m_parallelism, m_sourcepath.length)));
+            task.run ();
+            
+            // remember what has been opened before checking for failures, so
+            // that close() can release it:
+            
+            for (int p = 0; p < archives.length; ++ p)
             {
-                result.add (listing [f].getName ());
+                if (archives [p] instanceof ZipFile)
+                    m_archives.add (archives [p]);
+                else if (archives [p] instanceof IOException)
+                    log.warning ("ignoring source path entry [" + m_sourcepath [p].getAbsolutePath () + "]: " + ((IOException) archives [p]).getMessage ());
             }
             
-            return result;
+            task.checkFailure ();
+            
+            // merge in source path order [earlier entries take precedence]:
+            
+            index = new HashMap ();
+            for (int p = indices.length - 1; p >= 0; -- p)
+            {
+                index.putAll (indices [p]);
+            }
+            
+            m_index = index;
+            
+            if (log.atTRACE1 ()) log.trace1 ("getIndex", index.size () + " source files in " + m_sourcepath.length + " source path entries indexed in " + (System.currentTimeMillis () - start) + " ms");
         }
+        
+        return index;
     }
     
-
+    
     private final File [] m_sourcepath; // never null
-    private final Map /* packageVMName:String->CacheEntry */ m_packageCache; // never null
+    private final int m_parallelism;
+    private final List /* ZipFile */ m_archives; // never null
     
-    private static final FileExtensionFilter FILE_EXTENSION_FILTER; // set in <clinit>
+    private Map /* String -> SourceFile */ m_index; // built by getIndex() [read-only afterwards]
     
-    static
-    {
-        FILE_EXTENSION_FILTER = new FileExtensionFilter (".java");
-    }
+    private static final String SOURCE_EXTENSION = ".java";
 
 } // end of class
-// ----------------------------------------------------------------------------
\ No newline at end of file
+// ----------------------------------------------------------------------------
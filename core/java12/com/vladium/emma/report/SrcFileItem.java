@@ -13,6 +13,7 @@ import java.util.Iterator;
 import com.vladium.util.IntObjectMap;
 import com.vladium.util.asserts.$assert;
 import com.vladium.emma.data.ClassDescriptor;
+import com.vladium.emma.data.CoverageBits;
 import com.vladium.emma.data.MethodDescriptor;
 
 // ----------------------------------------------------------------------------
@@ -141,16 +142,18 @@ final class SrcFileItem extends Item
                     {
                         final ClassItem cls = (ClassItem) classes.next ();
                     
-                        final boolean [][] ccoverage = cls.getCoverage (); // this can be null
+                        final long [][] ccoverage = cls.getCoverage (); // this can be null
                         final ClassDescriptor clsdesc = cls.getClassDescriptor ();
                         final MethodDescriptor [] methoddescs = clsdesc.getMethods ();
                         
                         for (Iterator methods = cls.getChildren (); methods.hasNext (); )
                         {
                             final MethodItem method = (MethodItem) methods.next ();
+                            if (! method.isInstrumented ()) continue; // no block data
+                            
                             final int methodID = method.getID ();
                             
-                            final boolean [] mcoverage = ccoverage == null ? null : ccoverage [methodID];
+                            final long [] mcoverage = ccoverage == null ? null : ccoverage [methodID];
                             
                             final MethodDescriptor methoddesc = methoddescs [methodID];                        
                             final int [] mbsizes = methoddesc.getBlockSizes ();
@@ -178,7 +181,7 @@ final class SrcFileItem extends Item
                                 {
                                     final int block = lblocks [bID];
                                     
-                                    final boolean bcovered = mcoverage != null && mcoverage [block];
+                                    final boolean bcovered = mcoverage != null && CoverageBits.get (mcoverage, block);
                                     final int instr = mbsizes [block];
                                     
                                     data [1] += instr;
@@ -0,0 +1,716 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.emma.report.bundle;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.zip.GZIPOutputStream;
+
+import com.vladium.util.Files;
+import com.vladium.util.IProperties;
+import com.vladium.util.IntObjectMap;
+import com.vladium.util.Property;
+import com.vladium.emma.IAppConstants;
+import com.vladium.emma.IAppErrorCodes;
+import com.vladium.emma.EMMAProperties;
+import com.vladium.emma.EMMARuntimeException;
+import com.vladium.emma.data.ICoverageData;
+import com.vladium.emma.data.IMetaData;
+import com.vladium.emma.report.AbstractReportGenerator;
+import com.vladium.emma.report.AllItem;
+import com.vladium.emma.report.ClassItem;
+import com.vladium.emma.report.IItem;
+import com.vladium.emma.report.IItemAttribute;
+import com.vladium.emma.report.IItemMetadata;
+import com.vladium.emma.report.ItemComparator;
+import com.vladium.emma.report.MethodItem;
+import com.vladium.emma.report.PackageItem;
+import com.vladium.emma.report.SourcePathCache;
+import com.vladium.emma.report.SrcFileItem;
+
+// ----------------------------------------------------------------------------
+/**
+ * A compact alternative to the 'html' report: instead of one page per
+ * package, source file and class, this writes a single data file with all
+ * item coverage, line coverage and embedded sources [as JSON wrapped in a
+ * script call, optionally gzipped and base64-encoded] and a static viewer
+ * page that renders any report level from it on demand. The data file is
+ * named after the viewer page [e.g. 'coverage.html' -> 'coverage.data.js'].<P>
+ * 
+ * Compressed data is decoded by the browser's DecompressionStream; set
+ * {@link #PROPERTY_COMPRESS} to 'false' for older browsers.
+ * 
+ * @author Vlad Roubtsov, (C) 2003
+ */
+public
+final class ReportGenerator extends AbstractReportGenerator
+                            implements IAppErrorCodes
+{
+    // public: ................................................................
+    
+    
+    public static final String PROPERTY_COMPRESS = "report.bundle.compress";
+    public static final String DEFAULT_COMPRESS = "true";
+    
+    
+    // IReportGenerator:
+    
+    public String getType ()
+    {
+        return TYPE;
+    }
+    
+    public void process (final IMetaData mdata, final ICoverageData cdata,
+                         final SourcePathCache cache, final IProperties properties)
+        throws EMMARuntimeException
+    {
+        initialize (mdata, cdata, cache, properties);
+        
+        m_compress = Property.toBoolean (properties.getProperty (PROPERTY_COMPRESS, DEFAULT_COMPRESS));
+        
+        long start = 0, end;
+        final boolean trace1 = m_log.atTRACE1 ();
+        
+        if (trace1) start = System.currentTimeMillis ();
+        
+        {
+            m_view.getRoot ().accept (this, null);
+            close ();
+        }
+        
+        if (trace1)
+        {
+            end = System.currentTimeMillis ();
+            
+            m_log.trace1 ("process", "[" + getType () + "] report generated in " + (end - start) + " ms");
+        }
+    }
+    
+    public void cleanup ()
+    {
+        close ();
+        
+        super.cleanup ();
+    }
+    
+    
+    // IItemVisitor:
+    
+    public Object visit (final AllItem item, final Object ctx)
+    {
+        File outFile = m_settings.getOutFile ();
+        if (outFile == null)
+        {
+            outFile = new File ("coverage.html");
+            m_settings.setOutFile (outFile);
+        }
+        
+        final File fullOutFile = Files.newFile (m_settings.getOutDir (), outFile);
+        final File dataFile = new File (fullOutFile.getParentFile (), getDataFileName (fullOutFile.getName ()));
+        
+        m_log.info ("writing [" + getType () + "] report to [" + fullOutFile.getAbsolutePath () + "] ...");
+        
+        final String timestamp = new Date (EMMAProperties.getTimeStamp ()).toString ();
+        
+        try
+        {
+            writeViewer (fullOutFile, dataFile.getName (), timestamp);
+            
+            openDataFile (dataFile);
+            
+            m_out.write ("{\"v\":");
+            writeString (IAppConstants.APP_VERSION_WITH_BUILD_ID_AND_TAG);
+            m_out.write (",\"g\":");
+            writeString (timestamp);
+            
+            // column headers:
+            {
+                final int [] columns = m_settings.getColumnOrder ();
+                
+                m_out.write (",\"cols\":[");
+                for (int c = 0; c < columns.length; ++ c)
+                {
+                    if (c > 0) m_out.write (',');
+                    writeString (IItemAttribute.Factory.getAttribute (columns [c], m_settings.getUnitsType ()).getName ());
+                    
+                    if (columns [c] == IItemAttribute.ATTRIBUTE_NAME_ID) m_nameColumn = c;
+                }
+                m_out.write ("],\"name\":");
+                m_out.write (Integer.toString (m_nameColumn));
+            }
+            
+            // stats summary section:
+            {
+                m_out.write (",\"stats\":{\"packages\":");
+                m_out.write (Integer.toString (item.getChildCount ()));
+                m_out.write (",\"classes\":");
+                m_out.write (Integer.toString (item.getAggregate (IItem.TOTAL_CLASS_COUNT)));
+                m_out.write (",\"methods\":");
+                m_out.write (Integer.toString (item.getAggregate (IItem.TOTAL_METHOD_COUNT)));
+                
+                if (m_srcView && m_hasSrcFileInfo)
+                {
+                    m_out.write (",\"executable files\":");
+                    m_out.write (Integer.toString (item.getAggregate (IItem.TOTAL_SRCFILE_COUNT)));
+                    
+                    if (m_hasLineNumberInfo)
+                    {
+                        m_out.write (",\"executable lines\":");
+                        m_out.write (Integer.toString (item.getAggregate (IItem.TOTAL_LINE_COUNT)));
+                    }
+                }
+                m_out.write ('}');
+            }
+            
+            // actual coverage data:
+            m_out.write (",\"root\":");
+            {
+                final ItemComparator childrenOrder = m_typeSortComparators [PackageItem.getTypeMetadata ().getTypeID ()];
+                emitItem (item, childrenOrder);
+            }
+            m_out.write ('}');
+        }
+        catch (IOException ioe)
+        {
+            throw new EMMARuntimeException (IAppErrorCodes.REPORT_IO_FAILURE, ioe);
+        }
+        
+        return ctx;
+    }
+    
+    
+    public Object visit (final PackageItem item, final Object ctx)
+    {
+        if (m_verbose) m_log.verbose ("  report: processing package [" + item.getName () + "] ...");
+        
+        try
+        {
+            final ItemComparator childrenOrder = m_typeSortComparators [m_srcView ? SrcFileItem.getTypeMetadata ().getTypeID () : ClassItem.getTypeMetadata ().getTypeID ()];
+            emitItem (item, childrenOrder);
+        }
+        catch (IOException ioe)
+        {
+            throw new EMMARuntimeException (IAppErrorCodes.REPORT_IO_FAILURE, ioe);
+        }
+        
+        return ctx;
+    }
+    
+    
+    public Object visit (final SrcFileItem item, final Object ctx)
+    {
+        try
+        {
+            final ItemComparator childrenOrder = m_typeSortComparators [ClassItem.getTypeMetadata ().getTypeID ()];
+            emitItem (item, childrenOrder);
+        }
+        catch (IOException ioe)
+        {
+            throw new EMMARuntimeException (IAppErrorCodes.REPORT_IO_FAILURE, ioe);
+        }
+        
+        return ctx;
+    }
+    
+    public Object visit (final ClassItem item, final Object ctx)
+    {
+        try
+        {
+            final ItemComparator childrenOrder = m_typeSortComparators [MethodItem.getTypeMetadata ().getTypeID ()];
+            emitItem (item, childrenOrder);
+        }
+        catch (IOException ioe)
+        {
+            throw new EMMARuntimeException (IAppErrorCodes.REPORT_IO_FAILURE, ioe);
+        }
+        
+        return ctx;
+    }
+    
+    public Object visit (final MethodItem item, final Object ctx)
+    {
+        try
+        {
+            emitItem (item, null);
+        }
+        catch (IOException ioe)
+        {
+            throw new EMMARuntimeException (IAppErrorCodes.REPORT_IO_FAILURE, ioe);
+        }
+        
+        return ctx;
+    }
+    
+    // protected: .............................................................
+    
+    // package: ...............................................................
+    
+    // private: ...............................................................
+    
+    
+    /*
+     * Encodes everything written to it as base64 [without line breaks].
+     * finish() must be called to flush the final partial group.
+     */
+    private static final class Base64OutputStream extends FilterOutputStream
+    {
+        public void write (final int b) throws IOException
+        {
+            m_group = (m_group << 8) | (b & 0xFF);
+            if (++ m_groupSize == 3)
+            {
+                encode (4);
+                m_group = 0;
+                m_groupSize = 0;
+            }
+        }
+        
+        public void write (final byte [] b, final int off, final int len) throws IOException
+        {
+            for (int i = off, iLimit = off + len; i < iLimit; ++ i) write (b [i]);
+        }
+        
+        public void flush () throws IOException
+        {
+            if (m_bufSize > 0)
+            {
+                out.write (m_buf, 0, m_bufSize);
+                m_bufSize = 0;
+            }
+            out.flush ();
+        }
+        
+        public void close () throws IOException
+        {
+            finish ();
+            super.close ();
+        }
+        
+        
+        Base64OutputStream (final OutputStream out)
+        {
+            super (out);
+            m_buf = new byte [IO_BUF_SIZE];
+        }
+        
+        void finish () throws IOException
+        {
+            if (m_groupSize > 0)
+            {
+                final int groupSize = m_groupSize;
+                
+                m_group <<= 8 * (3 - groupSize);
+                encode (groupSize + 1);
+                for (int p = groupSize; p < 3; ++ p) put ('=');
+                
+                m_group = 0;
+                m_groupSize = 0;
+            }
+            flush ();
+        }
+        
+        
+        private void encode (final int chars) throws IOException
+        {
+            for (int c = 0; c < chars; ++ c)
+            {
+                put (ALPHABET [(m_group >>> (18 - 6 * c)) & 0x3F]);
+            }
+        }
+        
+        private void put (final int b) throws IOException
+        {
+            if (m_bufSize == m_buf.length)
+            {
+                out.write (m_buf, 0, m_bufSize);
+                m_bufSize = 0;
+            }
+            m_buf [m_bufSize ++] = (byte) b;
+        }
+        
+        
+        private final byte [] m_buf;
+        private int m_bufSize;
+        private int m_group, m_groupSize;
+        
+        private static final byte [] ALPHABET = toASCII ("ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/");
+    
+    } // end of nested class
+    
+    
+    private void emitItem (final IItem item, final ItemComparator childrenOrder)
+        throws IOException
+    {
+        final IItemMetadata metadata = item.getMetadata ();
+        final int [] columns = m_settings.getColumnOrder ();
+        
+        m_out.write ("{\"t\":\"");
+        m_out.write (metadata.getTypeName ());
+        m_out.write ("\",\"n\":");
+        writeString (item.getName ());
+        
+        // column values and metric failures:
+        {
+            final StringBuffer buf = m_buf;
+            int failures = 0;
+            
+            m_out.write (",\"c\":[");
+            for (int c = 0; c < columns.length; ++ c)
+            {
+                if (c > 0) m_out.write (',');
+                
+                final int attrID = columns [c];
+                final IItemAttribute attr = attrID != IItemAttribute.ATTRIBUTE_NAME_ID
+                    ? item.getAttribute (attrID, m_settings.getUnitsType ())
+                    : null;
+                
+                if (attr != null)
+                {
+                    buf.setLength (0);
+                    attr.format (item, buf);
+                    writeString (buf.toString ());
+                    
+                    if ((m_metrics [attrID] > 0) && ! attr.passes (item, m_metrics [attrID]))
+                        failures |= 1 << c;
+                }
+                else
+                {
+                    m_out.write ("null");
+                }
+            }
+            m_out.write (']');
+            
+            if (failures != 0)
+            {
+                m_out.write (",\"h\":");
+                m_out.write (Integer.toString (failures));
+            }
+        }
+        
+        if (m_hasLineNumberInfo)
+        {
+            int firstLine = 0;
+            if (item instanceof ClassItem)
+                firstLine = ((ClassItem) item).getFirstLine ();
+            else if (item instanceof MethodItem)
+                firstLine = ((MethodItem) item).getFirstLine ();
+            
+            if (firstLine > 0)
+            {
+                m_out.write (",\"l\":");
+                m_out.write (Integer.toString (firstLine));
+            }
+        }
+        
+        final boolean deeper = (childrenOrder != null) && (m_settings.getDepth () > metadata.getTypeID ()) && (item.getChildCount () > 0);
+        
+        if (deeper)
+        {
+            m_out.write (",\"k\":[");
+            
+            boolean first = true;
+            for (Iterator children = item.getChildren (childrenOrder); children.hasNext (); first = false)
+            {
+                if (! first) m_out.write (',');
+                ((IItem) children.next ()).accept (this, null);
+            }
+            
+            m_out.write (']');
+        }
+        
+        // [same condition as for source embedding in the 'html' report]
+        if ((item instanceof SrcFileItem) && (m_settings.getDepth () > ClassItem.getTypeMetadata ().getTypeID ()))
+        {
+            emitSrcFile ((SrcFileItem) item);
+        }
+        
+        m_out.write ('}');
+    }
+    
+    private void emitSrcFile (final SrcFileItem item)
+        throws IOException
+    {
+        if (m_cache == null) return;
+        
+        final String packageVMName = ((PackageItem) item.getParent ()).getVMName ();
+        final SourcePathCache.SourceFile srcFile = m_cache.findSource (packageVMName, item.getName ());
+        if (srcFile == null) return;
+        
+        BufferedReader in = null;
+        try
+        {
+            in = new BufferedReader (srcFile.openReader (), IO_BUF_SIZE);
+            
+            m_out.write (",\"s\":[");
+            
+            boolean first = true;
+            for (String line; (line = in.readLine ()) != null; first = false)
+            {
+                if (! first) m_out.write (',');
+                writeString (line);
+            }
+            
+            m_out.write (']');
+        }
+        finally
+        {
+            if (in != null) try { in.close (); } catch (IOException ignore) {}
+        }
+        
+        if (m_hasLineNumberInfo)
+        {
+            final IntObjectMap /* line_no:int -> LineCoverageData */ lineCoverage = item.getLineCoverage ();
+            if (lineCoverage != null)
+            {
+                final int [] lines = lineCoverage.keys ();
+                Arrays.sort (lines);
+                
+                m_out.write (",\"z\":[");
+                for (int l = 0; l < lines.length; ++ l)
+                {
+                    final SrcFileItem.LineCoverageData lCoverageData = (SrcFileItem.LineCoverageData) lineCoverage.get (lines [l]);
+                    
+                    if (l > 0) m_out.write (',');
+                    m_out.write (Integer.toString (lines [l]));
+                    m_out.write (',');
+                    m_out.write (Integer.toString (lCoverageData.m_coverageStatus));
+                }
+                m_out.write (']');
+            }
+        }
+    }
+    
+    /*
+     * Writes 's' as a JSON string literal.
+     */
+    private void writeString (final String s)
+        throws IOException
+    {
+        final Writer out = m_out;
+        
+        out.write ('"');
+        
+        int start = 0;
+        for (int i = 0, iLimit = s.length (); i < iLimit; ++ i)
+        {
+            final char c = s.charAt (i);
+            
+            if ((c < 0x20) || (c == '"') || (c == '\\') || (c == '\u2028') || (c == '\u2029'))
+            {
+                out.write (s, start, i - start);
+                start = i + 1;
+                
+                switch (c)
+                {
+                    case '"': out.write ("\\\""); break;
+                    case '\\': out.write ("\\\\"); break;
+                    case '\t': out.write ("\\t"); break;
+                    case '\n': out.write ("\\n"); break;
+                    case '\r': out.write ("\\r"); break;
+                    
+                    default:
+                    {
+                        final String hex = Integer.toHexString (c);
+                        
+                        out.write ("\\u");
+                        for (int p = hex.length (); p < 4; ++ p) out.write ('0');
+                        out.write (hex);
+                    }
+                }
+            }
+        }
+        out.write (s, start, s.length () - start);
+        
+        out.write ('"');
+    }
+    
+    /*
+     * Writes the viewer page, filled in from the VIEWER_RESOURCE template.
+     */
+    private void writeViewer (final File file, final String dataFileName, final String timestamp)
+        throws IOException
+    {
+        final StringBuffer template = new StringBuffer (16 * 1024);
+        
+        final InputStream in = ReportGenerator.class.getResourceAsStream (VIEWER_RESOURCE);
+        if (in == null) throw new EMMARuntimeException ("packaging failure: resource [" + VIEWER_RESOURCE + "] not found");
+        try
+        {
+            final Reader reader = new InputStreamReader (in, "UTF-8");
+            
+            final char [] buf = new char [4 * 1024];
+            for (int read; (read = reader.read (buf)) >= 0; )
+            {
+                template.append (buf, 0, read);
+            }
+        }
+        finally
+        {
+            try { in.close (); } catch (IOException ignore) {}
+        }
+        
+        replace (template, "${title}", REPORT_HEADER_TITLE + " (generated " + timestamp + ")");
+        replace (template, "${encoding}", m_settings.getOutEncoding ());
+        replace (template, "${data}", dataFileName);
+        
+        final File parent = file.getParentFile ();
+        if (parent != null) parent.mkdirs ();
+        
+        final Writer out = new OutputStreamWriter (new FileOutputStream (file), m_settings.getOutEncoding ());
+        try
+        {
+            out.write (template.toString ());
+        }
+        finally
+        {
+            out.close ();
+        }
+    }
+    
+    private void openDataFile (final File file)
+    {
+        try
+        {
+            final File parent = file.getParentFile ();
+            if (parent != null) parent.mkdirs ();
+            
+            final OutputStream fileOut = new FileOutputStream (file);
+            
+            if (m_compress)
+            {
+                fileOut.write (COMPRESSED_DATA_PREFIX);
+                
+                m_base64Out = new Base64OutputStream (fileOut);
+                m_gzipOut = new GZIPOutputStream (m_base64Out, IO_BUF_SIZE);
+                m_out = new BufferedWriter (new OutputStreamWriter (m_gzipOut, "UTF-8"), IO_BUF_SIZE);
+            }
+            else
+            {
+                fileOut.write (DATA_PREFIX);
+                
+                m_out = new BufferedWriter (new OutputStreamWriter (fileOut, "UTF-8"), IO_BUF_SIZE);
+            }
+            
+            m_fileOut = fileOut;
+        }
+        catch (UnsupportedEncodingException uee)
+        {
+            // TODO: error code
+            throw new EMMARuntimeException (uee);
+        }
+        // note: in J2SDK 1.3 FileOutputStream constructor's throws clause
+        // was narrowed to FileNotFoundException:
+        catch (IOException fnfe) // FileNotFoundException
+        {
+            // TODO: error code
+            throw new EMMARuntimeException (fnfe);
+        }
+    }
+    
+    private void close ()
+    {
+        if (m_out != null)
+        {
+            try
+            {
+                m_out.flush ();
+                
+                if (m_gzipOut != null)
+                {
+                    m_gzipOut.finish ();
+                    m_base64Out.finish ();
+                    
+                    m_fileOut.write (COMPRESSED_DATA_SUFFIX);
+                }
+                else
+                {
+                    m_fileOut.write (DATA_SUFFIX);
+                }
+                
+                m_fileOut.close ();
+            }
+            catch (IOException ioe)
+            {
+                throw new EMMARuntimeException (IAppErrorCodes.REPORT_IO_FAILURE, ioe);
+            }
+            finally
+            {
+                m_out = null;
+                m_gzipOut = null;
+                m_base64Out = null;
+                m_fileOut = null;
+            }
+        }
+    }
+    
+    /*
+     * @return 'name' with its extension [if any] replaced by DATA_FILE_EXTENSION
+     */
+    private static String getDataFileName (final String name)
+    {
+        final int lastDot = name.lastIndexOf ('.');
+        
+        return (lastDot > 0 ? name.substring (0, lastDot) : name).concat (DATA_FILE_EXTENSION);
+    }
+    
+    private static byte [] toASCII (final String s)
+    {
+        final byte [] result = new byte [s.length ()];
+        for (int i = 0; i < result.length; ++ i) result [i] = (byte) s.charAt (i);
+        
+        return result;
+    }
+    
+    private static void replace (final StringBuffer s, final String token, final String value)
+    {
+        for (int i = s.toString ().indexOf (token); i >= 0; i = s.toString ().indexOf (token, i + value.length ()))
+        {
+            s.replace (i, i + token.length (), value);
+        }
+    }
+    
+    
+    private final StringBuffer m_buf = new StringBuffer (64);
+    
+    private boolean m_compress;
+    private int m_nameColumn = -1;
+    
+    private Writer m_out;
+    private OutputStream m_fileOut;
+    private GZIPOutputStream m_gzipOut; // null unless m_compress
+    private Base64OutputStream m_base64Out; // null unless m_compress
+    
+    private static final String TYPE = "bundle";
+    private static final String REPORT_HEADER_TITLE = IAppConstants.APP_NAME + " Coverage Report";
+    private static final String VIEWER_RESOURCE = "viewer.res";
+    private static final String DATA_FILE_EXTENSION = ".data.js";
+    
+    private static final byte [] DATA_PREFIX = toASCII ("EMMA.load (");
+    private static final byte [] DATA_SUFFIX = toASCII (");\n");
+    private static final byte [] COMPRESSED_DATA_PREFIX = toASCII ("EMMA.loadCompressed (\"");
+    private static final byte [] COMPRESSED_DATA_SUFFIX = toASCII ("\");\n");
+    
+    private static final int IO_BUF_SIZE = 64 * 1024;
+
+} // end of class
+// ----------------------------------------------------------------------------
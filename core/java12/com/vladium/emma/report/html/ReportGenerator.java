@@ -12,16 +12,20 @@ import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.text.DecimalFormat;
 import java.text.FieldPosition;
 import java.text.NumberFormat;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Map;
+import java.util.Set;
 
 import com.vladium.util.Descriptors;
 import com.vladium.util.Files;
@@ -62,6 +66,15 @@ final class ReportGenerator extends AbstractReportGenerator
     
     // TODO: make sure relative file names are converted to relative URLs in all anchors/hrefs
 
+    /**
+     * If 'true', nested report pages get stable names derived from their
+     * items and are only re-rendered if their content would change since the
+     * last incremental run into the same directory [see {@link ReportManifest}].
+     * The top-level page is always re-rendered.
+     */
+    public static final String PROPERTY_INCREMENTAL = "report.html.incremental";
+    public static final String DEFAULT_INCREMENTAL = "false";
+    
     public ReportGenerator ()
     {
         m_format = (DecimalFormat) NumberFormat.getPercentInstance (); // TODO: locale
@@ -99,9 +112,18 @@ final class ReportGenerator extends AbstractReportGenerator
         
         if (trace1) start = System.currentTimeMillis ();
         
+        m_manifest = null;
+        if (Property.toBoolean (properties.getProperty (PROPERTY_INCREMENTAL, DEFAULT_INCREMENTAL)))
+        {
+            final File pageDir = Files.newFile (outDir, NESTED_ITEMS_PARENT_DIR);
+            
+            m_manifest = ReportManifest.load (new File (pageDir, MANIFEST_FILE_NAME), pageDir, FILE_EXTENSION);
+            m_settingsDigest = getSettingsDigest ();
+        }
+        
         {
             m_queue = new LinkedList ();
-            m_reportIDNamespace = new IDGenerator (mdata.size ());
+            m_reportIDNamespace = new IDGenerator (mdata.size (), m_manifest != null);
             
             for (m_queue.add (m_view.getRoot ()); ! m_queue.isEmpty (); )
             {
@@ -113,6 +135,22 @@ final class ReportGenerator extends AbstractReportGenerator
             m_reportIDNamespace = null;
         }
         
+        if (m_manifest != null)
+        {
+            try
+            {
+                m_manifest.save ();
+            }
+            catch (IOException ioe)
+            {
+                // TODO: error code
+                throw new EMMARuntimeException (ioe);
+            }
+            
+            m_log.info ("[" + getType () + "] report pages re-rendered: " + m_manifest.getRenderedCount () + " of " + m_manifest.getPageCount ()
+                        + " [" + m_manifest.getDeletedCount () + " stale pages deleted]");
+        }
+        
         if (trace1)
         {
             end = System.currentTimeMillis ();
@@ -125,6 +163,7 @@ final class ReportGenerator extends AbstractReportGenerator
     {
         m_queue = null;
         m_reportIDNamespace = null;
+        m_manifest = null;
         
         super.cleanup ();
     }
@@ -326,6 +365,20 @@ final class ReportGenerator extends AbstractReportGenerator
             
             final File outFile = getItemFile (NESTED_ITEMS_PARENT_DIR, m_reportIDNamespace.getID (getItemKey (item)));
             
+            if (isUpToDate (item, outFile))
+            {
+                if (m_settings.getDepth () > item.getMetadata ().getTypeID ())
+                {
+                    final ItemComparator order = m_typeSortComparators [m_srcView ? SrcFileItem.getTypeMetadata ().getTypeID () : ClassItem.getTypeMetadata ().getTypeID ()];
+                    for (Iterator srcORclsFiles = item.getChildren (order); srcORclsFiles.hasNext (); )
+                    {
+                        m_queue.addLast (srcORclsFiles.next ());
+                    }
+                }
+                
+                return ctx;
+            }
+            
             out = openOutFile (Files.newFile (m_settings.getOutDir (), outFile), m_settings.getOutEncoding (), true);
             
             final int [] columns = m_settings.getColumnOrder ();            
@@ -443,6 +496,8 @@ final class ReportGenerator extends AbstractReportGenerator
         {
             final File outFile = getItemFile (NESTED_ITEMS_PARENT_DIR, m_reportIDNamespace.getID (getItemKey (item)));
             
+            if (isUpToDate (item, outFile)) return ctx;
+            
             out = openOutFile (Files.newFile (m_settings.getOutDir (), outFile), m_settings.getOutEncoding (), true);
             
             final int [] columns = m_settings.getColumnOrder ();            
@@ -618,6 +673,8 @@ final class ReportGenerator extends AbstractReportGenerator
         {
             final File outFile = getItemFile (NESTED_ITEMS_PARENT_DIR, m_reportIDNamespace.getID (getItemKey (item)));
             
+            if (isUpToDate (item, outFile)) return ctx;
+            
             // TODO: deal with overwrites
             out = openOutFile (Files.newFile (m_settings.getOutDir (), outFile), m_settings.getOutEncoding (), true);
             
@@ -729,18 +786,34 @@ final class ReportGenerator extends AbstractReportGenerator
     {
         IDGenerator ()
         {
-            m_namespace = new ObjectIntMap (101);
-            m_out = new int [1];
+            this (101, false);
         }
         
-        IDGenerator (final int initialCapacity)
+        /*
+         * @param stable if 'true', IDs are derived from the keys alone and do
+         * not depend on the order of getID() calls
+         */
+        IDGenerator (final int initialCapacity, final boolean stable)
         {
             m_namespace = new ObjectIntMap (initialCapacity);
             m_out = new int [1];
+            
+            if (stable)
+            {
+                m_stableIDs = new HashMap (initialCapacity);
+                m_usedStableIDs = new HashSet (initialCapacity);
+            }
+            else
+            {
+                m_stableIDs = null;
+                m_usedStableIDs = null;
+            }
         }
         
         String getID (final String key)
         {
+            if (m_stableIDs != null) return getStableID (key);
+            
             final int [] out = m_out;
             final int ID;
             
@@ -755,12 +828,174 @@ final class ReportGenerator extends AbstractReportGenerator
             return Integer.toHexString (ID);
         }
         
+        private String getStableID (final String key)
+        {
+            String ID = (String) m_stableIDs.get (key);
+            if (ID == null)
+            {
+                final String hash = ReportManifest.toHexString (new ReportManifest.Digest ().update (key).getValue ());
+                
+                // [hash collisions are astronomically unlikely but not impossible]
+                ID = hash;
+                for (int suffix = 1; ! m_usedStableIDs.add (ID); ++ suffix)
+                {
+                    ID = hash + "_" + suffix;
+                }
+                
+                m_stableIDs.put (key, ID);
+            }
+            
+            return ID;
+        }
+        
         private final ObjectIntMap /* key:String->ID */ m_namespace;
         private final int [] m_out;
+        private final Map /* key:String->ID:String */ m_stableIDs; // null unless stable
+        private final Set /* ID:String */ m_usedStableIDs; // null unless stable
         
     } // end of nested class
     
     
+    /*
+     * Records the digest of the page for 'item' in the incremental report manifest.
+     * 
+     * @return 'true' if the page does not need to be re-rendered ['false' if the
+     * report is not incremental]
+     */
+    private boolean isUpToDate (final IItem item, final File outFile)
+    {
+        final ReportManifest manifest = m_manifest;
+        if (manifest == null) return false;
+        
+        final boolean upToDate = manifest.update (outFile.getName (), getPageDigest (item));
+        if (upToDate && m_verbose) m_log.verbose ("  report: [" + item.getName () + "] is up to date");
+        
+        return upToDate;
+    }
+    
+    /*
+     * Digests everything a nested page depends on: report settings, the item's
+     * position in the report, names and aggregates of the item and the items
+     * it lists, and, for source file pages, line coverage and the source file.
+     */
+    private String getPageDigest (final IItem item)
+    {
+        final ReportManifest.Digest digest = new ReportManifest.Digest ();
+        
+        digest.update (m_settingsDigest);
+        digest.update (getItemKey (item));
+        addItemDigest (digest, item);
+        
+        for (Iterator children = item.getChildren (); children.hasNext (); )
+        {
+            final IItem child = (IItem) children.next ();
+            addItemDigest (digest, child);
+            
+            if (item instanceof SrcFileItem) // classes and their methods
+            {
+                digest.update (((ClassItem) child).getFirstLine ());
+                
+                for (Iterator methods = child.getChildren (); methods.hasNext (); )
+                {
+                    final MethodItem method = (MethodItem) methods.next ();
+                    
+                    addItemDigest (digest, method);
+                    digest.update (method.getFirstLine ());
+                }
+            }
+        }
+        
+        if (item instanceof SrcFileItem)
+        {
+            final SrcFileItem srcFile = (SrcFileItem) item;
+            
+            if (m_hasLineNumberInfo)
+            {
+                final IntObjectMap /* line_no:int -> LineCoverageData */ lineCoverage = srcFile.getLineCoverage ();
+                if (lineCoverage != null)
+                {
+                    final int [] lines = lineCoverage.keys ();
+                    Arrays.sort (lines);
+                    
+                    for (int l = 0; l < lines.length; ++ l)
+                    {
+                        final SrcFileItem.LineCoverageData lCoverageData = (SrcFileItem.LineCoverageData) lineCoverage.get (lines [l]);
+                        
+                        digest.update (lines [l]);
+                        digest.update (lCoverageData.m_coverageStatus);
+                        
+                        final int [][] ratio = lCoverageData.m_coverageRatio;
+                        if (ratio != null)
+                        {
+                            for (int u = 0; u < ratio.length; ++ u)
+                            {
+                                digest.update (ratio [u][0]);
+                                digest.update (ratio [u][1]);
+                            }
+                        }
+                    }
+                }
+            }
+            
+            final SourcePathCache.SourceFile file = (m_cache != null) ? m_cache.findSource (((PackageItem) srcFile.getParent ()).getVMName (), srcFile.getName ()) : null;
+            if (file != null)
+            {
+                digest.update (file.getPath ());
+                digest.update (file.lastModified ());
+                digest.update (file.length ());
+            }
+            else
+            {
+                digest.update (-1);
+            }
+        }
+        
+        return digest.toString ();
+    }
+    
+    private static void addItemDigest (final ReportManifest.Digest digest, final IItem item)
+    {
+        digest.update (item.getName ());
+        
+        for (int a = 0; a < IItem.NUM_OF_AGGREGATES; ++ a)
+        {
+            digest.update (item.getAggregate (a));
+        }
+    }
+    
+    /*
+     * Digests the settings that affect all pages.
+     */
+    private long getSettingsDigest ()
+    {
+        final ReportManifest.Digest digest = new ReportManifest.Digest ();
+        
+        digest.update (IAppConstants.APP_VERSION_WITH_BUILD_ID_AND_TAG);
+        digest.update (m_settings.getOutEncoding ());
+        digest.update (m_settings.getOutFile () != null ? m_settings.getOutFile ().getName () : null);
+        digest.update (m_settings.getUnitsType ());
+        digest.update (m_settings.getViewType ());
+        digest.update (m_settings.getDepth ());
+        digest.update (m_settings.getHideClasses () ? 1 : 0);
+        
+        final int [] columns = m_settings.getColumnOrder ();
+        for (int c = 0; c < columns.length; ++ c) digest.update (columns [c]);
+        digest.update (-1);
+        
+        final int [] sort = m_settings.getSortOrder ();
+        for (int s = 0; s < sort.length; ++ s) digest.update (sort [s]);
+        digest.update (-1);
+        
+        for (int m = 0; m < m_metrics.length; ++ m) digest.update (m_metrics [m]);
+        
+        digest.update (m_srcView ? 1 : 0);
+        digest.update (m_hasSrcFileInfo ? 1 : 0);
+        digest.update (m_hasLineNumberInfo ? 1 : 0);
+        digest.update (m_cache != null ? 1 : 0);
+        
+        return digest.getValue ();
+    }
+    
     private HTMLDocument createPage (final String title)
     {
         final HTMLDocument page = new HTMLDocument (title, m_settings.getOutEncoding ());
@@ -931,6 +1166,10 @@ final class ReportGenerator extends AbstractReportGenerator
                     
                     cell.add (new HyperRef (fullHREFName, buf.toString (), true));
                 }
+                else if (notInstrumented (item))
+                {
+                    cell.setText (notInstrumentedText (item, attrID, attr, buf), true);
+                }
                 else
                 {
                     final boolean fail = (m_metrics [attrID] > 0) && ! attr.passes (item, m_metrics [attrID]);
@@ -1056,6 +1295,10 @@ final class ReportGenerator extends AbstractReportGenerator
                     
                     cell.add (new HyperRef (fullHREFName, buf.toString (), true));
                 }
+                else if (notInstrumented (item))
+                {
+                    cell.setText (notInstrumentedText (item, attrID, attr, buf), true);
+                }
                 else
                 {
                     fail = (m_metrics [attrID] > 0) && ! attr.passes (item, m_metrics [attrID]);
@@ -1082,6 +1325,23 @@ final class ReportGenerator extends AbstractReportGenerator
     }
     
     
+    /*
+     * @return cell text for a method left uninstrumented: its name with a
+     * marker, or a placeholder in place of coverage figures
+     */
+    private static String notInstrumentedText (final IItem item, final int attrID, final IItemAttribute attr, final StringBuffer buf)
+    {
+        if (attrID != IItemAttribute.ATTRIBUTE_NAME_ID) return "-";
+        
+        buf.setLength (0);
+        attr.format (item, buf);
+        
+        trimForDisplay (buf);
+        buf.append (" {" + NOT_INSTRUMENTED + "}");
+        
+        return buf.toString ();
+    }
+    
     private boolean srcFileAvailable (final SrcFileItem item, final SourcePathCache cache)
     {
         if (cache == null) return false;
@@ -1094,7 +1354,7 @@ final class ReportGenerator extends AbstractReportGenerator
         // TODO: should I keep VM names in package items?
         final String packageVMName = ((PackageItem) item.getParent ()).getVMName ();
         
-        return (cache.find (packageVMName, fileName) != null);
+        return (cache.findSource (packageVMName, fileName) != null);
     }
     
 //    private boolean srcFileAvailable (final ClassItem item, final SourcePathCache cache)
@@ -1135,14 +1395,14 @@ final class ReportGenerator extends AbstractReportGenerator
         if (cache != null) // TODO: do this check earlier, in outer scope
         {
             srcTable.setClass (CSS_SOURCE);
-            final File srcFile = cache.find (packageVMName, fileName);
+            final SourcePathCache.SourceFile srcFile = cache.findSource (packageVMName, fileName);
             
             if (srcFile != null)
             {
                 BufferedReader in = null;
                 try
                 {
-                    in = new BufferedReader (new FileReader (srcFile), IO_BUF_SIZE);
+                    in = new BufferedReader (srcFile.openReader (), IO_BUF_SIZE);
                     
                     final boolean markupCoverage = m_hasLineNumberInfo;
                     
@@ -1481,6 +1741,8 @@ final class ReportGenerator extends AbstractReportGenerator
         
     private LinkedList /* IITem */ m_queue;
     private IDGenerator m_reportIDNamespace;
+    private ReportManifest m_manifest; // null unless the report is incremental
+    private long m_settingsDigest; // set for incremental reports only
     
     private IContent m_pageTitle, m_footerBottom;
     
@@ -1601,6 +1863,7 @@ final class ReportGenerator extends AbstractReportGenerator
         "";
 
     private static final String NESTED_ITEMS_PARENT_DIRNAME = "_files";
+    private static final String MANIFEST_FILE_NAME = "manifest.txt";
     private static final File NESTED_ITEMS_PARENT_DIR = new File (NESTED_ITEMS_PARENT_DIRNAME);
     private static final int [][] NESTING; // set in <clinit>; this reflects the dir structure for the report
     
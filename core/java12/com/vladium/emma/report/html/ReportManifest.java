@@ -0,0 +1,313 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.emma.report.html;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.vladium.emma.IAppConstants;
+
+// ----------------------------------------------------------------------------
+/**
+ * The page manifest of an incremental HTML report: a digest of everything
+ * that went into each nested report page [see {@link ReportGenerator}] as of
+ * the last run. A page is only re-rendered if its digest has changed or the
+ * page file is missing, and pages that are no longer part of the report are
+ * deleted.<P>
+ * 
+ * The manifest is a text file with one page per line:
+ * <PRE>
+ *  # comment
+ *  page file name  digest
+ * </PRE>
+ * [tab-separated]. An unreadable or malformed manifest is treated as empty,
+ * i.e. all pages are re-rendered. Entries that do not name a generated page
+ * [e.g., in a manifest edited by hand] are ignored, so that only generated
+ * pages in the page dir can ever be deleted.
+ * 
+ * @author Vlad Roubtsov, (C) 2003
+ */
+final class ReportManifest
+{
+    // public: ................................................................
+    
+    // protected: .............................................................
+    
+    // package: ...............................................................
+    
+    
+    /*
+     * A 64-bit FNV-1a hash accumulator. This is not a cryptographic digest
+     * but more than enough to detect page content changes.
+     */
+    static final class Digest
+    {
+        Digest ()
+        {
+            m_value = FNV_OFFSET_BASIS;
+        }
+        
+        Digest update (final int value)
+        {
+            long h = m_value;
+            for (int shift = 0; shift < 32; shift += 8)
+            {
+                h ^= (value >>> shift) & 0xFF;
+                h *= FNV_PRIME;
+            }
+            m_value = h;
+            
+            return this;
+        }
+        
+        Digest update (final long value)
+        {
+            update ((int) value);
+            return update ((int) (value >>> 32));
+        }
+        
+        Digest update (final String value)
+        {
+            if (value == null) return update (-1);
+            
+            long h = m_value;
+            for (int i = 0, iLimit = value.length (); i < iLimit; ++ i)
+            {
+                final char c = value.charAt (i);
+                
+                h ^= c & 0xFF;
+                h *= FNV_PRIME;
+                h ^= c >>> 8;
+                h *= FNV_PRIME;
+            }
+            m_value = h;
+            
+            return update (value.length ()); // length terminates the string
+        }
+        
+        long getValue ()
+        {
+            return m_value;
+        }
+        
+        public String toString ()
+        {
+            return toHexString (m_value);
+        }
+        
+        
+        private long m_value;
+        
+        private static final long FNV_OFFSET_BASIS  = 0xCBF29CE484222325L;
+        private static final long FNV_PRIME         = 0x100000001B3L;
+    
+    } // end of nested class
+    
+    
+    /*
+     * @return 16 hex digits [leading zeros included]
+     */
+    static String toHexString (final long value)
+    {
+        final String hex = Long.toHexString (value);
+        
+        return hex.length () < 16 ? "0000000000000000".substring (hex.length ()).concat (hex) : hex;
+    }
+    
+    /*
+     * @param file manifest file [need not exist]
+     * @param pageDir directory with the pages listed in the manifest
+     * @param pageExtension page file name extension [including the dot]
+     */
+    static ReportManifest load (final File file, final File pageDir, final String pageExtension)
+    {
+        final Map /* String -> String */ digests = new HashMap ();
+        
+        if (file.isFile ())
+        {
+            BufferedReader in = null;
+            try
+            {
+                in = new BufferedReader (new InputStreamReader (new FileInputStream (file), "UTF-8"), IO_BUF_SIZE);
+                
+                for (String line; (line = in.readLine ()) != null; )
+                {
+                    if ((line.length () == 0) || line.startsWith ("#")) continue;
+                    
+                    final int tab = line.indexOf ('\t');
+                    if (tab <= 0)
+                    {
+                        digests.clear (); // malformed: start over
+                        break;
+                    }
+                    
+                    final String page = line.substring (0, tab);
+                    if (isPageName (page, pageExtension))
+                        digests.put (page, line.substring (tab + 1));
+                }
+            }
+            catch (IOException ioe)
+            {
+                digests.clear ();
+            }
+            finally
+            {
+                if (in != null) try { in.close (); } catch (IOException ignore) {}
+            }
+        }
+        
+        return new ReportManifest (file, pageDir, digests);
+    }
+    
+    /*
+     * Records the current digest of 'page'.
+     *
+     * @param page page file name [relative to the page dir]
+     *
+     * @return 'true' if 'page' exists and has the same digest as in the last
+     * run [the page does not need to be re-rendered]
+     */
+    boolean update (final String page, final String digest)
+    {
+        m_digests.put (page, digest);
+        
+        final boolean upToDate = digest.equals (m_oldDigests.get (page)) && new File (m_pageDir, page).isFile ();
+        if (! upToDate) ++ m_renderedCount;
+        
+        return upToDate;
+    }
+    
+    /*
+     * Deletes pages that were in the last run but not in this one and writes
+     * out the manifest for this run.
+     */
+    void save ()
+        throws IOException
+    {
+        for (Iterator pages = m_oldDigests.keySet ().iterator (); pages.hasNext (); )
+        {
+            final String page = (String) pages.next ();
+            
+            if (! m_digests.containsKey (page) && new File (m_pageDir, page).delete ())
+                ++ m_deletedCount;
+        }
+        
+        final File parent = m_file.getParentFile ();
+        if (parent != null) parent.mkdirs ();
+        
+        final Writer out = new BufferedWriter (new OutputStreamWriter (new FileOutputStream (m_file), "UTF-8"), IO_BUF_SIZE);
+        try
+        {
+            out.write ("# " + IAppConstants.APP_NAME + " HTML report manifest [v" + IAppConstants.APP_VERSION_WITH_BUILD_ID_AND_TAG + "]");
+            out.write (EOL);
+            
+            for (Iterator entries = m_digests.entrySet ().iterator (); entries.hasNext (); )
+            {
+                final Map.Entry entry = (Map.Entry) entries.next ();
+                
+                out.write ((String) entry.getKey ());
+                out.write ('\t');
+                out.write ((String) entry.getValue ());
+                out.write (EOL);
+            }
+        }
+        finally
+        {
+            out.close ();
+        }
+    }
+    
+    File getFile ()
+    {
+        return m_file;
+    }
+    
+    int getPageCount ()
+    {
+        return m_digests.size ();
+    }
+    
+    /*
+     * @return number of pages [re-]rendered in this run
+     */
+    int getRenderedCount ()
+    {
+        return m_renderedCount;
+    }
+    
+    /*
+     * @return number of stale pages deleted by save()
+     */
+    int getDeletedCount ()
+    {
+        return m_deletedCount;
+    }
+    
+    // private: ...............................................................
+    
+    
+    /*
+     * @return 'true' if 'name' has the form of a generated page file name [hex
+     * ID with an optional "_n" suffix, followed by 'pageExtension']
+     */
+    private static boolean isPageName (final String name, final String pageExtension)
+    {
+        if (! name.endsWith (pageExtension)) return false;
+        
+        final int idLength = name.length () - pageExtension.length ();
+        if (idLength == 0) return false;
+        
+        boolean suffix = false; // set after '_'
+        for (int i = 0; i < idLength; ++ i)
+        {
+            final char c = name.charAt (i);
+            
+            if ((c >= '0') && (c <= '9'))
+                continue;
+            else if (! suffix && (c >= 'a') && (c <= 'f'))
+                continue;
+            else if (! suffix && (c == '_') && (i > 0) && (i < idLength - 1))
+                suffix = true;
+            else
+                return false;
+        }
+        
+        return true;
+    }
+    
+    
+    private ReportManifest (final File file, final File pageDir, final Map oldDigests)
+    {
+        m_file = file;
+        m_pageDir = pageDir;
+        m_oldDigests = oldDigests;
+        m_digests = new HashMap (oldDigests.size () + 11);
+    }
+    
+    
+    private final File m_file, m_pageDir;
+    private final Map /* page:String -> digest:String */ m_oldDigests, m_digests;
+    
+    private int m_renderedCount, m_deletedCount;
+    
+    private static final String EOL = "\n"; // fixed for machine consumption
+    private static final int IO_BUF_SIZE = 32 * 1024;
+
+} // end of class
+// ----------------------------------------------------------------------------
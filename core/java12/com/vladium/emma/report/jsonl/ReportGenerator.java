@@ -0,0 +1,486 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.emma.report.jsonl;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.util.Date;
+import java.util.Iterator;
+
+import com.vladium.util.Files;
+import com.vladium.util.IProperties;
+import com.vladium.emma.IAppConstants;
+import com.vladium.emma.IAppErrorCodes;
+import com.vladium.emma.EMMAProperties;
+import com.vladium.emma.EMMARuntimeException;
+import com.vladium.emma.data.ICoverageData;
+import com.vladium.emma.data.IMetaData;
+import com.vladium.emma.report.AbstractReportGenerator;
+import com.vladium.emma.report.AllItem;
+import com.vladium.emma.report.ClassItem;
+import com.vladium.emma.report.IItem;
+import com.vladium.emma.report.IItemAttribute;
+import com.vladium.emma.report.IItemMetadata;
+import com.vladium.emma.report.IReportProperties;
+import com.vladium.emma.report.ItemComparator;
+import com.vladium.emma.report.MethodItem;
+import com.vladium.emma.report.PackageItem;
+import com.vladium.emma.report.SourcePathCache;
+import com.vladium.emma.report.SrcFileItem;
+
+// ----------------------------------------------------------------------------
+/**
+ * A machine-readable report with one JSON object per line, written as the
+ * report items are visited [nothing is buffered beyond the output writer].
+ * The first line describes the report:
+ * <PRE>
+ *  {"type":"report","version":...,"generated":...,"units":"instr"|"count"}
+ * </PRE>
+ * and it is followed by one line per item down to the report depth, parents
+ * before children and children in the report sort order:
+ * <PRE>
+ *  {"type":"method","name":...,"package":...,"srcfile":...,"class":...,
+ *   "method":{"covered":1,"total":1},"block":{"covered":20,"total":24},...,
+ *   "fail":["block"]}
+ * </PRE>
+ * The enclosing package/srcfile/class names are only present for items
+ * nested in them ['srcfile' only in source views]. Coverage objects are
+ * emitted for the report columns that apply to the item type; line
+ * coverage in instr units can be fractional. 'fail' lists the columns that
+ * do not meet their report metric and is omitted when empty.
+ * 
+ * @author Vlad Roubtsov, (C) 2003
+ */
+public
+final class ReportGenerator extends AbstractReportGenerator
+                            implements IAppErrorCodes
+{
+    // public: ................................................................
+    
+    // IReportGenerator:
+    
+    public String getType ()
+    {
+        return TYPE;
+    }
+    
+    public void process (final IMetaData mdata, final ICoverageData cdata,
+                         final SourcePathCache cache, final IProperties properties)
+        throws EMMARuntimeException
+    {
+        initialize (mdata, cdata, cache, properties);
+        
+        long start = 0, end;
+        final boolean trace1 = m_log.atTRACE1 ();
+        
+        if (trace1) start = System.currentTimeMillis ();
+        
+        {
+            m_view.getRoot ().accept (this, null);
+            close ();
+        }
+        
+        if (trace1)
+        {
+            end = System.currentTimeMillis ();
+            
+            m_log.trace1 ("process", "[" + getType () + "] report generated in " + (end - start) + " ms");
+        }
+    }
+    
+    public void cleanup ()
+    {
+        close ();
+        
+        super.cleanup ();
+    }
+    
+    
+    // IItemVisitor:
+    
+    public Object visit (final AllItem item, final Object ctx)
+    {
+        File outFile = m_settings.getOutFile ();
+        if (outFile == null)
+        {
+            outFile = new File ("coverage.jsonl");
+            m_settings.setOutFile (outFile);
+        }
+        
+        final File fullOutFile = Files.newFile (m_settings.getOutDir (), outFile);
+        
+        m_log.info ("writing [" + getType () + "] report to [" + fullOutFile.getAbsolutePath () + "] ...");
+        
+        openOutFile (fullOutFile, m_settings.getOutEncoding (), true);
+        
+        try
+        {
+            m_out.write ("{\"type\":\"report\",\"version\":");
+            writeString (IAppConstants.APP_VERSION_WITH_BUILD_ID_AND_TAG);
+            m_out.write (",\"generated\":");
+            writeString (new Date (EMMAProperties.getTimeStamp ()).toString ());
+            m_out.write (",\"units\":\"");
+            m_out.write (m_settings.getUnitsType () == IItemAttribute.UNITS_COUNT ? IReportProperties.COUNT_UNITS : IReportProperties.INSTR_UNITS);
+            m_out.write ("\"}");
+            m_out.write (EOL);
+            
+            final ItemComparator childrenOrder = m_typeSortComparators [PackageItem.getTypeMetadata ().getTypeID ()];
+            
+            emitItem (item);
+            emitChildren (item, childrenOrder);
+        }
+        catch (IOException ioe)
+        {
+            throw new EMMARuntimeException (IAppErrorCodes.REPORT_IO_FAILURE, ioe);
+        }
+        
+        return ctx;
+    }
+    
+    
+    public Object visit (final PackageItem item, final Object ctx)
+    {
+        if (m_verbose) m_log.verbose ("  report: processing package [" + item.getName () + "] ...");
+        
+        try
+        {
+            final ItemComparator childrenOrder = m_typeSortComparators [m_srcView ? SrcFileItem.getTypeMetadata ().getTypeID () : ClassItem.getTypeMetadata ().getTypeID ()];
+            
+            emitItem (item);
+            
+            m_package = item.getName ();
+            emitChildren (item, childrenOrder);
+            m_package = null;
+        }
+        catch (IOException ioe)
+        {
+            throw new EMMARuntimeException (IAppErrorCodes.REPORT_IO_FAILURE, ioe);
+        }
+        
+        return ctx;
+    }
+    
+    
+    public Object visit (final SrcFileItem item, final Object ctx)
+    {
+        try
+        {
+            final ItemComparator childrenOrder = m_typeSortComparators [ClassItem.getTypeMetadata ().getTypeID ()];
+            
+            emitItem (item);
+            
+            m_srcFile = item.getName ();
+            emitChildren (item, childrenOrder);
+            m_srcFile = null;
+        }
+        catch (IOException ioe)
+        {
+            throw new EMMARuntimeException (IAppErrorCodes.REPORT_IO_FAILURE, ioe);
+        }
+        
+        return ctx;
+    }
+    
+    public Object visit (final ClassItem item, final Object ctx)
+    {
+        try
+        {
+            final ItemComparator childrenOrder = m_typeSortComparators [MethodItem.getTypeMetadata ().getTypeID ()];
+            
+            emitItem (item);
+            
+            m_class = item.getName ();
+            emitChildren (item, childrenOrder);
+            m_class = null;
+        }
+        catch (IOException ioe)
+        {
+            throw new EMMARuntimeException (IAppErrorCodes.REPORT_IO_FAILURE, ioe);
+        }
+        
+        return ctx;
+    }
+    
+    public Object visit (final MethodItem item, final Object ctx)
+    {
+        try
+        {
+            emitItem (item);
+        }
+        catch (IOException ioe)
+        {
+            throw new EMMARuntimeException (IAppErrorCodes.REPORT_IO_FAILURE, ioe);
+        }
+        
+        return ctx;
+    }
+    
+    // protected: .............................................................
+    
+    // package: ...............................................................
+    
+    // private: ...............................................................
+    
+    
+    /*
+     * Writes the line for 'item'. The enclosing item names are taken from
+     * m_package, m_srcFile and m_class, which are only set while their item's
+     * children are being visited.
+     */
+    private void emitItem (final IItem item)
+        throws IOException
+    {
+        final IItemMetadata metadata = item.getMetadata ();
+        final int [] columns = m_settings.getColumnOrder ();
+        final int unitsType = m_settings.getUnitsType ();
+        final Writer out = m_out;
+        
+        out.write ("{\"type\":\"");
+        out.write (metadata.getTypeName ());
+        out.write ("\",\"name\":");
+        writeString (item.getName ());
+        
+        if (m_package != null)
+        {
+            out.write (",\"package\":");
+            writeString (m_package);
+        }
+        if (m_srcFile != null)
+        {
+            out.write (",\"srcfile\":");
+            writeString (m_srcFile);
+        }
+        if (m_class != null)
+        {
+            out.write (",\"class\":");
+            writeString (m_class);
+        }
+        
+        // methods left uninstrumented have no coverage figures:
+        final boolean notInstrumented = notInstrumented (item);
+        if (notInstrumented) out.write (",\"instrumented\":false");
+        
+        int failures = 0;
+        for (int c = 0; ! notInstrumented && (c < columns.length); ++ c)
+        {
+            final int attrID = columns [c];
+            if (attrID == IItemAttribute.ATTRIBUTE_NAME_ID) continue;
+            
+            final IItemAttribute attr = item.getAttribute (attrID, unitsType);
+            if (attr == null) continue; // not applicable to this item type
+            
+            final int [] aggregates = AGGREGATES [unitsType][attrID];
+            
+            out.write (",\"");
+            out.write (COLUMN_NAMES [attrID]);
+            out.write ("\":{\"covered\":");
+            writeScaled (item.getAggregate (aggregates [0]), aggregates [2]);
+            out.write (",\"total\":");
+            writeScaled (item.getAggregate (aggregates [1]), 1);
+            out.write ('}');
+            
+            if ((m_metrics [attrID] > 0) && ! attr.passes (item, m_metrics [attrID]))
+                failures |= 1 << attrID;
+        }
+        
+        if (failures != 0)
+        {
+            out.write (",\"fail\":[");
+            
+            boolean first = true;
+            for (int attrID = 0; attrID < COLUMN_NAMES.length; ++ attrID)
+            {
+                if ((failures & (1 << attrID)) != 0)
+                {
+                    if (! first) out.write (',');
+                    first = false;
+                    
+                    out.write ('"');
+                    out.write (COLUMN_NAMES [attrID]);
+                    out.write ('"');
+                }
+            }
+            
+            out.write (']');
+        }
+        
+        out.write ('}');
+        out.write (EOL);
+    }
+    
+    /*
+     * Visits the children of 'item' if the report depth allows.
+     */
+    private void emitChildren (final IItem item, final ItemComparator childrenOrder)
+    {
+        final boolean deeper = (m_settings.getDepth () > item.getMetadata ().getTypeID ()) && (item.getChildCount () > 0);
+        
+        if (deeper)
+        {
+            for (Iterator children = item.getChildren (childrenOrder); children.hasNext (); )
+            {
+                ((IItem) children.next ()).accept (this, null);
+            }
+        }
+    }
+    
+    /*
+     * Writes value/scale as a JSON number [with up to 2 fraction digits,
+     * which is exact for the scales in AGGREGATES].
+     */
+    private void writeScaled (final int value, final int scale)
+        throws IOException
+    {
+        final Writer out = m_out;
+        
+        out.write (Integer.toString (value / scale));
+        
+        final int fraction = Math.abs (value % scale) * 100 / scale;
+        if (fraction != 0)
+        {
+            out.write ('.');
+            out.write ('0' + fraction / 10);
+            if (fraction % 10 != 0) out.write ('0' + fraction % 10);
+        }
+    }
+    
+    /*
+     * Writes 's' as a JSON string literal.
+     */
+    private void writeString (final String s)
+        throws IOException
+    {
+        final Writer out = m_out;
+        
+        out.write ('"');
+        
+        int start = 0;
+        for (int i = 0, iLimit = s.length (); i < iLimit; ++ i)
+        {
+            final char c = s.charAt (i);
+            
+            if ((c < 0x20) || (c == '"') || (c == '\\'))
+            {
+                out.write (s, start, i - start);
+                start = i + 1;
+                
+                switch (c)
+                {
+                    case '"': out.write ("\\\""); break;
+                    case '\\': out.write ("\\\\"); break;
+                    
+                    default:
+                    {
+                        final String hex = Integer.toHexString (c);
+                        
+                        out.write ("\\u");
+                        for (int p = hex.length (); p < 4; ++ p) out.write ('0');
+                        out.write (hex);
+                    }
+                }
+            }
+        }
+        out.write (s, start, s.length () - start);
+        
+        out.write ('"');
+    }
+    
+    private void close ()
+    {
+        if (m_out != null)
+        {
+            try
+            {
+                m_out.flush ();
+                m_out.close ();
+            }
+            catch (IOException ioe)
+            {
+                throw new EMMARuntimeException (IAppErrorCodes.REPORT_IO_FAILURE, ioe);
+            }
+            finally
+            {
+                m_out = null;
+            }
+        }
+    }
+    
+    private void openOutFile (final File file, final String encoding, final boolean mkdirs)
+    {
+        try
+        {
+            if (mkdirs)
+            {
+                final File parent = file.getParentFile ();
+                if (parent != null) parent.mkdirs ();
+            }
+            
+            m_out = new BufferedWriter (new OutputStreamWriter (new FileOutputStream (file), encoding), IO_BUF_SIZE);
+        }
+        catch (UnsupportedEncodingException uee)
+        {
+            // TODO: error code
+            throw new EMMARuntimeException (uee);
+        }
+        // note: in J2SDK 1.3 FileOutputStream constructor's throws clause
+        // was narrowed to FileNotFoundException:
+        catch (IOException fnfe) // FileNotFoundException
+        {
+            // TODO: error code
+            throw new EMMARuntimeException (fnfe);
+        }
+    }
+    
+    
+    private Writer m_out;
+    private String m_package, m_srcFile, m_class; // enclosing item names [null outside of them]
+    
+    private static final String TYPE = "jsonl";
+    private static final String EOL = "\n"; // fixed for machine consumption
+    private static final int IO_BUF_SIZE = 64 * 1024;
+    
+    // indexed by attribute ID:
+    private static final String [] COLUMN_NAMES =
+    {
+        IReportProperties.ITEM_NAME_COLUMN,
+        IReportProperties.CLASS_COVERAGE_COLUMN,
+        IReportProperties.METHOD_COVERAGE_COLUMN,
+        IReportProperties.BLOCK_COVERAGE_COLUMN,
+        IReportProperties.LINE_COVERAGE_COLUMN,
+    };
+    
+    // [units][attribute ID] -> {covered aggregate ID, total aggregate ID, covered scale}
+    // [this mirrors IItemAttribute.Factory]:
+    private static final int [][][] AGGREGATES =
+    {
+        /* count: */
+        {
+            null,
+            {IItem.COVERAGE_CLASS_COUNT, IItem.TOTAL_CLASS_COUNT, 1},
+            {IItem.COVERAGE_METHOD_COUNT, IItem.TOTAL_METHOD_COUNT, 1},
+            {IItem.COVERAGE_BLOCK_COUNT, IItem.TOTAL_BLOCK_COUNT, 1},
+            {IItem.COVERAGE_LINE_COUNT, IItem.TOTAL_LINE_COUNT, IItem.PRECISION},
+        },
+        /* instr: */
+        {
+            null,
+            {IItem.COVERAGE_CLASS_COUNT, IItem.TOTAL_CLASS_COUNT, 1},
+            {IItem.COVERAGE_METHOD_COUNT, IItem.TOTAL_METHOD_COUNT, 1},
+            {IItem.COVERAGE_BLOCK_INSTR, IItem.TOTAL_BLOCK_INSTR, 1},
+            {IItem.COVERAGE_LINE_INSTR, IItem.TOTAL_LINE_COUNT, IItem.PRECISION},
+        },
+    };
+
+} // end of class
+// ----------------------------------------------------------------------------
@@ -100,6 +100,11 @@ final class reportCommand extends Command
                             {
                                 m_srcpath = getListOptValue (opt, PATH_DELIMITERS, true);
                             }
+                            else if ("ix".equals (on))
+                            {
+                                // note: this allows path delimiter in the pattern list as well
+                                m_ixpath = getListOptValue (opt, COMMA_DELIMITERS, true);
+                            }
                             else if ("r".equals (on))
                             {
                                 m_reportTypes = Strings.merge (opt.getValues (), COMMA_DELIMITERS, true);
@@ -132,6 +137,7 @@ final class reportCommand extends Command
                 
                 processor.setDataPath (m_datapath);
                 processor.setSourcePath (m_srcpath);
+                processor.setInclExclFilter (m_ixpath);
                 if ($assert.ENABLED) $assert.ASSERT (m_reportTypes != null, "m_reportTypes no set");
                 processor.setReportTypes (m_reportTypes); // no "txt" default for report processor
                 processor.setPropertyOverrides (m_propertyOverrides);
@@ -173,6 +179,7 @@ final class reportCommand extends Command
     
     private String [] m_datapath; // list of data files, not a real path
     private String [] m_srcpath;
+    private String [] m_ixpath; // list of filter patterns
     private String [] m_reportTypes;
     
 } // end of class
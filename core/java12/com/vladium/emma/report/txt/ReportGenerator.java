@@ -20,6 +20,7 @@ import java.util.LinkedList;
 
 import com.vladium.util.Files;
 import com.vladium.util.IProperties;
+import com.vladium.util.Property;
 import com.vladium.util.asserts.$assert;
 import com.vladium.emma.IAppConstants;
 import com.vladium.emma.IAppErrorCodes;
@@ -50,6 +51,15 @@ final class ReportGenerator extends AbstractReportGenerator
     
     // TODO: this is prototype quality, needs major cleanup
     
+    /**
+     * Max number of rows listed in each coverage breakdown table [0 means
+     * all]. Rows are selected in report sort order, so with the default sort
+     * by increasing block coverage these are the worst covered items. Only
+     * the listed packages, classes or source files are broken down further.
+     */
+    public static final String PROPERTY_ROW_LIMIT = "report.txt.row.limit";
+    public static final String DEFAULT_ROW_LIMIT = "0";
+    
     // IReportGenerator:
     
     public String getType ()
@@ -63,6 +73,8 @@ final class ReportGenerator extends AbstractReportGenerator
     {
         initialize (mdata, cdata, cache, properties);
         
+        m_rowLimit = Math.max (0, Property.toInt (properties.getProperty (PROPERTY_ROW_LIMIT, DEFAULT_ROW_LIMIT), 0));
+        
         long start = 0, end;
         final boolean trace1 = m_log.atTRACE1 ();
         
@@ -174,7 +186,7 @@ final class ReportGenerator extends AbstractReportGenerator
         {
             boolean headerDone = false;
             final ItemComparator order = m_typeSortComparators [PackageItem.getTypeMetadata ().getTypeID ()];                
-            for (Iterator packages = item.getChildren (order); packages.hasNext (); )
+            for (Iterator packages = getChildren (item, order); packages.hasNext (); )
             {
                 final IItem pkg = (IItem) packages.next ();
                 
@@ -190,6 +202,7 @@ final class ReportGenerator extends AbstractReportGenerator
                 
                 if (deeper) m_queue.addLast (pkg);
             }
+            addOmittedRow (item);
         }
 
         return ctx;
@@ -223,7 +236,7 @@ final class ReportGenerator extends AbstractReportGenerator
         {
             boolean headerDone = false;
             final ItemComparator order = m_typeSortComparators [m_srcView ? SrcFileItem.getTypeMetadata ().getTypeID () : ClassItem.getTypeMetadata ().getTypeID ()];                
-            for (Iterator srcORclsFiles = item.getChildren (order); srcORclsFiles.hasNext (); )
+            for (Iterator srcORclsFiles = getChildren (item, order); srcORclsFiles.hasNext (); )
             {
                 final IItem srcORcls = (IItem) srcORclsFiles.next ();
                 
@@ -239,6 +252,7 @@ final class ReportGenerator extends AbstractReportGenerator
                 
                 if (deeper) m_queue.addLast (srcORcls);
             }
+            addOmittedRow (item);
         }
 
         return ctx;
@@ -265,7 +279,7 @@ final class ReportGenerator extends AbstractReportGenerator
         {
             boolean headerDone = false;
             final ItemComparator order = m_typeSortComparators [ClassItem.getTypeMetadata ().getTypeID ()];                
-            for (Iterator classes = item.getChildren (order); classes.hasNext (); )
+            for (Iterator classes = getChildren (item, order); classes.hasNext (); )
             {
                 final IItem cls = (IItem) classes.next ();
                 
@@ -283,13 +297,15 @@ final class ReportGenerator extends AbstractReportGenerator
                 
                 // TODO: select the right comparator here
                 final ItemComparator order2 = m_typeSortComparators [MethodItem.getTypeMetadata ().getTypeID ()];                
-                for (Iterator methods = cls.getChildren (order2); methods.hasNext (); )
+                for (Iterator methods = getChildren (cls, order2); methods.hasNext (); )
                 {
                     final MethodItem method = (MethodItem) methods.next ();
                     
                     addItemRow (method, columns);
                 }
+                addOmittedRow (cls);
             }
+            addOmittedRow (item);
         }
 
         return ctx;
@@ -315,13 +331,14 @@ final class ReportGenerator extends AbstractReportGenerator
         addTitleRow ("COVERAGE BREAKDOWN BY METHOD", 1, 1);
         {
             final ItemComparator order = m_typeSortComparators [MethodItem.getTypeMetadata ().getTypeID ()];                
-            for (Iterator methods = item.getChildren (order); methods.hasNext (); )
+            for (Iterator methods = getChildren (item, order); methods.hasNext (); )
             {
                 final IItem method = (IItem) methods.next ();
                 
                 // coverage row:
                 addItemRow (method, columns);                
             }
+            addOmittedRow (item);
         }
 
         return ctx;
@@ -382,13 +399,25 @@ final class ReportGenerator extends AbstractReportGenerator
         }
         
         final StringBuffer buf = new StringBuffer (11); // TODO: reuse a buffer
+        final boolean notInstrumented = notInstrumented (item);
         
         for (int c = 0, cLimit = columns.length; c < cLimit; ++ c)
         {
             final int attrID = columns [c];
             final IItemAttribute attr = item.getAttribute (attrID, m_settings.getUnitsType ());
             
-            if (attr != null)
+            if (notInstrumented && (attr != null))
+            {
+                // no coverage figures, just the name and a marker:
+                if (attrID == IItemAttribute.ATTRIBUTE_NAME_ID)
+                {
+                    attr.format (item, buf);
+                    buf.append (" {" + NOT_INSTRUMENTED + "}");
+                }
+                else
+                    buf.append ('-');
+            }
+            else if (attr != null)
             {
                 boolean fail = (m_metrics [attrID] > 0) && ! attr.passes (item, m_metrics [attrID]);
                 
@@ -412,6 +441,27 @@ final class ReportGenerator extends AbstractReportGenerator
     }
     
     
+    /*
+     * @return children of 'item' in 'order' [only the first PROPERTY_ROW_LIMIT
+     * ones if that is set]
+     */
+    private Iterator /* IItem */ getChildren (final IItem item, final ItemComparator order)
+    {
+        return m_rowLimit > 0 ? item.getChildren (order, m_rowLimit) : item.getChildren (order);
+    }
+    
+    /*
+     * Notes the number of children of 'item' left out of the breakdown
+     * table just rendered [if any].
+     */
+    private void addOmittedRow (final IItem item)
+    {
+        final int omitted = item.getChildCount () - m_rowLimit;
+        
+        if ((m_rowLimit > 0) && (omitted > 0))
+            row ("[" + omitted + " more not shown]");
+    }
+    
     private void row (final StringBuffer str)
     {
         if ($assert.ENABLED) $assert.ASSERT (str != null, "str = null");
@@ -517,6 +567,7 @@ final class ReportGenerator extends AbstractReportGenerator
     private char m_separator = '\t'; // TODO: set this
     
     private LinkedList /* IITem */ m_queue;
+    private int m_rowLimit; // 0 means no limit
     private BufferedWriter m_out;
     
     private static final String TYPE = "txt";
@@ -12,16 +12,18 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.zip.GZIPOutputStream;
 
 import com.vladium.util.Files;
 import com.vladium.util.IConstants;
 import com.vladium.util.IProperties;
-import com.vladium.util.Strings;
+import com.vladium.util.Property;
 import com.vladium.emma.IAppConstants;
 import com.vladium.emma.IAppErrorCodes;
 import com.vladium.emma.EMMAProperties;
@@ -50,6 +52,15 @@ final class ReportGenerator extends AbstractReportGenerator
 {
     // public: ................................................................
     
+    
+    /**
+     * If 'true', the report is gzipped [and '.gz' is appended to the output
+     * file name unless it already ends with it].
+     */
+    public static final String PROPERTY_COMPRESS = "report.xml.compress";
+    public static final String DEFAULT_COMPRESS = "false";
+    
+    
     // IReportGenerator:
     
     public String getType ()
@@ -63,6 +74,8 @@ final class ReportGenerator extends AbstractReportGenerator
     {
         initialize (mdata, cdata, cache, properties);
         
+        m_compress = Property.toBoolean (properties.getProperty (PROPERTY_COMPRESS, DEFAULT_COMPRESS));
+        
         long start = 0, end;
         final boolean trace1 = m_log.atTRACE1 ();
         
@@ -102,7 +115,9 @@ final class ReportGenerator extends AbstractReportGenerator
                 m_settings.setOutFile (outFile);
             }
             
-            final File fullOutFile = Files.newFile (m_settings.getOutDir (), outFile);
+            File fullOutFile = Files.newFile (m_settings.getOutDir (), outFile);
+            if (m_compress && ! fullOutFile.getName ().endsWith (GZIP_FILE_EXTENSION))
+                fullOutFile = new File (fullOutFile.getPath ().concat (GZIP_FILE_EXTENSION));
             
             m_log.info ("writing [" + getType () + "] report to [" + fullOutFile.getAbsolutePath () + "] ...");
             
@@ -364,7 +379,8 @@ final class ReportGenerator extends AbstractReportGenerator
     {
         eol ();
         openElementTag (name);
-        m_out.write (" value=\"" + value);
+        m_out.write (" value=\"");
+        writeInt (value);
         m_out.write ('"');
         closeElementTag (true);
     } 
@@ -375,6 +391,7 @@ final class ReportGenerator extends AbstractReportGenerator
         final IItemMetadata metadata = item.getMetadata (); 
         final int [] columns = m_settings.getColumnOrder ();            
         final String tag = metadata.getTypeName ();
+        final boolean notInstrumented = notInstrumented (item);
  
         eol ();
         
@@ -383,9 +400,11 @@ final class ReportGenerator extends AbstractReportGenerator
             openElementTag (tag);
             
             m_out.write (" name=\"");
-            m_out.write (Strings.HTMLEscape (item.getName ()));
+            writeEscaped (item.getName ());
             m_out.write ('"');
             
+            if (notInstrumented) m_out.write (" instrumented=\"false\""); // and no coverage elements
+            
             closeElementTag (false);
         }
         
@@ -393,7 +412,7 @@ final class ReportGenerator extends AbstractReportGenerator
             
         m_out.incIndent ();       
 
-        emitItemCoverage (item, columns);
+        if (! notInstrumented) emitItemCoverage (item, columns);
         
         final boolean deeper = (childrenOrder != null) && (m_settings.getDepth () > metadata.getTypeID ()) && (item.getChildCount () > 0);
         
@@ -421,7 +440,7 @@ final class ReportGenerator extends AbstractReportGenerator
     private void emitItemCoverage (final IItem item, final int [] columns)
         throws IOException
     {
-        final StringBuffer buf = new StringBuffer (64);
+        final StringBuffer buf = m_formatBuf;
         
         for (int c = 0, cLimit = columns.length; c < cLimit; ++ c)
         {
@@ -436,12 +455,12 @@ final class ReportGenerator extends AbstractReportGenerator
                     openElementTag ("coverage");
 
                     m_out.write (" type=\"");
-                    m_out.write (Strings.HTMLEscape (attr.getName ()));
+                    writeEscaped (attr.getName ());
                     m_out.write ("\" value=\"");
+                    buf.setLength (0);
                     attr.format (item, buf);
-                    m_out.write (Strings.HTMLEscape (buf.toString ()));
+                    writeEscaped (buf);
                     m_out.write ('"');
-                    buf.setLength (0);
                     
                     closeElementTag (true);
                     
@@ -452,6 +471,84 @@ final class ReportGenerator extends AbstractReportGenerator
         
     }
     
+    /*
+     * Writes 's' escaped the same way as Strings.HTMLEscape() does but
+     * without creating any intermediate strings.
+     */
+    private void writeEscaped (final String s)
+        throws IOException
+    {
+        final int length = s.length ();
+        s.getChars (0, length, ensureChars (length), 0);
+        
+        writeEscaped (m_chars, length);
+    }
+    
+    private void writeEscaped (final StringBuffer s)
+        throws IOException
+    {
+        final int length = s.length ();
+        s.getChars (0, length, ensureChars (length), 0);
+        
+        writeEscaped (m_chars, length);
+    }
+    
+    private void writeEscaped (final char [] chars, final int length)
+        throws IOException
+    {
+        final Writer out = m_out;
+        
+        int start = 0;
+        for (int i = 0; i < length; ++ i)
+        {
+            final String entity;
+            switch (chars [i])
+            {
+                case '<': entity = "&lt;"; break;
+                case '>': entity = "&gt;"; break;
+                case '"': entity = "&#34;"; break;
+                case '&': entity = "&amp;"; break;
+                
+                default: continue;
+                
+            } // end of switch
+            
+            if (i > start) out.write (chars, start, i - start);
+            out.write (entity);
+            start = i + 1;
+        }
+        
+        if (length > start) out.write (chars, start, length - start);
+    }
+    
+    private void writeInt (int value)
+        throws IOException
+    {
+        if (value < 0) // never happens for counts but keep this correct
+        {
+            m_out.write (Integer.toString (value));
+            return;
+        }
+        
+        final char [] chars = ensureChars (10);
+        int pos = 10;
+        do
+        {
+            chars [-- pos] = (char) ('0' + value % 10);
+            value /= 10;
+        }
+        while (value != 0);
+        
+        m_out.write (chars, pos, 10 - pos);
+    }
+    
+    private char [] ensureChars (final int capacity)
+    {
+        if (m_chars.length < capacity) m_chars = new char [Math.max (capacity, m_chars.length << 1)];
+        
+        return m_chars;
+    }
+    
     private void openElementTag (final String tag)
         throws IOException
     {
@@ -512,7 +609,10 @@ final class ReportGenerator extends AbstractReportGenerator
                 if (parent != null) parent.mkdirs ();
             }
             
-            m_out = new IndentingWriter (new OutputStreamWriter (new FileOutputStream (file), encoding), IO_BUF_SIZE, 0);
+            OutputStream out = new FileOutputStream (file);
+            if (m_compress) out = new GZIPOutputStream (out, IO_BUF_SIZE);
+            
+            m_out = new IndentingWriter (new OutputStreamWriter (out, encoding), IO_BUF_SIZE, 0);
         }
         catch (UnsupportedEncodingException uee)
         {
@@ -530,8 +630,13 @@ final class ReportGenerator extends AbstractReportGenerator
     
     
     private IndentingWriter m_out;
+    private boolean m_compress;
+    
+    private final StringBuffer m_formatBuf = new StringBuffer (64); // reused for all attribute values
+    private char [] m_chars = new char [64]; // scratch space for writeEscaped()/writeInt()
     
     private static final String TYPE = "xml";    
+    private static final String GZIP_FILE_EXTENSION = ".gz";
     private static final int IO_BUF_SIZE = 64 * 1024;
 
 } // end of class
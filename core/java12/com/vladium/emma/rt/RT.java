@@ -74,6 +74,14 @@ abstract class RT implements IAppConstants
     public static final String DEFAULT_RT_CONTROL_HOST          = "localhost";
     public static final int DEFAULT_RT_CONTROL_PORT             = 47653;
     
+    // properties for the runtime management bean [J2SE 1.5+ only]:
+    
+    public static final String PROPERTY_RT_JMX_FLAG             = "rt.jmx";
+    
+    // properties for class generation tracking [redeployed applications]:
+    
+    public static final String PROPERTY_RT_GENERATIONS_FLAG     = "rt.generations";
+    
     
     /**
      * This method is internal to our framework and should not be called by external
@@ -121,6 +129,19 @@ abstract class RT implements IAppConstants
             }
             
             s_appProperties = appProperties;
+            
+            s_callerResolver = null;
+            if ((appProperties != null) && Property.toBoolean (appProperties.getProperty (PROPERTY_RT_GENERATIONS_FLAG, "false")))
+            {
+                try
+                {
+                    s_callerResolver = new CallerResolver ();
+                }
+                catch (SecurityException se)
+                {
+                    System.err.println (IAppConstants.APP_NAME + ": current security permissions do not allow class generation tracking, ignoring [" + PROPERTY_RT_GENERATIONS_FLAG + "]");
+                }
+            }
         }
 
 
@@ -269,7 +290,8 @@ abstract class RT implements IAppConstants
         // is not the best possible solution because it is not capable of supporting
         // multiply (re)loaded classes within the same app, but the rest of the toolkit
         // isn't designed to support this anyway. Furthermore, this does not interfere
-        // with class unloading.
+        // with class unloading. [With PROPERTY_RT_GENERATIONS_FLAG set, the coverage of
+        // reloaded classes is accumulated across all of their generations instead.]
 
         final ICoverageData cdata = getCoverageData (); // need to use accessor for JMM reasons
 
@@ -277,6 +299,8 @@ abstract class RT implements IAppConstants
         
         if (cdata != null)
         {
+            final Class owner = getRegisteringClass ();
+            
             synchronized (cdata.lock ())
             {
                 // TODO: could something useful be communicated back to the class
@@ -284,11 +308,47 @@ abstract class RT implements IAppConstants
                 // issues of class name collisions and class reloading) or RT.class
                 // (to prevent RT reloading)]
                 
-                cdata.addClass (coverage, classVMName, stamp);
+                if (owner != null)
+                    cdata.addClass (coverage, classVMName, stamp, owner);
+                else
+                    cdata.addClass (coverage, classVMName, stamp);
+                
+                RTStats.classRegistered ();
             }
         }
     }
 
+    /**
+     * Same as {@link #r(boolean[][], String, long)} for classes instrumented
+     * with a single flat coverage array per class [see {@link ICoverageData#addClass(boolean[], String, String, long)}].
+     * 
+     * @param coverage basic block coverage array created by an instrumented class [not null]
+     * @param layout method layout of 'coverage' [not null]
+     * @param classVMName class name (JVM format), used as the key of this coverage entry
+     * @param stamp class bytecode signature [used to detect coverage data/metadata inconsistencies]
+     */
+    public static void r (final boolean [] coverage, final String layout, final String classVMName, final long stamp)
+    {
+        final ICoverageData cdata = getCoverageData (); // need to use accessor for JMM reasons
+        
+        // ['cdata' can be null if a previous call to dumpCoverageData() disabled data collection]
+        
+        if (cdata != null)
+        {
+            final Class owner = getRegisteringClass ();
+            
+            synchronized (cdata.lock ())
+            {
+                if (owner != null)
+                    cdata.addClass (coverage, layout, classVMName, stamp, owner);
+                else
+                    cdata.addClass (coverage, layout, classVMName, stamp);
+                
+                RTStats.classRegistered ();
+            }
+        }
+    }
+    
     /**
      * This synchronized getter is used by the run processor to get a handle
      * to the same coverage data as being used by the runtime.
@@ -350,6 +410,90 @@ abstract class RT implements IAppConstants
 
     // package: ...............................................................
     
+    /*
+     * Dumps the current coverage data [shared by RTController and the runtime
+     * management bean]. Not synchronized on purpose: a dump can take a long
+     * time and must not block class registration.
+     * 
+     * @param outFile [null means the default as determined by app properties]
+     * @param disableExitHook if 'true', the exit hook is removed after the dump
+     * 
+     * @return dump trace message [null if no coverage data is being collected]
+     */
+    static String dumpCoverage (File outFile, final boolean merge, final boolean disableExitHook)
+    {
+        final ICoverageData cdata = getCoverageData ();
+        if (cdata == null) return null;
+        
+        if (outFile == null) outFile = getCoverageOutFile ();
+        final IFileLock outLock = getCoverageOutFileLock (outFile);
+        
+        // note: cdata is shallowly cloned by the following method:
+        
+        final long start = System.currentTimeMillis ();
+        RTCoverageDataPersister.dumpCoverageData (cdata, true, outFile, merge, outLock);
+        final long end = System.currentTimeMillis ();
+        
+        if (disableExitHook)
+        {
+            reset (new RTSettings.SetActions (RTSettings.FIELD_NEW_IF_NULL,
+                                              RTSettings.FIELD_NEW_IF_NULL,
+                                              RTSettings.FIELD_NULL,
+                                              RTSettings.FIELD_NEW_IF_NULL));
+        }
+        
+        return "runtime coverage data remotely " + (merge ? "merged into" : "written to") + " [" + outFile.getAbsolutePath () + "] {in " + (end - start) + " ms}";
+    }
+    
+    /*
+     * Resets the current coverage data in place [shared by RTController and
+     * the runtime management bean].
+     * 
+     * @return reset trace message
+     */
+    static String resetCoverage ()
+    {
+        final ICoverageData cdata = getCoverageData ();
+        int size = 0;
+        
+        final long start = System.currentTimeMillis ();
+        
+        if (cdata != null)
+        {
+            // note: here we don't do shallow cloning on the assumption
+            // that zeroing in-place is not a very lengthy operation
+            // (it is purely in-memory and can't block on socket/file I/O)
+            
+            // TODO: verify that the scale of the overhead here matches these expectations
+            
+            synchronized (cdata.lock ())
+            {
+                size = cdata.size ();
+                if (size > 0) cdata.reset ();
+            }
+        }
+        
+        if (size > 0)
+        {
+            final long end = System.currentTimeMillis ();
+            
+            return "coverage reset for " + size + " classes {in " + (end - start) + " ms}";
+        }
+        else
+        {
+            return "coverage reset for " + size + " classes";
+        }
+    }
+    
+    /*
+     * @return number of requests waiting in the runtime controller queue
+     * [-1 if no controller is running]
+     */
+    static synchronized int getControllerQueueSize ()
+    {
+        return s_controller != null ? s_controller.getQueueSize () : -1;
+    }
+    
     /*
      * A safe (never fails) method for figuring out the coverage data filename
      * based on the known app properties and their defaults.
@@ -392,7 +536,7 @@ abstract class RT implements IAppConstants
      * 
      * @return [null indicates no file locking should be attempted]
      */
-    static IFileLock getCoverageOutFileLock (final File outFile)
+    public static IFileLock getCoverageOutFileLock (final File outFile)
     {
         boolean enableLocking = true;
         
@@ -462,6 +606,70 @@ abstract class RT implements IAppConstants
     
     private RT () {} // prevent subclassing 
        
+    /*
+     * Registers the runtime management bean [com.vladium.emma.rt.RTMonitor]
+     * if enabled by app properties. The bean needs J2SE 1.5+ and is loaded
+     * reflectively: on older JVMs or if the registration fails, coverage
+     * collection simply proceeds without it.
+     */
+    private static void registerMBean ()
+    {
+        final IProperties appProperties = getAppProperties (); // sync accessor
+        if ((appProperties == null) || ! Property.toBoolean (appProperties.getProperty (PROPERTY_RT_JMX_FLAG, "false")))
+            return;
+        
+        try
+        {
+            final Class monitor = Class.forName (MONITOR_CLASS_NAME, true, RT.class.getClassLoader ());
+            monitor.getMethod ("register", (Class []) null).invoke (null, (Object []) null);
+        }
+        catch (Throwable t)
+        {
+            // use method-scoped loggers in RT:
+            final Logger log = Logger.getLogger ();
+            log.warning ("runtime management bean could not be registered: " + t);
+        }
+    }
+    
+    /*
+     * Exposes the protected SecurityManager call context to RT [creating an
+     * instance does not install it as the JVM security manager].
+     */
+    private static final class CallerResolver extends SecurityManager
+    {
+        /*
+         * @return the first class on the call stack other than RT [null if none]
+         */
+        Class getCaller ()
+        {
+            final Class [] context = getClassContext ();
+            
+            for (int c = 0; c < context.length; ++ c)
+            {
+                final Class cls = context [c];
+                if ((cls != CallerResolver.class) && (cls != RT.class)) return cls;
+            }
+            
+            return null;
+        }
+    
+    } // end of nested class
+    
+    
+    /*
+     * Must be called after getCoverageData() [which makes s_callerResolver
+     * safely visible].
+     * 
+     * @return the instrumented class calling r() [null unless class generations
+     * are being tracked]
+     */
+    private static Class getRegisteringClass ()
+    {
+        final CallerResolver callerResolver = s_callerResolver;
+        
+        return callerResolver != null ? callerResolver.getCaller () : null;
+    }
+    
     /**
      * A safe (never fails) method for creating the runtime controller
      * based on the known app properties and their defaults.
@@ -510,9 +718,12 @@ abstract class RT implements IAppConstants
     private static RTController s_controller;
     private static Runnable s_exitHook;
     private static IProperties s_appProperties; // TODO: this is better off as java.util.Properties
+    private static CallerResolver s_callerResolver; // null unless class generations are being tracked
 
     private static final ExitHookManager EXIT_HOOK_MANAGER; // set in <clinit>
     
+    private static final String MONITOR_CLASS_NAME = "com.vladium.emma.rt.RTMonitor";
+    
     private static final boolean DEBUG = false;
     
     static
@@ -538,6 +749,8 @@ abstract class RT implements IAppConstants
             
             // load app props, create coverage data, register an exit hook, launch the rt controller:
             reset (new RTSettings.SetActions (RTSettings.FIELD_NEW, RTSettings.FIELD_NEW, RTSettings.FIELD_NEW, RTSettings.FIELD_NEW));            
+            
+            registerMBean ();
         }
         else
         {
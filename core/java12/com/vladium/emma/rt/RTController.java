@@ -25,7 +25,6 @@ import com.vladium.emma.rt.rpc.Request;
 import com.vladium.emma.rt.rpc.Response;
 import com.vladium.logging.ILogLevels;
 import com.vladium.logging.Logger;
-import com.vladium.util.IFileLock;
 import com.vladium.util.Property;
 
 // ----------------------------------------------------------------------------
@@ -200,6 +199,14 @@ final class RTController
         }
     }
     
+    /*
+     * @return number of requests waiting to be executed [0 if not started]
+     */
+    synchronized int getQueueSize ()
+    {
+        return m_queue != null ? m_queue.size () : 0;
+    }
+    
     // command processing:
     
     /**
@@ -269,49 +276,25 @@ final class RTController
                 
                 case ControlRequest.ID_DUMP_COVERAGE:
                 {
-                    final ICoverageData cdata = RT.getCoverageData ();
-                    String trace = null; // see TODO below
+                    // unlike ID_GET_COVERAGE case, the client can send null
+                    // parameter values to indicate that the defaults should come
+                    // from the server JVM:
                     
-                    if (cdata != null)
-                    {
-                        // unlike ID_GET_COVERAGE case, the client can send null
-                        // parameter values to indicate that the defaults should come
-                        // from the server JVM:
+                    final File outFile = args [0] != null
+                        ? new File (args [0])
+                        : null;
                         
-                        final File outFile = args [0] != null
-                            ? new File (args [0])
-                            : RT.getCoverageOutFile ();
+                    final boolean outMerge = args [1] != null
+                        ? Property.toBoolean (args [1])
+                        : RT.getCoverageOutMerge ();
                             
-                        final boolean outMerge = args [1] != null
-                            ? Property.toBoolean (args [1])
-                            : RT.getCoverageOutMerge ();
+                    final boolean disableShutdownHook = args [2] != null
+                        ? Property.toBoolean (args [2])
+                        : true;
     
-                        final boolean disableShutdownHook = args [2] != null
-                            ? Property.toBoolean (args [2])
-                            : true;
+                    // TODO: record log trace properly and send that back
+                    final String trace = RT.dumpCoverage (outFile, outMerge, disableShutdownHook);
                              
-                        final IFileLock outLock =  RT.getCoverageOutFileLock (outFile);
-                        
-                        // note: similary to the ID_GET_COVERAGE case above, cdata
-                        // is shallowly cloned by the following method:
-                        
-                        final long start = System.currentTimeMillis (); // see TODO below
-                        RTCoverageDataPersister.dumpCoverageData (cdata, true, outFile, outMerge, outLock);
-                        final long end = System.currentTimeMillis (); // see TODO below
-                        
-                        // TODO: record log trace properly and send that back
-                        trace = "runtime coverage data remotely " + (outMerge ? "merged into" : "written to") + " [" + outFile.getAbsolutePath () + "] {in " + (end - start) + " ms}";
-                        
-                        if (disableShutdownHook)
-                        {
-                            RT.reset (new RTSettings.SetActions (RTSettings.FIELD_NEW_IF_NULL,
-                                                                 RTSettings.FIELD_NEW_IF_NULL,
-                                                                 RTSettings.FIELD_NULL,
-                                                                 RTSettings.FIELD_NEW_IF_NULL));
-                        }
-                    }
-                    
-                    // TODO: send back logger trace
                     return new Response (ID, trace); // send back an empty response to indicate successful completion
                 }
                 // break;
@@ -319,36 +302,7 @@ final class RTController
                 
                 case ControlRequest.ID_RESET_COVERAGE:
                 {
-                    ICoverageData cdata = RT.getCoverageData ();
-                    int size = 0;
-                    
-                    final long start = System.currentTimeMillis ();
-                    
-                    if (cdata != null)
-                    {
-                        // note: here we don't do shallow cloning on the assumption
-                        // that zeroing in-place is not a very lengthy operation
-                        // (it is purely in-memory and can't block on socket/file I/O)
-                        
-                        // TODO: verify that the scale of the overhead here matches these expectations 
-                        
-                        synchronized (cdata.lock ())
-                        {
-                            size = cdata.size ();
-                            if (size > 0) cdata.reset ();
-                        }
-                    }
-                    
-                    if (size > 0)
-                    {
-                        final long end = System.currentTimeMillis ();
-                        
-                        return new Response (ID, "coverage reset for " + size + " classes {in " + (end - start) + " ms}");
-                    }
-                    else
-                    {
-                        return new Response (ID, "coverage reset for " + size + " classes");
-                    }
+                    return new Response (ID, RT.resetCoverage ());
                 }
                 // break;
                 
@@ -433,6 +387,11 @@ final class RTController
             return m_queue.isEmpty ();
         }
         
+        synchronized int size ()
+        {
+            return m_queue.size ();
+        }
+        
     
         private final LinkedList m_queue; 
     
@@ -57,7 +57,29 @@ final class RTControllerClientProxy
         if (port < 0 || port > 0xFFFF)
             throw new IllegalArgumentException ("port must be in [1, 65535] range: " + port);
         
-        return new RTControllerClientProxy (host, port);
+        return new RTControllerClientProxy (host, port, 0);
+    }
+    
+    /**
+     * Same as {@link #create(String, int)} but with a socket read timeout.
+     * 
+     * @param timeout maximum time to block on reading a response [in ms,
+     * 0 means no timeout; a timeout fails {@link #execute(Request)} with
+     * an IOException]
+     * 
+     * @return a new proxy instance 
+     */
+    public static RTControllerClientProxy create (final String host, final int port, final int timeout)
+        throws UnknownHostException
+    {
+        if (host == null)
+            throw new IllegalArgumentException ("null input: host");
+        if (port < 0 || port > 0xFFFF)
+            throw new IllegalArgumentException ("port must be in [1, 65535] range: " + port);
+        if (timeout < 0)
+            throw new IllegalArgumentException ("negative input: timeout");
+        
+        return new RTControllerClientProxy (host, port, timeout);
     }
     
     /**
@@ -84,6 +106,8 @@ final class RTControllerClientProxy
         final Socket socket = new Socket (m_addr, m_port);
         try
         {
+            if (m_timeout > 0) socket.setSoTimeout (m_timeout);
+            
             DataOutputStream out = new DataOutputStream (new BufferedOutputStream (socket.getOutputStream (), OUTPUT_IO_BUF_SIZE));
                 
             Request.write (request, out);
@@ -127,16 +151,18 @@ final class RTControllerClientProxy
     
     // private: ...............................................................
     
-    private RTControllerClientProxy (final String host, final int port)
+    private RTControllerClientProxy (final String host, final int port, final int timeout)
         throws UnknownHostException
     {
         m_port = port;
+        m_timeout = timeout;
         m_addr = InetAddress.getByName (host);
         
         m_log = Logger.getLogger ();
     }
     
     private final int m_port;
+    private final int m_timeout; // socket read timeout [0 means none]
     private final InetAddress m_addr;
     private final Logger m_log; // this class is instantiated and used on a single thread
     
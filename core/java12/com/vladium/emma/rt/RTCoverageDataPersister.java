@@ -57,7 +57,8 @@ class RTCoverageDataPersister
                 
                 final String filePath = (info || trace1) ? outFile.getAbsolutePath () : null;
                 
-                final long start = info ? System.currentTimeMillis () : 0;
+                final long start = System.currentTimeMillis (); // [also needed for RTStats]
+                long bytes = 0; // bytes written by this dump [for RTStats]
                 {
                     final ICoverageData cdataView = useSnapshot ? cdata.shallowCopy () : cdata;
                     
@@ -74,7 +75,9 @@ class RTCoverageDataPersister
                                 try
                                 {
                                     dump = false;
+                                    final long lockStart = System.currentTimeMillis ();
                                     lock.acquire ();
+                                    RTStats.lockAcquired (System.currentTimeMillis () - lockStart);
                                     dump = true;
                                 }
                                 catch (AbstractException ae)
@@ -86,7 +89,12 @@ class RTCoverageDataPersister
                             // dump coverage data:
                             if (dump)
                             {
+                                // [measured while the file lock is held: merge dumps append to the file]
+                                final long lengthBefore = merge ? outFile.length () : 0; // 0 if the file does not exist yet
+                                
                                 DataFactory.persist (cdataView, outFile, merge);
+                                
+                                bytes = outFile.length () - lengthBefore;
                             }
                         }
                         finally
@@ -103,21 +111,26 @@ class RTCoverageDataPersister
                 
                 if (dump)
                 {
+                    final long end = System.currentTimeMillis ();
+                    RTStats.dumpCompleted (end, end - start, bytes);
+                    
                     if (info)
                     {
-                        final long end = System.currentTimeMillis ();
-                        
                         log.info ("runtime coverage data " + (merge ? "merged into" : "written to") + " [" + filePath + "] {in " + (end - start) + " ms}");
                     }
                 }
                 else
                 {
+                    RTStats.dumpFailed ();
+                    
                     log.log (ILogLevels.SEVERE, "coverage data dump aborted", true);
                 }
             }
         }
         catch (Throwable t)
         {
+            RTStats.dumpFailed ();
+            
             // log
             t.printStackTrace ();
             
@@ -0,0 +1,150 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.emma.rt;
+
+import com.vladium.emma.data.ICoverageData;
+
+// ----------------------------------------------------------------------------
+/**
+ * JVM-global counters and timings of the coverage runtime [class registrations
+ * via {@link RT#r(boolean[][], String, long)}, coverage data dumps and the
+ * file lock waits within them]. They are updated by {@link RT} and
+ * {@link RTCoverageDataPersister} and published by the runtime management
+ * bean [see RT.PROPERTY_RT_JMX_FLAG].<P>
+ * 
+ * MT-safety: the class registration count is guarded by the lock of the
+ * current runtime coverage data [it is updated in the same critical section
+ * that registers the class, so class loading takes no extra monitor]. All
+ * other methods are synchronized on this class and run at most once per
+ * coverage dump.
+ * 
+ * @author Vlad Roubtsov, (C) 2003
+ */
+abstract class RTStats
+{
+    // public: ................................................................
+    
+    // protected: .............................................................
+    
+    // package: ...............................................................
+    
+    
+    /*
+     * Must be called while holding the lock of the current runtime coverage data.
+     */
+    static void classRegistered ()
+    {
+        ++ s_classRegistrationCount;
+    }
+    
+    /*
+     * @param waitTime time spent waiting for the coverage output file lock [in ms]
+     */
+    static synchronized void lockAcquired (final long waitTime)
+    {
+        s_lastLockWaitTime = waitTime;
+        s_totalLockWaitTime += waitTime;
+        if (waitTime > s_maxLockWaitTime) s_maxLockWaitTime = waitTime;
+    }
+    
+    /*
+     * @param time dump completion time [as returned by System.currentTimeMillis()]
+     * @param duration dump duration [in ms, including lock waits]
+     * @param bytes number of bytes written to the coverage output file by the dump
+     */
+    static synchronized void dumpCompleted (final long time, final long duration, final long bytes)
+    {
+        ++ s_dumpCount;
+        
+        s_lastDumpTime = time;
+        s_lastDumpDuration = duration;
+        s_lastDumpBytes = bytes;
+        if (duration > s_maxDumpDuration) s_maxDumpDuration = duration;
+    }
+    
+    static synchronized void dumpFailed ()
+    {
+        ++ s_failedDumpCount;
+    }
+    
+    
+    static long getClassRegistrationCount ()
+    {
+        final ICoverageData cdata = RT.getCoverageData ();
+        if (cdata == null) return s_classRegistrationCount; // [no registrations happen while collection is disabled]
+        
+        synchronized (cdata.lock ())
+        {
+            return s_classRegistrationCount;
+        }
+    }
+    
+    static synchronized long getDumpCount ()
+    {
+        return s_dumpCount;
+    }
+    
+    static synchronized long getFailedDumpCount ()
+    {
+        return s_failedDumpCount;
+    }
+    
+    /*
+     * @return completion time of the last successful dump [0 if there were none]
+     */
+    static synchronized long getLastDumpTime ()
+    {
+        return s_lastDumpTime;
+    }
+    
+    static synchronized long getLastDumpDuration ()
+    {
+        return s_lastDumpDuration;
+    }
+    
+    static synchronized long getMaxDumpDuration ()
+    {
+        return s_maxDumpDuration;
+    }
+    
+    static synchronized long getLastDumpBytes ()
+    {
+        return s_lastDumpBytes;
+    }
+    
+    static synchronized long getLastLockWaitTime ()
+    {
+        return s_lastLockWaitTime;
+    }
+    
+    static synchronized long getMaxLockWaitTime ()
+    {
+        return s_maxLockWaitTime;
+    }
+    
+    static synchronized long getTotalLockWaitTime ()
+    {
+        return s_totalLockWaitTime;
+    }
+    
+    // private: ...............................................................
+    
+    
+    private RTStats () {} // prevent subclassing
+    
+    
+    private static long s_classRegistrationCount; // guarded by RT.getCoverageData().lock()
+    
+    private static long s_dumpCount, s_failedDumpCount;
+    private static long s_lastDumpTime, s_lastDumpDuration, s_maxDumpDuration, s_lastDumpBytes;
+    
+    private static long s_lastLockWaitTime, s_maxLockWaitTime, s_totalLockWaitTime;
+
+} // end of class
+// ----------------------------------------------------------------------------
@@ -774,6 +774,7 @@ final class RunProcessor extends Processor
                 m_mdata = null;
                 m_cdata = null;
                 m_properties = null;
+                if (m_cache != null) m_cache.close ();
                 m_cache = null;
                 
                 m_done = true;
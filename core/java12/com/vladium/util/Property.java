@@ -41,6 +41,27 @@ abstract class Property
         else
             return value.startsWith ("t") || value.startsWith ("y");
     }
+    
+    /**
+     * @return 'value' parsed as a decimal int or 'def' if 'value' is null or
+     * not a valid int
+     */
+    public static int toInt (final String value, final int def)
+    {
+        if (value == null)
+            return def;
+        else
+        {
+            try
+            {
+                return Integer.parseInt (value.trim ());
+            }
+            catch (NumberFormatException nfe)
+            {
+                return def;
+            }
+        }
+    }
 
     
     /**
@@ -470,6 +491,16 @@ abstract class Property
             return _propertyNames.keys ();
         }
 
+        /*
+         * Overrides Properties.propertyNames () [newer JREs no longer implement
+         * it in terms of keys(), which would hide all looked up properties from
+         * IProperties.Factory.wrap()]
+         */
+        public Enumeration propertyNames ()
+        {
+            return keys ();
+        }
+        
                 
         SystemPropertyLookup (String systemPrefix)
         {
@@ -541,6 +572,16 @@ abstract class Property
             return _propertyNames.keys ();
         }
 
+        /*
+         * Overrides Properties.propertyNames () [newer JREs no longer implement
+         * it in terms of keys(), which would hide all looked up properties from
+         * IProperties.Factory.wrap()]
+         */
+        public Enumeration propertyNames ()
+        {
+            return keys ();
+        }
+        
                 
         SystemRedirectsLookup (final Map systemRedirects)
         {
@@ -68,6 +68,8 @@ final class emma
     "   ctl     remote control processor;" + EOL +
     "   merge   offline data file merge processor." + EOL +
     "   report  offline report generator;" + EOL +
+    "   check   offline coverage metrics check {no reports};" + EOL +
+    "   diff    offline coverage diff between two sets of data files;" + EOL +
     EOL +
     "  {use '<command> -h' to see usage help for a given command}" + EOL +
     EOL +
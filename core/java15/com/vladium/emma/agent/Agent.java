@@ -0,0 +1,264 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.emma.agent;
+
+import java.io.File;
+import java.lang.instrument.Instrumentation;
+import java.util.StringTokenizer;
+
+import com.vladium.logging.ILogLevels;
+import com.vladium.logging.Logger;
+import com.vladium.util.IFileLock;
+import com.vladium.util.IProperties;
+import com.vladium.util.Property;
+import com.vladium.util.Strings;
+import com.vladium.util.exception.AbstractException;
+import com.vladium.util.exit.ExitHookManager;
+import com.vladium.emma.AppLoggers;
+import com.vladium.emma.EMMAProperties;
+import com.vladium.emma.IAppConstants;
+import com.vladium.emma.data.CoverageOptionsFactory;
+import com.vladium.emma.data.DataFactory;
+import com.vladium.emma.data.IMetaData;
+import com.vladium.emma.filter.IInclExclFilter;
+import com.vladium.emma.rt.RT;
+
+// ----------------------------------------------------------------------------
+/**
+ * The java agent entry point for on-the-fly instrumentation. Instead of
+ * instrumenting classes offline or running the app in an instrumenting
+ * classloader, the agent registers an {@link InstrTransformer} that instruments
+ * classes as they are defined by whatever loaders the app uses, and builds the
+ * session metadata lazily from the classes actually loaded. Usage:
+ * <PRE>
+ *  java -javaagent:emma.jar[=name=value,...] ...
+ * </PRE>
+ * where each 'name=value' pair sets app property 'name' [e.g.,
+ * 'agent.filter=com.acme.*,-com.acme.test.*' or 'coverage.out.file=app.ec'].
+ * Commas are allowed within values: a comma-separated token that does not
+ * contain '=' continues the value of the previous pair.<P>
+ * 
+ * Coverage data is collected and dumped by {@link RT} exactly as for offline
+ * instrumented classes; metadata for all instrumented classes is written to
+ * ${metadata.out.file} at JVM exit. If 'agent.retire.interval' is set, the
+ * probes of fully covered classes are retired at that interval [see
+ * {@link ProbeRetirer}].
+ * 
+ * @author Vlad Roubtsov, (C) 2003
+ */
+public
+final class Agent
+{
+    // public: ................................................................
+    
+    
+    public static final String PREFIX_AGENT                     = "agent.";
+    public static final String PROPERTY_AGENT_FILTER            = PREFIX_AGENT + "filter";
+    public static final String PROPERTY_AGENT_CACHE_DIR         = PREFIX_AGENT + "cache.dir";
+    public static final String PROPERTY_AGENT_RETIRE_INTERVAL   = PREFIX_AGENT + "retire.interval";
+    public static final int DEFAULT_AGENT_RETIRE_INTERVAL       = 0; // in milliseconds [0 disables probe retirement]
+    
+    
+    public static void premain (final String args, final Instrumentation inst)
+    {
+        // the agent arguments must be in place before anything reads app properties:
+        setArgumentProperties (args);
+        
+        ClassLoader loader = Agent.class.getClassLoader ();
+        if (loader == null) loader = ClassLoader.getSystemClassLoader ();
+        
+        final IProperties appProperties = EMMAProperties.getAppProperties (loader);
+        
+        final IInclExclFilter filter;
+        {
+            final String specs = appProperties.getProperty (PROPERTY_AGENT_FILTER);
+            
+            filter = (specs != null) && (specs.trim ().length () > 0)
+                ? IInclExclFilter.Factory.create (specs, COMMA_DELIMITERS, null)
+                : null;
+        }
+        
+        final File cacheDir;
+        {
+            final String dir = appProperties.getProperty (PROPERTY_AGENT_CACHE_DIR);
+            
+            cacheDir = (dir != null) && (dir.trim ().length () > 0)
+                ? new File (dir.trim ())
+                : null;
+        }
+        
+        final IMetaData mdata = DataFactory.newMetaData (CoverageOptionsFactory.create (appProperties));
+        
+        // initialize the runtime [this also sets up the coverage data exit hook]
+        // before any instrumented class can call into it:
+        RT.getCoverageData ();
+        
+        final File outFile = new File (appProperties.getProperty (EMMAProperties.PROPERTY_META_DATA_OUT_FILE,
+                                                                  EMMAProperties.DEFAULT_META_DATA_OUT_FILE));
+        final boolean merge = Property.toBoolean (appProperties.getProperty (EMMAProperties.PROPERTY_META_DATA_OUT_MERGE,
+                                                                              EMMAProperties.DEFAULT_META_DATA_OUT_MERGE.toString ()));
+        
+        ExitHookManager.getSingleton ().addExitHook (new MetaDataExitHook (mdata, outFile, merge, RT.getCoverageOutFileLock (outFile)));
+        
+        // app properties are not known to the default logger: honor 'verbosity.*' settings
+        final Logger log = AppLoggers.create (IAppConstants.APP_NAME, appProperties, Logger.getLogger ());
+        
+        int retireInterval = Property.toInt (appProperties.getProperty (PROPERTY_AGENT_RETIRE_INTERVAL), DEFAULT_AGENT_RETIRE_INTERVAL);
+        if ((retireInterval > 0) && ! inst.isRetransformClassesSupported ())
+        {
+            log.warning ("class retransformation is not supported by this JVM: probe retirement disabled");
+            retireInterval = 0;
+        }
+        
+        final InstrTransformer transformer = new InstrTransformer (filter, mdata, cacheDir != null ? new InstrCache (cacheDir, mdata.getOptions ()) : null, retireInterval > 0);
+        inst.addTransformer (transformer, retireInterval > 0);
+        
+        if (retireInterval > 0)
+        {
+            final Thread retirer = new Thread (new ProbeRetirer (inst, transformer, mdata, retireInterval, log),
+                                               IAppConstants.APP_NAME + " probe retirement thread");
+            retirer.setDaemon (true);
+            retirer.start ();
+        }
+        
+        if (log.atINFO ())
+        {
+            log.info ("agent: instrumenting classes on the fly"
+                + (cacheDir != null ? " [cache: " + cacheDir.getAbsolutePath () + "]" : "")
+                + (retireInterval > 0 ? " [probe retirement every " + retireInterval + " ms]" : "") + " ...");
+        }
+    }
+    
+    // protected: .............................................................
+    
+    // package: ...............................................................
+    
+    // private: ...............................................................
+    
+    
+    /*
+     * Persists a snapshot of the agent metadata at JVM exit.
+     */
+    private static final class MetaDataExitHook implements Runnable
+    {
+        public synchronized void run ()
+        {
+            if (m_mdata != null)
+            {
+                final Logger log = Logger.getLogger ();
+                
+                final IMetaData mdataView = m_mdata.shallowCopy ();
+                
+                synchronized (Object.class) // same JVM-global critical section as used by the coverage data dumps
+                {
+                    boolean dump = true;
+                    try
+                    {
+                        if (m_lock != null)
+                        {
+                            try
+                            {
+                                dump = false;
+                                m_lock.acquire ();
+                                dump = true;
+                            }
+                            catch (AbstractException ae)
+                            {
+                                log.log (ILogLevels.SEVERE, "lock for metadata file [" + m_outFile.getAbsolutePath () + "] could not be acquired: " + m_lock, ae);
+                            }
+                        }
+                        
+                        if (dump)
+                        {
+                            DataFactory.persist (mdataView, m_outFile, m_merge);
+                            
+                            if (log.atINFO ())
+                            {
+                                log.info ("metadata for " + mdataView.size () + " classes " + (m_merge ? "merged into" : "written to") + " [" + m_outFile.getAbsolutePath () + "]");
+                            }
+                        }
+                    }
+                    catch (Throwable t)
+                    {
+                        log.log (ILogLevels.SEVERE, "metadata dump failed", t);
+                    }
+                    finally
+                    {
+                        if (m_lock != null) m_lock.release ();
+                    }
+                }
+                
+                m_mdata = null;
+            }
+        }
+        
+        MetaDataExitHook (final IMetaData mdata, final File outFile, final boolean merge, final IFileLock lock)
+        {
+            m_mdata = mdata;
+            m_outFile = outFile;
+            m_merge = merge;
+            m_lock = lock;
+        }
+        
+        
+        private IMetaData m_mdata; // nulled out after the first run()
+        private final File m_outFile;
+        private final boolean m_merge;
+        private final IFileLock m_lock; // can be null
+    
+    } // end of nested class
+    
+    
+    private Agent () {} // prevent subclassing
+    
+    /*
+     * Sets every 'name=value' pair in 'args' as system property
+     * "${APP_NAME_LC}.name". A token without '=' is appended [with its
+     * leading comma] to the value of the previous pair.
+     */
+    private static void setArgumentProperties (final String args)
+    {
+        if ((args == null) || (args.length () == 0)) return;
+        
+        String name = null;
+        StringBuffer value = null;
+        
+        for (StringTokenizer tokenizer = new StringTokenizer (args, ","); tokenizer.hasMoreTokens (); )
+        {
+            final String token = tokenizer.nextToken ();
+            final int eq = token.indexOf ('=');
+            
+            if (eq > 0)
+            {
+                if (name != null) setArgumentProperty (name, value.toString ());
+                
+                name = token.substring (0, eq).trim ();
+                value = new StringBuffer (token.substring (eq + 1));
+            }
+            else if (name != null)
+            {
+                value.append (',').append (token);
+            }
+            else
+                throw new IllegalArgumentException ("invalid agent argument: [" + token + "]");
+        }
+        
+        if (name != null) setArgumentProperty (name, value.toString ());
+    }
+    
+    private static void setArgumentProperty (final String name, final String value)
+    {
+        System.setProperty (IAppConstants.APP_NAME_LC + '.' + name, value.trim ());
+    }
+    
+    
+    private static final String COMMA_DELIMITERS = "," + Strings.WHITE_SPACE;
+
+} // end of class
+// ----------------------------------------------------------------------------
@@ -0,0 +1,218 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.emma.agent;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+
+import com.vladium.logging.Logger;
+import com.vladium.util.Files;
+import com.vladium.emma.IAppConstants;
+import com.vladium.emma.data.ClassDescriptor;
+import com.vladium.emma.data.CoverageOptions;
+
+// ----------------------------------------------------------------------------
+/**
+ * An on-disk cache of instrumented class definitions for the java agent.
+ * Each entry is keyed by the class VM name and the SHA-1 digest of the
+ * original class bytes, so a changed class definition simply misses the cache.
+ * An entry holds both the instrumented bytes and the class metadata descriptor
+ * so that a cache hit needs neither parsing nor instrumentation.<P>
+ * 
+ * Entries are kept in a subdirectory named after a fingerprint of the tool
+ * version and of all coverage options that affect instrumented class
+ * definitions [probe layout, method exclusions, SUID compensation], so
+ * agents started with different settings or by a different build never share
+ * entries even when they are given the same cache directory.<P>
+ * 
+ * MT-safety: entries are written to temp files and renamed into place, so
+ * concurrent transformer threads [and JVMs] can share a cache directory.
+ * 
+ * @author Vlad Roubtsov, (C) 2003
+ */
+final class InstrCache
+{
+    // public: ................................................................
+    
+    // protected: .............................................................
+    
+    // package: ...............................................................
+    
+    
+    static final class Entry
+    {
+        Entry (final byte [] bytes, final ClassDescriptor descriptor)
+        {
+            m_bytes = bytes;
+            m_descriptor = descriptor;
+        }
+        
+        final byte [] m_bytes; // instrumented class definition
+        final ClassDescriptor m_descriptor;
+    
+    } // end of nested class
+    
+    
+    /*
+     * @param dir [may not be null; created if it does not exist]
+     * @param options coverage options classes are instrumented with [may not be null]
+     */
+    InstrCache (final File dir, final CoverageOptions options)
+    {
+        if (dir == null) throw new IllegalArgumentException ("null input: dir");
+        if (options == null) throw new IllegalArgumentException ("null input: options");
+        
+        m_dir = new File (dir, getFingerprint (options));
+    }
+    
+    /*
+     * @return cached entry for 'classVMName' and original class bytes 'bytes'
+     * [null on a cache miss or a read error]
+     */
+    Entry get (final String classVMName, final byte [] bytes)
+    {
+        final File file = getEntryFile (classVMName, bytes);
+        if (! file.isFile ()) return null;
+        
+        ObjectInputStream in = null;
+        try
+        {
+            in = new ObjectInputStream (new BufferedInputStream (new FileInputStream (file), IO_BUF_SIZE));
+            
+            final ClassDescriptor descriptor = (ClassDescriptor) in.readObject ();
+            
+            final byte [] instrBytes = new byte [in.readInt ()];
+            in.readFully (instrBytes);
+            
+            return new Entry (instrBytes, descriptor);
+        }
+        catch (Exception e)
+        {
+            final Logger log = Logger.getLogger ();
+            if (log.atTRACE1 ()) log.trace1 ("get", "ignoring unreadable cache entry [" + file + "]: " + e);
+            
+            return null;
+        }
+        finally
+        {
+            if (in != null) try { in.close (); } catch (IOException ignore) {}
+        }
+    }
+    
+    /*
+     * Failures to write an entry are logged and otherwise ignored.
+     *
+     * @param bytes original class bytes [used to compute the entry key]
+     */
+    void put (final String classVMName, final byte [] bytes, final Entry entry)
+    {
+        final File file = getEntryFile (classVMName, bytes);
+        
+        File tempFile = null;
+        ObjectOutputStream out = null;
+        try
+        {
+            final File parent = file.getParentFile ();
+            parent.mkdirs ();
+            
+            tempFile = Files.createTempFile (parent, file.getName (), ".tmp");
+            
+            out = new ObjectOutputStream (new BufferedOutputStream (new FileOutputStream (tempFile), IO_BUF_SIZE));
+            
+            out.writeObject (entry.m_descriptor);
+            out.writeInt (entry.m_bytes.length);
+            out.write (entry.m_bytes);
+            
+            out.close ();
+            out = null;
+            
+            if (! Files.renameFile (tempFile, file, true))
+                throw new IOException ("could not rename [" + tempFile + "] to [" + file + "]");
+            
+            tempFile = null;
+        }
+        catch (Exception e)
+        {
+            final Logger log = Logger.getLogger ();
+            if (log.atTRACE1 ()) log.trace1 ("put", "could not write cache entry [" + file + "]: " + e);
+        }
+        finally
+        {
+            if (out != null) try { out.close (); } catch (IOException ignore) {}
+            if (tempFile != null) tempFile.delete ();
+        }
+    }
+    
+    // private: ...............................................................
+    
+    
+    /*
+     * @return subdirectory name that identifies the tool build and all
+     * coverage options that affect instrumented class definitions
+     */
+    private static String getFingerprint (final CoverageOptions options)
+    {
+        final StringBuffer s = new StringBuffer (IAppConstants.APP_VERSION_WITH_BUILD_ID_AND_TAG);
+        
+        s.append (',').append (IAppConstants.DATA_FORMAT_VERSION);
+        s.append (',').append (options.excludeEmptyClasses ());
+        s.append (',').append (options.excludeSyntheticMethods ());
+        s.append (',').append (options.excludeBridgeMethods ());
+        s.append (',').append (options.doSUIDCompensation ());
+        s.append (',').append (options.compactProbes ());
+        s.append (',').append (options.flatProbes ());
+        
+        final CRC32 crc = new CRC32 ();
+        crc.update (s.toString ().getBytes ());
+        
+        return "instr-" + Long.toHexString (crc.getValue ());
+    }
+    
+    private File getEntryFile (final String classVMName, final byte [] bytes)
+    {
+        final byte [] digest;
+        try
+        {
+            digest = MessageDigest.getInstance (ENTRY_DIGEST_ALGORITHM).digest (bytes); // [MessageDigest is not MT-safe: one per call]
+        }
+        catch (NoSuchAlgorithmException nsae)
+        {
+            throw new IllegalStateException (ENTRY_DIGEST_ALGORITHM + " is not available: " + nsae);
+        }
+        
+        final StringBuffer name = new StringBuffer (classVMName.length () + 2 * digest.length + 8);
+        name.append (classVMName.replace ('/', File.separatorChar)).append ('.');
+        for (int b = 0; b < digest.length; ++ b)
+        {
+            name.append (HEX_DIGITS [(digest [b] >>> 4) & 0x0F]).append (HEX_DIGITS [digest [b] & 0x0F]);
+        }
+        name.append (ENTRY_FILE_EXT);
+        
+        return new File (m_dir, name.toString ());
+    }
+    
+    
+    private final File m_dir; // fingerprinted subdirectory of the user-specified cache dir
+    
+    private static final String ENTRY_FILE_EXT = "." + IAppConstants.APP_NAME_LC + "c";
+    private static final String ENTRY_DIGEST_ALGORITHM = "SHA-1";
+    private static final char [] HEX_DIGITS = "0123456789abcdef".toCharArray ();
+    private static final int IO_BUF_SIZE = 8 * 1024;
+
+} // end of class
+// ----------------------------------------------------------------------------
@@ -0,0 +1,237 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.emma.agent;
+
+import java.io.IOException;
+import java.lang.instrument.ClassFileTransformer;
+import java.security.ProtectionDomain;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import com.vladium.jcd.cls.ClassDef;
+import com.vladium.jcd.compiler.ClassWriter;
+import com.vladium.jcd.parser.ClassDefParser;
+import com.vladium.logging.Logger;
+import com.vladium.util.ByteArrayOStream;
+import com.vladium.util.Descriptors;
+import com.vladium.emma.data.IMetaData;
+import com.vladium.emma.filter.IInclExclFilter;
+import com.vladium.emma.instr.InstrVisitor;
+
+// ----------------------------------------------------------------------------
+/**
+ * The class file transformer installed by {@link Agent}. This is the agent
+ * analog of {@link com.vladium.emma.run.InstrClassLoadHook}: each class
+ * accepted by the coverage filter is instrumented as it is being defined and
+ * its metadata descriptor is added to the session metadata at the same time.
+ * The filter is applied to the class name before the class definition is
+ * parsed, so excluded classes cost a single filter lookup.<P>
+ * 
+ * When probe retirement is enabled [see {@link ProbeRetirer}], the transformer
+ * is registered as retransformation capable and classes marked as retired are
+ * re-created without coverage probes when they are retransformed.<P>
+ * 
+ * MT-safety: transform() can be called concurrently by any number of loading
+ * threads. Class definition processing is serialized on the [stateful]
+ * instrumenting visitor, while metadata updates are done under the metadata
+ * lock.
+ * 
+ * @author Vlad Roubtsov, (C) 2003
+ */
+final class InstrTransformer implements ClassFileTransformer
+{
+    // public: ................................................................
+    
+    
+    public byte [] transform (final ClassLoader loader, final String className,
+                              final Class classBeingRedefined, final ProtectionDomain protectionDomain,
+                              final byte [] bytes)
+    {
+        // never touch bootstrap classes or our own runtime:
+        
+        if ((loader == null) || (className == null) || className.startsWith (APP_PACKAGE_VM_PREFIX))
+            return null;
+        
+        // redefinitions are left alone unless we are retransformation capable
+        // [in which case 'bytes' is always the original class definition]:
+        
+        if ((classBeingRedefined != null) && ! m_retransform)
+            return null;
+        
+        final IInclExclFilter filter = m_filter;
+        if ((filter != null) && ! filter.included (Descriptors.vmNameToJavaName (className)))
+            return null;
+        
+        try
+        {
+            if ((classBeingRedefined != null) && isRetired (classBeingRedefined))
+                return retire (bytes);
+            else
+                return instrument (className, bytes);
+        }
+        catch (Throwable t)
+        {
+            // a transformer must not fail the class definition: leave the class uninstrumented
+            
+            final Logger log = Logger.getLogger ();
+            log.warning ("could not instrument class [" + className + "]: " + t);
+            
+            return null;
+        }
+    }
+    
+    // protected: .............................................................
+    
+    // package: ...............................................................
+    
+    
+    /*
+     * @param filter [can be null]
+     * @param cache [can be null]
+     * @param retransform 'true' if this transformer is registered as
+     * retransformation capable [required for probe retirement]
+     */
+    InstrTransformer (final IInclExclFilter filter, final IMetaData mdata, final InstrCache cache,
+                      final boolean retransform)
+    {
+        if (mdata == null) throw new IllegalArgumentException ("null input: mdata");
+        
+        m_filter = filter;
+        m_metadata = mdata;
+        m_cache = cache;
+        m_retransform = retransform;
+        
+        // important to use the same options as the metadata may have been populated earlier:
+        m_classDefProcessor = new InstrVisitor (mdata.getOptions ());
+        
+        m_retired = new WeakHashMap ();
+    }
+    
+    /*
+     * Marks 'classes' as retired [or re-armed if 'retired' is false]. This takes
+     * effect the next time these classes are retransformed.
+     */
+    void setRetired (final Class [] classes, final boolean retired)
+    {
+        synchronized (m_retired)
+        {
+            for (int c = 0; c < classes.length; ++ c)
+            {
+                if (retired)
+                    m_retired.put (classes [c], null);
+                else
+                    m_retired.remove (classes [c]);
+            }
+        }
+    }
+    
+    boolean isRetired (final Class cls)
+    {
+        synchronized (m_retired)
+        {
+            return m_retired.containsKey (cls);
+        }
+    }
+    
+    /*
+     * @return snapshot of all currently retired classes [never null]
+     */
+    Class [] getRetiredClasses ()
+    {
+        synchronized (m_retired)
+        {
+            final Class [] result = new Class [m_retired.size ()];
+            m_retired.keySet ().toArray (result);
+            
+            return result;
+        }
+    }
+    
+    // private: ...............................................................
+    
+    
+    /*
+     * @return instrumented class definition [null if the class should be left as is]
+     */
+    private byte [] instrument (final String classVMName, final byte [] bytes)
+        throws IOException
+    {
+        final InstrCache cache = m_cache;
+        
+        InstrCache.Entry entry = (cache != null) ? cache.get (classVMName, bytes) : null;
+        if (entry == null)
+        {
+            final ClassDef clsDef = ClassDefParser.parseClass (bytes, bytes.length);
+            
+            final InstrVisitor.InstrResult instrResult = new InstrVisitor.InstrResult ();
+            synchronized (m_classDefProcessor)
+            {
+                // classes instrumented offline are left alone:
+                m_classDefProcessor.process (clsDef, true, true, true, instrResult);
+            }
+            
+            // null descriptor means either an already instrumented class or an interface:
+            if (! instrResult.m_instrumented || (instrResult.m_descriptor == null))
+                return null;
+            
+            final ByteArrayOStream out = new ByteArrayOStream (bytes.length + (bytes.length >> 2));
+            ClassWriter.writeClassTable (clsDef, out);
+            
+            entry = new InstrCache.Entry (out.copyByteArray (), instrResult.m_descriptor);
+            
+            if (cache != null) cache.put (classVMName, bytes, entry);
+        }
+        
+        synchronized (m_metadata.lock ())
+        {
+            // do not force overwrites: if the same class name is defined by
+            // several loaders, the first definition keeps its metadata
+            
+            m_metadata.add (entry.m_descriptor, false);
+        }
+        
+        return entry.m_bytes;
+    }
+    
+    /*
+     * @return class definition with the same structure as the instrumented one
+     * but without any coverage probes outside of <clinit> [null if the class
+     * should be left as is]
+     */
+    private byte [] retire (final byte [] bytes)
+        throws IOException
+    {
+        final ClassDef clsDef = ClassDefParser.parseClass (bytes, bytes.length);
+        
+        final InstrVisitor.InstrResult instrResult = new InstrVisitor.InstrResult ();
+        synchronized (m_classDefProcessor)
+        {
+            m_classDefProcessor.process (clsDef, true, true, false, false, instrResult);
+        }
+        
+        if (! instrResult.m_instrumented) return null;
+        
+        final ByteArrayOStream out = new ByteArrayOStream (bytes.length + (bytes.length >> 2));
+        ClassWriter.writeClassTable (clsDef, out);
+        
+        return out.copyByteArray ();
+    }
+    
+    
+    private final IInclExclFilter m_filter; // can be null [equivalent to no filtering]
+    private final IMetaData m_metadata; // never null
+    private final InstrCache m_cache; // can be null
+    private final boolean m_retransform;
+    private final InstrVisitor m_classDefProcessor; // never null
+    private final Map /* Class -> null */ m_retired; // weak keys; guarded by itself
+    
+    private static final String APP_PACKAGE_VM_PREFIX = "com/vladium/";
+
+} // end of class
+// ----------------------------------------------------------------------------
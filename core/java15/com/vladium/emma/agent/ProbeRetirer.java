@@ -0,0 +1,243 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.emma.agent;
+
+import java.lang.instrument.Instrumentation;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import com.vladium.logging.Logger;
+import com.vladium.util.Descriptors;
+import com.vladium.emma.data.ClassDescriptor;
+import com.vladium.emma.data.CoverageBits;
+import com.vladium.emma.data.ICoverageData;
+import com.vladium.emma.data.IMetaData;
+import com.vladium.emma.rt.RT;
+
+// ----------------------------------------------------------------------------
+/**
+ * Periodically retires the coverage probes of fully covered classes. Once
+ * every block of a class has been executed its probes can no longer add any
+ * information, so such classes are retransformed into a probe-free version
+ * that keeps the structure of the instrumented class [JVM retransformation
+ * cannot add or remove fields and methods] and hence all of its recorded
+ * coverage. In a long running app most hot code reaches full coverage early
+ * and the steady state instrumentation overhead approaches zero.<P>
+ * 
+ * Retired classes whose coverage data has been reset since [e.g., via
+ * the ctl tool] are re-armed on the next pass.
+ * 
+ * @author Vlad Roubtsov, (C) 2003
+ */
+final class ProbeRetirer implements Runnable
+{
+    // public: ................................................................
+    
+    
+    public void run ()
+    {
+        Logger.push (m_log);
+        try
+        {
+            while (true)
+            {
+                Thread.sleep (m_interval);
+                
+                try
+                {
+                    retire ();
+                }
+                catch (Throwable t)
+                {
+                    final Logger log = Logger.getLogger ();
+                    log.warning ("probe retirement pass failed: " + t);
+                }
+            }
+        }
+        catch (InterruptedException ie)
+        {
+            // exit
+        }
+    }
+    
+    // protected: .............................................................
+    
+    // package: ...............................................................
+    
+    
+    /*
+     * @param interval time between retirement passes [in ms; must be positive]
+     * @param log logger to use in the retirement thread
+     */
+    ProbeRetirer (final Instrumentation inst, final InstrTransformer transformer,
+                  final IMetaData mdata, final long interval, final Logger log)
+    {
+        if (inst == null) throw new IllegalArgumentException ("null input: inst");
+        if (transformer == null) throw new IllegalArgumentException ("null input: transformer");
+        if (mdata == null) throw new IllegalArgumentException ("null input: mdata");
+        if (interval <= 0) throw new IllegalArgumentException ("interval must be positive: " + interval);
+        if (log == null) throw new IllegalArgumentException ("null input: log");
+        
+        m_inst = inst;
+        m_transformer = transformer;
+        m_metadata = mdata;
+        m_interval = interval;
+        m_log = log;
+    }
+    
+    /*
+     * A single retirement pass.
+     */
+    void retire ()
+    {
+        final ICoverageData cdata = RT.getCoverageData ();
+        if (cdata == null) return;
+        
+        final IMetaData mdata = m_metadata.shallowCopy ();
+        
+        // find all fully covered classes [by VM name]:
+        
+        // [a snapshot does not block class registrations while we scan]
+        final ICoverageData cdataView = cdata.shallowCopy ();
+        
+        final Set /* String */ covered = new HashSet ();
+        for (Iterator descriptors = mdata.iterator (); descriptors.hasNext (); )
+        {
+            final ClassDescriptor cls = (ClassDescriptor) descriptors.next ();
+            final ICoverageData.DataHolder data = cdataView.getCoverage (cls);
+            
+            if ((data != null) && (data.m_stamp == cls.getStamp ()) && isCovered (data))
+                covered.add (cls.getClassVMName ());
+        }
+        
+        // re-arm retired classes that are no longer fully covered:
+        
+        final List /* Class */ rearmed = new ArrayList ();
+        {
+            final Class [] retired = m_transformer.getRetiredClasses ();
+            for (int c = 0; c < retired.length; ++ c)
+            {
+                if (! covered.contains (Descriptors.javaNameToVMName (retired [c].getName ())))
+                    rearmed.add (retired [c]);
+            }
+        }
+        
+        // retire loaded classes that became fully covered since the last pass:
+        
+        final List /* Class */ retiring = new ArrayList ();
+        if (! covered.isEmpty ())
+        {
+            final Class [] loaded = m_inst.getAllLoadedClasses ();
+            for (int c = 0; c < loaded.length; ++ c)
+            {
+                final Class cls = loaded [c];
+                
+                if ((cls.getClassLoader () != null)
+                    && covered.contains (Descriptors.javaNameToVMName (cls.getName ()))
+                    && ! m_transformer.isRetired (cls)
+                    && m_inst.isModifiableClass (cls))
+                {
+                    retiring.add (cls);
+                }
+            }
+        }
+        
+        final int retiredCount = retransform (retiring, true);
+        final int rearmedCount = retransform (rearmed, false);
+        
+        final Logger log = Logger.getLogger ();
+        if ((retiredCount + rearmedCount > 0) && log.atVERBOSE ())
+        {
+            log.verbose ("probes retired for " + retiredCount + " class(es), re-armed for " + rearmedCount
+                + " [" + m_transformer.getRetiredClasses ().length + " class(es) retired in total]");
+        }
+    }
+    
+    // private: ...............................................................
+    
+    
+    /*
+     * @return number of classes successfully retransformed
+     */
+    private int retransform (final List /* Class */ classes, final boolean retire)
+    {
+        if (classes.isEmpty ()) return 0;
+        
+        final Class [] _classes = new Class [classes.size ()];
+        classes.toArray (_classes);
+        
+        m_transformer.setRetired (_classes, retire);
+        try
+        {
+            m_inst.retransformClasses (_classes);
+            
+            return _classes.length;
+        }
+        catch (Throwable t)
+        {
+            // roll back [the JVM retransforms either all or none of the classes]:
+            m_transformer.setRetired (_classes, ! retire);
+            
+            final Logger log = Logger.getLogger ();
+            log.warning ("could not " + (retire ? "retire" : "re-arm") + " probes of " + _classes.length + " class(es): " + t);
+            
+            return 0;
+        }
+    }
+    
+    /*
+     * @return 'true' iff all blocks of all instrumented methods have been
+     * executed [in either the runtime or the packed form: with generations
+     * enabled, snapshots hold packed data]
+     */
+    private static boolean isCovered (final ICoverageData.DataHolder data)
+    {
+        final boolean [][] coverage = data.m_coverage;
+        
+        if (coverage == null)
+        {
+            final long [][] bits = data.getBits ();
+            
+            for (int m = 0; m < bits.length; ++ m)
+            {
+                final long [] method = bits [m];
+                if (method == null) continue; // method was not instrumented
+                
+                if (CoverageBits.count (method) != CoverageBits.length (method)) return false;
+            }
+            
+            return true;
+        }
+        
+        for (int m = 0; m < coverage.length; ++ m)
+        {
+            final boolean [] method = coverage [m];
+            if (method == null) continue; // method was not instrumented
+            
+            for (int b = 0; b < method.length; ++ b)
+            {
+                if (! method [b]) return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    
+    private final Instrumentation m_inst;
+    private final InstrTransformer m_transformer;
+    private final IMetaData m_metadata;
+    private final long m_interval;
+    private final Logger m_log;
+
+} // end of class
+// ----------------------------------------------------------------------------
@@ -0,0 +1,192 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.emma.rt;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.Date;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import com.vladium.logging.Logger;
+import com.vladium.emma.IAppConstants;
+import com.vladium.emma.data.ICoverageData;
+
+// ----------------------------------------------------------------------------
+/**
+ * A JMX view of the coverage runtime: class registration, coverage dump and
+ * file lock statistics [see {@link RTStats}], the runtime controller queue
+ * size, and dump/reset operations that mirror the 'ctl' commands without
+ * going through the controller socket protocol.<P>
+ * 
+ * The bean is registered in the platform MBean server as
+ * {@link #OBJECT_NAME} by {@link RT} when app property 'rt.jmx' is set to
+ * 'true'. This class is only loaded reflectively, so the rest of the runtime
+ * does not depend on J2SE 1.5+.
+ * 
+ * @author Vlad Roubtsov, (C) 2003
+ */
+public
+final class RTMonitor implements RTMonitorMBean
+{
+    // public: ................................................................
+    
+    
+    public static final String OBJECT_NAME = IAppConstants.APP_PACKAGE + ":type=RT";
+    
+    
+    /**
+     * Registers a new monitor instance in the platform MBean server. Called
+     * reflectively by {@link RT}.
+     */
+    public static void register ()
+        throws Exception
+    {
+        final MBeanServer server = ManagementFactory.getPlatformMBeanServer ();
+        server.registerMBean (new RTMonitor (), new ObjectName (OBJECT_NAME));
+        
+        // use method-scoped loggers in RT:
+        final Logger log = Logger.getLogger ();
+        if (log.atVERBOSE ()) log.verbose ("runtime management bean registered as [" + OBJECT_NAME + "]");
+    }
+    
+    // RTMonitorMBean:
+    
+    public long getClassRegistrationCount ()
+    {
+        return RTStats.getClassRegistrationCount ();
+    }
+    
+    public int getCoverageClassCount ()
+    {
+        final ICoverageData cdata = RT.getCoverageData ();
+        if (cdata == null) return -1;
+        
+        synchronized (cdata.lock ())
+        {
+            return cdata.size ();
+        }
+    }
+    
+    public long getDumpCount ()
+    {
+        return RTStats.getDumpCount ();
+    }
+    
+    public long getFailedDumpCount ()
+    {
+        return RTStats.getFailedDumpCount ();
+    }
+    
+    public long getLastDumpTime ()
+    {
+        return RTStats.getLastDumpTime ();
+    }
+    
+    public long getLastDumpDuration ()
+    {
+        return RTStats.getLastDumpDuration ();
+    }
+    
+    public long getMaxDumpDuration ()
+    {
+        return RTStats.getMaxDumpDuration ();
+    }
+    
+    public long getLastDumpBytes ()
+    {
+        return RTStats.getLastDumpBytes ();
+    }
+    
+    public long getLastLockWaitTime ()
+    {
+        return RTStats.getLastLockWaitTime ();
+    }
+    
+    public long getMaxLockWaitTime ()
+    {
+        return RTStats.getMaxLockWaitTime ();
+    }
+    
+    public long getTotalLockWaitTime ()
+    {
+        return RTStats.getTotalLockWaitTime ();
+    }
+    
+    public int getControllerQueueSize ()
+    {
+        return RT.getControllerQueueSize ();
+    }
+    
+    
+    public String dumpCoverage ()
+    {
+        return toTrace (RT.dumpCoverage (null, RT.getCoverageOutMerge (), false));
+    }
+    
+    public String dumpCoverage (final String outFile, final boolean merge, final boolean disableExitHook)
+    {
+        final File _outFile = ((outFile == null) || (outFile.length () == 0)) ? null : new File (outFile);
+        
+        return toTrace (RT.dumpCoverage (_outFile, merge, disableExitHook));
+    }
+    
+    public String resetCoverage ()
+    {
+        return RT.resetCoverage ();
+    }
+    
+    public String summary ()
+    {
+        final StringBuffer s = new StringBuffer ();
+        
+        s.append ("classes registered: ").append (getClassRegistrationCount ());
+        s.append (", classes with coverage data: ").append (getCoverageClassCount ());
+        s.append ("; dumps: ").append (getDumpCount ());
+        s.append (" [").append (getFailedDumpCount ()).append (" failed]");
+        
+        final long lastDumpTime = getLastDumpTime ();
+        if (lastDumpTime > 0)
+        {
+            s.append (", last at ").append (new Date (lastDumpTime));
+            s.append (" {in ").append (getLastDumpDuration ()).append (" ms, ");
+            s.append (getLastDumpBytes ()).append (" bytes}");
+            s.append (", max dump time: ").append (getMaxDumpDuration ()).append (" ms");
+        }
+        
+        s.append ("; file lock wait time: last ").append (getLastLockWaitTime ());
+        s.append (" ms, max ").append (getMaxLockWaitTime ());
+        s.append (" ms, total ").append (getTotalLockWaitTime ()).append (" ms");
+        
+        final int queueSize = getControllerQueueSize ();
+        if (queueSize >= 0)
+            s.append ("; queued controller requests: ").append (queueSize);
+        else
+            s.append ("; no runtime controller");
+        
+        return s.toString ();
+    }
+    
+    // protected: .............................................................
+    
+    // package: ...............................................................
+    
+    // private: ...............................................................
+    
+    
+    private RTMonitor () {} // use register()
+    
+    private static String toTrace (final String trace)
+    {
+        return trace != null ? trace : "no coverage data is being collected";
+    }
+
+} // end of class
+// ----------------------------------------------------------------------------
@@ -0,0 +1,82 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.emma.rt;
+
+// ----------------------------------------------------------------------------
+/**
+ * The management interface of the coverage runtime [see {@link RTMonitor}].
+ * All times are in milliseconds and all sizes are in bytes.
+ * 
+ * @author Vlad Roubtsov, (C) 2003
+ */
+public
+interface RTMonitorMBean
+{
+    // public: ................................................................
+    
+    // attributes:
+    
+    /** number of classes registered with the runtime via RT.r() */
+    long getClassRegistrationCount ();
+    /** number of classes in the current coverage data [-1 if coverage is not being collected] */
+    int getCoverageClassCount ();
+    
+    /** number of successful coverage data dumps [including exit hook dumps] */
+    long getDumpCount ();
+    long getFailedDumpCount ();
+    /** completion time of the last successful dump [as returned by System.currentTimeMillis(); 0 if none] */
+    long getLastDumpTime ();
+    /** duration of the last successful dump [including the file lock wait] */
+    long getLastDumpDuration ();
+    long getMaxDumpDuration ();
+    /** number of bytes the last successful dump wrote to the coverage output file */
+    long getLastDumpBytes ();
+    
+    /** time spent waiting for the coverage output file lock by the last dump */
+    long getLastLockWaitTime ();
+    long getMaxLockWaitTime ();
+    long getTotalLockWaitTime ();
+    
+    /** number of requests waiting in the runtime controller queue [-1 if no controller is running] */
+    int getControllerQueueSize ();
+    
+    // operations [mirror the 'ctl' commands]:
+    
+    /**
+     * Same as 'ctl coverage.dump' with app property defaults [the exit hook
+     * is left in place].
+     *
+     * @return dump trace message
+     */
+    String dumpCoverage ();
+    
+    /**
+     * Same as 'ctl coverage.dump'.
+     *
+     * @param outFile output file [null or empty for the app property default]
+     * @param disableExitHook if 'true', coverage data is not dumped again at JVM exit
+     *
+     * @return dump trace message
+     */
+    String dumpCoverage (String outFile, boolean merge, boolean disableExitHook);
+    
+    /**
+     * Same as 'ctl coverage.reset'.
+     *
+     * @return reset trace message
+     */
+    String resetCoverage ();
+    
+    /**
+     * @return a human-readable summary of all of the above attributes
+     */
+    String summary ();
+
+} // end of interface
+// ----------------------------------------------------------------------------
@@ -1,8 +1,8 @@
 
 'a', 'attach', 'connect':
-	optional, values: 1,
-	'<[host][:][port]>',
-	"remote control connection string (defaults to 'localhost:47653')";
+	optional, mergeable, values: 1,
+	'<[host][:][port],...>',
+	"remote control connection string or comma-separated list of them (defaults to 'localhost:47653')";
 
 'c', 'command':
 	optional, mergeable, values: 1,
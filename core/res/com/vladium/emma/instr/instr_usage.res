@@ -7,7 +7,7 @@
 'd', 'dir', 'outdir':
 	optional, values: 1,
 	'<directory>',
-	"instrumentation output directory (required for non-overwrite output modes)";
+	"instrumentation output directory (required for copy and fullcopy output modes)";
 
 'out', 'outfile':
 	optional, values: 1,
@@ -21,7 +21,7 @@
 
 'm', 'outmode':
 	optional, values: 1,
-	'(copy|overwrite|fullcopy)',
+	'(copy|overwrite|fullcopy|dryrun)',
 	"output mode (defaults to 'copy')";
 
 'ix', 'filter':
@@ -0,0 +1,248 @@
+<!DOCTYPE html>
+<!-- ${title} [data: ${data}] -->
+<html>
+<head>
+<meta http-equiv="Content-Type" content="text/html; charset=${encoding}">
+<title>${title}</title>
+<style type="text/css">
+ TABLE,TD,TH {border-style:solid;border-color:black;}
+ TD,TH {background:white;margin:0;line-height:100%;padding-left:0.5em;padding-right:0.5em;}
+ TD {border-width:0 1px 0 0;}
+ TH {border-width:1px 1px 1px 0;}
+ TH.f {border-width:1px 1px 1px 1px;}
+ TABLE {border-spacing:0;border-collapse:collapse;border-width:0 0 1px 1px;}
+ P,H1,H2,H3,TH {font-family:verdana,arial,sans-serif;font-size:10pt;}
+ TD {font-family:courier,monospace;font-size:10pt;}
+ TD.h {color:red;}
+ TR.o TD {background:#F0F0F0;}
+ TR.cis TD {background:#F0F0F0;border-width:1px 1px 1px 0;}
+ .hdft {width:100%;background:#6699CC;color:white;font-family:verdana,arial,sans-serif;font-size:10pt;padding:0.2em 0.5em;}
+ .hdft A:link,.hdft A:visited {color:white;}
+ .in {color:#356085;}
+ TABLE.s {border-width:1px 0 1px 1px;}
+ TABLE.s TD {padding-left:0.25em;padding-right:0.25em;white-space:pre;}
+ TABLE.s TD.l {text-align:right;background:#F0F0F0;}
+ TABLE.s TR.z TD {background:#FF9999;}
+ TABLE.s TR.p TD {background:#FFFF88;}
+ TABLE.s TR.c TD {background:#CCFFCC;}
+ TABLE.it,TABLE.it TD {border-style:none;}
+ A:link,A:visited {color:#0000EE;text-decoration:none;}
+ A:hover {color:#0000EE;text-decoration:underline;}
+</style>
+</head>
+<body>
+<div id="report"><p>loading coverage data from [${data}] ...</p></div>
+<script type="text/javascript">
+/*
+ * The report data file calls EMMA.load(report) [or EMMA.loadCompressed(base64)
+ * for gzipped data]. 'report' is {v, g, cols, name, stats, root} where each
+ * item is {t: type, n: name, c: [column values, null for the name column],
+ * h: bitmask of columns that fail their metric, l: first line, k: [children],
+ * s: [source lines], z: [line, status, line, status, ...]}.
+ * The location hash is the path of child indices to the current item.
+ */
+var EMMA = (function ()
+{
+    var report = null;
+    var STATUS = ["z", "p", "c"];
+    var CHILD_TITLE = {"package": "PACKAGE", srcfile: "SOURCE FILE", "class": "CLASS", method: "METHOD"};
+
+    function el (tag, cls, text)
+    {
+        var e = document.createElement (tag);
+        if (cls) e.className = cls;
+        if (text != null) e.appendChild (document.createTextNode (text));
+        return e;
+    }
+
+    function link (text, href)
+    {
+        var a = el ("a", null, text);
+        a.href = href;
+        return a;
+    }
+
+    function fail (msg)
+    {
+        var root = document.getElementById ("report");
+        root.innerHTML = "";
+        root.appendChild (el ("p", null, "failed to load coverage data: " + msg));
+    }
+
+    // returns the list of items from the root to the item at 'path' [null if invalid]:
+    function resolve (path)
+    {
+        var node = report.root, trail = [node];
+        for (var i = 0; i < path.length; ++ i)
+        {
+            node = node.k ? node.k [path [i]] : null;
+            if (! node) return null;
+            trail.push (node);
+        }
+        return trail;
+    }
+
+    function headerRow (table)
+    {
+        var row = table.insertRow (-1);
+        for (var c = 0; c < report.cols.length; ++ c)
+        {
+            row.appendChild (el ("th", c == 0 ? "f" : null, report.cols [c]));
+        }
+    }
+
+    function itemRow (table, item, cls, href, indent)
+    {
+        var row = table.insertRow (-1);
+        if (cls) row.className = cls;
+        for (var c = 0; c < report.cols.length; ++ c)
+        {
+            var cell = row.insertCell (-1);
+            if (c == report.name)
+            {
+                if (indent) cell.appendChild (document.createTextNode ("\u00a0\u00a0"));
+                var label = item.t == "class" ? "class " + item.n : item.n;
+                cell.appendChild (href ? link (label, href) : el ("span", "in", label));
+            }
+            else
+            {
+                if (item.h & (1 << c)) cell.className = "h";
+                cell.appendChild (document.createTextNode (item.c [c] != null ? item.c [c] : ""));
+            }
+        }
+    }
+
+    function table (cls)
+    {
+        var t = el ("table", cls);
+        t.width = "100%";
+        return t;
+    }
+
+    function render ()
+    {
+        var hash = window.location.hash.substring (1), line = 0;
+        var colon = hash.indexOf (":");
+        if (colon >= 0)
+        {
+            line = parseInt (hash.substring (colon + 1), 10);
+            hash = hash.substring (0, colon);
+        }
+        var path = hash.length ? hash.split ("/") : [];
+        var trail = resolve (path) || resolve (path = []);
+        var item = trail [trail.length - 1];
+        var prefix = "#" + (path.length ? path.join ("/") + "/" : "");
+
+        var root = document.getElementById ("report");
+        root.innerHTML = "";
+
+        var header = el ("div", "hdft", "EMMA Coverage Report (generated " + report.g + ")");
+        root.appendChild (header);
+
+        var nav = el ("p");
+        nav.appendChild (document.createTextNode ("["));
+        nav.appendChild (path.length ? link ("all classes", "#") : document.createTextNode ("all classes"));
+        nav.appendChild (document.createTextNode ("]"));
+        for (var p = 1; p < trail.length; ++ p)
+        {
+            nav.appendChild (document.createTextNode (" [" + trail [p].t + " "));
+            nav.appendChild (p < trail.length - 1 ? link (trail [p].n, "#" + path.slice (0, p).join ("/")) : document.createTextNode (trail [p].n));
+            nav.appendChild (document.createTextNode ("]"));
+        }
+        root.appendChild (nav);
+
+        root.appendChild (el ("h2", null, path.length ? "COVERAGE SUMMARY FOR " + item.t.toUpperCase () + " [" + item.n + "]" : "OVERALL COVERAGE SUMMARY"));
+        var summary = table ();
+        headerRow (summary);
+        itemRow (summary, item, null, null, false);
+        root.appendChild (summary);
+
+        if (! path.length)
+        {
+            root.appendChild (el ("h2", null, "OVERALL STATS SUMMARY"));
+            var stats = el ("table", "it");
+            for (var name in report.stats)
+            {
+                var row = stats.insertRow (-1);
+                row.insertCell (-1).appendChild (document.createTextNode ("total " + name + ":"));
+                row.insertCell (-1).appendChild (document.createTextNode (report.stats [name]));
+            }
+            root.appendChild (stats);
+        }
+
+        if (item.k && item.k.length)
+        {
+            var leaf = item.t == "srcfile" || item.t == "class";
+            root.appendChild (el ("h2", null, "COVERAGE BREAKDOWN BY " + (item.t == "srcfile" ? "CLASS AND METHOD" : CHILD_TITLE [item.k [0].t])));
+            var children = table ();
+            headerRow (children);
+            for (var i = 0; i < item.k.length; ++ i)
+            {
+                var child = item.k [i];
+                if (child.t == "class" && item.t == "srcfile")
+                {
+                    itemRow (children, child, "cis", item.s && child.l ? prefix.substring (0, prefix.length - 1) + ":" + child.l : null, false);
+                    for (var m = 0; child.k && m < child.k.length; ++ m)
+                    {
+                        var method = child.k [m];
+                        itemRow (children, method, m % 2 ? "o" : null, item.s && method.l ? prefix.substring (0, prefix.length - 1) + ":" + method.l : null, true);
+                    }
+                }
+                else
+                {
+                    itemRow (children, child, i % 2 ? "o" : null, leaf ? null : prefix + i, false);
+                }
+            }
+            root.appendChild (children);
+        }
+
+        if (item.s)
+        {
+            var status = {};
+            for (var z = 0; item.z && z < item.z.length; z += 2) status [item.z [z]] = STATUS [item.z [z + 1]];
+
+            root.appendChild (el ("p"));
+            var src = table ("s"), target = null;
+            for (var l = 0; l < item.s.length; ++ l)
+            {
+                var srcline = src.insertRow (-1);
+                if (status [l + 1]) srcline.className = status [l + 1];
+                srcline.insertCell (-1).appendChild (document.createTextNode (l + 1));
+                srcline.cells [0].className = "l";
+                srcline.insertCell (-1).appendChild (document.createTextNode (item.s [l].length ? item.s [l] : " "));
+                if (l + 1 == line) target = srcline;
+            }
+            root.appendChild (src);
+            if (target) target.scrollIntoView ();
+        }
+
+        document.title = "EMMA Coverage Report" + (path.length ? " [" + item.n + "]" : "");
+        if (! target) window.scrollTo (0, 0);
+    }
+
+    function load (data)
+    {
+        report = data;
+        window.onhashchange = render;
+        render ();
+    }
+
+    function loadCompressed (base64)
+    {
+        if (typeof DecompressionStream == "undefined")
+            return fail ("this browser does not support DecompressionStream [re-generate the report with report.bundle.compress=false]");
+
+        var bin = atob (base64), bytes = new Uint8Array (bin.length);
+        for (var i = 0; i < bin.length; ++ i) bytes [i] = bin.charCodeAt (i);
+
+        new Response (new Blob ([bytes]).stream ().pipeThrough (new DecompressionStream ("gzip"))).text ().then (
+            function (json) { load (JSON.parse (json)); },
+            function (e) { fail (e); });
+    }
+
+    return {load: load, loadCompressed: loadCompressed};
+}) ();
+</script>
+<script type="text/javascript" charset="UTF-8" src="${data}" onerror="document.getElementById ('report').innerHTML = 'coverage data file [${data}] not found'"></script>
+</body>
+</html>
@@ -6,13 +6,18 @@
 
 'r', 'report':
 	required unless { 'v' }, mergeable, values: 1,
-	'<list of {txt|html|xml}>',
+	'<list of {txt|html|xml|bundle|jsonl}>',
 	"coverage report type list";
 
 'sp', 'sourcepath':
 	optional, mergeable, values: 1,
-	'<list of source directories>',
-	"Java source path for generating reports";
+	'<list of source directories and archives>',
+	"Java source path for generating reports [.zip/.jar entries are read as source archives]";
+
+'ix', 'filter':
+	optional, mergeable, values: 1,
+	'<class name wildcard patterns>',
+	"report inclusion/exclusion patterns {?,*}";
 
 
 'v', 'version':
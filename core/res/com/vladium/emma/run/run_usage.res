@@ -21,13 +21,13 @@
 
 'r', 'report':
 	optional, mergeable, values: 1,
-	'<list of {txt|html|xml}>',
+	'<list of {txt|html|xml|bundle|jsonl}>',
 	"coverage report type list";
 
 'sp', 'sourcepath':
 	optional, mergeable, values: 1,
-	'<list of source directories>',
-	"Java source path for generating reports";
+	'<list of source directories and archives>',
+	"Java source path for generating reports [.zip/.jar entries are read as source archives]";
 
 'raw', 'sessiondata':
 	optional, values: 0,
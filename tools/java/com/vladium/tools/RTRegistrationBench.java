@@ -0,0 +1,146 @@
+/* Copyright (C) 2003 Vladimir Roubtsov. All rights reserved.
+ * 
+ * This program and the accompanying materials are made available under
+ * the terms of the Common Public License v1.0 which accompanies this distribution,
+ * and is available at http://www.eclipse.org/legal/cpl-v10.html
+ * 
+ * $Id$
+ */
+package com.vladium.tools;
+
+import com.vladium.emma.data.DataFactory;
+import com.vladium.emma.data.ICoverageData;
+
+// ----------------------------------------------------------------------------
+/**
+ * Measures the latency of runtime class registrations [the critical section
+ * of RT.r()] while another thread takes coverage data snapshots in a loop,
+ * the way coverage.get polls and runtime dumps do. The coverage data is
+ * populated with 'classes' entries first; registrations are then timed for
+ * 'seconds' seconds. The timed registrations cycle through a fixed set of
+ * class names [as if a few classes were reloaded over and over], so that the
+ * coverage data keeps its size during the run.<P>
+ * 
+ * Prints the number of registrations, their mean latency and the number and
+ * max duration of registrations that stalled for more than 1 ms. Timing uses
+ * System.currentTimeMillis() so that this runs on 1.4 JREs too: stalls are
+ * only resolved to the ms.
+ * 
+ * @author Vlad Roubtsov, (C) 2003
+ */
+public class RTRegistrationBench
+{
+    // public: ................................................................
+    
+    public static void main (final String [] args)
+        throws Exception
+    {
+        final int classes = args.length > 0 ? Integer.parseInt (args [0]) : 80000;
+        final int seconds = args.length > 1 ? Integer.parseInt (args [1]) : 5;
+        
+        if ((classes < 0) || (seconds <= 0))
+            throw new IllegalArgumentException ("usage: [class_count [seconds]]");
+        
+        final ICoverageData cdata = DataFactory.newCoverageData ();
+        
+        for (int c = 0; c < classes; ++ c)
+        {
+            register (cdata, "bench/Loaded" + c);
+        }
+        
+        final RTRegistrationBench _this = new RTRegistrationBench (cdata);
+        
+        final Thread snapshots = new Thread (new Runnable ()
+            {
+                public void run ()
+                {
+                    _this.takeSnapshots ();
+                }
+            }, "snapshots");
+        snapshots.setDaemon (true);
+        snapshots.start ();
+        
+        _this.timeRegistrations (seconds * 1000L);
+        
+        _this.m_done = true;
+        snapshots.join ();
+        
+        System.out.println (classes + " classes, " + _this.m_snapshotCount + " snapshots, "
+            + _this.m_registrationCount + " registrations in " + seconds + " s");
+        System.out.println ("  mean: " + (_this.m_elapsed * 1000000L / Math.max (1, _this.m_registrationCount)) + " ns");
+        System.out.println ("  >1 ms stalls: " + _this.m_stallCount + ", max: " + _this.m_maxStall + " ms");
+    }
+    
+    // protected: .............................................................
+    
+    // package: ...............................................................
+    
+    // private: ...............................................................
+    
+    
+    private RTRegistrationBench (final ICoverageData cdata)
+    {
+        m_cdata = cdata;
+    }
+    
+    
+    /*
+     * Same critical section as RT.r().
+     */
+    private static void register (final ICoverageData cdata, final String classVMName)
+    {
+        final boolean [][] coverage = new boolean [][] { new boolean [4], new boolean [2] };
+        
+        synchronized (cdata.lock ())
+        {
+            cdata.addClass (coverage, classVMName, classVMName.hashCode ());
+        }
+    }
+    
+    private void takeSnapshots ()
+    {
+        while (! m_done)
+        {
+            m_cdata.shallowCopy ();
+            ++ m_snapshotCount;
+        }
+    }
+    
+    private void timeRegistrations (final long duration)
+    {
+        final long start = System.currentTimeMillis ();
+        final long end = start + duration;
+        
+        long last = start;
+        while (last < end)
+        {
+            register (m_cdata, "bench/Registered" + (m_registrationCount % REGISTERED_CLASS_COUNT));
+            ++ m_registrationCount;
+            
+            final long now = System.currentTimeMillis ();
+            final long latency = now - last;
+            
+            if (latency > 1)
+            {
+                ++ m_stallCount;
+                if (latency > m_maxStall) m_maxStall = latency;
+            }
+            last = now;
+        }
+        
+        m_elapsed = last - start;
+    }
+    
+    
+    private final ICoverageData m_cdata;
+    
+    private volatile boolean m_done;
+    private volatile int m_snapshotCount; // written by the snapshot thread only
+    
+    private int m_registrationCount, m_stallCount;
+    private long m_maxStall, m_elapsed; // in ms
+    
+    private static final int REGISTERED_CLASS_COUNT = 1024;
+
+} // end of class
+// ----------------------------------------------------------------------------